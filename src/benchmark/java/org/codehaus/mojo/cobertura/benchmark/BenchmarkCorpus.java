@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.benchmark;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.mojo.cobertura.stubs.ArtifactStub;
+import org.codehaus.plexus.util.FileUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Generates the class files and coverage data the benchmarks work on.
+ * <p/>
+ * The corpora are synthetic but deterministic, so results of different builds can be compared.
+ */
+final class BenchmarkCorpus
+{
+    /**
+     * The number of methods of each generated class.
+     */
+    static final int METHODS_PER_CLASS = 10;
+
+    /**
+     * The number of classes per package.
+     */
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    private BenchmarkCorpus()
+    {
+    }
+
+    /**
+     * Create an empty directory for a benchmark, below the build directory.
+     *
+     * @param name the name of the directory.
+     * @return the directory.
+     * @throws IOException if the directory could not be cleaned.
+     */
+    static File createDirectory( String name )
+        throws IOException
+    {
+        File dir = new File( "target/benchmarks", name ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Write class files, each with methods containing a branch, as Cobertura would find them in a build.
+     *
+     * @param dir   the classes directory.
+     * @param count the number of classes.
+     * @throws IOException if a class file could not be written.
+     */
+    static void writeClasses( File dir, int count )
+        throws IOException
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            String className = getClassName( 0, i ).replace( '.', '/' );
+            File classFile = new File( dir, className + ".class" );
+            classFile.getParentFile().mkdirs();
+
+            OutputStream out = new FileOutputStream( classFile );
+            try
+            {
+                out.write( generateClass( className ) );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    private static byte[] generateClass( String className )
+    {
+        ClassWriter cw = new ClassWriter( ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS );
+        cw.visit( Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null );
+        cw.visitSource( className.substring( className.lastIndexOf( '/' ) + 1 ) + ".java", null );
+
+        MethodVisitor init = cw.visitMethod( Opcodes.ACC_PUBLIC, "<init>", "()V", null, null );
+        init.visitCode();
+        Label start = new Label();
+        init.visitLabel( start );
+        init.visitLineNumber( 1, start );
+        init.visitVarInsn( Opcodes.ALOAD, 0 );
+        init.visitMethodInsn( Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false );
+        init.visitInsn( Opcodes.RETURN );
+        init.visitMaxs( 0, 0 );
+        init.visitEnd();
+
+        for ( int m = 0; m < METHODS_PER_CLASS; m++ )
+        {
+            // int methodN( int x ) { if ( x > N ) { return x; } return -x; }
+            MethodVisitor mv = cw.visitMethod( Opcodes.ACC_PUBLIC, "method" + m, "(I)I", null, null );
+            mv.visitCode();
+            int line = 10 + m * 5;
+            Label test = new Label();
+            mv.visitLabel( test );
+            mv.visitLineNumber( line, test );
+            mv.visitVarInsn( Opcodes.ILOAD, 1 );
+            mv.visitIntInsn( Opcodes.BIPUSH, m );
+            Label otherwise = new Label();
+            mv.visitJumpInsn( Opcodes.IF_ICMPLE, otherwise );
+            Label then = new Label();
+            mv.visitLabel( then );
+            mv.visitLineNumber( line + 1, then );
+            mv.visitVarInsn( Opcodes.ILOAD, 1 );
+            mv.visitInsn( Opcodes.IRETURN );
+            mv.visitLabel( otherwise );
+            mv.visitLineNumber( line + 3, otherwise );
+            mv.visitVarInsn( Opcodes.ILOAD, 1 );
+            mv.visitInsn( Opcodes.INEG );
+            mv.visitInsn( Opcodes.IRETURN );
+            mv.visitMaxs( 0, 0 );
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Create the coverage data of a module, as the tests of the module would leave it.
+     *
+     * @param module      the number of the module, which determines the hits.
+     * @param classCount  the number of classes of the module.
+     * @param sharedCount the number of classes, out of <code>classCount</code>, shared with the other modules.
+     * @return the coverage data.
+     */
+    static ProjectData createProjectData( int module, int classCount, int sharedCount )
+    {
+        ProjectData projectData = new ProjectData();
+        for ( int i = 0; i < classCount; i++ )
+        {
+            String className = getClassName( i < sharedCount ? 0 : module + 1, i );
+            ClassData classData = projectData.getOrCreateClassData( className );
+            classData.setSourceFileName( className.substring( className.lastIndexOf( '.' ) + 1 ) + ".java" );
+
+            for ( int m = 0; m < METHODS_PER_CLASS; m++ )
+            {
+                String methodName = "method" + m;
+                int line = 10 + m * 5;
+                classData.addLine( line, methodName, "(I)I" );
+                classData.addLineJump( line, 0 );
+                classData.addLine( line + 1, methodName, "(I)I" );
+                classData.addLine( line + 3, methodName, "(I)I" );
+
+                int hits = ( module + i + m ) % 4;
+                classData.touch( line, hits );
+                classData.touchJump( line, 0, hits % 2 == 0, hits );
+                classData.touch( line + 1, hits / 2 );
+                classData.touch( line + 3, hits - hits / 2 );
+            }
+        }
+        return projectData;
+    }
+
+    private static String getClassName( int module, int index )
+    {
+        return "org.example.module" + module + ".pkg" + ( index / CLASSES_PER_PACKAGE ) + ".Generated" + index;
+    }
+
+    /**
+     * Create the plugin classpath from the classpath of the benchmark JVM, which contains Cobertura.
+     *
+     * @return the artifacts of the classpath.
+     */
+    static List<Artifact> createPluginClasspath()
+    {
+        List<Artifact> classpath = new ArrayList<Artifact>();
+        StringTokenizer tokens = new StringTokenizer( System.getProperty( "java.class.path" ), File.pathSeparator );
+        while ( tokens.hasMoreTokens() )
+        {
+            ArtifactStub artifact = new ArtifactStub();
+            artifact.setFile( new File( tokens.nextToken() ) );
+            classpath.add( artifact );
+        }
+        return classpath;
+    }
+}
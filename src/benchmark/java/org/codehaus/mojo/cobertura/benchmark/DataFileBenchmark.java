@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.benchmark;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and saves data files through {@link CoverageDataFileHandler}, and through the compact format for comparison.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class DataFileBenchmark
+{
+    @Param( { "1000", "10000" } )
+    public int classes;
+
+    private ProjectData projectData;
+
+    private File serializedFile;
+
+    private File compactFile;
+
+    private File outputFile;
+
+    @Setup
+    public void createDataFiles()
+        throws Exception
+    {
+        File dir = BenchmarkCorpus.createDirectory( "datafile-" + classes );
+        projectData = BenchmarkCorpus.createProjectData( 0, classes, 0 );
+        serializedFile = new File( dir, "cobertura.ser" );
+        compactFile = new File( dir, "cobertura-compact.ser" );
+        outputFile = new File( dir, "output.ser" );
+        CoverageDataFileHandler.saveCoverageData( projectData, serializedFile );
+        CoverageDataCodecs.COMPACT.write( projectData, compactFile );
+    }
+
+    @Benchmark
+    public ProjectData loadSerialized()
+    {
+        return CoverageDataFileHandler.loadCoverageData( serializedFile );
+    }
+
+    @Benchmark
+    public File saveSerialized()
+    {
+        CoverageDataFileHandler.saveCoverageData( projectData, outputFile );
+        return outputFile;
+    }
+
+    @Benchmark
+    public ProjectData loadCompact()
+        throws Exception
+    {
+        return CoverageDataCodecs.COMPACT.read( compactFile );
+    }
+
+    @Benchmark
+    public File saveCompact()
+        throws Exception
+    {
+        CoverageDataCodecs.COMPACT.write( projectData, outputFile );
+        return outputFile;
+    }
+}
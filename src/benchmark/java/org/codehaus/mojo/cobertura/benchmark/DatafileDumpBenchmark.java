@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.benchmark;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
+import org.codehaus.mojo.cobertura.CoberturaDatafileDumpMojo;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+import org.codehaus.mojo.cobertura.datafile.CoverageDumpWriter;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dumps a data file with {@link CoberturaDatafileDumpMojo} to a file, including the formatting of its output.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class DatafileDumpBenchmark
+{
+    @Param( { "1000", "10000" } )
+    public int classes;
+
+    @Param( { "ser", "compact" } )
+    public String format;
+
+    @Param( { CoverageDumpWriter.XML, CoverageDumpWriter.JSON, CoverageDumpWriter.CSV } )
+    public String dumpFormat;
+
+    private CoberturaDatafileDumpMojo mojo;
+
+    private File dumpFile;
+
+    @Setup
+    public void createMojo()
+        throws Exception
+    {
+        final File dir = BenchmarkCorpus.createDirectory( "dump-" + classes + "-" + format );
+        File dataFile = new File( dir, "cobertura/cobertura.ser" );
+        dataFile.getParentFile().mkdirs();
+        CoverageDataCodecs.forName( format ).write( BenchmarkCorpus.createProjectData( 0, classes, 0 ), dataFile );
+
+        MavenProjectStub project = new MavenProjectStub()
+        {
+            private final Build build = new Build();
+
+            {
+                build.setDirectory( dir.getPath() );
+            }
+
+            public Build getBuild()
+            {
+                return build;
+            }
+        };
+
+        dumpFile = File.createTempFile( "dump", "." + dumpFormat, dir );
+        dumpFile.deleteOnExit();
+
+        mojo = new CoberturaDatafileDumpMojo();
+        mojo.setLog( new SilentLog() );
+        ReflectionUtils.setVariableValueInObject( mojo, "project", project );
+        ReflectionUtils.setVariableValueInObject( mojo, "dumpFile", dumpFile );
+        ReflectionUtils.setVariableValueInObject( mojo, "dumpFormat", dumpFormat );
+    }
+
+    @Benchmark
+    public long dump()
+        throws Exception
+    {
+        mojo.execute();
+        return dumpFile.length();
+    }
+}
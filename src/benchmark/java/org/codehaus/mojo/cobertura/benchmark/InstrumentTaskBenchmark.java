@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.benchmark;
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.mojo.cobertura.configuration.ConfigInstrumentation;
+import org.codehaus.mojo.cobertura.tasks.InstrumentTask;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instruments a corpus of generated classes with {@link InstrumentTask}, from the scan of the classes to the saved
+ * data file.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class InstrumentTaskBenchmark
+{
+    @Param( { "100", "1000", "5000" } )
+    public int classes;
+
+    /**
+     * Whether Cobertura runs in a forked JVM, which adds the start of the JVM to the time.
+     */
+    @Param( { "false" } )
+    public boolean fork;
+
+    private File classesDir;
+
+    private File instrumentedDir;
+
+    private File dataFile;
+
+    @Setup( Level.Trial )
+    public void createCorpus()
+        throws Exception
+    {
+        File dir = BenchmarkCorpus.createDirectory( "instrument-" + classes );
+        classesDir = new File( dir, "classes" );
+        instrumentedDir = new File( dir, "generated-classes" );
+        dataFile = new File( dir, "cobertura.ser" );
+        BenchmarkCorpus.writeClasses( classesDir, classes );
+    }
+
+    @Setup( Level.Invocation )
+    public void clean()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( instrumentedDir );
+        dataFile.delete();
+    }
+
+    @Benchmark
+    public File instrument()
+        throws Exception
+    {
+        ConfigInstrumentation config = new ConfigInstrumentation();
+        config.addInclude( "**/*.class" );
+        config.setBasedir( classesDir );
+
+        InstrumentTask task = new InstrumentTask();
+        task.setLog( new SilentLog() );
+        task.setQuiet( true );
+        task.setFork( fork );
+        task.setPluginClasspathList( BenchmarkCorpus.createPluginClasspath() );
+        task.setConfig( config );
+        task.setDestinationDir( instrumentedDir );
+        task.setDataFile( dataFile );
+        task.execute();
+
+        return dataFile;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.benchmark;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the data files of the modules of a reactor, as the aggregate report does.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class MergeBenchmark
+{
+    @Param( { "10", "50" } )
+    public int modules;
+
+    @Param( { "200" } )
+    public int classesPerModule;
+
+    @Param( { "4" } )
+    public int threads;
+
+    private List<File> dataFiles;
+
+    @Setup
+    public void createDataFiles()
+        throws Exception
+    {
+        File dir = BenchmarkCorpus.createDirectory( "merge-" + modules + "-" + classesPerModule );
+        dataFiles = new ArrayList<File>();
+        for ( int module = 0; module < modules; module++ )
+        {
+            File dataFile = new File( dir, "module" + module + ".ser" );
+            // a tenth of the classes are shared, as common test utilities would be
+            CoverageDataFileHandler.saveCoverageData(
+                BenchmarkCorpus.createProjectData( module, classesPerModule, classesPerModule / 10 ), dataFile );
+            dataFiles.add( dataFile );
+        }
+    }
+
+    /**
+     * The merge as the aggregate report did it before it used {@link CoverageDataMerger}.
+     */
+    @Benchmark
+    public ProjectData serialMerge()
+    {
+        ProjectData merged = new ProjectData();
+        for ( File dataFile : dataFiles )
+        {
+            merged.merge( CoverageDataFileHandler.loadCoverageData( dataFile ) );
+        }
+        return merged;
+    }
+
+    @Benchmark
+    public ProjectData parallelMerge()
+        throws Exception
+    {
+        return new CoverageDataMerger( threads, new SilentLog() ).merge( dataFiles );
+    }
+}
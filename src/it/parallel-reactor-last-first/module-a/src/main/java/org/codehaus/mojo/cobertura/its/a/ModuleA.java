@@ -0,0 +1,9 @@
+package org.codehaus.mojo.cobertura.its.a;
+
+public class ModuleA
+{
+    public String name()
+    {
+        return "a";
+    }
+}
@@ -0,0 +1,15 @@
+package org.codehaus.mojo.cobertura.its.a;
+
+import junit.framework.TestCase;
+
+public class ModuleATest
+    extends TestCase
+{
+    public void testName()
+        throws Exception
+    {
+        // let the last module of the reactor finish first
+        Thread.sleep( 10000 );
+        assertEquals( "a", new ModuleA().name() );
+    }
+}
@@ -0,0 +1,15 @@
+package org.codehaus.mojo.cobertura.its.b;
+
+import junit.framework.TestCase;
+
+public class ModuleBTest
+    extends TestCase
+{
+    public void testName()
+        throws Exception
+    {
+        // let the last module of the reactor finish first
+        Thread.sleep( 10000 );
+        assertEquals( "b", new ModuleB().name() );
+    }
+}
@@ -0,0 +1,12 @@
+package org.codehaus.mojo.cobertura.its.c;
+
+import junit.framework.TestCase;
+
+public class ModuleCTest
+    extends TestCase
+{
+    public void testName()
+    {
+        assertEquals( "c", new ModuleC().name() );
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+String log = new File( basedir, 'build.log' ).text
+
+// module-c, the last module of the reactor, finishes first, yet the aggregate report is only generated once
+assert ( log =~ /Executing aggregate cobertura:report for / ).count == 1
+
+String aggregate = new File( basedir, 'target/site/cobertura/coverage.xml' ).text
+[ 'a', 'b', 'c' ].each { module ->
+    assert aggregate.contains( "name=\"org.codehaus.mojo.cobertura.its.${module}.Module${module.toUpperCase()}\"" )
+}
+
+return true
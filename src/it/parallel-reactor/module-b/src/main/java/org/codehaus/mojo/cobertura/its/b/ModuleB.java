@@ -0,0 +1,9 @@
+package org.codehaus.mojo.cobertura.its.b;
+
+public class ModuleB
+{
+    public String name()
+    {
+        return "b";
+    }
+}
@@ -0,0 +1,12 @@
+package org.codehaus.mojo.cobertura.its.b;
+
+import junit.framework.TestCase;
+
+public class ModuleBTest
+    extends TestCase
+{
+    public void testName()
+    {
+        assertEquals( "b", new ModuleB().name() );
+    }
+}
@@ -0,0 +1,9 @@
+package org.codehaus.mojo.cobertura.its.c;
+
+public class ModuleC
+{
+    public String name()
+    {
+        return "c";
+    }
+}
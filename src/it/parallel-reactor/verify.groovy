@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def modules = [ 'a', 'b', 'c' ]
+
+modules.each { module ->
+    File moduleDir = new File( basedir, "module-${module}" )
+
+    // the instrumented classes of each module write to the data file of that module
+    Properties properties = new Properties()
+    new File( moduleDir, 'target/generated-classes/cobertura/cobertura.properties' ).withInputStream {
+        properties.load( it )
+    }
+    assert new File( properties.getProperty( 'net.sourceforge.cobertura.datafile' ) ).canonicalFile ==
+        new File( moduleDir, 'target/cobertura/cobertura.ser' ).canonicalFile
+
+    // and the data file only has the classes of the module
+    String coverage = new File( moduleDir, 'target/site/cobertura/coverage.xml' ).text
+    modules.each { other ->
+        String className = "org.codehaus.mojo.cobertura.its.${other}.Module${other.toUpperCase()}"
+        assert coverage.contains( "name=\"${className}\"" ) == ( other == module )
+    }
+}
+
+String aggregate = new File( basedir, 'target/site/cobertura/coverage.xml' ).text
+modules.each { module ->
+    assert aggregate.contains( "name=\"org.codehaus.mojo.cobertura.its.${module}.Module${module.toUpperCase()}\"" )
+}
+
+return true
@@ -0,0 +1,12 @@
+package org.codehaus.mojo.cobertura.its.a;
+
+import junit.framework.TestCase;
+
+public class ModuleATest
+    extends TestCase
+{
+    public void testName()
+    {
+        assertEquals( "a", new ModuleA().name() );
+    }
+}
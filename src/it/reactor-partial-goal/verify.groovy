@@ -0,0 +1,23 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+String log = new File( basedir, 'build.log' ).text
+
+// module-b declares the plugin but never runs instrument or check, so module-a runs the last execution of both
+assert ( log =~ /Cobertura telemetry of 1 module:/ ).count == 2
+
+assert new File( basedir, 'module-a/target/cobertura/cobertura.ser' ).isFile()
+assert !new File( basedir, 'module-b/target/cobertura' ).exists()
+
+return true
@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.zip.ZipFile
+
+String buildLog = new File( basedir, 'build.log' ).text
+
+// nothing was forked: the classes were instrumented and tested once
+assert ( buildLog =~ /--- cobertura(-maven-plugin)?:\S+:instrument \(/ ).count == 1
+assert buildLog.count( 'T E S T S' ) == 1
+assert buildLog.contains( 'All checks passed.' )
+assert new File( basedir, 'target/site/cobertura/coverage.xml' ).text.contains( 'name="Circle"' )
+
+// the jar has the original classes
+ZipFile jar = new ZipFile( new File( basedir, 'target/single-pass-1.0-SNAPSHOT.jar' ) )
+try
+{
+    String circle = new String( jar.getInputStream( jar.getEntry( 'Circle.class' ) ).bytes, 'ISO-8859-1' )
+    assert !circle.contains( 'net/sourceforge/cobertura' )
+}
+finally
+{
+    jar.close()
+}
+
+String instrumented =
+    new String( new File( basedir, 'target/generated-classes/cobertura/Circle.class' ).bytes, 'ISO-8859-1' )
+assert instrumented.contains( 'net/sourceforge/cobertura' )
+
+return true
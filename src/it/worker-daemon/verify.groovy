@@ -0,0 +1,35 @@
+/*
+ * Copyright 2011
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+log = new File(basedir, 'build.log').getText()
+
+// one worker for the whole reactor
+assert log.count('Starting Cobertura worker JVM') == 1
+
+// every module used the worker instead of forking its own JVM
+cold = []
+warm = []
+(log =~ /Cobertura worker executed \S+ in (\d+) ms \((cold|warm)\)/).each { match, millis, state ->
+    ( state == 'cold' ? cold : warm ) << ( millis as long )
+}
+assert cold.size() == 1
+assert warm.size() == 5
+
+['module1', 'module2', 'module3'].each {
+    assert new File(basedir, it + '/target/cobertura/cobertura.ser').exists()
+    assert new File(basedir, it + '/target/site/cobertura/index.html').exists()
+}
+return true
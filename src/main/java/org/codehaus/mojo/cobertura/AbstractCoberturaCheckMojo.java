@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura;
+
+import org.apache.maven.artifact.handler.ArtifactHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+import org.codehaus.mojo.cobertura.tasks.CheckTask;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Base class of the goals checking the coverage percentages, with or without running the tests in a forked lifecycle.
+ *
+ * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
+ * @since 2.8
+ */
+public abstract class AbstractCoberturaCheckMojo
+    extends AbstractCoberturaMojo
+{
+    /**
+     * The <a href="usage.html#Check">Check Configuration</a>.
+     *
+     * @parameter
+     * @required
+     */
+    private ConfigCheck check;
+
+    /**
+     * The engine running the check: <code>cobertura</code> runs Cobertura's own <code>CheckCoverageMain</code>, in a
+     * forked JVM unless <code>fork</code> is disabled, on a copy of the data file converted to Cobertura's format;
+     * <code>plugin</code> checks the data file, in any format, in the plugin, without a JVM to start or a conversion.
+     * The results of the two differ:
+     * <ul>
+     * <li>Cobertura only checks the first package it finds against the package rates, the plugin checks every
+     * package.</li>
+     * <li>Cobertura matches the regexes as Perl 5 regular expressions, the plugin as Java regular expressions, which
+     * must match the whole class name; in both the first matching regex sets the rates of a class.</li>
+     * <li>When no rate is set at all, Cobertura checks default rates of its own, while the plugin checks none: every
+     * rate which isn't set is 0.</li>
+     * </ul>
+     *
+     * @parameter expression="${cobertura.check.engine}" default-value="cobertura"
+     * @since 2.8
+     */
+    private String checkEngine = CheckTask.ENGINE_COBERTURA;
+
+    /**
+     * A unified diff, such as a patch file or the output of <code>git diff</code>, to only check the coverage of the
+     * lines it adds or changes. Each changed source file is then checked against the <code>diffBranchRate</code> and
+     * <code>diffLineRate</code> of the check configuration, instead of the other rates.
+     *
+     * @parameter expression="${cobertura.check.diffFile}"
+     * @since 2.8
+     */
+    private File diffFile;
+
+    /**
+     * A git revision, such as <code>origin/master</code>, to only check the coverage of the lines changed since it, as
+     * with <code>diffFile</code>. The diff is computed by the local <code>git</code>.
+     *
+     * @parameter expression="${cobertura.check.diffBase}"
+     * @since 2.8
+     */
+    private String diffBase;
+
+    /**
+     * A coverage baseline, such as <code>${basedir}/coverage-baseline.bin</code>, which the coverage must not drop
+     * below: the check fails if the line or branch rate of a package, or of the project, is lower than in the baseline.
+     * The baseline is created by the first check, and is meant to be kept with the sources.
+     *
+     * @parameter expression="${cobertura.check.baseline}"
+     * @since 2.8
+     */
+    private File baseline;
+
+    /**
+     * Update the <code>baseline</code> when all checks passed and the coverage improved, so that the coverage can only
+     * rise.
+     *
+     * @parameter expression="${cobertura.check.updateBaseline}" default-value="true"
+     * @since 2.8
+     */
+    private boolean updateBaseline = true;
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void executeMojo()
+        throws MojoExecutionException, MojoFailureException
+    {
+        ArtifactHandler artifactHandler = getProject().getArtifact().getArtifactHandler();
+        if ( !"java".equals( artifactHandler.getLanguage() ) )
+        {
+            getLog().info(
+                "Not executing cobertura:instrument as the project is not a Java classpath-capable package" );
+        }
+        else
+        {
+            if ( !getDataFile().exists() )
+            {
+                getLog().info( "Cannot perform check, instrumentation not performed - skipping." );
+            }
+            else
+            {
+                try
+                {
+                    CoberturaMojoUtils.mergeForkDataFiles( getDataFile(), getTelemetry(), getLog() );
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( "Unable to merge the data files of the test JVMs", e );
+                }
+
+                CheckTask task = new CheckTask();
+                setTaskDefaults( task );
+                task.setConfig( check );
+                try
+                {
+                    task.setCheckEngine( checkEngine );
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    throw new MojoExecutionException( e.getMessage(), e );
+                }
+                task.setDiffFile( diffFile );
+                task.setDiffBase( StringUtils.isEmpty( diffBase ) ? null : diffBase );
+                task.setBasedir( getProject().getBasedir() );
+                task.setBaseline( baseline );
+                task.setUpdateBaseline( updateBaseline );
+
+                // Cobertura only reads its own format
+                File dataFile = getDataFile();
+                if ( CheckTask.ENGINE_COBERTURA.equals( checkEngine ) && diffFile == null && StringUtils.isEmpty( diffBase ) )
+                {
+                    try
+                    {
+                        dataFile = CoverageDataCodecs.toSerialized( getDataFile() );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new MojoExecutionException( "Unable to read dataFile [" + getDataFile() + "]", e );
+                    }
+                }
+
+                try
+                {
+                    task.setDataFile( dataFile.getAbsolutePath() );
+
+                    task.execute();
+                }
+                finally
+                {
+                    if ( !dataFile.equals( getDataFile() ) )
+                    {
+                        dataFile.delete();
+                    }
+                }
+            }
+        }
+    }
+}
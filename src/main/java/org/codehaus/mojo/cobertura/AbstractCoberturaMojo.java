@@ -36,14 +36,22 @@ package org.codehaus.mojo.cobertura;
  */
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.cobertura.configuration.HeapSizeEstimator;
 import org.codehaus.mojo.cobertura.configuration.MaxHeapSizeUtil;
 import org.codehaus.mojo.cobertura.tasks.AbstractTask;
+import org.codehaus.mojo.cobertura.tasks.CoberturaWorker;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
 
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Abstract Base for Cobertura Mojos.
@@ -71,6 +79,41 @@ public abstract class AbstractCoberturaMojo
     // Use only default-value once tests have been refactored to IT's
     private String maxmem = "64m";
 
+    /**
+     * Size the heap of forked Cobertura JVMs from their work instead of using <code>maxmem</code>: from the number
+     * of classes to instrument, or from the size of the data file to check or report on. The estimate is logged, and
+     * kept between <code>minMaxmem</code> and <code>maxMaxmem</code>.
+     *
+     * @parameter expression="${cobertura.autoMaxmem}" default-value="false"
+     * @since 2.8
+     */
+    private boolean autoMaxmem;
+
+    /**
+     * The smallest heap size used when <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.minMaxmem}" default-value="64m"
+     * @since 2.8
+     */
+    private String minMaxmem = "64m";
+
+    /**
+     * The largest heap size used when <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.maxMaxmem}" default-value="1g"
+     * @since 2.8
+     */
+    private String maxMaxmem = "1g";
+
+    /**
+     * The maximum number of characters of output of a forked Cobertura process sent to the build log. The output is
+     * logged line by line as it arrives; the lines above the limit are only counted. Use <code>0</code> for no limit.
+     *
+     * @parameter expression="${cobertura.forkOutputLimit}" default-value="1048576"
+     * @since 2.8
+     */
+    private long forkOutputLimit = AbstractTask.DEFAULT_OUTPUT_LIMIT;
+
     /**
      * <p>
      * The Datafile Location.
@@ -89,6 +132,26 @@ public abstract class AbstractCoberturaMojo
      */
     private MojoExecution mojoExecution;
 
+    /**
+     * <i>Maven Internal</i>: the projects of the reactor.
+     *
+     * @parameter default-value="${reactorProjects}"
+     * @required
+     * @readonly
+     * @since 2.8
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * <i>Maven Internal</i>: the Maven session, for the goals given on the command line.
+     *
+     * @parameter default-value="${session}"
+     * @required
+     * @readonly
+     * @since 2.8
+     */
+    private MavenSession session;
+
     /**
      * Only output Cobertura errors, avoid info messages.
      *
@@ -96,6 +159,26 @@ public abstract class AbstractCoberturaMojo
      */
     private boolean quiet;
 
+    /**
+     * Run Cobertura in a forked JVM. When set to <code>false</code>, Cobertura is run inside the Maven JVM using an
+     * isolated class loader, which saves the JVM startup for every goal. If Cobertura can't be run in-process, a
+     * forked JVM is used after all.
+     *
+     * @parameter expression="${cobertura.fork}" default-value="true"
+     * @since 2.8
+     */
+    private boolean fork = true;
+
+    /**
+     * Run forked Cobertura tasks in a long-lived worker JVM, which is started once and then reused by every module
+     * and goal of the build. This saves the JVM startup and warm-up for all but the first task. The heap of the worker
+     * is <code>maxmem</code>, or <code>maxMaxmem</code> when <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.daemon}" default-value="false"
+     * @since 2.8
+     */
+    private boolean daemon;
+
     /**
      * <i>Maven Internal</i>: List of artifacts for the plugin.
      *
@@ -126,13 +209,17 @@ public abstract class AbstractCoberturaMojo
      */
     private boolean forceMojoExecution;
 
+    private Telemetry telemetry;
+
 
     /**
      * Setup the Task defaults.
      *
      * @param task the task to setup.
+     * @throws MojoExecutionException if the heap size range is invalid.
      */
     protected void setTaskDefaults( AbstractTask task )
+        throws MojoExecutionException
     {
         task.setLog( getLog() );
         task.setPluginClasspathList( pluginClasspathList );
@@ -146,6 +233,22 @@ public abstract class AbstractCoberturaMojo
             task.setMaxmem( maxmem );
         }
         task.setQuiet( quiet );
+        task.setFork( fork );
+        task.setDaemon( daemon );
+        task.setSession( session );
+        task.setOutputLimit( forkOutputLimit );
+        task.setTelemetry( getTelemetry() );
+        if ( autoMaxmem )
+        {
+            try
+            {
+                task.setHeapSizeEstimator( new HeapSizeEstimator( minMaxmem, maxMaxmem ) );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new MojoExecutionException( e.getMessage() );
+            }
+        }
     }
 
     /**
@@ -186,6 +289,91 @@ public abstract class AbstractCoberturaMojo
         return CoberturaMojoUtils.getDataFile( new File( this.project.getBuild().getDirectory() ), mojoExecution );
     }
 
+    /**
+     * @return the telemetry of this execution, to record its phases in.
+     * @since 2.8
+     */
+    protected Telemetry getTelemetry()
+    {
+        if ( telemetry == null )
+        {
+            telemetry = new Telemetry( getGoal() );
+        }
+        return telemetry;
+    }
+
+    /**
+     * Run the goal unless it is skipped. Its completion is recorded in any case, for the last execution of the reactor
+     * to be known.
+     *
+     * @throws MojoExecutionException if the goal failed.
+     * @throws MojoFailureException   if the goal found a failure, e.g. a coverage check.
+     */
+    public final void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        ReactorExecutions.started( getGoal(), project, reactorProjects );
+        try
+        {
+            if ( !skipMojo() )
+            {
+                executeMojo();
+            }
+        }
+        finally
+        {
+            writeTelemetry();
+        }
+    }
+
+    /**
+     * Run the goal, which isn't skipped.
+     *
+     * @throws MojoExecutionException if the goal failed.
+     * @throws MojoFailureException   if the goal found a failure, e.g. a coverage check.
+     * @since 2.8
+     */
+    protected abstract void executeMojo()
+        throws MojoExecutionException, MojoFailureException;
+
+    /**
+     * Write the telemetry of this execution to the telemetry file of the module, next to the data file. On the last
+     * execution of the reactor, the telemetry of all modules is summarized.
+     */
+    private void writeTelemetry()
+    {
+        boolean last = ReactorExecutions.completed( getGoal(), project, reactorProjects, getExpectedProjects() );
+        CoberturaMojoUtils.writeTelemetry( project, getDataFile(), telemetry, last, getLog() );
+        telemetry = null;
+
+        if ( ReactorExecutions.isSessionEnded( getPluginDescriptor(), getCommandLineGoals(), reactorProjects ) )
+        {
+            CoberturaWorker.shutdownAll();
+        }
+    }
+
+    private Set<MavenProject> getExpectedProjects()
+    {
+        return ReactorExecutions.getExpectedProjects( getPluginDescriptor(), getGoal(), getCommandLineGoals(),
+                                                      reactorProjects );
+    }
+
+    private PluginDescriptor getPluginDescriptor()
+    {
+        return mojoExecution != null ? mojoExecution.getMojoDescriptor().getPluginDescriptor() : null;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<String> getCommandLineGoals()
+    {
+        return session != null ? session.getGoals() : null;
+    }
+
+    private String getGoal()
+    {
+        return mojoExecution != null ? mojoExecution.getMojoDescriptor().getGoal() : null;
+    }
+
     /**
      * @return the project
      */
@@ -0,0 +1,996 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.AbstractMavenReport;
+import org.apache.maven.reporting.MavenReportException;
+import org.codehaus.mojo.cobertura.configuration.HeapSizeEstimator;
+import org.codehaus.mojo.cobertura.configuration.MaxHeapSizeUtil;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataMerger;
+import org.codehaus.mojo.cobertura.report.ReportFingerprint;
+import org.codehaus.mojo.cobertura.report.SourceIndex;
+import org.codehaus.mojo.cobertura.tasks.AbstractTask;
+import org.codehaus.mojo.cobertura.tasks.CoberturaWorker;
+import org.codehaus.mojo.cobertura.tasks.CommandLineArguments;
+import org.codehaus.mojo.cobertura.tasks.ReportTask;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * Base class of the goals generating a Cobertura report, with or without running the tests in a forked lifecycle.
+ *
+ * @author <a href="will.gwaltney@sas.com">Will Gwaltney</a>
+ * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
+ * @since 2.8
+ */
+public abstract class AbstractCoberturaReportMojo
+    extends AbstractMavenReport
+{
+    /**
+     * The format of the report. Supports 'html' or 'xml'. Defaults to 'html'.
+     *
+     * @parameter expression="${cobertura.report.format}"
+     * @deprecated
+     */
+    private String format;
+
+    /**
+     * The formats of the report. Can be 'html' and/or 'xml'. Defaults to 'html'.
+     *
+     * @parameter
+     */
+    private String[] formats = new String[]{ "html" };
+
+    /**
+     * The encoding for the java source code files.
+     *
+     * @parameter expression="${project.build.sourceEncoding}" default-value="UTF-8".
+     * @since 2.4
+     */
+    private String encoding;
+
+    /**
+     * Maximum memory to pass to the JVM for Cobertura processes.
+     *
+     * @parameter expression="${cobertura.maxmem}"
+     */
+    private String maxmem = "64m";
+
+    /**
+     * Size the heap of forked Cobertura JVMs from their work instead of using <code>maxmem</code>: from the number
+     * of classes to instrument, or from the size of the data file to check or report on. The estimate is logged, and
+     * kept between <code>minMaxmem</code> and <code>maxMaxmem</code>.
+     *
+     * @parameter expression="${cobertura.autoMaxmem}" default-value="false"
+     * @since 2.8
+     */
+    private boolean autoMaxmem;
+
+    /**
+     * The smallest heap size used when <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.minMaxmem}" default-value="64m"
+     * @since 2.8
+     */
+    private String minMaxmem = "64m";
+
+    /**
+     * The largest heap size used when <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.maxMaxmem}" default-value="1g"
+     * @since 2.8
+     */
+    private String maxMaxmem = "1g";
+
+    /**
+     * The maximum number of characters of output of a forked Cobertura process sent to the build log. The output is
+     * logged line by line as it arrives; the lines above the limit are only counted. Use <code>0</code> for no limit.
+     *
+     * @parameter expression="${cobertura.forkOutputLimit}" default-value="1048576"
+     * @since 2.8
+     */
+    private long forkOutputLimit = AbstractTask.DEFAULT_OUTPUT_LIMIT;
+
+    /**
+     * <p>
+     * The Datafile Location.
+     * </p>
+     *
+     * @parameter expression="${cobertura.datafile}" default-value="${project.build.directory}/cobertura/cobertura.ser"
+     * @required
+     * @readonly
+     */
+    private File dataFile;
+
+    /**
+     * <i>Maven Internal</i>: List of artifacts for the plugin.
+     *
+     * @parameter default-value="${plugin.artifacts}"
+     * @required
+     * @readonly
+     */
+    private List<Artifact> pluginClasspathList;
+
+    /**
+     * The output directory for the report.
+     *
+     * @parameter default-value="${project.reporting.outputDirectory}/cobertura"
+     * @required
+     */
+    private File outputDirectory;
+
+    /**
+     * Only output Cobertura errors, avoid info messages.
+     *
+     * @parameter expression="${quiet}" default-value="false"
+     * @since 2.1
+     */
+    private boolean quiet;
+
+    /**
+     * Run Cobertura in a forked JVM. When set to <code>false</code>, the report is generated inside the Maven JVM
+     * using an isolated class loader. If Cobertura can't be run in-process, a forked JVM is used after all.
+     *
+     * @parameter expression="${cobertura.fork}" default-value="true"
+     * @since 2.8
+     */
+    private boolean fork = true;
+
+    /**
+     * Run the forked report in a long-lived worker JVM, which is started once and then reused by every module and
+     * goal of the build. The heap of the worker is <code>maxmem</code>, or <code>maxMaxmem</code> when
+     * <code>autoMaxmem</code> is enabled.
+     *
+     * @parameter expression="${cobertura.daemon}" default-value="false"
+     * @since 2.8
+     */
+    private boolean daemon;
+
+    /**
+     * Only render the HTML pages of the source files whose coverage or content changed since the previous report in
+     * the output directory. The package and summary pages are always rendered again. The coverage data of the previous
+     * report is kept in <code>${project.build.directory}/cobertura/reports</code>.
+     *
+     * @parameter expression="${cobertura.report.incremental}" default-value="false"
+     * @since 2.8
+     */
+    private boolean incremental;
+
+    /**
+     * Index the files of the source roots, so that the report looks the source file of each class up instead of
+     * probing every source root, which matters for aggregate reports over many modules. The index is cached in
+     * <code>target/cobertura/source-index</code>, and only the directories modified since are listed again. The
+     * indexed report is generated by the plugin instead of Cobertura's <code>ReportMain</code>, even for a single
+     * format.
+     *
+     * @parameter expression="${cobertura.report.indexSources}" default-value="false"
+     * @since 2.8
+     */
+    private boolean indexSources;
+
+    /**
+     * Generate aggregate reports in multi-module projects.
+     *
+     * @parameter expression="${cobertura.aggregate}" default-value="false"
+     * @since 2.5
+     */
+    private boolean aggregate;
+
+    /**
+     * Whether to remove GPL licensed files from the generated report.
+     * This is required to distribute the report as part of a distribution,
+     * which is licensed under the ASL, or a similar license, which is
+     * incompatible with the GPL.
+     *
+     * @parameter default-value="false" expression="${cobertura.omitGplFiles}"
+     * @since 2.5
+     */
+    private boolean omitGplFiles;
+
+    /**
+     * <i>Maven Internal</i>: The Doxia Site Renderer.
+     *
+     * @component
+     */
+    private Renderer siteRenderer;
+
+    /**
+     * List of maven project of the current build
+     *
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * <i>Maven Internal</i>: Project to interact with.
+     *
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * @parameter default-value="${mojoExecution}"
+     * @required
+     * @readonly
+     * @since 2.8
+     */
+    private MojoExecution mojoExecution;
+
+    /**
+     * <i>Maven Internal</i>: the Maven session, for the goals given on the command line.
+     *
+     * @parameter default-value="${session}"
+     * @required
+     * @readonly
+     * @since 2.8
+     */
+    private MavenSession session;
+
+    /**
+     * The index of the source roots of the reports of this execution, loaded once.
+     */
+    private SourceIndex sourceIndex;
+
+    /**
+     * Constructs an <code>AbstractCoberturaReportMojo</code>.
+     * Sets the max memory to the maven max memory if set, otherwise
+     * the default <code>AbstractCoberturaReportMojo</code> value is used.
+     */
+    protected AbstractCoberturaReportMojo()
+    {
+        if ( MaxHeapSizeUtil.getInstance().envHasMavenMaxMemSetting() )
+        {
+            maxmem = MaxHeapSizeUtil.getInstance().getMavenMaxMemSetting();
+        }
+    }
+
+    /**
+     * @param locale for the message bundle
+     * @return localized cobertura name
+     * @see org.apache.maven.reporting.MavenReport#getName(java.util.Locale)
+     */
+    public String getName( Locale locale )
+    {
+        return getBundle( locale ).getString( "report.cobertura.name" );
+    }
+
+    /**
+     * @param locale for the message bundle
+     * @return localized description
+     * @see org.apache.maven.reporting.MavenReport#getDescription(java.util.Locale)
+     */
+    public String getDescription( Locale locale )
+    {
+        return getBundle( locale ).getString( "report.cobertura.description" );
+    }
+
+    @Override
+    protected String getOutputDirectory()
+    {
+        return outputDirectory.getAbsolutePath();
+    }
+
+    @Override
+    protected MavenProject getProject()
+    {
+        return project;
+    }
+
+    @Override
+    protected Renderer getSiteRenderer()
+    {
+        return siteRenderer;
+    }
+
+    /**
+     * perform the actual reporting
+     *
+     * @param task
+     * @param outputFormats
+     * @return <code>true</code> if the report was generated.
+     * @throws MavenReportException
+     */
+    private boolean executeReportTask( ReportTask task, List<String> outputFormats )
+        throws MavenReportException
+    {
+        task.setOutputFormats( outputFormats );
+
+        // execute task
+        try
+        {
+            task.execute();
+            return true;
+        }
+        catch ( MojoExecutionException e )
+        {
+            // throw new MavenReportException( "Error in Cobertura Report generation: " + e.getMessage(), e );
+            // better don't break the build if report is not generated, also due to the sporadic MCOBERTURA-56
+            getLog().error( "Error in Cobertura Report generation: " + e.getMessage(), e );
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void executeReport( Locale locale )
+        throws MavenReportException
+    {
+        Telemetry telemetry = new Telemetry( getGoal() );
+        ReactorExecutions.started( getGoal(), project, reactorProjects );
+        try
+        {
+            if ( canGenerateSimpleReport() )
+            {
+                try
+                {
+                    CoberturaMojoUtils.mergeForkDataFiles( getDataFile(), telemetry, getLog() );
+                }
+                catch ( IOException e )
+                {
+                    throw new MavenReportException( "Unable to merge the data files of the test JVMs", e );
+                }
+                executeReport( getDataFile(), outputDirectory, getCompileSourceRoots(), telemetry );
+            }
+        }
+        finally
+        {
+            completed( telemetry );
+        }
+    }
+
+    /**
+     * Record that this project completed the goal and, if it was the last project of the reactor to do so, generate
+     * the aggregate reports. In a parallel build, the last project of the reactor may complete before the others.
+     *
+     * @param telemetry the telemetry of this execution.
+     * @throws MavenReportException if the aggregate reports could not be generated.
+     */
+    private void completed( Telemetry telemetry )
+        throws MavenReportException
+    {
+        boolean last = ReactorExecutions.completed( getGoal(), project, reactorProjects, getExpectedProjects() );
+        try
+        {
+            if ( aggregate && last && reactorProjects != null )
+            {
+                executeAggregateReport( buildAggregation(), telemetry );
+            }
+        }
+        finally
+        {
+            CoberturaMojoUtils.writeTelemetry( project, getDataFile(), telemetry, last, getLog() );
+
+            if ( ReactorExecutions.isSessionEnded( getPluginDescriptor(), getCommandLineGoals(), reactorProjects ) )
+            {
+                CoberturaWorker.shutdownAll();
+            }
+        }
+    }
+
+    private String getGoal()
+    {
+        return mojoExecution != null ? mojoExecution.getMojoDescriptor().getGoal() : null;
+    }
+
+    private Set<MavenProject> getExpectedProjects()
+    {
+        return ReactorExecutions.getExpectedProjects( getPluginDescriptor(), getGoal(), getCommandLineGoals(),
+                                                      reactorProjects );
+    }
+
+    private PluginDescriptor getPluginDescriptor()
+    {
+        return mojoExecution != null ? mojoExecution.getMojoDescriptor().getPluginDescriptor() : null;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<String> getCommandLineGoals()
+    {
+        return session != null ? session.getGoals() : null;
+    }
+
+    /**
+     * Generates aggregate cobertura reports for all multi-module projects.
+     */
+    private void executeAggregateReport( Aggregation aggregation, Telemetry telemetry )
+        throws MavenReportException
+    {
+        // the aggregate reports of a reactor are written by one execution at a time
+        synchronized ( AbstractCoberturaReportMojo.class )
+        {
+            for ( MavenProject proj : reactorProjects )
+            {
+                if ( !isMultiModule( proj ) )
+                {
+                    continue;
+                }
+                executeAggregateReport( aggregation, proj, telemetry );
+            }
+        }
+    }
+
+    /**
+     * Generates an aggregate cobertura report for the given project.
+     */
+    private void executeAggregateReport( Aggregation aggregation, MavenProject curProject, Telemetry telemetry )
+        throws MavenReportException
+    {
+        List<MavenProject> children = getAllChildren( aggregation, curProject );
+
+        if ( children.isEmpty() )
+        {
+            return;
+        }
+
+        List<File> serFiles = getOutputFiles( aggregation, children );
+        if ( serFiles.isEmpty() )
+        {
+            getLog().info( "Not executing aggregate cobertura:report for " + curProject.getName()
+                               + " as no child cobertura data files could not be found" );
+            return;
+        }
+
+        getLog().info( "Executing aggregate cobertura:report for " + curProject.getName() );
+
+        ProjectData aggProjectData;
+        Phase phase = telemetry.start( Telemetry.MERGE );
+        try
+        {
+            aggProjectData =
+                new CoverageDataMerger( Runtime.getRuntime().availableProcessors(), getLog() ).merge( serFiles );
+            for ( File serFile : serFiles )
+            {
+                phase.addBytesRead( serFile.length() );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( "Unable to merge the cobertura data files", e );
+        }
+        finally
+        {
+            phase.end();
+        }
+
+        File aggSerFile = new File( curProject.getBasedir(), aggregation.relDataFileName );
+        aggSerFile.getAbsoluteFile().getParentFile().mkdirs();
+        getLog().info( "Saving aggregate cobertura information in " + aggSerFile.getAbsolutePath() );
+        CoverageDataFileHandler.saveCoverageData( aggProjectData, aggSerFile );
+
+        // get all compile source roots
+        List<String> aggCompileSourceRoots = new ArrayList<String>();
+        for ( MavenProject child : children )
+        {
+            aggCompileSourceRoots.addAll( child.getCompileSourceRoots() );
+        }
+
+        File reportDir = new File( curProject.getBasedir(), aggregation.relAggregateOutputDir );
+        reportDir.mkdirs();
+        executeReport( aggSerFile, reportDir, aggCompileSourceRoots, telemetry );
+    }
+
+    /**
+     * Executes the cobertura report task for the given dataFile, outputDirectory, and compileSourceRoots.
+     */
+    private void executeReport( File curDataFile, File curOutputDirectory, List<String> curCompileSourceRoots,
+                                Telemetry telemetry )
+        throws MavenReportException
+    {
+        ReportTask task = new ReportTask();
+
+        // task defaults
+        task.setLog( getLog() );
+        task.setPluginClasspathList( pluginClasspathList );
+        task.setQuiet( quiet );
+        task.setOutputLimit( forkOutputLimit );
+        task.setFork( fork );
+        task.setDaemon( daemon );
+        task.setSession( session );
+        task.setTelemetry( telemetry );
+
+        // task specifics
+        task.setMaxmem( maxmem );
+        if ( autoMaxmem )
+        {
+            try
+            {
+                task.setHeapSizeEstimator( new HeapSizeEstimator( minMaxmem, maxMaxmem ) );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new MavenReportException( e.getMessage() );
+            }
+        }
+        task.setOutputDirectory( curOutputDirectory );
+        task.setCompileSourceRoots( curCompileSourceRoots );
+        task.setSourceEncoding( encoding );
+        task.setIncremental( incremental );
+
+        CommandLineArguments cmdLineArgs;
+        cmdLineArgs = new CommandLineArguments();
+        cmdLineArgs.setUseCommandsFile( true );
+        task.setCmdLineArgs( cmdLineArgs );
+
+        String[] outputFormats = format != null ? new String[]{ format } : formats;
+
+        SourceIndex index = refreshSourceIndex( curCompileSourceRoots );
+        task.setSourceIndex( index );
+
+        // skip the report if it was generated from the same data file and sources
+        File stateDirectory = getReportStateDirectory( curOutputDirectory );
+        task.setStateDirectory( stateDirectory );
+        ReportFingerprint fingerprint;
+        try
+        {
+            fingerprint = computeFingerprint( curDataFile, curCompileSourceRoots, outputFormats, index );
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( "Unable to read the inputs of the cobertura report", e );
+        }
+        // the state outlives a report output directory which was deleted on its own
+        if ( curOutputDirectory.isDirectory() && fingerprint.matches( stateDirectory ) )
+        {
+            getLog().info( "Cobertura report in " + curOutputDirectory + " is up to date." );
+            return;
+        }
+        ReportFingerprint.delete( stateDirectory );
+
+        // Cobertura only reads its own format
+        File serDataFile;
+        try
+        {
+            serDataFile = CoverageDataCodecs.toSerialized( curDataFile );
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( "Unable to read the cobertura data file " + curDataFile, e );
+        }
+
+        boolean generated;
+        try
+        {
+            task.setDataFile( serDataFile );
+            generated = executeReportTask( task, Arrays.asList( outputFormats ) );
+        }
+        finally
+        {
+            if ( !serDataFile.equals( curDataFile ) )
+            {
+                serDataFile.delete();
+            }
+        }
+
+        removeGplFiles();
+
+        if ( generated )
+        {
+            try
+            {
+                fingerprint.save( stateDirectory );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to save the fingerprint of the cobertura report: " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Brings the index of the source roots up to date and saves it, for the report to read.
+     *
+     * @return the index, or <code>null</code> if sources aren't indexed or the index could not be saved.
+     */
+    private SourceIndex refreshSourceIndex( List<String> curCompileSourceRoots )
+    {
+        if ( !indexSources )
+        {
+            return null;
+        }
+
+        File file = new File( project.getBuild().getDirectory(), "cobertura/source-index" );
+        try
+        {
+            if ( sourceIndex == null )
+            {
+                sourceIndex = SourceIndex.load( file );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to read the source index: " + e.getMessage() );
+            return null;
+        }
+
+        int listed = sourceIndex.getListed();
+        int reused = sourceIndex.getReused();
+        sourceIndex.refresh( curCompileSourceRoots );
+        getLog().debug( "Source index: listed " + ( sourceIndex.getListed() - listed ) + " directories, "
+                            + ( sourceIndex.getReused() - reused ) + " unchanged." );
+        try
+        {
+            sourceIndex.save();
+            return sourceIndex;
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to save the source index: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * The state of a report is kept in the build directory rather than in the report output directory, so that it
+     * isn't published with the site.
+     *
+     * @return the directory where the state of the report in the given output directory is kept between builds.
+     */
+    private File getReportStateDirectory( File curOutputDirectory )
+    {
+        File baseDirectory = new File( project.getBuild().getDirectory(), "cobertura/reports" );
+        return ReportFingerprint.getStateDirectory( baseDirectory, curOutputDirectory );
+    }
+
+    private ReportFingerprint computeFingerprint( File curDataFile, List<String> curCompileSourceRoots,
+                                                  String[] outputFormats, SourceIndex index )
+        throws IOException
+    {
+        ReportFingerprint fingerprint = new ReportFingerprint();
+        if ( mojoExecution != null )
+        {
+            fingerprint.addSetting( "plugin", mojoExecution.getMojoDescriptor().getPluginDescriptor().getVersion() );
+        }
+        for ( Artifact artifact : pluginClasspathList )
+        {
+            fingerprint.addSetting( "classpath", artifact.getId() );
+        }
+        fingerprint.addSetting( "encoding", encoding );
+        fingerprint.addSetting( "formats", Arrays.asList( outputFormats ) );
+        fingerprint.addSetting( "omitGplFiles", omitGplFiles );
+        fingerprint.addFile( "datafile", curDataFile );
+        fingerprint.addSourceRoots( curCompileSourceRoots, index );
+        return fingerprint;
+    }
+
+    /**
+     * Removes files from the generated report, which are distributed under
+     * the GPL.
+     */
+    private void removeGplFiles()
+        throws MavenReportException
+    {
+        if ( omitGplFiles )
+        {
+            final String[] files =
+                new String[]{ "js/customsorttypes.js", "js/sortabletable.js", "js/stringbuilder.js" };
+            for ( int i = 0; i < files.length; i++ )
+            {
+                final File f = new File( outputDirectory, files[i] );
+                if ( f.exists() )
+                {
+                    if ( f.delete() )
+                    {
+                        getLog().debug( "Removed GPL licensed file " + f.getPath() );
+                    }
+                    else
+                    {
+                        throw new MavenReportException( "Unable to remove GPL licensed file " + f.getPath() );
+                    }
+                }
+                else
+                {
+                    getLog().info( "GPL licensed file " + f.getPath() + " not found." );
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getOutputName()
+    {
+        return "cobertura/index";
+    }
+
+    @Override
+    public boolean isExternalReport()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean canGenerateReport()
+    {
+        if ( canGenerateSimpleReport() )
+        {
+            return true;
+        }
+        else
+        {
+            getLog().info( "Not executing cobertura:report as the cobertura data file (" + getDataFile()
+                               + ") could not be found" );
+        }
+
+        if ( canGenerateAggregateReports() )
+        {
+            return true;
+        }
+
+        if ( aggregate && isMultiModule( project ) )
+        {
+            // unfortunately, we don't know before hand whether we can generate an aggregate report for a
+            // multi-module. if we return false here, then we won't get a link in the main reports list. so we'll
+            // just be optimistic
+            return true;
+        }
+
+        // this project is done without a report, which in a parallel build may make it the last one to complete
+        try
+        {
+            completed( new Telemetry( getGoal() ) );
+        }
+        catch ( MavenReportException e )
+        {
+            getLog().error( "Error in Cobertura Report generation: " + e.getMessage(), e );
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether or not we can generate a simple (non-aggregate) report for this project.
+     *
+     * @return <code>true</code> if a simple report can be generated, otherwise <code>false</code>
+     */
+    private boolean canGenerateSimpleReport()
+    {
+        /*
+         * Don't have to check for source directories or java code or the like for report generation. Checks for source
+         * directories or java project classpath existence should only occur in the Instrument Mojo.
+         */
+        return getDataFile().exists() && getDataFile().isFile();
+    }
+
+    /**
+     * Returns whether or not we may generate aggregate reports at this time.
+     */
+    private boolean canGenerateAggregateReports()
+    {
+        // the aggregate reports are generated once the other projects are done, which in a parallel build may not be
+        // the case yet, so the last project must always run even if the data files aren't all there
+        return aggregate && reactorProjects != null && CoberturaMojoUtils.isLastProject( project, reactorProjects );
+    }
+
+    /**
+     * Returns the compileSourceRoots for the currently executing project.
+     */
+    @SuppressWarnings( "unchecked" )
+    private List<String> getCompileSourceRoots()
+    {
+        return project.getExecutionProject().getCompileSourceRoots();
+    }
+
+    @Override
+    public void setReportOutputDirectory( File reportOutputDirectory )
+    {
+        if ( ( reportOutputDirectory != null ) && ( !reportOutputDirectory.getAbsolutePath().endsWith( "cobertura" ) ) )
+        {
+            this.outputDirectory = new File( reportOutputDirectory, "cobertura" );
+        }
+        else
+        {
+            this.outputDirectory = reportOutputDirectory;
+        }
+    }
+
+    /**
+     * Gets the resource bundle for the report text.
+     *
+     * @param locale The locale for the report, must not be <code>null</code>.
+     * @return The resource bundle for the requested locale.
+     */
+    private ResourceBundle getBundle( Locale locale )
+    {
+        return ResourceBundle.getBundle( "cobertura-report", locale );
+    }
+
+    /**
+     * Test if the project has pom packaging
+     *
+     * @param mavenProject Project to test
+     * @return True if it has a pom packaging
+     */
+    private boolean isMultiModule( MavenProject mavenProject )
+    {
+        return "pom".equals( mavenProject.getPackaging() );
+    }
+
+    /**
+     * Generates various information needed for building aggregate reports.
+     */
+    private Aggregation buildAggregation()
+    {
+        // build parent-child map
+        Map<MavenProject, List<MavenProject>> projectChildren = new HashMap<MavenProject, List<MavenProject>>();
+        for ( MavenProject proj : reactorProjects )
+        {
+            List<MavenProject> depList = projectChildren.get( proj.getParent() );
+            if ( depList == null )
+            {
+                depList = new ArrayList<MavenProject>();
+                projectChildren.put( proj.getParent(), depList );
+            }
+            depList.add( proj );
+        }
+
+        // attempt to determine where data files and output dir are
+        String relDataFileName = relativize( project.getBasedir(), getDataFile() );
+        if ( relDataFileName == null )
+        {
+            getLog().warn( "Could not determine relative data file name, defaulting to 'cobertura/cobertura.ser'" );
+            relDataFileName = "cobertura/cobertura.ser";
+        }
+        String relAggregateOutputDir = relativize( project.getBasedir(), outputDirectory );
+        if ( relAggregateOutputDir == null )
+        {
+            getLog().warn( "Could not determine relative output dir name, defaulting to 'cobertura'" );
+            relAggregateOutputDir = "cobertura";
+        }
+
+        return new Aggregation( projectChildren, relDataFileName, relAggregateOutputDir );
+    }
+
+    /**
+     * Returns a list containing all the recursive, non-pom children of the given project, never <code>null</code>.
+     */
+    private List<MavenProject> getAllChildren( Aggregation aggregation, MavenProject parentProject )
+    {
+        List<MavenProject> children = aggregation.projectChildren.get( parentProject );
+        if ( children == null )
+        {
+            return Collections.emptyList();
+        }
+
+        List<MavenProject> result = new ArrayList<MavenProject>();
+        for ( MavenProject child : children )
+        {
+            if ( isMultiModule( child ) )
+            {
+                result.addAll( getAllChildren( aggregation, child ) );
+            }
+            else
+            {
+                result.add( child );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns any existing cobertura data files from the given list of projects.
+     */
+    private List<File> getOutputFiles( Aggregation aggregation, List<MavenProject> projects )
+    {
+        List<File> files = new ArrayList<File>();
+        for ( MavenProject proj : projects )
+        {
+            if ( isMultiModule( proj ) )
+            {
+                continue;
+            }
+            File outputFile = new File( proj.getBasedir(), aggregation.relDataFileName );
+            if ( outputFile.exists() )
+            {
+                files.add( outputFile );
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Attempts to make the given childFile relative to the given parentFile.
+     */
+    private String relativize( File parentFile, File childFile )
+    {
+        try
+        {
+            URI parentURI = parentFile.getCanonicalFile().toURI().normalize();
+            URI childURI = childFile.getCanonicalFile().toURI().normalize();
+
+            URI relativeURI = parentURI.relativize( childURI );
+            if ( relativeURI.isAbsolute() )
+            {
+                // child is not relative to parent
+                return null;
+            }
+            String relativePath = relativeURI.getPath();
+            if ( File.separatorChar != '/' )
+            {
+                relativePath = relativePath.replace( '/', File.separatorChar );
+            }
+            return relativePath;
+        }
+        catch ( Exception e )
+        {
+            getLog().warn( "Failed relativizing " + childFile + " to " + parentFile, e );
+        }
+        return null;
+    }
+
+    /**
+     * Get the data file which is or will be generated by Cobertura, never <code>null</code>.
+     *
+     * @return the data file
+     */
+    private File getDataFile()
+    {
+        return dataFile;
+    }
+
+    /**
+     * What is needed to build the aggregate reports: the children of each project, and where the data files and
+     * reports are, relative to each project.
+     */
+    private static class Aggregation
+    {
+        private final Map<MavenProject, List<MavenProject>> projectChildren;
+
+        private final String relDataFileName;
+
+        private final String relAggregateOutputDir;
+
+        Aggregation( Map<MavenProject, List<MavenProject>> projectChildren, String relDataFileName,
+                     String relAggregateOutputDir )
+        {
+            this.projectChildren = projectChildren;
+            this.relDataFileName = relDataFileName;
+            this.relAggregateOutputDir = relAggregateOutputDir;
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.codehaus.mojo.cobertura;
  *
  * @author Dennis Lundberg
  * @goal check-integration-test
+ * @threadSafe
  * @execute phase="verify" lifecycle="cobertura"
  */
 public class CoberturaCheckIntegrationTestMojo extends CoberturaCheckMojo
@@ -28,6 +28,7 @@ import org.apache.maven.plugin.MojoFailureException;
  *
  * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
  * @goal clean
+ * @threadSafe
  * @phase clean
  */
 public class CoberturaCleanMojo
@@ -36,14 +37,9 @@ public class CoberturaCleanMojo
     /**
      * {@inheritDoc}
      */
-    public void execute()
+    protected void executeMojo()
         throws MojoExecutionException, MojoFailureException
     {
-        if ( skipMojo() )
-        {
-            return;
-        }
-
         if ( getDataFile().exists() )
         {
             getDataFile().delete();
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodec;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Convert Cobertura's data file between the serialized format of Cobertura and the compact format of the plugin. The
+ * conversion is lossless, so the data file can be converted back and forth.
+ * <p/>
+ * The <code>check</code>, <code>dump-datafile</code> and report goals read both formats. Cobertura itself, and so the
+ * instrumented classes, only read the serialized format, so convert the data file after the tests have run.
+ *
+ * @goal convert-datafile
+ * @threadSafe
+ * @since 2.8
+ */
+public class CoberturaDatafileConvertMojo
+    extends AbstractCoberturaMojo
+{
+    /**
+     * The format to convert the data file to, either <code>compact</code> or <code>ser</code>.
+     *
+     * @parameter expression="${cobertura.dataFileFormat}" default-value="compact"
+     */
+    private String dataFileFormat = "compact";
+
+    /**
+     * The file to write the converted data to. Defaults to the data file itself, which is then converted in place.
+     *
+     * @parameter expression="${cobertura.convertedDataFile}"
+     */
+    private File convertedDataFile;
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void executeMojo()
+        throws MojoExecutionException, MojoFailureException
+    {
+        File dataFile = getDataFile();
+        if ( !dataFile.exists() )
+        {
+            throw new MojoExecutionException( "Unable to convert nonexistent dataFile [" + dataFile + "]" );
+        }
+
+        CoverageDataCodec target;
+        try
+        {
+            target = CoverageDataCodecs.forName( dataFileFormat );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+
+        File outputFile = convertedDataFile != null ? convertedDataFile : dataFile;
+        try
+        {
+            CoverageDataCodec source = CoverageDataCodecs.forFile( dataFile );
+            if ( source == target && outputFile.equals( dataFile ) )
+            {
+                getLog().info( "Data file " + dataFile + " is already in " + target.getName() + " format." );
+                return;
+            }
+
+            // write next to the output file first, so a failure never leaves a partial data file behind
+            long sourceLength = dataFile.length();
+            outputFile.getAbsoluteFile().getParentFile().mkdirs();
+            File tmpFile = new File( outputFile.getAbsolutePath() + ".tmp" );
+            target.write( source.read( dataFile ), tmpFile );
+            outputFile.delete();
+            if ( !tmpFile.renameTo( outputFile ) )
+            {
+                tmpFile.delete();
+                throw new MojoExecutionException( "Unable to write converted data file " + outputFile );
+            }
+
+            getLog().info( "Converted " + dataFile + " (" + source.getName() + ", " + sourceLength + " bytes) to "
+                               + outputFile + " (" + target.getName() + ", " + outputFile.length() + " bytes)" );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to convert dataFile [" + dataFile + "]", e );
+        }
+    }
+}
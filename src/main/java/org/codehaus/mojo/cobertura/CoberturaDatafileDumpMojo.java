@@ -19,104 +19,126 @@
  */
 package org.codehaus.mojo.cobertura;
 
-import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
-import net.sourceforge.cobertura.coveragedata.PackageData;
-import net.sourceforge.cobertura.coveragedata.ProjectData;
-import net.sourceforge.cobertura.util.Header;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.cobertura.datafile.CoverageDumpWriter;
+import org.codehaus.mojo.cobertura.datafile.CoverageDumper;
+import org.codehaus.plexus.util.IOUtil;
 
-import java.text.NumberFormat;
-import java.util.Date;
-import java.util.Iterator;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
 
 /**
- * Output the contents of Cobertura's data file to the command line.
+ * Output the contents of Cobertura's data file to the command line, or to a file.
+ * <p/>
+ * The output is written as the data file is read, so its size isn't bounded by the heap, and the lines of a data file
+ * in the compact format are decoded one class at a time.
  *
  * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
  * @version $Id$
  * @goal dump-datafile
+ * @threadSafe
  */
 public class CoberturaDatafileDumpMojo
     extends AbstractCoberturaMojo
 {
+    /**
+     * The format of the output: <code>xml</code>, <code>json</code> for JSON lines, or <code>csv</code>.
+     *
+     * @parameter expression="${cobertura.dump.format}" default-value="xml"
+     * @since 2.8
+     */
+    private String dumpFormat = CoverageDumpWriter.XML;
+
+    /**
+     * How much of the data file to output: the totals of each <code>package</code>, also of each
+     * <code>class</code>, or also the hits of every <code>line</code>.
+     *
+     * @parameter expression="${cobertura.dump.detail}" default-value="package"
+     * @since 2.8
+     */
+    private String dumpDetail = "package";
+
+    /**
+     * The file to write the output to, in UTF-8. Defaults to the standard output.
+     *
+     * @parameter expression="${cobertura.dump.file}"
+     * @since 2.8
+     */
+    private File dumpFile;
+
     /**
      * {@inheritDoc}
      */
-    public void execute()
+    protected void executeMojo()
         throws MojoExecutionException, MojoFailureException
     {
-        if ( skipMojo() )
-        {
-            return;
-        }
-
         if ( !getDataFile().exists() )
         {
             throw new MojoExecutionException( "Unable to dump nonexistent dataFile [" + getDataFile() + "]" );
         }
 
-        ProjectData projectData = CoverageDataFileHandler.loadCoverageData( getDataFile() );
-        NumberFormat percentage = NumberFormat.getPercentInstance();
-        NumberFormat integer = NumberFormat.getIntegerInstance();
-
-        println( "<?xml version=\"1.0\"?>" );
-
-        printProject( projectData, percentage, integer );
-
-        Iterator it = projectData.getPackages().iterator();
-        while ( it.hasNext() )
+        CoverageDumper.Detail detail;
+        try
+        {
+            detail = CoverageDumper.Detail.valueOf( dumpDetail.toUpperCase( Locale.ENGLISH ) );
+        }
+        catch ( IllegalArgumentException e )
         {
-            PackageData packageData = (PackageData) it.next();
-            printPackage( percentage, integer, packageData );
+            throw new MojoExecutionException(
+                "Unknown dump detail " + dumpDetail + ", must be one of package, class or line" );
         }
 
-        println( "</coverage>" );
-    }
+        Writer out = null;
+        try
+        {
+            if ( dumpFile != null )
+            {
+                dumpFile.getAbsoluteFile().getParentFile().mkdirs();
+                out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( dumpFile ), "UTF-8" ) );
+            }
+            else
+            {
+                out = new BufferedWriter( new OutputStreamWriter( System.out ) );
+            }
 
-    /**
-     * print project info to the log.
-     *
-     * @param projectData
-     * @param percentage
-     * @param integer
-     */
-    private void printProject( ProjectData projectData, NumberFormat percentage, NumberFormat integer )
-    {
-        println( "<coverage line-rate=\"" + percentage.format( projectData.getLineCoverageRate() ) + "\" branch-rate=\""
-                     + percentage.format( projectData.getBranchCoverageRate() ) + "\" lines-covered=\""
-                     + integer.format( projectData.getNumberOfCoveredLines() ) + "\" lines-valid=\"" + integer.format(
-            projectData.getNumberOfValidLines() ) + "\" branches-covered=\"" + integer.format(
-            projectData.getNumberOfCoveredBranches() ) + "\" branches-valid=\"" + integer.format(
-            projectData.getNumberOfValidBranches() ) + "\" version=\"" + Header.version() + "\" timestamp=\""
-                     + new Date().getTime() + "\">" );
-    }
+            CoverageDumpWriter writer;
+            try
+            {
+                writer = CoverageDumpWriter.forFormat( dumpFormat, out );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new MojoExecutionException( e.getMessage() );
+            }
 
-    /**
-     * print package info to the log.
-     *
-     * @param percentage
-     * @param integer
-     * @param packageData
-     */
-    private void printPackage( NumberFormat percentage, NumberFormat integer, PackageData packageData )
-    {
-        println( "<package name=\"" + packageData.getName() + "\" line-rate=\"" + percentage.format(
-            packageData.getLineCoverageRate() ) + "\" branch-rate=\"" + percentage.format(
-            packageData.getBranchCoverageRate() ) + "\" lines-covered=\"" + integer.format(
-            packageData.getNumberOfCoveredLines() ) + "\" lines-valid=\"" + integer.format(
-            packageData.getNumberOfValidLines() ) + "\" branches-covered=\"" + integer.format(
-            packageData.getNumberOfCoveredBranches() ) + "\" branches-valid=\"" + integer.format(
-            packageData.getNumberOfValidBranches() ) + "\" />" );
-    }
+            new CoverageDumper( getDataFile(), detail ).dump( writer );
+            if ( dumpFile != null )
+            {
+                out.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to dump dataFile [" + getDataFile() + "]", e );
+        }
+        finally
+        {
+            // the standard output is only flushed, by the writer
+            if ( dumpFile != null )
+            {
+                IOUtil.close( out );
+            }
+        }
 
-    /**
-     * Write the message to the logger
-     *
-     * @param msg
-     */
-    private void println( String msg )
-    {
-        getLog().info( msg );
+        if ( dumpFile != null )
+        {
+            getLog().info( "Dumped " + getDataFile() + " to " + dumpFile );
+        }
     }
 }
@@ -19,16 +19,30 @@
  */
 package org.codehaus.mojo.cobertura;
 
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.mojo.cobertura.configuration.ConfigInstrumentation;
+import org.codehaus.mojo.cobertura.datafile.ForkDataFiles;
+import org.codehaus.mojo.cobertura.instrument.CacheBackend;
+import org.codehaus.mojo.cobertura.instrument.DirectoryCacheBackend;
+import org.codehaus.mojo.cobertura.instrument.HttpCacheBackend;
+import org.codehaus.mojo.cobertura.instrument.InstrumentationCache;
+import org.codehaus.mojo.cobertura.instrument.InstrumentationManifest;
+import org.codehaus.mojo.cobertura.instrument.InstrumentationStaging;
 import org.codehaus.mojo.cobertura.tasks.InstrumentTask;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -39,12 +53,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Instrument the compiled classes.
  *
  * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
  * @goal instrument
+ * @threadSafe
  * @requiresDependencyResolution compile
  */
 public class CoberturaInstrumentMojo
@@ -85,19 +101,76 @@ public class CoberturaInstrumentMojo
      */
     private ConfigInstrumentation instrumentation;
 
+    /**
+     * Only instrument the classes which changed since the previous build. A manifest of the content hashes of the
+     * compiled and instrumented classes is kept next to the data file; unchanged classes are neither copied nor
+     * instrumented again, the instrumented copies of deleted classes are removed, and the coverage data of unchanged
+     * classes is carried over from the previous data file.
+     *
+     * @parameter expression="${cobertura.incremental}" default-value="false"
+     * @since 2.8
+     */
+    private boolean incremental;
+
+    /**
+     * Make the instrumented classes the output directory of the project, for the plugins running after this goal.
+     * Set it to <code>false</code> when instrumenting in the main lifecycle, so that the packaged artifact keeps the
+     * original classes; the tests then need the <code>classesDirectory</code> of Surefire to point to the
+     * instrumented classes.
+     * <p/>
+     * The files of the output directory which Cobertura doesn't rewrite are staged into the instrumentation directory
+     * as hard links where the file system allows it, so they share their content with the original files. While the
+     * instrumentation directory is the output directory, the classes are copied instead, since plugins running later
+     * may rewrite them in place; a plugin rewriting the resources in place would still change the original resources
+     * too, and they wouldn't be staged again by the next build.
+     *
+     * @parameter expression="${cobertura.updateOutputDirectory}" default-value="true"
+     * @since 2.8
+     */
+    private boolean updateOutputDirectory = true;
+
+    /**
+     * Give every test JVM its own data file, instead of having each of them merge its coverage into the data file of
+     * the module when it exits, one after the other. Worth it with many test JVMs, e.g. with
+     * <code>forkMode=always</code>. The data files are merged into the data file of the module by the check and
+     * report goals.
+     * <p/>
+     * The test JVMs are pointed to their data file by a Java agent, added to the <code>argLine</code> property which
+     * Surefire and Failsafe use unless their <code>argLine</code> is configured explicitly.
+     *
+     * @parameter expression="${cobertura.forkDataFiles}" default-value="false"
+     * @since 2.8
+     */
+    private boolean forkDataFiles;
+
+    /**
+     * A directory of the build cache. When the compiled classes, the instrumentation settings, the dependencies and
+     * the Cobertura version match an earlier build, the instrumented classes and the data file are restored from the
+     * cache instead of being instrumented again. The directory may be shared by several builds.
+     *
+     * @parameter expression="${cobertura.cacheDirectory}"
+     * @since 2.8
+     */
+    private File cacheDirectory;
+
+    /**
+     * The URL of a remote build cache, an HTTP server answering <code>GET</code> and <code>PUT</code> requests on
+     * <code>&lt;cacheUrl&gt;/&lt;key&gt;.zip</code>. When <code>cacheDirectory</code> is set too, it is tried first
+     * and gets a copy of the entries found remotely.
+     *
+     * @parameter expression="${cobertura.cacheUrl}"
+     * @since 2.8
+     */
+    private String cacheUrl;
+
     /**
      * Build up a command line from the parameters and run Cobertura to instrument the code.
      *
      * @throws MojoExecutionException
      */
-    public void execute()
+    protected void executeMojo()
         throws MojoExecutionException
     {
-        if ( skipMojo() )
-        {
-            return;
-        }
-
         ArtifactHandler artifactHandler = getProject().getArtifact().getArtifactHandler();
         if ( !"java".equals( artifactHandler.getLanguage() ) )
         {
@@ -133,16 +206,6 @@ public class CoberturaInstrumentMojo
                 outputDirectory.mkdirs();
             }
 
-            // Copy all of the classes into the instrumentation basedir.
-            try
-            {
-                FileUtils.copyDirectoryStructure( outputDirectory, instrumentedDirectory );
-            }
-            catch ( IOException e )
-            {
-                throw new MojoExecutionException( "Unable to prepare instrumentation directory.", e );
-            }
-
             instrumentation.setBasedir( instrumentedDirectory );
 
             // Cobertura requires an existing dir
@@ -151,7 +214,6 @@ public class CoberturaInstrumentMojo
                 getDataFile().getParentFile().mkdirs();
             }
 
-            // Execute the instrumentation task.
             InstrumentTask task = new InstrumentTask();
             setTaskDefaults( task );
             List<Artifact> classpath = new ArrayList<Artifact>();
@@ -159,19 +221,123 @@ public class CoberturaInstrumentMojo
             classpath.addAll( pluginClasspathList );
             classpath.addAll( getProject().getArtifacts() );
             task.setPluginClasspathList( classpath );
+            try
+            {
+                @SuppressWarnings( "unchecked" ) List<String> compileClasspath =
+                    getProject().getCompileClasspathElements();
+                task.setAuxClasspath( compileClasspath );
+            }
+            catch ( DependencyResolutionRequiredException e )
+            {
+                throw new MojoExecutionException( "Unable to resolve the compile classpath of the project.", e );
+            }
             task.setConfig( instrumentation );
             task.setDestinationDir( instrumentedDirectory );
             task.setDataFile( getDataFile() );
 
-            task.execute();
+            InstrumentationManifest manifest = null;
+            Set<String> modifiedFiles = null;
+            try
+            {
+                // a cache hit restores the instrumented classes, so only the other files are staged
+                InstrumentationCache cache = createCache();
+                Set<String> restoredPaths = new TreeSet<String>();
+                String cacheKey = cache != null
+                    ? restoreFromCache( cache, outputDirectory, instrumentedDirectory, restoredPaths )
+                    : null;
+                if ( cache != null && cacheKey == null )
+                {
+                    //noinspection unchecked
+                    Set<String> paths = toPaths( FileUtils.getFileNames( outputDirectory, "**", null, false ) );
+                    paths.removeAll( restoredPaths );
+                    InstrumentationStaging staging =
+                        new InstrumentationStaging( outputDirectory, instrumentedDirectory, restoredPaths );
+                    staging.setLinkClasses( !updateOutputDirectory );
+                    Phase phase = getTelemetry().start( Telemetry.STAGING );
+                    try
+                    {
+                        staging.stage( paths, true );
+                    }
+                    finally
+                    {
+                        phase.addBytesWritten( staging.getCopiedBytes() );
+                        phase.end();
+                    }
+                    logStaging( staging, instrumentedDirectory );
+                }
+                else
+                {
+                    // Stage the classes into the instrumentation basedir, only the ones Cobertura rewrites are copied.
+                    Set<String> instrumentedPaths = toPaths( task.scanFiles( outputDirectory ) );
+                    InstrumentationStaging staging =
+                        new InstrumentationStaging( outputDirectory, instrumentedDirectory, instrumentedPaths );
+                    staging.setLinkClasses( !updateOutputDirectory );
+                    Phase phase = getTelemetry().start( Telemetry.STAGING );
+                    try
+                    {
+                        if ( incremental )
+                        {
+                            manifest = InstrumentationManifest.load(
+                                new File( getDataFile().getParentFile(), InstrumentationManifest.FILENAME ) );
+                            modifiedFiles =
+                                prepareIncremental( outputDirectory, instrumentedDirectory, manifest, staging );
+                        }
+                        else
+                        {
+                            //noinspection unchecked
+                            staging.stage( toPaths( FileUtils.getFileNames( outputDirectory, "**", null, false ) ),
+                                           true );
+                        }
+                    }
+                    finally
+                    {
+                        phase.addBytesWritten( staging.getCopiedBytes() );
+                        phase.end();
+                    }
+                    logStaging( staging, instrumentedDirectory );
+
+                    // Execute the instrumentation task.
+                    task.setModifiedFiles( modifiedFiles );
+                    task.execute();
+
+                    if ( cacheKey != null )
+                    {
+                        saveToCache( cache, cacheKey, instrumentedDirectory, instrumentedPaths );
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to prepare instrumentation directory.", e );
+            }
+
+            if ( manifest != null )
+            {
+                try
+                {
+                    for ( String path : modifiedFiles )
+                    {
+                        manifest.setOutputHash( path,
+                                                InstrumentationManifest.hash( new File( instrumentedDirectory, path ) ) );
+                    }
+                    manifest.save();
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( "Unable to write instrumentation manifest.", e );
+                }
+            }
 
             addCoberturaDependenciesToTestClasspath();
 
-            // Old, Broken way
-            System.setProperty( "net.sourceforge.cobertura.datafile", getDataFile().getPath() );
+            if ( forkDataFiles )
+            {
+                addForkDataFileAgent();
+            }
 
             /*
-             * New, Fixed way. See
+             * Tell the instrumented classes where their data file is. A system property would leak to the other
+             * modules of a parallel build. See
              * https://sourceforge.net/tracker/index.php?func=detail&aid=1543280&group_id=130558&atid=720017 for patch
              * to Cobertura 1.8 that fixes the datafile location.
              */
@@ -179,6 +345,8 @@ public class CoberturaInstrumentMojo
             props.setProperty( "net.sourceforge.cobertura.datafile", getDataFile().getPath() );
 
             File coberturaPropertiesFile = new File( instrumentedDirectory, "cobertura.properties" );
+            // never write through a staged hard link
+            coberturaPropertiesFile.delete();
             FileOutputStream fos = null;
             try
             {
@@ -194,13 +362,285 @@ public class CoberturaInstrumentMojo
                 IOUtil.close( fos );
             }
 
-            // Set the instrumented classes to be the new output directory (for other plugins to pick up)
-            getProject().getBuild().setOutputDirectory( instrumentedDirectory.getPath() );
-            System.setProperty( "project.build.outputDirectory", instrumentedDirectory.getPath() );
+            if ( updateOutputDirectory )
+            {
+                // Set the instrumented classes to be the new output directory (for other plugins to pick up)
+                getProject().getBuild().setOutputDirectory( instrumentedDirectory.getPath() );
+            }
             attachCoberturaArtifactIfAppropriate();
         }
     }
 
+    /**
+     * Bring the instrumentation directory up to date with the output directory: copy the files which are new, changed
+     * or whose instrumented copy changed, remove the copies of deleted files, and drop the coverage data of all these
+     * classes from the data file. A manifest built with other settings, or without a data file, is discarded and
+     * everything is instrumented again from an empty data file.
+     *
+     * @param outputDirectory       the compiled classes.
+     * @param instrumentedDirectory the instrumented classes.
+     * @param manifest              the manifest of the previous build, updated with the input hashes.
+     * @param staging               the staging of the instrumentation directory.
+     * @return the paths of the copied files, relative to the instrumentation directory.
+     * @throws IOException if the directories or the data file could not be updated.
+     */
+    private Set<String> prepareIncremental( File outputDirectory, File instrumentedDirectory,
+                                            InstrumentationManifest manifest, InstrumentationStaging staging )
+        throws IOException
+    {
+        String settings = getInstrumentationSettings();
+        boolean upToDate = settings.equals( manifest.getSettings() ) && getDataFile().isFile();
+        if ( !upToDate )
+        {
+            getLog().info( "No usable instrumentation manifest, instrumenting all classes." );
+            manifest.clear();
+            manifest.setSettings( settings );
+            getDataFile().delete();
+        }
+
+        //noinspection unchecked
+        Set<String> inputs = toPaths( FileUtils.getFileNames( outputDirectory, "**", null, false ) );
+
+        Set<String> modified = new TreeSet<String>();
+        for ( String path : inputs )
+        {
+            File input = new File( outputDirectory, path );
+            File output = new File( instrumentedDirectory, path );
+            String inputHash = InstrumentationManifest.hash( input );
+            String outputHash = manifest.getOutputHash( path );
+            if ( !inputHash.equals( manifest.getInputHash( path ) ) || outputHash == null || !output.isFile()
+                || !outputHash.equals( InstrumentationManifest.hash( output ) ) )
+            {
+                manifest.setInputHash( path, inputHash );
+                modified.add( path );
+            }
+        }
+        staging.stage( modified, false );
+
+        Set<String> deleted = manifest.getPaths();
+        deleted.removeAll( inputs );
+        for ( String path : deleted )
+        {
+            new File( instrumentedDirectory, path ).delete();
+            manifest.remove( path );
+        }
+
+        if ( upToDate && !( modified.isEmpty() && deleted.isEmpty() ) )
+        {
+            Set<String> stale = new TreeSet<String>( modified );
+            stale.addAll( deleted );
+            pruneDataFile( stale );
+        }
+
+        getLog().info( "Incremental instrumentation: " + modified.size() + " new or changed, " + deleted.size()
+                           + " deleted, " + ( inputs.size() - modified.size() ) + " unchanged files." );
+
+        return modified;
+    }
+
+    /**
+     * Remove the coverage data of the classes which are about to be instrumented again or are gone.
+     *
+     * @param paths the class files, relative to the instrumentation directory.
+     * @throws IOException if the data file could not be read.
+     */
+    private void pruneDataFile( Set<String> paths )
+        throws IOException
+    {
+        ProjectData previous = CoverageDataFileHandler.loadCoverageData( getDataFile() );
+        if ( previous == null )
+        {
+            throw new IOException( "Unable to read coverage data from " + getDataFile() );
+        }
+
+        Set<String> staleClasses = new TreeSet<String>();
+        for ( String path : paths )
+        {
+            if ( path.endsWith( ".class" ) )
+            {
+                staleClasses.add( path.substring( 0, path.length() - ".class".length() ).replace( '/', '.' ) );
+            }
+        }
+
+        ProjectData projectData = new ProjectData();
+        for ( Object classData : previous.getClasses() )
+        {
+            if ( !staleClasses.contains( ( (ClassData) classData ).getName() ) )
+            {
+                projectData.addClassData( (ClassData) classData );
+            }
+        }
+        CoverageDataFileHandler.saveCoverageData( projectData, getDataFile() );
+    }
+
+    private void logStaging( InstrumentationStaging staging, File instrumentedDirectory )
+    {
+        if ( getLog().isDebugEnabled() )
+        {
+            getLog().debug( "Staged " + staging.getLinked() + " linked and " + staging.getCopied()
+                                + " copied files into " + instrumentedDirectory );
+        }
+    }
+
+    private static Set<String> toPaths( List<String> filenames )
+    {
+        Set<String> paths = new TreeSet<String>();
+        for ( String filename : filenames )
+        {
+            paths.add( filename.replace( File.separatorChar, '/' ) );
+        }
+        return paths;
+    }
+
+    /**
+     * Point every test JVM to its own data file, through the <code>argLine</code> property.
+     *
+     * @throws MojoExecutionException if the agent could not be written.
+     */
+    private void addForkDataFileAgent()
+        throws MojoExecutionException
+    {
+        File agentJar = new File( getDataFile().getParentFile(), "cobertura-fork-agent.jar" );
+        try
+        {
+            ForkDataFiles.clean( getDataFile() );
+            ForkDataFiles.writeAgent( agentJar );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to write the agent of the test JVMs.", e );
+        }
+
+        Properties properties = getProject().getProperties();
+        String argLine = properties.getProperty( "argLine" );
+        String agentArgument = ForkDataFiles.getJvmArgument( agentJar, getDataFile() );
+        properties.setProperty( "argLine", StringUtils.isEmpty( argLine ) ? agentArgument
+            : argLine + " " + agentArgument );
+        getLog().info( "Test JVMs will write their coverage to " + ForkDataFiles.getDirectory( getDataFile() ) );
+    }
+
+    /**
+     * @return the build cache, or <code>null</code> if no cache is configured or it can't be used.
+     */
+    private InstrumentationCache createCache()
+    {
+        List<CacheBackend> backends = new ArrayList<CacheBackend>();
+        if ( cacheDirectory != null )
+        {
+            backends.add( new DirectoryCacheBackend( cacheDirectory ) );
+        }
+        if ( StringUtils.isNotEmpty( cacheUrl ) )
+        {
+            backends.add( new HttpCacheBackend( cacheUrl ) );
+        }
+
+        if ( backends.isEmpty() )
+        {
+            return null;
+        }
+        if ( incremental )
+        {
+            getLog().warn( "The build cache is not used with incremental instrumentation." );
+            return null;
+        }
+        return new InstrumentationCache( backends, getLog() );
+    }
+
+    /**
+     * Restore the instrumented classes and the data file from the build cache, before anything is staged.
+     *
+     * @param restoredPaths receives the paths of the restored classes.
+     * @return the cache key to save the instrumentation with, or <code>null</code> if it was restored.
+     * @throws MojoExecutionException if the cache key could not be computed.
+     */
+    private String restoreFromCache( InstrumentationCache cache, File outputDirectory, File instrumentedDirectory,
+                                     Set<String> restoredPaths )
+        throws MojoExecutionException
+    {
+        Phase phase = getTelemetry().start( Telemetry.CACHE );
+        try
+        {
+            String cacheKey =
+                InstrumentationCache.computeKey( outputDirectory, getInstrumentationSettings(), getDataFile() );
+            getLog().debug( "Build cache key: " + cacheKey );
+
+            long restored = cache.restore( cacheKey, instrumentedDirectory, getDataFile(), restoredPaths );
+            if ( restored < 0 )
+            {
+                return cacheKey;
+            }
+            phase.addBytesRead( restored );
+            return null;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to look the instrumented classes up in the build cache.", e );
+        }
+        finally
+        {
+            phase.end();
+        }
+    }
+
+    private void saveToCache( InstrumentationCache cache, String cacheKey, File instrumentedDirectory,
+                              Set<String> instrumentedPaths )
+    {
+        Phase phase = getTelemetry().start( Telemetry.CACHE );
+        try
+        {
+            phase.addBytesWritten( cache.save( cacheKey, instrumentedDirectory, instrumentedPaths, getDataFile() ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to save the instrumented classes into the build cache: " + e.getMessage() );
+        }
+        finally
+        {
+            phase.end();
+        }
+    }
+
+    /**
+     * @return the settings which affect the instrumented classes, without absolute paths or settings such as the
+     *         number of threads which only affect how they are instrumented.
+     */
+    private String getInstrumentationSettings()
+    {
+        StringBuilder settings = new StringBuilder();
+        settings.append( "cobertura=" ).append( getCoberturaVersion() ).append( '\n' );
+        settings.append( "includes=" ).append( instrumentation.getIncludes() ).append( '\n' );
+        settings.append( "excludes=" ).append( instrumentation.getExcludes() ).append( '\n' );
+        settings.append( "ignores=" ).append( instrumentation.getIgnores() ).append( '\n' );
+        settings.append( "ignoreTrivial=" ).append( instrumentation.getIgnoreTrivial() ).append( '\n' );
+        settings.append( "ignoreMethodAnnotations=" ).append( instrumentation.getIgnoreMethodAnnotations() )
+            .append( '\n' );
+
+        // the instrumentation computes stack map frames from the classpath
+        Set<String> dependencies = new TreeSet<String>();
+        for ( Object artifact : getProject().getArtifacts() )
+        {
+            dependencies.add( ( (Artifact) artifact ).getId() );
+        }
+        for ( String dependency : dependencies )
+        {
+            settings.append( "dependency=" ).append( dependency ).append( '\n' );
+        }
+        return settings.toString();
+    }
+
+    private String getCoberturaVersion()
+    {
+        for ( Artifact artifact : pluginClasspathList )
+        {
+            if ( "net.sourceforge.cobertura".equals( artifact.getGroupId() ) && "cobertura".equals(
+                artifact.getArtifactId() ) )
+            {
+                return artifact.getVersion();
+            }
+        }
+        return null;
+    }
+
     private void attachCoberturaArtifactIfAppropriate()
     {
         if ( attach )
@@ -20,8 +20,16 @@
 package org.codehaus.mojo.cobertura;
 
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.cobertura.datafile.ForkDataFiles;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
+import org.codehaus.mojo.cobertura.telemetry.TelemetryReport;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Utility class which can be used by both build-plugins and reports
@@ -45,4 +53,77 @@ public class CoberturaMojoUtils
     {
         return new File( buildDirectory, "cobertura/cobertura.ser" );
     }
+
+    /**
+     * Check whether the element is the last element of the list
+     *
+     * @param project          element to check
+     * @param mavenProjectList list of maven project
+     * @return true if project is the last element of mavenProjectList  list
+     * @since 2.8
+     */
+    public static boolean isLastProject( MavenProject project, List<MavenProject> mavenProjectList )
+    {
+        return project.equals( mavenProjectList.get( mavenProjectList.size() - 1 ) );
+    }
+
+    /**
+     * Merge the data files written by each test JVM into the data file of the module.
+     *
+     * @param dataFile  the data file of the module.
+     * @param telemetry the telemetry to record the merge in.
+     * @param log       the log.
+     * @throws IOException if the data files could not be merged.
+     * @since 2.8
+     */
+    public static void mergeForkDataFiles( File dataFile, Telemetry telemetry, Log log )
+        throws IOException
+    {
+        Phase phase = telemetry.start( Telemetry.MERGE );
+        try
+        {
+            int merged = ForkDataFiles.merge( dataFile, Runtime.getRuntime().availableProcessors(), log );
+            if ( merged > 0 )
+            {
+                log.info( "Merged the data files of " + merged + " test JVMs into " + dataFile );
+            }
+        }
+        finally
+        {
+            phase.end();
+        }
+    }
+
+    /**
+     * Write the telemetry of a goal execution to the telemetry file of the module, next to its data file. On the last
+     * execution of the reactor, the telemetry of all modules is summarized.
+     *
+     * @param project   the project of the execution.
+     * @param dataFile  the data file of the project.
+     * @param telemetry the telemetry of the execution, may be <code>null</code> if nothing was recorded.
+     * @param last      <code>true</code> if this is the last execution of the goal in the reactor.
+     * @param log       the log.
+     * @since 2.8
+     */
+    public static void writeTelemetry( MavenProject project, File dataFile, Telemetry telemetry, boolean last,
+                                       Log log )
+    {
+        if ( telemetry != null && !telemetry.getPhases().isEmpty() )
+        {
+            File telemetryFile = new File( dataFile.getAbsoluteFile().getParentFile(), TelemetryReport.FILENAME );
+            try
+            {
+                TelemetryReport.record( project.getId(), telemetryFile, telemetry );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Unable to write " + telemetryFile + ": " + e.getMessage() );
+            }
+        }
+
+        if ( last )
+        {
+            TelemetryReport.summarize( log );
+        }
+    }
 }
\ No newline at end of file
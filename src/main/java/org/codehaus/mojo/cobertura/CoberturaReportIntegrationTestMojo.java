@@ -25,6 +25,7 @@ package org.codehaus.mojo.cobertura;
  *
  * @author Stevo Slavic
  * @goal cobertura-integration-test
+ * @threadSafe
  * @execute phase="verify" lifecycle="cobertura"
  */
 public class CoberturaReportIntegrationTestMojo extends CoberturaReportMojo
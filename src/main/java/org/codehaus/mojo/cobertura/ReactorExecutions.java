@@ -0,0 +1,510 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.model.ReportSet;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.lifecycle.Execution;
+import org.apache.maven.plugin.lifecycle.Lifecycle;
+import org.apache.maven.plugin.lifecycle.Phase;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReport;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the executions of each goal over the projects of a reactor, so that the work done once for the whole
+ * reactor, like aggregate reports, happens after the other executions even when projects are built in parallel.
+ * <p/>
+ * In a parallel build, the last project of the reactor is not necessarily the last one to be built, and a project
+ * which hasn't started yet isn't running either. An execution is therefore only considered the last one once every
+ * project expected to run the goal has completed it, and only one execution is ever considered the last one. The
+ * expected projects are those whose build plan runs the goal, as derived from the command line, the executions bound
+ * in the projects, the lifecycles forked by the goals of the plugin and the reports of the site; a project which
+ * merely declares the plugin isn't expected.
+ *
+ * @since 2.8
+ */
+final class ReactorExecutions
+{
+    /**
+     * The phases of the clean, default and site lifecycles, in order.
+     */
+    private static final List<List<String>> LIFECYCLES = Arrays.asList(
+        Arrays.asList( "pre-clean", "clean", "post-clean" ),
+        Arrays.asList( "validate", "initialize", "generate-sources", "process-sources", "generate-resources",
+                       "process-resources", "compile", "process-classes", "generate-test-sources",
+                       "process-test-sources", "generate-test-resources", "process-test-resources", "test-compile",
+                       "process-test-classes", "test", "prepare-package", "package", "pre-integration-test",
+                       "integration-test", "post-integration-test", "verify", "install", "deploy" ),
+        Arrays.asList( "pre-site", "site", "post-site", "site-deploy" ) );
+
+    private static final Map<List<MavenProject>, Map<String, ReactorExecutions>> REACTORS =
+        new WeakHashMap<List<MavenProject>, Map<String, ReactorExecutions>>();
+
+    private static final Map<List<MavenProject>, Boolean> ENDED_SESSIONS =
+        new WeakHashMap<List<MavenProject>, Boolean>();
+
+    private final Set<MavenProject> running = new HashSet<MavenProject>();
+
+    private final Set<MavenProject> completed = new HashSet<MavenProject>();
+
+    private boolean last;
+
+    private ReactorExecutions()
+    {
+    }
+
+    /**
+     * Record that a goal started on a project.
+     *
+     * @param goal            the goal.
+     * @param project         the project.
+     * @param reactorProjects the projects of the reactor, may be <code>null</code>.
+     */
+    static synchronized void started( String goal, MavenProject project, List<MavenProject> reactorProjects )
+    {
+        if ( reactorProjects != null && !reactorProjects.isEmpty() )
+        {
+            get( goal, reactorProjects ).running.add( project );
+        }
+    }
+
+    /**
+     * Record that a goal completed on a project, or was skipped.
+     *
+     * @param goal             the goal.
+     * @param project          the project.
+     * @param reactorProjects  the projects of the reactor, may be <code>null</code>.
+     * @param expectedProjects the projects of the reactor which run the goal, see {@link #getExpectedProjects}.
+     * @return <code>true</code> if this is the last execution of the goal in the reactor, which is the case for only
+     *         one execution.
+     */
+    static synchronized boolean completed( String goal, MavenProject project, List<MavenProject> reactorProjects,
+                                           Collection<MavenProject> expectedProjects )
+    {
+        if ( reactorProjects == null || reactorProjects.isEmpty() )
+        {
+            return true;
+        }
+
+        ReactorExecutions executions = get( goal, reactorProjects );
+        executions.running.remove( project );
+        executions.completed.add( project );
+        if ( executions.last || !executions.running.isEmpty() || !executions.completed.containsAll(
+            expectedProjects ) )
+        {
+            return false;
+        }
+        executions.last = true;
+        return true;
+    }
+
+    /**
+     * Find out whether the session is over for the plugin: every goal of the plugin has been completed by every
+     * project expected to run it, and none is running.
+     *
+     * @param plugin           the descriptor of the plugin, may be <code>null</code> if unknown.
+     * @param commandLineGoals the goals and phases given on the command line, may be <code>null</code> if unknown.
+     * @param reactorProjects  the projects of the reactor, may be <code>null</code>.
+     * @return <code>true</code> if the session is over, which is the case for only one call. <code>false</code> if it
+     *         can't be told.
+     */
+    @SuppressWarnings( "unchecked" )
+    static synchronized boolean isSessionEnded( PluginDescriptor plugin, List<String> commandLineGoals,
+                                                List<MavenProject> reactorProjects )
+    {
+        if ( plugin == null || commandLineGoals == null || reactorProjects == null
+            || ENDED_SESSIONS.containsKey( reactorProjects ) )
+        {
+            return false;
+        }
+
+        Map<String, ReactorExecutions> goals = REACTORS.get( reactorProjects );
+        if ( goals == null )
+        {
+            return false;
+        }
+        for ( ReactorExecutions executions : goals.values() )
+        {
+            if ( !executions.running.isEmpty() )
+            {
+                return false;
+            }
+        }
+        for ( MojoDescriptor mojo : (List<MojoDescriptor>) plugin.getMojos() )
+        {
+            if ( !isTracked( mojo ) )
+            {
+                continue;
+            }
+            Set<MavenProject> expected =
+                getExpectedProjects( plugin, mojo.getGoal(), commandLineGoals, reactorProjects );
+            ReactorExecutions executions = goals.get( mojo.getGoal() );
+            if ( !expected.isEmpty() && ( executions == null || !executions.completed.containsAll( expected ) ) )
+            {
+                return false;
+            }
+        }
+        ENDED_SESSIONS.put( reactorProjects, Boolean.TRUE );
+        return true;
+    }
+
+    /**
+     * Find the projects of the reactor whose build plan runs a goal of the plugin: the goal given on the command line,
+     * bound to a phase of the lifecycle being run, or forked by one of these, and the reports of the site.
+     *
+     * @param plugin           the descriptor of the plugin, may be <code>null</code> to expect every project.
+     * @param goal             the goal, may be <code>null</code> to expect every project.
+     * @param commandLineGoals the goals and phases given on the command line, may be <code>null</code> to expect every
+     *                         project.
+     * @param reactorProjects  the projects of the reactor, may be <code>null</code>.
+     * @return the projects which run the goal.
+     */
+    static Set<MavenProject> getExpectedProjects( PluginDescriptor plugin, String goal, List<String> commandLineGoals,
+                                                  List<MavenProject> reactorProjects )
+    {
+        Set<MavenProject> expected = new LinkedHashSet<MavenProject>();
+        if ( reactorProjects == null )
+        {
+            return expected;
+        }
+        if ( plugin == null || goal == null || commandLineGoals == null )
+        {
+            expected.addAll( reactorProjects );
+            return expected;
+        }
+
+        for ( MavenProject project : reactorProjects )
+        {
+            if ( runs( plugin, goal, commandLineGoals, project ) )
+            {
+                expected.add( project );
+            }
+        }
+        return expected;
+    }
+
+    private static boolean runs( PluginDescriptor plugin, String goal, List<String> commandLineGoals,
+                                 MavenProject project )
+    {
+        Set<String> visited = new HashSet<String>();
+        for ( String task : commandLineGoals )
+        {
+            if ( task.indexOf( ':' ) >= 0 )
+            {
+                String taskGoal = task.substring( task.lastIndexOf( ':' ) + 1 );
+                if ( isPluginTask( plugin, task ) && forks( plugin, taskGoal, goal, project, visited ) )
+                {
+                    return true;
+                }
+                if ( isSiteTask( task ) && runsReport( plugin, goal, project, visited ) )
+                {
+                    return true;
+                }
+            }
+            else
+            {
+                if ( runsUpTo( plugin, goal, task, project, visited ) )
+                {
+                    return true;
+                }
+                if ( isRunUpTo( "site", task ) && runsReport( plugin, goal, project, visited ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if running a goal of the plugin runs the given goal, itself or in the lifecycle it
+     *         forks.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static boolean forks( PluginDescriptor plugin, String from, String goal, MavenProject project,
+                                  Set<String> visited )
+    {
+        if ( from.equals( goal ) )
+        {
+            return true;
+        }
+        if ( !visited.add( from ) )
+        {
+            return false;
+        }
+
+        MojoDescriptor mojo = plugin.getMojo( from );
+        if ( mojo == null )
+        {
+            return false;
+        }
+        if ( mojo.getExecuteGoal() != null && forks( plugin, mojo.getExecuteGoal(), goal, project, visited ) )
+        {
+            return true;
+        }
+        if ( mojo.getExecutePhase() == null )
+        {
+            return false;
+        }
+        if ( runsUpTo( plugin, goal, mojo.getExecutePhase(), project, visited ) )
+        {
+            return true;
+        }
+        if ( mojo.getExecuteLifecycle() == null )
+        {
+            return false;
+        }
+
+        Lifecycle lifecycle;
+        try
+        {
+            lifecycle = plugin.getLifecycleMapping( mojo.getExecuteLifecycle() );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+        catch ( XmlPullParserException e )
+        {
+            return false;
+        }
+        if ( lifecycle == null )
+        {
+            return false;
+        }
+        for ( Phase phase : (List<Phase>) lifecycle.getPhases() )
+        {
+            if ( !isRunUpTo( phase.getId(), mojo.getExecutePhase() ) )
+            {
+                continue;
+            }
+            for ( Execution execution : (List<Execution>) phase.getExecutions() )
+            {
+                for ( String executionGoal : (List<String>) execution.getGoals() )
+                {
+                    if ( forks( plugin, executionGoal, goal, project, visited ) )
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the project binds a goal of the plugin which runs the given goal to a phase up to
+     *         the given one.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static boolean runsUpTo( PluginDescriptor plugin, String goal, String lastPhase, MavenProject project,
+                                     Set<String> visited )
+    {
+        Plugin buildPlugin = getBuildPlugin( plugin, project );
+        if ( buildPlugin == null )
+        {
+            return false;
+        }
+
+        for ( PluginExecution execution : (List<PluginExecution>) buildPlugin.getExecutions() )
+        {
+            for ( String executionGoal : (List<String>) execution.getGoals() )
+            {
+                String phase = execution.getPhase();
+                if ( phase == null && plugin.getMojo( executionGoal ) != null )
+                {
+                    phase = plugin.getMojo( executionGoal ).getPhase();
+                }
+                if ( phase != null && isRunUpTo( phase, lastPhase )
+                    && forks( plugin, executionGoal, goal, project, visited ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the reports of the project, as run by the site, run the given goal.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static boolean runsReport( PluginDescriptor plugin, String goal, MavenProject project,
+                                       Set<String> visited )
+    {
+        ReportPlugin reportPlugin = getReportPlugin( plugin, project );
+        if ( reportPlugin == null )
+        {
+            return false;
+        }
+
+        List<ReportSet> reportSets = reportPlugin.getReportSets();
+        if ( reportSets == null || reportSets.isEmpty() )
+        {
+            // every report of the plugin
+            for ( MojoDescriptor mojo : (List<MojoDescriptor>) plugin.getMojos() )
+            {
+                if ( isReport( mojo ) && forks( plugin, mojo.getGoal(), goal, project, visited ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        for ( ReportSet reportSet : reportSets )
+        {
+            for ( String report : (List<String>) reportSet.getReports() )
+            {
+                if ( forks( plugin, report, goal, project, visited ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isReport( MojoDescriptor mojo )
+    {
+        return isImplementedBy( mojo, MavenReport.class );
+    }
+
+    /**
+     * @return <code>true</code> if the executions of the goal are recorded here.
+     */
+    private static boolean isTracked( MojoDescriptor mojo )
+    {
+        return isImplementedBy( mojo, AbstractCoberturaMojo.class )
+            || isImplementedBy( mojo, AbstractCoberturaReportMojo.class );
+    }
+
+    private static boolean isImplementedBy( MojoDescriptor mojo, Class<?> type )
+    {
+        try
+        {
+            return type.isAssignableFrom(
+                ReactorExecutions.class.getClassLoader().loadClass( mojo.getImplementation() ) );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return false;
+        }
+    }
+
+    private static boolean isPluginTask( PluginDescriptor plugin, String task )
+    {
+        return task.startsWith( plugin.getGoalPrefix() + ":" )
+            || task.startsWith( plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" );
+    }
+
+    private static boolean isSiteTask( String task )
+    {
+        return ( task.startsWith( "site:" ) || task.startsWith( "org.apache.maven.plugins:maven-site-plugin:" ) )
+            && ( task.endsWith( ":site" ) || task.endsWith( ":stage" ) );
+    }
+
+    /**
+     * @return <code>true</code> if running the lifecycle up to <code>lastPhase</code> runs <code>phase</code>.
+     */
+    private static boolean isRunUpTo( String phase, String lastPhase )
+    {
+        for ( List<String> lifecycle : LIFECYCLES )
+        {
+            int index = lifecycle.indexOf( phase );
+            if ( index >= 0 )
+            {
+                return index <= lifecycle.indexOf( lastPhase );
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Plugin getBuildPlugin( PluginDescriptor plugin, MavenProject project )
+    {
+        // both lists are null without a build or reporting section
+        List<Plugin> buildPlugins = project.getBuildPlugins();
+        if ( buildPlugins != null )
+        {
+            for ( Plugin buildPlugin : buildPlugins )
+            {
+                if ( plugin.getGroupId().equals( buildPlugin.getGroupId() )
+                    && plugin.getArtifactId().equals( buildPlugin.getArtifactId() ) )
+                {
+                    return buildPlugin;
+                }
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static ReportPlugin getReportPlugin( PluginDescriptor plugin, MavenProject project )
+    {
+        List<ReportPlugin> reportPlugins = project.getReportPlugins();
+        if ( reportPlugins != null )
+        {
+            for ( ReportPlugin reportPlugin : reportPlugins )
+            {
+                if ( plugin.getGroupId().equals( reportPlugin.getGroupId() )
+                    && plugin.getArtifactId().equals( reportPlugin.getArtifactId() ) )
+                {
+                    return reportPlugin;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static ReactorExecutions get( String goal, List<MavenProject> reactorProjects )
+    {
+        Map<String, ReactorExecutions> goals = REACTORS.get( reactorProjects );
+        if ( goals == null )
+        {
+            goals = new HashMap<String, ReactorExecutions>();
+            REACTORS.put( reactorProjects, goals );
+        }
+
+        ReactorExecutions executions = goals.get( goal );
+        if ( executions == null )
+        {
+            executions = new ReactorExecutions();
+            goals.put( goal, executions );
+        }
+        return executions;
+    }
+}
@@ -45,6 +45,10 @@ public class ConfigCheck
 
     private String packageLineRate;
 
+    private String diffBranchRate;
+
+    private String diffLineRate;
+
     /**
      * The maximum heap size to use for the check phase.
      */
@@ -184,6 +188,60 @@ public class ConfigCheck
         return packageLineRate;
     }
 
+    /**
+     * @param packageBranchRate the package branch rate.
+     * @since 2.8
+     */
+    public void setPackageBranchRate( String packageBranchRate )
+    {
+        this.packageBranchRate = packageBranchRate;
+    }
+
+    /**
+     * @param packageLineRate the package line rate.
+     * @since 2.8
+     */
+    public void setPackageLineRate( String packageLineRate )
+    {
+        this.packageLineRate = packageLineRate;
+    }
+
+    /**
+     * @return the branch rate of the changed lines of each changed source file, when checking a diff.
+     * @since 2.8
+     */
+    public String getDiffBranchRate()
+    {
+        return diffBranchRate;
+    }
+
+    /**
+     * @param diffBranchRate the branch rate of the changed lines of each changed source file.
+     * @since 2.8
+     */
+    public void setDiffBranchRate( String diffBranchRate )
+    {
+        this.diffBranchRate = diffBranchRate;
+    }
+
+    /**
+     * @return the line rate of the changed lines of each changed source file, when checking a diff.
+     * @since 2.8
+     */
+    public String getDiffLineRate()
+    {
+        return diffLineRate;
+    }
+
+    /**
+     * @param diffLineRate the line rate of the changed lines of each changed source file.
+     * @since 2.8
+     */
+    public void setDiffLineRate( String diffLineRate )
+    {
+        this.diffLineRate = diffLineRate;
+    }
+
     /**
      * Get the maxmem setting.
      *
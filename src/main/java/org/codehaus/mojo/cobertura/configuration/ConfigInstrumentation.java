@@ -45,6 +45,8 @@ public class ConfigInstrumentation
 
     private List<String> ignoreMethodAnnotations;
 
+    private int threads;
+
     /**
      * Construct a new ConfigInstrumentation object.
      */
@@ -55,6 +57,7 @@ public class ConfigInstrumentation
         this.ignores = new ArrayList<String>();
         this.ignoreTrivial = false;
         this.ignoreMethodAnnotations = new ArrayList<String>();
+        this.threads = 1;
 
         this.basedir = new File( System.getProperty( "user.dir" ) );
 
@@ -220,6 +223,29 @@ public class ConfigInstrumentation
     }
 
 
+    /**
+     * Get the threads setting.
+     *
+     * @return the number of threads used for instrumentation.
+     * @since 2.8
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to instrument the classes. With more than one thread the classes are split
+     * into shards, which are instrumented concurrently in separate JVMs and merged afterwards.
+     *
+     * @param threads the number of threads
+     * @since 2.8
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -295,6 +321,10 @@ public class ConfigInstrumentation
         sb.append( getIgnoreTrivial() );
         sb.append( "\"" );
 
+        sb.append( " threads=\"" );
+        sb.append( getThreads() );
+        sb.append( "\"" );
+
         if ( !this.ignoreMethodAnnotations.isEmpty() )
         {
             sb.append( " ignoreMethodAnnotations=\"" );
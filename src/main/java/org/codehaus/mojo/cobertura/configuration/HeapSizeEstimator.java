@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.configuration;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates the maximum heap size a forked Cobertura process needs from the amount of work it is given.
+ * <p/>
+ * The estimates are rough: a fixed base for the JVM and Cobertura, plus a share per class to instrument, or a multiple
+ * of the size of the data file, which grows several times when it is deserialized. They are rounded up to a power of
+ * two, so similar modules share a setting, and limited to configurable bounds. A worker JVM, which serves tasks of any
+ * size, is given the upper bound instead.
+ *
+ * @since 2.8
+ */
+public class HeapSizeEstimator
+{
+    /**
+     * The heap needed whatever the work, in megabytes.
+     */
+    static final long BASE_MB = 32;
+
+    /**
+     * The heap needed per class to instrument, in kilobytes.
+     */
+    static final long KB_PER_CLASS = 64;
+
+    /**
+     * How much larger a deserialized data file is than the file.
+     */
+    static final long DATA_FILE_EXPANSION = 8;
+
+    private static final Pattern SIZE = Pattern.compile( "(\\d+)([kmg]?)" );
+
+    private final long minMb;
+
+    private final long maxMb;
+
+    /**
+     * @param min the smallest heap size to use, as for <code>-Xmx</code>.
+     * @param max the largest heap size to use, as for <code>-Xmx</code>.
+     * @throws IllegalArgumentException if a bound is not a valid heap size, or if <code>min</code> is greater than
+     *                                  <code>max</code>.
+     */
+    public HeapSizeEstimator( String min, String max )
+    {
+        this.minMb = parseMb( min );
+        this.maxMb = parseMb( max );
+        if ( minMb > maxMb )
+        {
+            throw new IllegalArgumentException(
+                "The minimum heap size " + min + " is greater than the maximum heap size " + max );
+        }
+    }
+
+    /**
+     * Estimate the heap needed to instrument classes.
+     *
+     * @param classCount the number of class files to instrument in one process.
+     * @param log        the log to explain the estimate to.
+     * @return the heap size, as for <code>-Xmx</code>.
+     */
+    public String forClassFiles( int classCount, Log log )
+    {
+        long estimateMb = BASE_MB + ( classCount * KB_PER_CLASS + 1023 ) / 1024;
+        return choose( estimateMb, classCount + " class files", log );
+    }
+
+    /**
+     * Estimate the heap needed to load a data file.
+     *
+     * @param dataFile the data file, in Cobertura's serialized format.
+     * @param log      the log to explain the estimate to.
+     * @return the heap size, as for <code>-Xmx</code>.
+     */
+    public String forDataFile( File dataFile, Log log )
+    {
+        long length = dataFile.length();
+        long estimateMb = BASE_MB + ( length * DATA_FILE_EXPANSION + ( 1 << 20 ) - 1 ) / ( 1 << 20 );
+        return choose( estimateMb, "a data file of " + ( length + 1023 ) / 1024 + "k", log );
+    }
+
+    /**
+     * @return the largest heap size to use, as for <code>-Xmx</code>.
+     */
+    public String getMaxHeapSize()
+    {
+        return maxMb + "m";
+    }
+
+    private String choose( long estimateMb, String work, Log log )
+    {
+        long mb = Long.highestOneBit( estimateMb );
+        if ( mb < estimateMb )
+        {
+            mb <<= 1;
+        }
+
+        String reason = "";
+        if ( mb < minMb )
+        {
+            mb = minMb;
+            reason = ", raised to the minimum";
+        }
+        else if ( mb > maxMb )
+        {
+            mb = maxMb;
+            reason = ", limited to the maximum";
+        }
+
+        String maxmem = mb + "m";
+        log.info( "Using a heap of " + maxmem + " for " + work + " (estimated " + estimateMb + "m" + reason + ")." );
+        return maxmem;
+    }
+
+    /**
+     * Parse a heap size.
+     *
+     * @param size the heap size, as for <code>-Xmx</code>.
+     * @return the heap size in megabytes, rounded up.
+     * @throws IllegalArgumentException if the heap size is not valid.
+     */
+    static long parseMb( String size )
+    {
+        Matcher matcher = SIZE.matcher( size == null ? "" : size.trim().toLowerCase( Locale.ENGLISH ) );
+        if ( !matcher.matches() )
+        {
+            throw new IllegalArgumentException( "Invalid heap size: " + size );
+        }
+
+        long value = Long.parseLong( matcher.group( 1 ) );
+        String unit = matcher.group( 2 );
+        if ( "g".equals( unit ) )
+        {
+            return value * 1024;
+        }
+        if ( "m".equals( unit ) )
+        {
+            return value;
+        }
+        long kb = "k".equals( unit ) ? value : ( value + 1023 ) / 1024;
+        return ( kb + 1023 ) / 1024;
+    }
+}
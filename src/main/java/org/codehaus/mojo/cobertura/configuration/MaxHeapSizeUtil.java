@@ -48,9 +48,10 @@ public class MaxHeapSizeUtil
     private static final int NUMBER_OF_FLAG_CHARS = MAX_MEMORY_FLAG.length();
 
     /**
-     * The instance of the <code>MemSettingUtil</code> singleton.
+     * The instance of the <code>MemSettingUtil</code> singleton, created eagerly so that mojos running in parallel
+     * all get the same one.
      */
-    private static MaxHeapSizeUtil maxHeapSizeUtil;
+    private static final MaxHeapSizeUtil MAX_HEAP_SIZE_UTIL = new MaxHeapSizeUtil();
 
     /**
      * Singleton getter.
@@ -59,11 +60,7 @@ public class MaxHeapSizeUtil
      */
     public static MaxHeapSizeUtil getInstance()
     {
-        if ( maxHeapSizeUtil == null )
-        {
-            maxHeapSizeUtil = new MaxHeapSizeUtil();
-        }
-        return maxHeapSizeUtil;
+        return MAX_HEAP_SIZE_UTIL;
     }
 
     /**
@@ -77,7 +74,7 @@ public class MaxHeapSizeUtil
     /**
      * The environment settings.
      */
-    private Map<String, String> envSettings;
+    private volatile Map<String, String> envSettings;
 
     /**
      * Gets envSettings map, typically a reference to the <code>System.getEnv()</code> settings.
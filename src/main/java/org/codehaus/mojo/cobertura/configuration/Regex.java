@@ -25,4 +25,63 @@ package org.codehaus.mojo.cobertura.configuration;
 public class Regex
     extends net.sourceforge.cobertura.ant.Regex
 {
+    private String pattern;
+
+    private String branchRate;
+
+    private String lineRate;
+
+    /**
+     * @return the regular expression the class names must match.
+     * @since 2.8
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * @return the minimum branch coverage rate of the matching classes, in percent.
+     * @since 2.8
+     */
+    public String getBranchRate()
+    {
+        return branchRate;
+    }
+
+    /**
+     * @return the minimum line coverage rate of the matching classes, in percent.
+     * @since 2.8
+     */
+    public String getLineRate()
+    {
+        return lineRate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setPattern( String pattern )
+    {
+        super.setPattern( pattern );
+        this.pattern = pattern;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBranchRate( String branchRate )
+    {
+        super.setBranchRate( branchRate );
+        this.branchRate = branchRate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLineRate( String lineRate )
+    {
+        super.setLineRate( lineRate );
+        this.lineRate = lineRate;
+    }
 }
@@ -0,0 +1,642 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact binary data file format.
+ * <p/>
+ * Unlike Java serialization, which writes the whole object graph with its class descriptors, this format writes every
+ * class, method and source file name once in a string table, refers to them by index, and writes the line numbers and
+ * hit counts of a class as primitive arrays. The layout is:
+ * <pre>
+ * int      magic, "CBCD"
+ * int      version
+ * int      number of strings, then for each: int length, UTF-8 bytes
+ * int      number of classes, then for each, in class name order, a directory entry:
+ *          int name, int source file name without directory, int flags,
+ *          int valid lines, int covered lines, int valid branches, int covered branches,
+ *          int offset and int length of the class body, relative to the first class body
+ * the class bodies:
+ *          int number of methods, int[] method names and descriptors
+ *          int number of lines, int[] line numbers, long[] hits, int[] method names, int[] method descriptors
+ *          int number of lines with branches, then for each:
+ *              int line number
+ *              int number of jumps, then for each: int condition number, long true hits, long false hits
+ *              int number of switches, then for each: int switch number, int max branches, int number of keys,
+ *                  int[] keys, long default hits, int number of branches, long[] hits
+ * </pre>
+ * Strings are referred to by their index in the string table, <code>-1</code> standing for <code>null</code>. The
+ * directory gives the totals of each class, so per-package figures can be computed without decoding the bodies.
+ *
+ * @since 2.8
+ */
+public class CompactCoverageDataCodec
+    implements CoverageDataCodec
+{
+    /**
+     * The name of the format.
+     */
+    public static final String NAME = "compact";
+
+    /**
+     * The first four bytes of every data file in this format.
+     */
+    public static final int MAGIC = 0x43424344;
+
+    /**
+     * The version of the format written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Flag of a class which contains instrumentation information.
+     */
+    static final int FLAG_INSTRUMENTED = 1;
+
+    // the ints of a directory entry
+
+    static final int ENTRY_NAME = 0;
+
+    static final int ENTRY_SOURCE_FILE = 1;
+
+    static final int ENTRY_FLAGS = 2;
+
+    static final int ENTRY_VALID_LINES = 3;
+
+    static final int ENTRY_COVERED_LINES = 4;
+
+    static final int ENTRY_VALID_BRANCHES = 5;
+
+    static final int ENTRY_COVERED_BRANCHES = 6;
+
+    static final int ENTRY_OFFSET = 7;
+
+    static final int ENTRY_LENGTH = 8;
+
+    static final int DIRECTORY_ENTRY_INTS = 9;
+
+    private static final Field SWITCH_KEYS = getSwitchKeysField();
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ProjectData read( File dataFile )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( dataFile ) ) );
+        try
+        {
+            readHeader( in, dataFile );
+            String[] strings = readStrings( in );
+
+            int[][] directory = readDirectory( in );
+
+            ProjectData projectData = new ProjectData();
+            for ( int[] entry : directory )
+            {
+                ClassData classData = createClassData( strings, entry );
+                readClassBody( in, strings, classData );
+                projectData.addClassData( classData );
+            }
+            return projectData;
+        }
+        catch ( EOFException e )
+        {
+            IOException ioe = new IOException( "Truncated coverage data file " + dataFile );
+            ioe.initCause( e );
+            throw ioe;
+        }
+        catch ( ArrayIndexOutOfBoundsException e )
+        {
+            IOException ioe = new IOException( "Corrupt coverage data file " + dataFile );
+            ioe.initCause( e );
+            throw ioe;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Check the magic and the version of a data file.
+     *
+     * @param in       the data file.
+     * @param dataFile the data file, for error messages.
+     * @throws IOException if the data file is not in this format, or in a later version of it.
+     */
+    static void readHeader( DataInput in, File dataFile )
+        throws IOException
+    {
+        if ( in.readInt() != MAGIC )
+        {
+            throw new IOException( dataFile + " is not a compact coverage data file" );
+        }
+        int version = in.readInt();
+        if ( version > VERSION )
+        {
+            throw new IOException( dataFile + " uses version " + version + " of the compact data file format, but "
+                                       + "only versions up to " + VERSION + " are supported" );
+        }
+    }
+
+    /**
+     * Read the string table.
+     *
+     * @param in the data file, positioned after the header.
+     * @return the strings.
+     * @throws IOException if the data file could not be read.
+     */
+    static String[] readStrings( DataInput in )
+        throws IOException
+    {
+        String[] strings = new String[in.readInt()];
+        byte[] buffer = new byte[256];
+        for ( int i = 0; i < strings.length; i++ )
+        {
+            int length = in.readInt();
+            if ( length > buffer.length )
+            {
+                buffer = new byte[Math.max( length, buffer.length * 2 )];
+            }
+            in.readFully( buffer, 0, length );
+            strings[i] = new String( buffer, 0, length, "UTF-8" );
+        }
+        return strings;
+    }
+
+    /**
+     * Read the class directory.
+     *
+     * @param in the data file, positioned after the string table.
+     * @return the directory entries, in the order of the class bodies.
+     * @throws IOException if the data file could not be read.
+     */
+    static int[][] readDirectory( DataInput in )
+        throws IOException
+    {
+        int[][] directory = new int[in.readInt()][];
+        for ( int i = 0; i < directory.length; i++ )
+        {
+            directory[i] = readInts( in, DIRECTORY_ENTRY_INTS );
+        }
+        return directory;
+    }
+
+    /**
+     * Create a class without lines, as described by its directory entry.
+     *
+     * @param strings the string table.
+     * @param entry   the directory entry of the class.
+     * @return the class.
+     */
+    static ClassData createClassData( String[] strings, int[] entry )
+    {
+        ClassData classData = new ClassData( strings[entry[ENTRY_NAME]] );
+        if ( entry[ENTRY_SOURCE_FILE] >= 0 )
+        {
+            classData.setSourceFileName( strings[entry[ENTRY_SOURCE_FILE]] );
+        }
+        if ( ( entry[ENTRY_FLAGS] & FLAG_INSTRUMENTED ) != 0 )
+        {
+            classData.setContainsInstrumentationInfo();
+        }
+        return classData;
+    }
+
+    /**
+     * Read the body of a class.
+     *
+     * @param in        the data file, positioned at the body.
+     * @param strings   the string table.
+     * @param classData the class, to add the lines and branches to.
+     * @throws IOException if the data file could not be read.
+     */
+    static void readClassBody( DataInput in, String[] strings, ClassData classData )
+        throws IOException
+    {
+        int[] methods = readInts( in, in.readInt() );
+
+        int lineCount = in.readInt();
+        int[] lineNumbers = readInts( in, lineCount );
+        long[] hits = readLongs( in, lineCount );
+        int[] methodNames = readInts( in, lineCount );
+        int[] methodDescriptors = readInts( in, lineCount );
+
+        for ( int i = 0; i < lineCount; i++ )
+        {
+            classData.addLine( lineNumbers[i], string( strings, methodNames[i] ),
+                               string( strings, methodDescriptors[i] ) );
+            touch( classData, lineNumbers[i], hits[i] );
+        }
+
+        // methods without any line are only known from this set
+        Set<String> methodNamesAndDescriptors = classData.getMethodNamesAndDescriptors();
+        for ( int method : methods )
+        {
+            methodNamesAndDescriptors.add( strings[method] );
+        }
+
+        int branchLineCount = in.readInt();
+        for ( int i = 0; i < branchLineCount; i++ )
+        {
+            int lineNumber = in.readInt();
+
+            int jumpCount = in.readInt();
+            for ( int j = 0; j < jumpCount; j++ )
+            {
+                int conditionNumber = in.readInt();
+                classData.addLineJump( lineNumber, conditionNumber );
+                touchJump( classData, lineNumber, conditionNumber, true, in.readLong() );
+                touchJump( classData, lineNumber, conditionNumber, false, in.readLong() );
+            }
+
+            int switchCount = in.readInt();
+            for ( int j = 0; j < switchCount; j++ )
+            {
+                int switchNumber = in.readInt();
+                int maxBranches = in.readInt();
+                int[] keys = readInts( in, in.readInt() );
+
+                // Cobertura only creates switches with a range of keys
+                if ( keys.length == 0 )
+                {
+                    classData.addLineSwitch( lineNumber, switchNumber, 0, -1, maxBranches );
+                }
+                else
+                {
+                    classData.addLineSwitch( lineNumber, switchNumber, keys[0], keys[keys.length - 1],
+                                             maxBranches );
+                }
+
+                touchSwitch( classData, lineNumber, switchNumber, -1, in.readLong() );
+                long[] switchHits = readLongs( in, in.readInt() );
+                for ( int branch = 0; branch < switchHits.length; branch++ )
+                {
+                    touchSwitch( classData, lineNumber, switchNumber, branch, switchHits[branch] );
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write( ProjectData projectData, File dataFile )
+        throws IOException
+    {
+        List<ClassData> classes = getSortedClasses( projectData );
+        StringTable strings = new StringTable();
+        int[][] directory = new int[classes.size()][];
+
+        ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream( bodies );
+        for ( int i = 0; i < classes.size(); i++ )
+        {
+            ClassData classData = classes.get( i );
+            int offset = body.size();
+            writeClassBody( body, strings, classData );
+
+            directory[i] = new int[]{ strings.indexOf( classData.getName() ),
+                strings.indexOf( getSourceFileBaseName( classData ) ),
+                classData.containsInstrumentationInfo() ? FLAG_INSTRUMENTED : 0, classData.getNumberOfValidLines(),
+                classData.getNumberOfCoveredLines(), classData.getNumberOfValidBranches(),
+                classData.getNumberOfCoveredBranches(), offset, body.size() - offset };
+        }
+        body.flush();
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dataFile ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+
+            out.writeInt( strings.size() );
+            for ( String string : strings.getStrings() )
+            {
+                byte[] bytes = string.getBytes( "UTF-8" );
+                out.writeInt( bytes.length );
+                out.write( bytes );
+            }
+
+            out.writeInt( directory.length );
+            for ( int[] entry : directory )
+            {
+                writeInts( out, entry );
+            }
+
+            bodies.writeTo( out );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void writeClassBody( DataOutput out, StringTable strings, ClassData classData )
+        throws IOException
+    {
+        Set<String> methods = classData.getMethodNamesAndDescriptors();
+        out.writeInt( methods.size() );
+        for ( String method : methods )
+        {
+            out.writeInt( strings.indexOf( method ) );
+        }
+
+        Collection<CoverageData> lines = classData.getLines();
+        int[] lineNumbers = new int[lines.size()];
+        long[] hits = new long[lines.size()];
+        int[] methodNames = new int[lines.size()];
+        int[] methodDescriptors = new int[lines.size()];
+        int i = 0;
+        for ( CoverageData line : lines )
+        {
+            LineData lineData = (LineData) line;
+            lineNumbers[i] = lineData.getLineNumber();
+            hits[i] = lineData.getHits();
+            methodNames[i] = strings.indexOf( lineData.getMethodName() );
+            methodDescriptors[i] = strings.indexOf( lineData.getMethodDescriptor() );
+            i++;
+        }
+        out.writeInt( lineNumbers.length );
+        writeInts( out, lineNumbers );
+        writeLongs( out, hits );
+        writeInts( out, methodNames );
+        writeInts( out, methodDescriptors );
+
+        List<Integer> branchLines = new ArrayList<Integer>( classData.getBranches() );
+        Collections.sort( branchLines );
+        out.writeInt( branchLines.size() );
+        for ( Integer lineNumber : branchLines )
+        {
+            LineData lineData = classData.getLineData( lineNumber.intValue() );
+            List<JumpData> jumps = new ArrayList<JumpData>();
+            List<SwitchData> switches = new ArrayList<SwitchData>();
+            for ( int c = 0; c < lineData.getConditionSize(); c++ )
+            {
+                Object condition = lineData.getConditionData( c );
+                if ( condition instanceof JumpData )
+                {
+                    jumps.add( (JumpData) condition );
+                }
+                else
+                {
+                    switches.add( (SwitchData) condition );
+                }
+            }
+
+            out.writeInt( lineNumber.intValue() );
+            out.writeInt( jumps.size() );
+            for ( JumpData jump : jumps )
+            {
+                out.writeInt( jump.getConditionNumber() );
+                out.writeLong( jump.getTrueHits() );
+                out.writeLong( jump.getFalseHits() );
+            }
+            out.writeInt( switches.size() );
+            for ( SwitchData switchData : switches )
+            {
+                out.writeInt( switchData.getSwitchNumber() );
+                out.writeInt( switchData.getMaxBranches() );
+                int[] keys = getSwitchKeys( switchData );
+                out.writeInt( keys.length );
+                writeInts( out, keys );
+                out.writeLong( switchData.getDefaultHits() );
+
+                // getHits() answers -1 past the last branch
+                int branches = 0;
+                while ( switchData.getHits( branches ) >= 0 )
+                {
+                    branches++;
+                }
+                out.writeInt( branches );
+                for ( int branch = 0; branch < branches; branch++ )
+                {
+                    out.writeLong( switchData.getHits( branch ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Cobertura keeps the name of the source file without its directory, and prepends the directory of the package
+     * when asked for it.
+     */
+    private static String getSourceFileBaseName( ClassData classData )
+    {
+        String sourceFileName = classData.getSourceFileName();
+        return sourceFileName.substring( sourceFileName.lastIndexOf( '/' ) + 1 );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static List<ClassData> getSortedClasses( ProjectData projectData )
+    {
+        List<ClassData> classes = new ArrayList<ClassData>( projectData.getClasses() );
+        Collections.sort( classes );
+        return classes;
+    }
+
+    private static String string( String[] strings, int index )
+    {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static int[] readInts( DataInput in, int length )
+        throws IOException
+    {
+        int[] values = new int[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static long[] readLongs( DataInput in, int length )
+        throws IOException
+    {
+        long[] values = new long[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static void writeInts( DataOutput out, int[] values )
+        throws IOException
+    {
+        for ( int value : values )
+        {
+            out.writeInt( value );
+        }
+    }
+
+    private static void writeLongs( DataOutput out, long[] values )
+        throws IOException
+    {
+        for ( long value : values )
+        {
+            out.writeLong( value );
+        }
+    }
+
+    // Cobertura only adds hits as ints, so larger counts are added in several steps
+
+    private static void touch( ClassData classData, int lineNumber, long hits )
+    {
+        for ( long left = hits; left > 0; left -= Integer.MAX_VALUE )
+        {
+            classData.touch( lineNumber, (int) Math.min( left, Integer.MAX_VALUE ) );
+        }
+    }
+
+    private static void touchJump( ClassData classData, int lineNumber, int branchNumber, boolean branch, long hits )
+    {
+        for ( long left = hits; left > 0; left -= Integer.MAX_VALUE )
+        {
+            classData.touchJump( lineNumber, branchNumber, branch, (int) Math.min( left, Integer.MAX_VALUE ) );
+        }
+    }
+
+    private static void touchSwitch( ClassData classData, int lineNumber, int switchNumber, int branch, long hits )
+    {
+        // touching with no hits still makes room for the branch
+        long left = hits;
+        do
+        {
+            classData.touchSwitch( lineNumber, switchNumber, branch, (int) Math.min( left, Integer.MAX_VALUE ) );
+            left -= Integer.MAX_VALUE;
+        }
+        while ( left > 0 );
+    }
+
+    /**
+     * The keys of a switch are private to {@link SwitchData} and don't take part in any report, but they are part of
+     * the data, so read them reflectively to keep the conversion lossless.
+     *
+     * @return the field, or <code>null</code> if this version of Cobertura doesn't have it.
+     */
+    private static Field getSwitchKeysField()
+    {
+        try
+        {
+            Field field = SwitchData.class.getDeclaredField( "keys" );
+            field.setAccessible( true );
+            return field;
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+    }
+
+    private static int[] getSwitchKeys( SwitchData switchData )
+    {
+        if ( SWITCH_KEYS != null )
+        {
+            try
+            {
+                int[] keys = (int[]) SWITCH_KEYS.get( switchData );
+                if ( keys != null )
+                {
+                    return keys;
+                }
+            }
+            catch ( IllegalAccessException e )
+            {
+                // fall through, the keys are not essential
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * The strings of a data file, each stored once.
+     */
+    private static final class StringTable
+    {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        private final List<String> strings = new ArrayList<String>();
+
+        int indexOf( String string )
+        {
+            if ( string == null )
+            {
+                return -1;
+            }
+            Integer index = indexes.get( string );
+            if ( index == null )
+            {
+                index = Integer.valueOf( strings.size() );
+                indexes.put( string, index );
+                strings.add( string );
+            }
+            return index.intValue();
+        }
+
+        int size()
+        {
+            return strings.size();
+        }
+
+        List<String> getStrings()
+        {
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes a coverage baseline: the line and branch counts of every class of a {@link CoverageSummary}, in a
+ * small binary file meant to be kept with the sources. The totals of the packages and of the project are the sums of
+ * their classes, so they are computed again when the baseline is read rather than stored.
+ *
+ * @see CoverageRatchet
+ * @since 2.8
+ */
+public final class CoverageBaseline
+{
+    /**
+     * The first bytes of a baseline, "CBBL".
+     */
+    public static final int MAGIC = 0x4342424C;
+
+    /**
+     * The version of the baseline format.
+     */
+    public static final int VERSION = 1;
+
+    private CoverageBaseline()
+    {
+    }
+
+    /**
+     * Read a baseline.
+     *
+     * @param baseline the baseline file.
+     * @return the summary stored in the baseline.
+     * @throws IOException if the file could not be read, or isn't a baseline.
+     */
+    public static CoverageSummary read( File baseline )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( baseline ) ) );
+        try
+        {
+            if ( in.readInt() != MAGIC )
+            {
+                throw new IOException( baseline + " is not a coverage baseline" );
+            }
+            int version = in.readInt();
+            if ( version != VERSION )
+            {
+                throw new IOException( "Unsupported version " + version + " of coverage baseline " + baseline );
+            }
+
+            int classes = in.readInt();
+            SortedMap<String, CoverageTotals> classTotals = new TreeMap<String, CoverageTotals>();
+            for ( int i = 0; i < classes; i++ )
+            {
+                String className = in.readUTF();
+                classTotals.put( className,
+                                 new CoverageTotals( in.readInt(), in.readInt(), in.readInt(), in.readInt() ) );
+            }
+            return CoverageSummary.of( classTotals );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Write a baseline, replacing the file only once it is complete.
+     *
+     * @param summary  the summary to store.
+     * @param baseline the baseline file.
+     * @throws IOException if the file could not be written.
+     */
+    public static void write( CoverageSummary summary, File baseline )
+        throws IOException
+    {
+        baseline.getAbsoluteFile().getParentFile().mkdirs();
+        File tmpFile = new File( baseline.getAbsolutePath() + ".tmp" );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( summary.getClassTotals().size() );
+            for ( Map.Entry<String, CoverageTotals> entry : summary.getClassTotals().entrySet() )
+            {
+                CoverageTotals totals = entry.getValue();
+                out.writeUTF( entry.getKey() );
+                out.writeInt( totals.getValidLines() );
+                out.writeInt( totals.getCoveredLines() );
+                out.writeInt( totals.getValidBranches() );
+                out.writeInt( totals.getCoveredBranches() );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // renaming onto the baseline replaces it atomically where the platform allows it, elsewhere the previous
+        // baseline is kept aside until the new one is in place
+        if ( tmpFile.renameTo( baseline ) )
+        {
+            return;
+        }
+        File backupFile = new File( baseline.getAbsolutePath() + ".bak" );
+        backupFile.delete();
+        if ( baseline.exists() && !baseline.renameTo( backupFile ) )
+        {
+            tmpFile.delete();
+            throw new IOException( "Unable to write coverage baseline " + baseline );
+        }
+        if ( !tmpFile.renameTo( baseline ) )
+        {
+            tmpFile.delete();
+            backupFile.renameTo( baseline );
+            throw new IOException( "Unable to write coverage baseline " + baseline );
+        }
+        backupFile.delete();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+import org.codehaus.mojo.cobertura.configuration.Regex;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the coverage rates of a {@link CoverageSummary} against the thresholds of a {@link ConfigCheck}, with the
+ * messages of Cobertura's <code>CheckCoverageMain</code>, but without forking a JVM.
+ * <p/>
+ * The thresholds are parsed and the regexes compiled once, in the constructor; the classes are then checked in a
+ * single pass over the summary. A class is checked against the rates of the first regex matching its whole name, or
+ * else against the class rates. It differs from Cobertura 2.1.1, which is why it is only used with the
+ * <code>plugin</code> check engine:
+ * <ul>
+ * <li>every package is checked against the package rates, where Cobertura stops after the first package;</li>
+ * <li>the regexes are Java regular expressions, where Cobertura uses Perl 5 regular expressions;</li>
+ * <li>thresholds which aren't set are 0, so they never fail, even when no threshold is set at all, for which
+ * Cobertura applies defaults of its own.</li>
+ * </ul>
+ *
+ * @since 2.8
+ */
+public class CoverageChecker
+{
+    private final double branchRate;
+
+    private final double lineRate;
+
+    private final double packageBranchRate;
+
+    private final double packageLineRate;
+
+    private final double totalBranchRate;
+
+    private final double totalLineRate;
+
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+    private final List<double[]> patternRates = new ArrayList<double[]>();
+
+    /**
+     * @param config the check configuration.
+     * @throws IllegalArgumentException if a rate isn't a percentage, or a regex is invalid.
+     */
+    public CoverageChecker( ConfigCheck config )
+    {
+        branchRate = toRate( config.getBranchRate() );
+        lineRate = toRate( config.getLineRate() );
+        packageBranchRate = toRate( config.getPackageBranchRate() );
+        packageLineRate = toRate( config.getPackageLineRate() );
+        totalBranchRate = toRate( config.getTotalBranchRate() );
+        totalLineRate = toRate( config.getTotalLineRate() );
+
+        for ( Regex regex : config.getRegexes() )
+        {
+            if ( regex.getPattern() == null )
+            {
+                throw new IllegalArgumentException( "The pattern of a check regex is missing" );
+            }
+            patterns.add( Pattern.compile( regex.getPattern() ) );
+            patternRates.add( new double[]{ toRate( regex.getBranchRate() ), toRate( regex.getLineRate() ) } );
+        }
+    }
+
+    /**
+     * Check the coverage rates.
+     *
+     * @param summary the summary of the data file.
+     * @return the messages of the failed checks, empty if all checks passed.
+     */
+    public List<String> check( CoverageSummary summary )
+    {
+        List<String> failures = new ArrayList<String>();
+
+        for ( Map.Entry<String, CoverageTotals> entry : summary.getClassTotals().entrySet() )
+        {
+            String className = entry.getKey();
+            double expectedBranchRate = branchRate;
+            double expectedLineRate = lineRate;
+            for ( int i = 0; i < patterns.size(); i++ )
+            {
+                if ( patterns.get( i ).matcher( className ).matches() )
+                {
+                    expectedBranchRate = patternRates.get( i )[0];
+                    expectedLineRate = patternRates.get( i )[1];
+                    break;
+                }
+            }
+            check( failures, className, entry.getValue(), expectedBranchRate, expectedLineRate );
+        }
+
+        for ( Map.Entry<String, CoverageTotals> entry : summary.getPackageTotals().entrySet() )
+        {
+            check( failures, entry.getKey(), entry.getValue(), packageBranchRate, packageLineRate );
+        }
+
+        check( failures, "project", summary.getProjectTotals(), totalBranchRate, totalLineRate );
+
+        return failures;
+    }
+
+    private static void check( List<String> failures, String name, CoverageTotals totals, double expectedBranchRate,
+                               double expectedLineRate )
+    {
+        if ( totals.getBranchCoverageRate() < expectedBranchRate )
+        {
+            failures.add( name + " failed coverage check. Branch coverage rate of " + percentage(
+                totals.getBranchCoverageRate() ) + "% is below " + percentage( expectedBranchRate ) + "%" );
+        }
+        if ( totals.getLineCoverageRate() < expectedLineRate )
+        {
+            failures.add( name + " failed coverage check. Line coverage rate of " + percentage(
+                totals.getLineCoverageRate() ) + "% is below " + percentage( expectedLineRate ) + "%" );
+        }
+    }
+
+    static double toRate( String percentage )
+    {
+        if ( StringUtils.isEmpty( percentage ) )
+        {
+            return 0d;
+        }
+
+        int value;
+        try
+        {
+            value = Integer.parseInt( percentage.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "The value " + percentage + " is not a percentage." );
+        }
+        if ( value < 0 || value > 100 )
+        {
+            throw new IllegalArgumentException(
+                "The value " + value + "% is invalid.  Percentages must be between 0 and 100." );
+        }
+        return value / 100d;
+    }
+
+    static String percentage( double rate )
+    {
+        return new BigDecimal( rate * 100d ).setScale( 1, RoundingMode.DOWN ).toString();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads and writes coverage data in one data file format.
+ *
+ * @see CoverageDataCodecs
+ * @since 2.8
+ */
+public interface CoverageDataCodec
+{
+    /**
+     * @return the name of the format, as used in the plugin configuration.
+     */
+    String getName();
+
+    /**
+     * Read the coverage data from a data file.
+     *
+     * @param dataFile the data file.
+     * @return the coverage data, never <code>null</code>.
+     * @throws IOException if the data file could not be read.
+     */
+    ProjectData read( File dataFile )
+        throws IOException;
+
+    /**
+     * Write the coverage data to a data file, replacing its content.
+     *
+     * @param projectData the coverage data.
+     * @param dataFile    the data file.
+     * @throws IOException if the data file could not be written.
+     */
+    void write( ProjectData projectData, File dataFile )
+        throws IOException;
+}
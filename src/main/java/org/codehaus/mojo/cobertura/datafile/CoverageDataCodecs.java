@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * The data file formats known to the plugin.
+ * <p/>
+ * Reading goals detect the format of a data file from its content, so they accept any of them. Cobertura itself only
+ * knows its serialized format, so a data file in another format is converted before it is handed to Cobertura.
+ *
+ * @since 2.8
+ */
+public final class CoverageDataCodecs
+{
+    /**
+     * Cobertura's serialized format.
+     */
+    public static final CoverageDataCodec SERIALIZED = new SerializedCoverageDataCodec();
+
+    /**
+     * The compact binary format.
+     */
+    public static final CoverageDataCodec COMPACT = new CompactCoverageDataCodec();
+
+    private CoverageDataCodecs()
+    {
+    }
+
+    /**
+     * Get a codec by its name.
+     *
+     * @param name the name of the format.
+     * @return the codec.
+     * @throws IllegalArgumentException if there is no such format.
+     */
+    public static CoverageDataCodec forName( String name )
+    {
+        if ( SERIALIZED.getName().equalsIgnoreCase( name ) )
+        {
+            return SERIALIZED;
+        }
+        if ( COMPACT.getName().equalsIgnoreCase( name ) )
+        {
+            return COMPACT;
+        }
+        throw new IllegalArgumentException(
+            "Unknown data file format \"" + name + "\", must be either " + SERIALIZED.getName() + " or "
+                + COMPACT.getName() );
+    }
+
+    /**
+     * Get the codec of an existing data file, according to its first bytes.
+     *
+     * @param dataFile the data file.
+     * @return the codec.
+     * @throws IOException if the data file could not be read.
+     */
+    public static CoverageDataCodec forFile( File dataFile )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new FileInputStream( dataFile ) );
+        try
+        {
+            return in.readInt() == CompactCoverageDataCodec.MAGIC ? COMPACT : SERIALIZED;
+        }
+        catch ( EOFException e )
+        {
+            return SERIALIZED;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a data file in any format.
+     *
+     * @param dataFile the data file.
+     * @return the coverage data.
+     * @throws IOException if the data file could not be read.
+     */
+    public static ProjectData read( File dataFile )
+        throws IOException
+    {
+        return forFile( dataFile ).read( dataFile );
+    }
+
+    /**
+     * Get a data file Cobertura can read, with the same content as the given one.
+     *
+     * @param dataFile the data file, in any format.
+     * @return the data file itself if it is in Cobertura's format, otherwise a converted temporary copy which the
+     *         caller must delete.
+     * @throws IOException if the data file could not be converted.
+     */
+    public static File toSerialized( File dataFile )
+        throws IOException
+    {
+        CoverageDataCodec codec = forFile( dataFile );
+        if ( codec == SERIALIZED )
+        {
+            return dataFile;
+        }
+
+        File serialized = File.createTempFile( dataFile.getName() + ".tmp", ".ser", dataFile.getParentFile() );
+        try
+        {
+            SERIALIZED.write( codec.read( dataFile ), serialized );
+        }
+        catch ( IOException e )
+        {
+            serialized.delete();
+            throw e;
+        }
+        return serialized;
+    }
+}
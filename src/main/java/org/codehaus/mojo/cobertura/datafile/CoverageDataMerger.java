@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Merges many data files into one {@link ProjectData}, using several threads.
+ * <p/>
+ * Each thread takes data files from a shared queue, loads them and merges them into its own partial result. The
+ * partial results are then merged pairwise, in parallel, until one is left. At any time each thread holds at most its
+ * partial result and the data file it is loading, so the number of decoded data files in memory is bounded by twice
+ * the number of threads, whatever the number of data files.
+ *
+ * @since 2.8
+ */
+public class CoverageDataMerger
+{
+    private final int threads;
+
+    private final Log log;
+
+    private final boolean skipUnreadable;
+
+    /**
+     * Create a merger which skips the data files it can't read.
+     *
+     * @param threads the number of threads, and so the number of partial results in memory.
+     * @param log     the log to report unreadable data files to.
+     */
+    public CoverageDataMerger( int threads, Log log )
+    {
+        this( threads, log, true );
+    }
+
+    /**
+     * @param threads        the number of threads, and so the number of partial results in memory.
+     * @param log            the log to report unreadable data files to.
+     * @param skipUnreadable <code>true</code> to skip the data files which can't be read with a warning,
+     *                       <code>false</code> to fail the merge.
+     */
+    public CoverageDataMerger( int threads, Log log, boolean skipUnreadable )
+    {
+        this.threads = Math.max( 1, threads );
+        this.log = log;
+        this.skipUnreadable = skipUnreadable;
+    }
+
+    /**
+     * Load and merge the data files, in any format. Data files which can't be read are either skipped with a warning
+     * or fail the merge.
+     *
+     * @param dataFiles the data files.
+     * @return the merged data.
+     * @throws IOException if the merge was interrupted or failed.
+     */
+    public ProjectData merge( List<File> dataFiles )
+        throws IOException
+    {
+        int workers = Math.min( threads, dataFiles.size() );
+        if ( workers == 0 )
+        {
+            return new ProjectData();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( workers );
+        try
+        {
+            final Queue<File> queue = new ConcurrentLinkedQueue<File>( dataFiles );
+            List<Future<ProjectData>> loads = new ArrayList<Future<ProjectData>>();
+            for ( int i = 0; i < workers; i++ )
+            {
+                loads.add( executor.submit( new Callable<ProjectData>()
+                {
+                    public ProjectData call()
+                        throws IOException
+                    {
+                        return loadAndMerge( queue );
+                    }
+                } ) );
+            }
+
+            List<ProjectData> partials = new ArrayList<ProjectData>();
+            for ( Future<ProjectData> load : loads )
+            {
+                ProjectData partial = load.get();
+                if ( partial != null )
+                {
+                    partials.add( partial );
+                }
+            }
+
+            while ( partials.size() > 1 )
+            {
+                List<Future<ProjectData>> merges = new ArrayList<Future<ProjectData>>();
+                for ( int i = 0; i + 1 < partials.size(); i += 2 )
+                {
+                    final ProjectData left = partials.get( i );
+                    final ProjectData right = partials.get( i + 1 );
+                    merges.add( executor.submit( new Callable<ProjectData>()
+                    {
+                        public ProjectData call()
+                        {
+                            left.merge( right );
+                            return left;
+                        }
+                    } ) );
+                }
+
+                List<ProjectData> merged = new ArrayList<ProjectData>();
+                for ( Future<ProjectData> merge : merges )
+                {
+                    merged.add( merge.get() );
+                }
+                if ( partials.size() % 2 == 1 )
+                {
+                    merged.add( partials.get( partials.size() - 1 ) );
+                }
+                partials = merged;
+            }
+
+            return partials.isEmpty() ? new ProjectData() : partials.get( 0 );
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( "Interrupted while merging data files" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            IOException ioe = new IOException( "Unable to merge data files: " + e.getCause() );
+            ioe.initCause( e.getCause() );
+            throw ioe;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private ProjectData loadAndMerge( Queue<File> queue )
+        throws IOException
+    {
+        ProjectData partial = null;
+        File dataFile;
+        while ( ( dataFile = queue.poll() ) != null )
+        {
+            ProjectData data;
+            try
+            {
+                data = CoverageDataCodecs.read( dataFile );
+            }
+            catch ( IOException e )
+            {
+                if ( !skipUnreadable )
+                {
+                    IOException ioe = new IOException( "Unable to read " + dataFile + ": " + e.getMessage() );
+                    ioe.initCause( e );
+                    throw ioe;
+                }
+                log.warn( "Skipping " + dataFile + ": " + e.getMessage() );
+                continue;
+            }
+
+            if ( partial == null )
+            {
+                partial = data;
+            }
+            else
+            {
+                partial.merge( data );
+            }
+        }
+        return partial;
+    }
+}
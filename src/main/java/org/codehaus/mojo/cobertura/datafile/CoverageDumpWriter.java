@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.LineData;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the content of a data file as it is iterated, project first, then each package with its classes and their
+ * lines. Nothing is buffered beyond the underlying writer, so the size of the output isn't bounded by the heap.
+ *
+ * @see CoverageDumper
+ * @since 2.8
+ */
+public abstract class CoverageDumpWriter
+{
+    /**
+     * The XML format, as printed by earlier versions of <code>dump-datafile</code>.
+     */
+    public static final String XML = "xml";
+
+    /**
+     * The JSON lines format, one JSON object per project, package, class or line.
+     */
+    public static final String JSON = "json";
+
+    /**
+     * The CSV format, one row per project, package, class or line.
+     */
+    public static final String CSV = "csv";
+
+    /**
+     * The output.
+     */
+    protected final Writer out;
+
+    /**
+     * @param out the output.
+     */
+    protected CoverageDumpWriter( Writer out )
+    {
+        this.out = out;
+    }
+
+    /**
+     * @param format the name of the format: {@link #XML}, {@link #JSON} or {@link #CSV}.
+     * @param out    the output.
+     * @return the writer of the format.
+     * @throws IllegalArgumentException if the format is unknown.
+     */
+    public static CoverageDumpWriter forFormat( String format, Writer out )
+    {
+        if ( XML.equalsIgnoreCase( format ) )
+        {
+            return new XmlDumpWriter( out );
+        }
+        if ( JSON.equalsIgnoreCase( format ) )
+        {
+            return new JsonDumpWriter( out );
+        }
+        if ( CSV.equalsIgnoreCase( format ) )
+        {
+            return new CsvDumpWriter( out );
+        }
+        throw new IllegalArgumentException(
+            "Unknown dump format " + format + ", must be one of " + XML + ", " + JSON + " or " + CSV );
+    }
+
+    /**
+     * Start the output with the totals of the project.
+     *
+     * @param totals the totals of the project.
+     * @throws IOException if the output could not be written.
+     */
+    public abstract void startProject( CoverageTotals totals )
+        throws IOException;
+
+    /**
+     * @param packageName the name of the package, "" for the default package.
+     * @param totals      the totals of the package.
+     * @throws IOException if the output could not be written.
+     */
+    public abstract void startPackage( String packageName, CoverageTotals totals )
+        throws IOException;
+
+    /**
+     * @param className the name of the class.
+     * @param totals    the totals of the class.
+     * @throws IOException if the output could not be written.
+     */
+    public abstract void startClass( String className, CoverageTotals totals )
+        throws IOException;
+
+    /**
+     * @param className the name of the class of the line.
+     * @param line      the line.
+     * @throws IOException if the output could not be written.
+     */
+    public abstract void line( String className, LineData line )
+        throws IOException;
+
+    /**
+     * @throws IOException if the output could not be written.
+     */
+    public void endClass()
+        throws IOException
+    {
+    }
+
+    /**
+     * @throws IOException if the output could not be written.
+     */
+    public void endPackage()
+        throws IOException
+    {
+    }
+
+    /**
+     * End the output and flush it.
+     *
+     * @throws IOException if the output could not be written.
+     */
+    public void endProject()
+        throws IOException
+    {
+        out.flush();
+    }
+}
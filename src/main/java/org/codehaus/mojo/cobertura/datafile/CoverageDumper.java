@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dumps a data file to a {@link CoverageDumpWriter}, package by package and class by class.
+ * <p/>
+ * The totals come from a {@link CoverageSummary}. The lines of a data file in the compact format are decoded one class
+ * at a time, as they are written, so only the lines of the current class are in memory; a serialized data file has to
+ * be loaded entirely to get its lines.
+ *
+ * @since 2.8
+ */
+public class CoverageDumper
+{
+    /**
+     * How much of the data file is dumped.
+     */
+    public enum Detail
+    {
+        /**
+         * The totals of the project and of each package.
+         */
+        PACKAGE,
+
+        /**
+         * The totals of the project, of each package and of each class.
+         */
+        CLASS,
+
+        /**
+         * The totals of the project, of each package and of each class, and the hits of every line.
+         */
+        LINE
+    }
+
+    private final File dataFile;
+
+    private final Detail detail;
+
+    /**
+     * @param dataFile the data file, in any format.
+     * @param detail   how much of the data file is dumped.
+     */
+    public CoverageDumper( File dataFile, Detail detail )
+    {
+        this.dataFile = dataFile;
+        this.detail = detail;
+    }
+
+    /**
+     * Dump the data file.
+     *
+     * @param writer the writer of the output format.
+     * @throws IOException if the data file could not be read, or the output written.
+     */
+    public void dump( CoverageDumpWriter writer )
+        throws IOException
+    {
+        MappedCoverageDataFile mapped = null;
+        ProjectData projectData = null;
+        CoverageSummary summary;
+        if ( CoverageDataCodecs.forFile( dataFile ) == CoverageDataCodecs.COMPACT )
+        {
+            mapped = new MappedCoverageDataFile( dataFile );
+            summary = CoverageSummary.of( mapped );
+        }
+        else
+        {
+            projectData = CoverageDataCodecs.read( dataFile );
+            summary = CoverageSummary.of( projectData );
+        }
+
+        writer.startProject( summary.getProjectTotals() );
+
+        Map<String, List<String>> classNames = new HashMap<String, List<String>>();
+        if ( detail != Detail.PACKAGE )
+        {
+            for ( String className : summary.getClassTotals().keySet() )
+            {
+                String packageName = MappedCoverageDataFile.getPackageName( className );
+                List<String> names = classNames.get( packageName );
+                if ( names == null )
+                {
+                    names = new ArrayList<String>();
+                    classNames.put( packageName, names );
+                }
+                names.add( className );
+            }
+        }
+
+        for ( Map.Entry<String, CoverageTotals> entry : summary.getPackageTotals().entrySet() )
+        {
+            String packageName = entry.getKey();
+            writer.startPackage( packageName, entry.getValue() );
+
+            List<String> names = classNames.get( packageName );
+            for ( String className : names == null ? Collections.<String>emptyList() : names )
+            {
+                writer.startClass( className, summary.getClassTotals().get( className ) );
+                if ( detail == Detail.LINE )
+                {
+                    ClassData classData =
+                        mapped != null ? mapped.readClass( className ) : projectData.getClassData( className );
+                    for ( CoverageData line : classData.getLines() )
+                    {
+                        writer.line( className, (LineData) line );
+                    }
+                }
+                writer.endClass();
+            }
+
+            writer.endPackage();
+        }
+
+        writer.endProject();
+    }
+}
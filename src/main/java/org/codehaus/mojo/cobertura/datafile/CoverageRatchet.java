@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Checks that the coverage of a {@link CoverageSummary} didn't drop below a baseline, as stored by
+ * {@link CoverageBaseline}.
+ * <p/>
+ * Each package, and the project, fails if its line or branch rate is lower than in the baseline; the classes whose
+ * rates dropped are listed in the message of their package, so that a drop can be tracked down without failing the
+ * build for a class which merely moved. Rates are compared exactly, on the counts rather than on rounded percentages.
+ * The summary and the baseline are both sorted by name, so they are compared in a single pass over each.
+ *
+ * @since 2.8
+ */
+public class CoverageRatchet
+{
+    private final CoverageSummary baseline;
+
+    private boolean improved;
+
+    /**
+     * @param baseline the coverage to compare with.
+     */
+    public CoverageRatchet( CoverageSummary baseline )
+    {
+        this.baseline = baseline;
+    }
+
+    /**
+     * Check that the coverage didn't drop.
+     *
+     * @param summary the current coverage.
+     * @return the messages of the failed checks, empty if the coverage didn't drop.
+     */
+    public List<String> check( CoverageSummary summary )
+    {
+        improved = false;
+        List<String> failures = new ArrayList<String>();
+
+        SortedMap<String, List<String>> droppedClasses = new TreeMap<String, List<String>>();
+        Iterator<Map.Entry<String, CoverageTotals>> baseClasses = baseline.getClassTotals().entrySet().iterator();
+        Map.Entry<String, CoverageTotals> base = next( baseClasses );
+        for ( Map.Entry<String, CoverageTotals> current : summary.getClassTotals().entrySet() )
+        {
+            while ( base != null && base.getKey().compareTo( current.getKey() ) < 0 )
+            {
+                base = next( baseClasses );
+            }
+            if ( base != null && base.getKey().equals( current.getKey() ) && dropped( current.getValue(),
+                                                                                       base.getValue() ) )
+            {
+                String packageName = MappedCoverageDataFile.getPackageName( current.getKey() );
+                List<String> classes = droppedClasses.get( packageName );
+                if ( classes == null )
+                {
+                    classes = new ArrayList<String>();
+                    droppedClasses.put( packageName, classes );
+                }
+                classes.add( current.getKey() );
+            }
+        }
+
+        Iterator<Map.Entry<String, CoverageTotals>> basePackages = baseline.getPackageTotals().entrySet().iterator();
+        base = next( basePackages );
+        for ( Map.Entry<String, CoverageTotals> current : summary.getPackageTotals().entrySet() )
+        {
+            while ( base != null && base.getKey().compareTo( current.getKey() ) < 0 )
+            {
+                base = next( basePackages );
+            }
+            if ( base != null && base.getKey().equals( current.getKey() ) )
+            {
+                check( failures, current.getKey(), current.getValue(), base.getValue(),
+                       droppedClasses.get( current.getKey() ) );
+            }
+            else
+            {
+                improved = true;
+            }
+        }
+
+        check( failures, "project", summary.getProjectTotals(), baseline.getProjectTotals(), null );
+
+        return failures;
+    }
+
+    /**
+     * @return <code>true</code> if the last check found a package, or the project, whose coverage rose, or a new
+     *         package; the baseline is then worth updating if the check passed.
+     */
+    public boolean isImproved()
+    {
+        return improved;
+    }
+
+    private void check( List<String> failures, String name, CoverageTotals current, CoverageTotals base,
+                        List<String> droppedClasses )
+    {
+        String classes = droppedClasses == null ? "" : ", dropped in " + droppedClasses;
+        if ( compare( current.getCoveredBranches(), current.getValidBranches(), base.getCoveredBranches(),
+                      base.getValidBranches() ) < 0 )
+        {
+            failures.add( name + " failed ratchet check. Branch coverage rate of " + CoverageChecker.percentage(
+                current.getBranchCoverageRate() ) + "% is below the baseline of " + CoverageChecker.percentage(
+                base.getBranchCoverageRate() ) + "%" + classes );
+        }
+        if ( compare( current.getCoveredLines(), current.getValidLines(), base.getCoveredLines(),
+                      base.getValidLines() ) < 0 )
+        {
+            failures.add( name + " failed ratchet check. Line coverage rate of " + CoverageChecker.percentage(
+                current.getLineCoverageRate() ) + "% is below the baseline of " + CoverageChecker.percentage(
+                base.getLineCoverageRate() ) + "%" + classes );
+        }
+
+        if ( compare( current.getCoveredBranches(), current.getValidBranches(), base.getCoveredBranches(),
+                      base.getValidBranches() ) > 0
+            || compare( current.getCoveredLines(), current.getValidLines(), base.getCoveredLines(),
+                        base.getValidLines() ) > 0 )
+        {
+            improved = true;
+        }
+    }
+
+    private static boolean dropped( CoverageTotals current, CoverageTotals base )
+    {
+        return compare( current.getCoveredBranches(), current.getValidBranches(), base.getCoveredBranches(),
+                        base.getValidBranches() ) < 0
+            || compare( current.getCoveredLines(), current.getValidLines(), base.getCoveredLines(),
+                        base.getValidLines() ) < 0;
+    }
+
+    /**
+     * Compare two rates without rounding; as in {@link CoverageTotals}, nothing to cover is full coverage.
+     */
+    static int compare( int covered1, int valid1, int covered2, int valid2 )
+    {
+        long left = ( valid1 == 0 ? 1L : covered1 ) * ( valid2 == 0 ? 1L : valid2 );
+        long right = ( valid2 == 0 ? 1L : covered2 ) * ( valid1 == 0 ? 1L : valid1 );
+        return left < right ? -1 : ( left == right ? 0 : 1 );
+    }
+
+    private static <T> T next( Iterator<T> iterator )
+    {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The totals of every class and package of a data file.
+ *
+ * @since 2.8
+ */
+public class CoverageSummary
+{
+    private final SortedMap<String, CoverageTotals> classTotals;
+
+    private final SortedMap<String, CoverageTotals> packageTotals;
+
+    private final CoverageTotals projectTotals;
+
+    private CoverageSummary( SortedMap<String, CoverageTotals> classTotals )
+    {
+        this.classTotals = Collections.unmodifiableSortedMap( classTotals );
+
+        SortedMap<String, CoverageTotals> packages = new TreeMap<String, CoverageTotals>();
+        projectTotals = new CoverageTotals();
+        for ( Map.Entry<String, CoverageTotals> entry : classTotals.entrySet() )
+        {
+            String packageName = MappedCoverageDataFile.getPackageName( entry.getKey() );
+            CoverageTotals totals = packages.get( packageName );
+            if ( totals == null )
+            {
+                totals = new CoverageTotals();
+                packages.put( packageName, totals );
+            }
+            totals.add( entry.getValue() );
+            projectTotals.add( entry.getValue() );
+        }
+        this.packageTotals = Collections.unmodifiableSortedMap( packages );
+    }
+
+    /**
+     * Summarize a data file in any format. A data file in the compact format is memory-mapped and only its class
+     * directory is decoded.
+     *
+     * @param dataFile the data file.
+     * @return the summary.
+     * @throws IOException if the data file could not be read.
+     */
+    public static CoverageSummary read( File dataFile )
+        throws IOException
+    {
+        CoverageDataCodec codec = CoverageDataCodecs.forFile( dataFile );
+        if ( codec == CoverageDataCodecs.COMPACT )
+        {
+            return of( new MappedCoverageDataFile( dataFile ) );
+        }
+        return of( codec.read( dataFile ) );
+    }
+
+    /**
+     * @param dataFile a mapped data file.
+     * @return the summary of the data file.
+     */
+    public static CoverageSummary of( MappedCoverageDataFile dataFile )
+    {
+        SortedMap<String, CoverageTotals> classTotals = new TreeMap<String, CoverageTotals>();
+        for ( String className : dataFile.getClassNames() )
+        {
+            classTotals.put( className, dataFile.getClassTotals( className ) );
+        }
+        return new CoverageSummary( classTotals );
+    }
+
+    /**
+     * @param projectData the coverage data.
+     * @return the summary of the coverage data.
+     */
+    public static CoverageSummary of( ProjectData projectData )
+    {
+        SortedMap<String, CoverageTotals> classTotals = new TreeMap<String, CoverageTotals>();
+        for ( Object classData : projectData.getClasses() )
+        {
+            classTotals.put( ( (ClassData) classData ).getName(), CoverageTotals.of( (ClassData) classData ) );
+        }
+        return new CoverageSummary( classTotals );
+    }
+
+    /**
+     * @param classTotals the totals of each class, by class name.
+     * @return the summary of the classes.
+     */
+    static CoverageSummary of( SortedMap<String, CoverageTotals> classTotals )
+    {
+        return new CoverageSummary( new TreeMap<String, CoverageTotals>( classTotals ) );
+    }
+
+    /**
+     * @return the totals of each class, by class name.
+     */
+    public SortedMap<String, CoverageTotals> getClassTotals()
+    {
+        return classTotals;
+    }
+
+    /**
+     * @return the totals of each package, by package name. The default package is named "".
+     */
+    public SortedMap<String, CoverageTotals> getPackageTotals()
+    {
+        return packageTotals;
+    }
+
+    /**
+     * @return the totals of the whole project.
+     */
+    public CoverageTotals getProjectTotals()
+    {
+        return projectTotals;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+
+/**
+ * The line and branch counts of a class, a package or a project, without the data they were counted from.
+ * <p/>
+ * The rates are computed the same way as Cobertura does: with nothing to cover, the coverage is complete.
+ *
+ * @since 2.8
+ */
+public class CoverageTotals
+{
+    private int validLines;
+
+    private int coveredLines;
+
+    private int validBranches;
+
+    private int coveredBranches;
+
+    /**
+     * Create empty totals.
+     */
+    public CoverageTotals()
+    {
+    }
+
+    /**
+     * @param validLines      the number of lines.
+     * @param coveredLines    the number of covered lines.
+     * @param validBranches   the number of branches.
+     * @param coveredBranches the number of covered branches.
+     */
+    public CoverageTotals( int validLines, int coveredLines, int validBranches, int coveredBranches )
+    {
+        this.validLines = validLines;
+        this.coveredLines = coveredLines;
+        this.validBranches = validBranches;
+        this.coveredBranches = coveredBranches;
+    }
+
+    /**
+     * @param data the coverage data of a class, a package or a project.
+     * @return the totals of the data.
+     */
+    public static CoverageTotals of( CoverageData data )
+    {
+        return new CoverageTotals( data.getNumberOfValidLines(), data.getNumberOfCoveredLines(),
+                                   data.getNumberOfValidBranches(), data.getNumberOfCoveredBranches() );
+    }
+
+    /**
+     * Add other totals to these ones.
+     *
+     * @param totals the other totals.
+     */
+    public void add( CoverageTotals totals )
+    {
+        validLines += totals.validLines;
+        coveredLines += totals.coveredLines;
+        validBranches += totals.validBranches;
+        coveredBranches += totals.coveredBranches;
+    }
+
+    /**
+     * @return the number of lines.
+     */
+    public int getValidLines()
+    {
+        return validLines;
+    }
+
+    /**
+     * @return the number of covered lines.
+     */
+    public int getCoveredLines()
+    {
+        return coveredLines;
+    }
+
+    /**
+     * @return the number of branches.
+     */
+    public int getValidBranches()
+    {
+        return validBranches;
+    }
+
+    /**
+     * @return the number of covered branches.
+     */
+    public int getCoveredBranches()
+    {
+        return coveredBranches;
+    }
+
+    /**
+     * @return the line coverage rate, between 0 and 1.
+     */
+    public double getLineCoverageRate()
+    {
+        return validLines == 0 ? 1d : (double) coveredLines / validLines;
+    }
+
+    /**
+     * @return the branch coverage rate, between 0 and 1.
+     */
+    public double getBranchCoverageRate()
+    {
+        return validBranches == 0 ? 1d : (double) coveredBranches / validBranches;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( !( o instanceof CoverageTotals ) )
+        {
+            return false;
+        }
+        CoverageTotals other = (CoverageTotals) o;
+        return validLines == other.validLines && coveredLines == other.coveredLines
+            && validBranches == other.validBranches && coveredBranches == other.coveredBranches;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ( ( validLines * 31 + coveredLines ) * 31 + validBranches ) * 31 + coveredBranches;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "lines " + coveredLines + "/" + validLines + ", branches " + coveredBranches + "/" + validBranches;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.LineData;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the dump as CSV, after a header row: one row per project, package, class or line, in the order they are
+ * iterated. The rows of lines leave the rates empty, and the others leave the line number and hits empty.
+ *
+ * @since 2.8
+ */
+class CsvDumpWriter
+    extends CoverageDumpWriter
+{
+    private static final String HEADER =
+        "type,name,line,hits,line-rate,branch-rate,lines-covered,lines-valid,branches-covered,branches-valid\n";
+
+    CsvDumpWriter( Writer out )
+    {
+        super( out );
+    }
+
+    public void startProject( CoverageTotals totals )
+        throws IOException
+    {
+        out.write( HEADER );
+        writeTotals( "project", "", totals );
+    }
+
+    public void startPackage( String packageName, CoverageTotals totals )
+        throws IOException
+    {
+        writeTotals( "package", packageName, totals );
+    }
+
+    public void startClass( String className, CoverageTotals totals )
+        throws IOException
+    {
+        writeTotals( "class", className, totals );
+    }
+
+    public void line( String className, LineData line )
+        throws IOException
+    {
+        out.write( "line," );
+        writeField( className );
+        out.write( ',' );
+        out.write( String.valueOf( line.getLineNumber() ) );
+        out.write( ',' );
+        out.write( String.valueOf( line.getHits() ) );
+        out.write( ",,," );
+        out.write( String.valueOf( line.getNumberOfCoveredLines() ) );
+        out.write( ',' );
+        out.write( String.valueOf( line.getNumberOfValidLines() ) );
+        out.write( ',' );
+        out.write( String.valueOf( line.getNumberOfCoveredBranches() ) );
+        out.write( ',' );
+        out.write( String.valueOf( line.getNumberOfValidBranches() ) );
+        out.write( '\n' );
+    }
+
+    private void writeTotals( String type, String name, CoverageTotals totals )
+        throws IOException
+    {
+        out.write( type );
+        out.write( ',' );
+        writeField( name );
+        out.write( ",,," );
+        out.write( String.valueOf( totals.getLineCoverageRate() ) );
+        out.write( ',' );
+        out.write( String.valueOf( totals.getBranchCoverageRate() ) );
+        out.write( ',' );
+        out.write( String.valueOf( totals.getCoveredLines() ) );
+        out.write( ',' );
+        out.write( String.valueOf( totals.getValidLines() ) );
+        out.write( ',' );
+        out.write( String.valueOf( totals.getCoveredBranches() ) );
+        out.write( ',' );
+        out.write( String.valueOf( totals.getValidBranches() ) );
+        out.write( '\n' );
+    }
+
+    private void writeField( String value )
+        throws IOException
+    {
+        if ( value.indexOf( ',' ) < 0 && value.indexOf( '"' ) < 0 && value.indexOf( '\n' ) < 0 )
+        {
+            out.write( value );
+            return;
+        }
+
+        out.write( '"' );
+        out.write( value.replace( "\"", "\"\"" ) );
+        out.write( '"' );
+    }
+}
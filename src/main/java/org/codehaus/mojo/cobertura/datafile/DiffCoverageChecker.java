@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Checks the coverage of the lines changed by a {@link UnifiedDiff}, file by file, against the diff rates of a
+ * {@link ConfigCheck}. Changed lines without code, and changed files which aren't source files of the data file, such
+ * as tests, are ignored.
+ *
+ * @since 2.8
+ */
+public class DiffCoverageChecker
+{
+    private final double branchRate;
+
+    private final double lineRate;
+
+    private final CoverageTotals totals = new CoverageTotals();
+
+    private int sourceFiles;
+
+    /**
+     * @param config the check configuration.
+     * @throws IllegalArgumentException if a rate isn't a percentage.
+     */
+    public DiffCoverageChecker( ConfigCheck config )
+    {
+        branchRate = CoverageChecker.toRate( config.getDiffBranchRate() );
+        lineRate = CoverageChecker.toRate( config.getDiffLineRate() );
+    }
+
+    /**
+     * Check the coverage of the changed lines.
+     *
+     * @param diff  the changed lines.
+     * @param index the lines of the data file.
+     * @return the messages of the failed checks, one per rate of each changed file, empty if all checks passed.
+     */
+    public List<String> check( UnifiedDiff diff, SourceLineIndex index )
+    {
+        List<String> failures = new ArrayList<String>();
+
+        for ( Map.Entry<String, SortedSet<Integer>> entry : diff.getChangedLines().entrySet() )
+        {
+            String sourceFile = index.findSourceFile( entry.getKey() );
+            if ( sourceFile == null )
+            {
+                continue;
+            }
+
+            int validLines = 0;
+            int coveredLines = 0;
+            int validBranches = 0;
+            int coveredBranches = 0;
+            StringBuilder uncoveredLines = new StringBuilder();
+            StringBuilder uncoveredBranches = new StringBuilder();
+            for ( int lineNumber : entry.getValue() )
+            {
+                SourceLineIndex.Line line = index.getLine( sourceFile, lineNumber );
+                if ( line == null )
+                {
+                    continue;
+                }
+
+                validLines++;
+                if ( line.getHits() > 0 )
+                {
+                    coveredLines++;
+                }
+                else
+                {
+                    append( uncoveredLines, lineNumber );
+                }
+                validBranches += line.getValidBranches();
+                coveredBranches += line.getCoveredBranches();
+                if ( line.getCoveredBranches() < line.getValidBranches() )
+                {
+                    append( uncoveredBranches, lineNumber );
+                }
+            }
+            if ( validLines == 0 )
+            {
+                continue;
+            }
+
+            CoverageTotals fileTotals = new CoverageTotals( validLines, coveredLines, validBranches, coveredBranches );
+            totals.add( fileTotals );
+            sourceFiles++;
+
+            if ( fileTotals.getBranchCoverageRate() < branchRate )
+            {
+                failures.add( entry.getKey() + " failed diff coverage check. Branch coverage rate of "
+                                  + CoverageChecker.percentage( fileTotals.getBranchCoverageRate() ) + "% is below "
+                                  + CoverageChecker.percentage( branchRate ) + "%, lines with uncovered branches: "
+                                  + uncoveredBranches );
+            }
+            if ( fileTotals.getLineCoverageRate() < lineRate )
+            {
+                failures.add( entry.getKey() + " failed diff coverage check. Line coverage rate of "
+                                  + CoverageChecker.percentage( fileTotals.getLineCoverageRate() ) + "% is below "
+                                  + CoverageChecker.percentage( lineRate ) + "%, uncovered lines: " + uncoveredLines );
+            }
+        }
+
+        return failures;
+    }
+
+    private static void append( StringBuilder lineNumbers, int lineNumber )
+    {
+        if ( lineNumbers.length() > 0 )
+        {
+            lineNumbers.append( ", " );
+        }
+        lineNumbers.append( lineNumber );
+    }
+
+    /**
+     * @return the totals of the changed lines with code of all checked files.
+     */
+    public CoverageTotals getTotals()
+    {
+        return totals;
+    }
+
+    /**
+     * @return the number of changed source files with changed lines of code.
+     */
+    public int getSourceFiles()
+    {
+        return sourceFiles;
+    }
+}
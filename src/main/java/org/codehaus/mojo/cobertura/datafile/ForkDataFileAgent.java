@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A Java agent which gives every test JVM its own data file, so that JVMs don't wait on each other to merge their
+ * coverage into the data file of the module when they exit. The agent argument is the directory of the data files.
+ * <p/>
+ * Cobertura reads the location of the data file from a system property before its <code>cobertura.properties</code>,
+ * so setting it before any instrumented class runs is enough.
+ * <p/>
+ * This class must only depend on the JDK, since it runs in the test JVMs.
+ *
+ * @see ForkDataFiles
+ * @since 2.8
+ */
+public final class ForkDataFileAgent
+{
+    /**
+     * The system property Cobertura reads the location of the data file from.
+     */
+    static final String DATA_FILE_PROPERTY = "net.sourceforge.cobertura.datafile";
+
+    /**
+     * The extension of the data files.
+     */
+    static final String EXTENSION = ".ser";
+
+    private ForkDataFileAgent()
+    {
+    }
+
+    /**
+     * Point Cobertura to a new data file in the directory given as the agent argument.
+     *
+     * @param directory the directory of the data files.
+     * @throws IOException if the data file could not be created.
+     */
+    public static void premain( String directory )
+        throws IOException
+    {
+        File forkDirectory = new File( directory );
+        forkDirectory.mkdirs();
+
+        // keep the empty file to hold on to its unique name, Cobertura overwrites it as a data file without data
+        File dataFile = File.createTempFile( "cobertura-", EXTENSION, forkDirectory );
+
+        System.setProperty( DATA_FILE_PROPERTY, dataFile.getAbsolutePath() );
+    }
+}
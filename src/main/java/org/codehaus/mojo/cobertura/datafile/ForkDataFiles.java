@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Data files written by each test JVM on its own, next to the data file of the module. Every JVM exiting otherwise
+ * locks, loads, merges and saves the data file of the module, one after the other.
+ * <p/>
+ * The test JVMs are pointed to their own data file by the {@link ForkDataFileAgent}, and the data files are merged
+ * into the data file of the module before its coverage is checked or reported.
+ *
+ * @since 2.8
+ */
+public final class ForkDataFiles
+{
+    private ForkDataFiles()
+    {
+    }
+
+    /**
+     * @param dataFile the data file of the module.
+     * @return the directory of the data files of the test JVMs.
+     */
+    public static File getDirectory( File dataFile )
+    {
+        return new File( dataFile.getParentFile(), dataFile.getName() + ".forks" );
+    }
+
+    /**
+     * Remove the data files left by the test JVMs of a previous build.
+     *
+     * @param dataFile the data file of the module.
+     * @throws IOException if the data files could not be removed.
+     */
+    public static void clean( File dataFile )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( getDirectory( dataFile ) );
+    }
+
+    /**
+     * Write the jar of the {@link ForkDataFileAgent}.
+     *
+     * @param agentJar the jar to write.
+     * @throws IOException if the jar could not be written.
+     */
+    public static void writeAgent( File agentJar )
+        throws IOException
+    {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+        manifest.getMainAttributes().put( new Attributes.Name( "Premain-Class" ),
+                                          ForkDataFileAgent.class.getName() );
+
+        String entryName = ForkDataFileAgent.class.getName().replace( '.', '/' ) + ".class";
+        agentJar.getParentFile().mkdirs();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( agentJar ), manifest );
+        InputStream in = null;
+        try
+        {
+            in = ForkDataFileAgent.class.getClassLoader().getResourceAsStream( entryName );
+            if ( in == null )
+            {
+                throw new IOException( "Unable to find " + entryName );
+            }
+            out.putNextEntry( new JarEntry( entryName ) );
+            IOUtil.copy( in, out );
+            out.closeEntry();
+        }
+        finally
+        {
+            IOUtil.close( in );
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * Get the JVM argument which points a test JVM to its own data file.
+     *
+     * @param agentJar the jar of the agent.
+     * @param dataFile the data file of the module.
+     * @return the JVM argument.
+     */
+    public static String getJvmArgument( File agentJar, File dataFile )
+    {
+        String argument =
+            "-javaagent:" + agentJar.getAbsolutePath() + "=" + getDirectory( dataFile ).getAbsolutePath();
+        return argument.indexOf( ' ' ) < 0 ? argument : '"' + argument + '"';
+    }
+
+    /**
+     * Merge the data files of the test JVMs into the data file of the module, and remove them. The data files of test
+     * JVMs which ran no instrumented class are still empty, and are removed without being merged. If any other data
+     * file can't be read, the merge fails and the data files are kept, so that no coverage is silently lost.
+     *
+     * @param dataFile the data file of the module, in any format.
+     * @param threads  the number of threads, and so the number of partial results in memory.
+     * @param log      the log.
+     * @return the number of data files merged.
+     * @throws IOException if the data files could not be merged.
+     */
+    public static int merge( File dataFile, int threads, Log log )
+        throws IOException
+    {
+        File[] forkDataFiles = getDirectory( dataFile ).listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.isFile() && file.getName().endsWith( ForkDataFileAgent.EXTENSION );
+            }
+        } );
+        if ( forkDataFiles == null || forkDataFiles.length == 0 )
+        {
+            return 0;
+        }
+
+        List<File> dataFiles = new ArrayList<File>();
+        for ( File forkDataFile : forkDataFiles )
+        {
+            if ( forkDataFile.length() > 0 )
+            {
+                dataFiles.add( forkDataFile );
+            }
+        }
+        int merged = dataFiles.size();
+        if ( merged > 0 )
+        {
+            CoverageDataCodec codec = CoverageDataCodecs.SERIALIZED;
+            if ( dataFile.isFile() )
+            {
+                dataFiles.add( 0, dataFile );
+                codec = CoverageDataCodecs.forFile( dataFile );
+            }
+
+            ProjectData projectData = new CoverageDataMerger( threads, log, false ).merge( dataFiles );
+            codec.write( projectData, dataFile );
+        }
+
+        for ( File forkDataFile : forkDataFiles )
+        {
+            forkDataFile.delete();
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.util.Header;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the dump as JSON lines: one object per line, with a <code>type</code> of <code>project</code>,
+ * <code>package</code>, <code>class</code> or <code>line</code>, in the order they are iterated.
+ *
+ * @since 2.8
+ */
+class JsonDumpWriter
+    extends CoverageDumpWriter
+{
+    private String packageName;
+
+    JsonDumpWriter( Writer out )
+    {
+        super( out );
+    }
+
+    public void startProject( CoverageTotals totals )
+        throws IOException
+    {
+        out.write( "{\"type\":\"project\"" );
+        writeTotals( totals );
+        out.write( ",\"version\":" );
+        writeString( Header.version() );
+        out.write( ",\"timestamp\":" );
+        out.write( String.valueOf( System.currentTimeMillis() ) );
+        out.write( "}\n" );
+    }
+
+    public void startPackage( String packageName, CoverageTotals totals )
+        throws IOException
+    {
+        this.packageName = packageName;
+        out.write( "{\"type\":\"package\",\"name\":" );
+        writeString( packageName );
+        writeTotals( totals );
+        out.write( "}\n" );
+    }
+
+    public void startClass( String className, CoverageTotals totals )
+        throws IOException
+    {
+        out.write( "{\"type\":\"class\",\"name\":" );
+        writeString( className );
+        out.write( ",\"package\":" );
+        writeString( packageName );
+        writeTotals( totals );
+        out.write( "}\n" );
+    }
+
+    public void line( String className, LineData line )
+        throws IOException
+    {
+        out.write( "{\"type\":\"line\",\"class\":" );
+        writeString( className );
+        out.write( ",\"number\":" );
+        out.write( String.valueOf( line.getLineNumber() ) );
+        out.write( ",\"hits\":" );
+        out.write( String.valueOf( line.getHits() ) );
+        out.write( ",\"branchesCovered\":" );
+        out.write( String.valueOf( line.getNumberOfCoveredBranches() ) );
+        out.write( ",\"branchesValid\":" );
+        out.write( String.valueOf( line.getNumberOfValidBranches() ) );
+        out.write( "}\n" );
+    }
+
+    private void writeTotals( CoverageTotals totals )
+        throws IOException
+    {
+        out.write( ",\"lineRate\":" );
+        out.write( String.valueOf( totals.getLineCoverageRate() ) );
+        out.write( ",\"branchRate\":" );
+        out.write( String.valueOf( totals.getBranchCoverageRate() ) );
+        out.write( ",\"linesCovered\":" );
+        out.write( String.valueOf( totals.getCoveredLines() ) );
+        out.write( ",\"linesValid\":" );
+        out.write( String.valueOf( totals.getValidLines() ) );
+        out.write( ",\"branchesCovered\":" );
+        out.write( String.valueOf( totals.getCoveredBranches() ) );
+        out.write( ",\"branchesValid\":" );
+        out.write( String.valueOf( totals.getValidBranches() ) );
+    }
+
+    private void writeString( String value )
+        throws IOException
+    {
+        out.write( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                out.write( '\\' );
+                out.write( c );
+            }
+            else if ( c < 0x20 )
+            {
+                out.write( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                out.write( c );
+            }
+        }
+        out.write( '"' );
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A data file in the compact format, memory-mapped and decoded on demand.
+ * <p/>
+ * Opening the data file only decodes its string table and class directory. The totals of the classes come from the
+ * directory, and the lines and branches of a class are only decoded when the class is read, so the heap needed for
+ * totals, see {@link CoverageSummary}, doesn't grow with the number of lines. The mapped pages are loaded by the
+ * operating system as they are accessed and stay outside the Java heap.
+ *
+ * @see CompactCoverageDataCodec
+ * @since 2.8
+ */
+public class MappedCoverageDataFile
+{
+    private final File dataFile;
+
+    private final ByteBuffer buffer;
+
+    private final String[] strings;
+
+    private final int[][] directory;
+
+    private final int bodiesOffset;
+
+    private final Map<String, int[]> entriesByName;
+
+    /**
+     * Map and index a data file.
+     *
+     * @param dataFile the data file, in the compact format.
+     * @throws IOException if the data file could not be read, or is not in the compact format.
+     */
+    public MappedCoverageDataFile( File dataFile )
+        throws IOException
+    {
+        this.dataFile = dataFile;
+
+        RandomAccessFile file = new RandomAccessFile( dataFile, "r" );
+        try
+        {
+            FileChannel channel = file.getChannel();
+            if ( channel.size() > Integer.MAX_VALUE )
+            {
+                throw new IOException( dataFile + " is too large to be mapped" );
+            }
+            // the mapping stays valid once the channel is closed
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        finally
+        {
+            file.close();
+        }
+
+        ByteBufferInputStream in = new ByteBufferInputStream( buffer.duplicate() );
+        try
+        {
+            DataInputStream data = new DataInputStream( in );
+            CompactCoverageDataCodec.readHeader( data, dataFile );
+            strings = CompactCoverageDataCodec.readStrings( data );
+            directory = CompactCoverageDataCodec.readDirectory( data );
+        }
+        catch ( RuntimeException e )
+        {
+            IOException ioe = new IOException( "Corrupt coverage data file " + dataFile );
+            ioe.initCause( e );
+            throw ioe;
+        }
+        bodiesOffset = in.getPosition();
+
+        entriesByName = new HashMap<String, int[]>( directory.length * 2 );
+        for ( int[] entry : directory )
+        {
+            entriesByName.put( strings[entry[CompactCoverageDataCodec.ENTRY_NAME]], entry );
+        }
+    }
+
+    /**
+     * @return the data file.
+     */
+    public File getDataFile()
+    {
+        return dataFile;
+    }
+
+    /**
+     * @return the number of classes.
+     */
+    public int getNumberOfClasses()
+    {
+        return directory.length;
+    }
+
+    /**
+     * @return the names of the classes, in alphabetical order.
+     */
+    public List<String> getClassNames()
+    {
+        List<String> classNames = new ArrayList<String>( directory.length );
+        for ( int[] entry : directory )
+        {
+            classNames.add( strings[entry[CompactCoverageDataCodec.ENTRY_NAME]] );
+        }
+        return Collections.unmodifiableList( classNames );
+    }
+
+    /**
+     * @param className the name of a class.
+     * @return the totals of the class, or <code>null</code> if there is no such class.
+     */
+    public CoverageTotals getClassTotals( String className )
+    {
+        int[] entry = entriesByName.get( className );
+        return entry == null ? null : getTotals( entry );
+    }
+
+    /**
+     * Decode a class with all its lines and branches.
+     *
+     * @param className the name of the class.
+     * @return the class, or <code>null</code> if there is no such class.
+     * @throws IOException if the class could not be decoded.
+     */
+    public ClassData readClass( String className )
+        throws IOException
+    {
+        int[] entry = entriesByName.get( className );
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        ByteBuffer body = buffer.duplicate();
+        try
+        {
+            body.position( bodiesOffset + entry[CompactCoverageDataCodec.ENTRY_OFFSET] );
+            body.limit( body.position() + entry[CompactCoverageDataCodec.ENTRY_LENGTH] );
+
+            ClassData classData = CompactCoverageDataCodec.createClassData( strings, entry );
+            CompactCoverageDataCodec.readClassBody( new DataInputStream( new ByteBufferInputStream( body ) ),
+                                                    strings, classData );
+            return classData;
+        }
+        catch ( RuntimeException e )
+        {
+            IOException ioe = new IOException( "Corrupt data of class " + className + " in " + dataFile );
+            ioe.initCause( e );
+            throw ioe;
+        }
+    }
+
+    /**
+     * Get the package of a class, the same way as Cobertura does.
+     *
+     * @param className the name of the class.
+     * @return the name of the package, "" for the default package.
+     */
+    public static String getPackageName( String className )
+    {
+        int lastDot = className.lastIndexOf( '.' );
+        return lastDot == -1 ? "" : className.substring( 0, lastDot );
+    }
+
+    private static CoverageTotals getTotals( int[] entry )
+    {
+        return new CoverageTotals( entry[CompactCoverageDataCodec.ENTRY_VALID_LINES],
+                                   entry[CompactCoverageDataCodec.ENTRY_COVERED_LINES],
+                                   entry[CompactCoverageDataCodec.ENTRY_VALID_BRANCHES],
+                                   entry[CompactCoverageDataCodec.ENTRY_COVERED_BRANCHES] );
+    }
+
+    /**
+     * Reads a buffer from its position to its limit.
+     */
+    private static final class ByteBufferInputStream
+        extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        private final int start;
+
+        ByteBufferInputStream( ByteBuffer buffer )
+        {
+            this.buffer = buffer;
+            this.start = buffer.position();
+        }
+
+        int getPosition()
+        {
+            return buffer.position() - start;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+        {
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            if ( !buffer.hasRemaining() )
+            {
+                return -1;
+            }
+            int n = Math.min( len, buffer.remaining() );
+            buffer.get( b, off, n );
+            return n;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Cobertura's own data file format, a Java serialized {@link ProjectData}. This is the only format Cobertura itself,
+ * and so the instrumented classes, can read and write.
+ *
+ * @since 2.8
+ */
+public class SerializedCoverageDataCodec
+    implements CoverageDataCodec
+{
+    /**
+     * The name of the format.
+     */
+    public static final String NAME = "ser";
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ProjectData read( File dataFile )
+        throws IOException
+    {
+        ProjectData projectData = CoverageDataFileHandler.loadCoverageData( dataFile );
+        if ( projectData == null )
+        {
+            throw new IOException( "Unable to read coverage data from " + dataFile );
+        }
+        return projectData;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write( ProjectData projectData, File dataFile )
+        throws IOException
+    {
+        dataFile.delete();
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+        if ( !dataFile.isFile() )
+        {
+            throw new IOException( "Unable to write coverage data to " + dataFile );
+        }
+    }
+}
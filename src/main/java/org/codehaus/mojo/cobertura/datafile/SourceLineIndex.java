@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The lines of a data file indexed by source file and line number, so that the coverage of a line of a source file is
+ * found in constant time. The lines of all the classes of a source file, such as its inner classes, are merged.
+ *
+ * @since 2.8
+ */
+public class SourceLineIndex
+{
+    private final Map<String, Map<Integer, Line>> sourceFiles = new HashMap<String, Map<Integer, Line>>();
+
+    /**
+     * Index the lines of coverage data.
+     *
+     * @param projectData the coverage data.
+     */
+    public SourceLineIndex( ProjectData projectData )
+    {
+        for ( Object object : projectData.getClasses() )
+        {
+            ClassData classData = (ClassData) object;
+            String sourceFileName = classData.getSourceFileName();
+            Map<Integer, Line> lines = sourceFiles.get( sourceFileName );
+            if ( lines == null )
+            {
+                lines = new HashMap<Integer, Line>();
+                sourceFiles.put( sourceFileName, lines );
+            }
+
+            for ( CoverageData coverageData : classData.getLines() )
+            {
+                LineData lineData = (LineData) coverageData;
+                Line line = lines.get( lineData.getLineNumber() );
+                if ( line == null )
+                {
+                    line = new Line();
+                    lines.put( lineData.getLineNumber(), line );
+                }
+                line.hits += lineData.getHits();
+                line.validBranches += lineData.getNumberOfValidBranches();
+                line.coveredBranches += lineData.getNumberOfCoveredBranches();
+            }
+        }
+    }
+
+    /**
+     * Find the source file of a path, which may be relative to any directory above its source root, such as the root
+     * of the repository.
+     *
+     * @param path the path of the file, with <code>/</code> separators.
+     * @return the name of the source file in the data file, such as <code>com/example/Foo.java</code>, or
+     *         <code>null</code> if the path isn't a source file of the data file.
+     */
+    public String findSourceFile( String path )
+    {
+        String suffix = path;
+        while ( true )
+        {
+            if ( sourceFiles.containsKey( suffix ) )
+            {
+                return suffix;
+            }
+            int slash = suffix.indexOf( '/' );
+            if ( slash < 0 )
+            {
+                return null;
+            }
+            suffix = suffix.substring( slash + 1 );
+        }
+    }
+
+    /**
+     * @param sourceFile the name of a source file, as returned by {@link #findSourceFile(String)}.
+     * @param lineNumber the line number.
+     * @return the coverage of the line, or <code>null</code> if the line has no code.
+     */
+    public Line getLine( String sourceFile, int lineNumber )
+    {
+        Map<Integer, Line> lines = sourceFiles.get( sourceFile );
+        return lines == null ? null : lines.get( lineNumber );
+    }
+
+    /**
+     * The coverage of a line of a source file.
+     */
+    public static final class Line
+    {
+        private long hits;
+
+        private int validBranches;
+
+        private int coveredBranches;
+
+        /**
+         * @return the number of times the line was executed.
+         */
+        public long getHits()
+        {
+            return hits;
+        }
+
+        /**
+         * @return the number of branches of the line.
+         */
+        public int getValidBranches()
+        {
+            return validBranches;
+        }
+
+        /**
+         * @return the number of covered branches of the line.
+         */
+        public int getCoveredBranches()
+        {
+            return coveredBranches;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The lines added or changed by a unified diff, as written by <code>git diff</code> or <code>diff -u</code>, by path
+ * of the changed file. Removed files and removed lines are ignored, since they have no coverage.
+ *
+ * @since 2.8
+ */
+public class UnifiedDiff
+{
+    private static final Pattern HUNK = Pattern.compile( "^@@ -\\d+(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*" );
+
+    private final SortedMap<String, SortedSet<Integer>> changedLines;
+
+    private UnifiedDiff( SortedMap<String, SortedSet<Integer>> changedLines )
+    {
+        this.changedLines = Collections.unmodifiableSortedMap( changedLines );
+    }
+
+    /**
+     * Parse a unified diff.
+     *
+     * @param diff the diff.
+     * @return the changed lines of the diff.
+     * @throws IOException if the diff could not be read, or is malformed.
+     */
+    public static UnifiedDiff parse( Reader diff )
+        throws IOException
+    {
+        SortedMap<String, SortedSet<Integer>> changedLines = new TreeMap<String, SortedSet<Integer>>();
+        BufferedReader reader = new BufferedReader( diff );
+
+        String path = null;
+        int oldRemaining = 0;
+        int newRemaining = 0;
+        int newLine = 0;
+        String line;
+        while ( ( line = reader.readLine() ) != null )
+        {
+            if ( oldRemaining > 0 || newRemaining > 0 )
+            {
+                // inside a hunk, where lines starting with +++ or @@ are content
+                char kind = line.length() == 0 ? ' ' : line.charAt( 0 );
+                if ( kind == '+' )
+                {
+                    if ( path != null )
+                    {
+                        SortedSet<Integer> lines = changedLines.get( path );
+                        if ( lines == null )
+                        {
+                            lines = new TreeSet<Integer>();
+                            changedLines.put( path, lines );
+                        }
+                        lines.add( newLine );
+                    }
+                    newLine++;
+                    newRemaining--;
+                }
+                else if ( kind == '-' )
+                {
+                    oldRemaining--;
+                }
+                else if ( kind != '\\' )
+                {
+                    newLine++;
+                    newRemaining--;
+                    oldRemaining--;
+                }
+            }
+            else if ( line.startsWith( "+++ " ) )
+            {
+                path = getPath( line.substring( 4 ) );
+            }
+            else if ( line.startsWith( "@@ " ) )
+            {
+                Matcher matcher = HUNK.matcher( line );
+                if ( !matcher.matches() )
+                {
+                    throw new IOException( "Malformed hunk header in diff: " + line );
+                }
+                oldRemaining = matcher.group( 1 ) == null ? 1 : Integer.parseInt( matcher.group( 1 ) );
+                newLine = Integer.parseInt( matcher.group( 2 ) );
+                newRemaining = matcher.group( 3 ) == null ? 1 : Integer.parseInt( matcher.group( 3 ) );
+            }
+        }
+
+        return new UnifiedDiff( changedLines );
+    }
+
+    /**
+     * @param header the file name of a <code>+++</code> header, maybe followed by a tab and a timestamp.
+     * @return the path of the file, without the <code>b/</code> prefix of git, or <code>null</code> if the file was
+     *         removed.
+     */
+    private static String getPath( String header )
+    {
+        String path = header;
+        int tab = path.indexOf( '\t' );
+        if ( tab >= 0 )
+        {
+            path = path.substring( 0, tab );
+        }
+        path = path.trim();
+        if ( "/dev/null".equals( path ) )
+        {
+            return null;
+        }
+        if ( path.length() > 2 && path.startsWith( "\"" ) && path.endsWith( "\"" ) )
+        {
+            path = path.substring( 1, path.length() - 1 );
+        }
+        if ( path.startsWith( "b/" ) )
+        {
+            path = path.substring( 2 );
+        }
+        return path.replace( '\\', '/' );
+    }
+
+    /**
+     * @return the numbers of the added or changed lines, by path of the changed file.
+     */
+    public SortedMap<String, SortedSet<Integer>> getChangedLines()
+    {
+        return changedLines;
+    }
+}
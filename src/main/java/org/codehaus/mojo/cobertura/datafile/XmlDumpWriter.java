@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.util.Header;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.NumberFormat;
+import java.util.Date;
+
+/**
+ * Writes the dump in the XML format of earlier versions of <code>dump-datafile</code>, with optional
+ * <code>class</code> and <code>line</code> elements.
+ *
+ * @since 2.8
+ */
+class XmlDumpWriter
+    extends CoverageDumpWriter
+{
+    private final NumberFormat percentage = NumberFormat.getPercentInstance();
+
+    private final NumberFormat integer = NumberFormat.getIntegerInstance();
+
+    /**
+     * Whether the start tag of the current package or class is still open, so that it is closed as an empty
+     * element if nothing is written inside it.
+     */
+    private boolean open;
+
+    XmlDumpWriter( Writer out )
+    {
+        super( out );
+    }
+
+    public void startProject( CoverageTotals totals )
+        throws IOException
+    {
+        out.write( "<?xml version=\"1.0\"?>\n<coverage" );
+        writeTotals( totals );
+        out.write( " version=\"" );
+        out.write( Header.version() );
+        out.write( "\" timestamp=\"" );
+        out.write( String.valueOf( new Date().getTime() ) );
+        out.write( "\">\n" );
+    }
+
+    public void startPackage( String packageName, CoverageTotals totals )
+        throws IOException
+    {
+        out.write( "<package name=\"" );
+        writeEscaped( packageName );
+        out.write( '"' );
+        writeTotals( totals );
+        open = true;
+    }
+
+    public void startClass( String className, CoverageTotals totals )
+        throws IOException
+    {
+        closeStartTag();
+        out.write( "  <class name=\"" );
+        writeEscaped( className );
+        out.write( '"' );
+        writeTotals( totals );
+        open = true;
+    }
+
+    public void line( String className, LineData line )
+        throws IOException
+    {
+        closeStartTag();
+        out.write( "    <line number=\"" );
+        out.write( String.valueOf( line.getLineNumber() ) );
+        out.write( "\" hits=\"" );
+        out.write( String.valueOf( line.getHits() ) );
+        out.write( "\" branch=\"" );
+        out.write( String.valueOf( line.hasBranch() ) );
+        if ( line.hasBranch() )
+        {
+            out.write( "\" condition-coverage=\"" );
+            out.write( line.getConditionCoverage() );
+        }
+        out.write( "\" />\n" );
+    }
+
+    public void endClass()
+        throws IOException
+    {
+        endElement( "  </class>\n" );
+    }
+
+    public void endPackage()
+        throws IOException
+    {
+        endElement( "</package>\n" );
+    }
+
+    public void endProject()
+        throws IOException
+    {
+        out.write( "</coverage>\n" );
+        super.endProject();
+    }
+
+    private void writeTotals( CoverageTotals totals )
+        throws IOException
+    {
+        out.write( " line-rate=\"" );
+        out.write( percentage.format( totals.getLineCoverageRate() ) );
+        out.write( "\" branch-rate=\"" );
+        out.write( percentage.format( totals.getBranchCoverageRate() ) );
+        out.write( "\" lines-covered=\"" );
+        out.write( integer.format( totals.getCoveredLines() ) );
+        out.write( "\" lines-valid=\"" );
+        out.write( integer.format( totals.getValidLines() ) );
+        out.write( "\" branches-covered=\"" );
+        out.write( integer.format( totals.getCoveredBranches() ) );
+        out.write( "\" branches-valid=\"" );
+        out.write( integer.format( totals.getValidBranches() ) );
+        out.write( '"' );
+    }
+
+    private void closeStartTag()
+        throws IOException
+    {
+        if ( open )
+        {
+            out.write( ">\n" );
+            open = false;
+        }
+    }
+
+    private void endElement( String endTag )
+        throws IOException
+    {
+        if ( open )
+        {
+            out.write( " />\n" );
+            open = false;
+        }
+        else
+        {
+            out.write( endTag );
+        }
+    }
+
+    private void writeEscaped( String value )
+        throws IOException
+    {
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '<':
+                    out.write( "&lt;" );
+                    break;
+                case '>':
+                    out.write( "&gt;" );
+                    break;
+                case '&':
+                    out.write( "&amp;" );
+                    break;
+                case '"':
+                    out.write( "&quot;" );
+                    break;
+                default:
+                    out.write( c );
+            }
+        }
+    }
+}
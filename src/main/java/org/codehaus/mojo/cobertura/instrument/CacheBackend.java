@@ -0,0 +1,52 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A store of the archives of the {@link InstrumentationCache}.
+ *
+ * @since 2.8
+ */
+public interface CacheBackend
+{
+    /**
+     * Fetch an archive.
+     *
+     * @param key    the cache key.
+     * @param target the file to write the archive to.
+     * @return <code>true</code> if the archive was found, <code>false</code> on a cache miss.
+     * @throws IOException if the store could not be read.
+     */
+    boolean fetch( String key, File target )
+        throws IOException;
+
+    /**
+     * Store an archive, replacing any archive with the same key.
+     *
+     * @param key     the cache key.
+     * @param archive the archive.
+     * @throws IOException if the store could not be written.
+     */
+    void store( String key, File archive )
+        throws IOException;
+}
@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps the archives of the {@link InstrumentationCache} in a directory, which may be shared by several builds.
+ *
+ * @since 2.8
+ */
+public class DirectoryCacheBackend
+    implements CacheBackend
+{
+    private final File directory;
+
+    /**
+     * @param directory the directory of the archives, created when needed.
+     */
+    public DirectoryCacheBackend( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean fetch( String key, File target )
+        throws IOException
+    {
+        File archive = getArchive( key );
+        if ( !archive.isFile() )
+        {
+            return false;
+        }
+        FileUtils.copyFile( archive, target );
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store( String key, File archive )
+        throws IOException
+    {
+        directory.mkdirs();
+
+        // write aside and rename, so that concurrent builds never see a partial archive
+        File temp = File.createTempFile( key, ".tmp", directory );
+        try
+        {
+            FileUtils.copyFile( archive, temp );
+            File target = getArchive( key );
+            if ( !temp.renameTo( target ) )
+            {
+                target.delete();
+                if ( !temp.renameTo( target ) )
+                {
+                    throw new IOException( "Unable to write " + target );
+                }
+            }
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    private File getArchive( String key )
+    {
+        return new File( directory, key + ".zip" );
+    }
+
+    @Override
+    public String toString()
+    {
+        return directory.getPath();
+    }
+}
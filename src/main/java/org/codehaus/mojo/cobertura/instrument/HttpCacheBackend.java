@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Keeps the archives of the {@link InstrumentationCache} on an HTTP server, which answers <code>GET</code> and
+ * <code>PUT</code> requests on <code>&lt;url&gt;/&lt;key&gt;.zip</code>, like most build cache servers and WebDAV
+ * shares do.
+ *
+ * @since 2.8
+ */
+public class HttpCacheBackend
+    implements CacheBackend
+{
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private static final int READ_TIMEOUT = 60000;
+
+    private final String url;
+
+    /**
+     * @param url the base URL of the archives.
+     */
+    public HttpCacheBackend( String url )
+    {
+        this.url = url.endsWith( "/" ) ? url : url + "/";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean fetch( String key, File target )
+        throws IOException
+    {
+        HttpURLConnection connection = open( key );
+        try
+        {
+            int status = connection.getResponseCode();
+            if ( status == HttpURLConnection.HTTP_NOT_FOUND )
+            {
+                return false;
+            }
+            if ( status != HttpURLConnection.HTTP_OK )
+            {
+                throw new IOException( "GET " + connection.getURL() + " returned " + status );
+            }
+
+            InputStream in = connection.getInputStream();
+            OutputStream out = null;
+            try
+            {
+                out = new FileOutputStream( target );
+                IOUtil.copy( in, out );
+            }
+            finally
+            {
+                IOUtil.close( out );
+                IOUtil.close( in );
+            }
+            return true;
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store( String key, File archive )
+        throws IOException
+    {
+        HttpURLConnection connection = open( key );
+        try
+        {
+            connection.setRequestMethod( "PUT" );
+            connection.setDoOutput( true );
+            connection.setRequestProperty( "Content-Type", "application/zip" );
+            connection.setFixedLengthStreamingMode( (int) archive.length() );
+
+            InputStream in = new FileInputStream( archive );
+            OutputStream out = null;
+            try
+            {
+                out = connection.getOutputStream();
+                IOUtil.copy( in, out );
+            }
+            finally
+            {
+                IOUtil.close( out );
+                IOUtil.close( in );
+            }
+
+            int status = connection.getResponseCode();
+            if ( status / 100 != 2 )
+            {
+                throw new IOException( "PUT " + connection.getURL() + " returned " + status );
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open( String key )
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( url + key + ".zip" ).openConnection();
+        connection.setConnectTimeout( CONNECT_TIMEOUT );
+        connection.setReadTimeout( READ_TIMEOUT );
+        connection.setUseCaches( false );
+        return connection;
+    }
+
+    @Override
+    public String toString()
+    {
+        return url;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A build cache of the instrumented classes and the data file written by the instrumentation.
+ * <p/>
+ * The cache key is the hash of the compiled classes, of the data file the instrumentation starts from, and of the
+ * settings which affect the instrumentation: the Cobertura version, the instrumentation configuration and the
+ * dependencies. Absolute paths are left out, so that builds of the same commit in different workspaces share their
+ * entries. An entry is a zip archive of the instrumented classes and the data file; the classes which are not
+ * instrumented are staged from the compiled classes as usual, after the entry has been restored. An entry which can't
+ * be restored, e.g. a truncated archive, is a cache miss.
+ *
+ * @since 2.8
+ */
+public class InstrumentationCache
+{
+    private static final String CLASSES_PREFIX = "classes/";
+
+    private static final String DATA_FILE_ENTRY = "cobertura.ser";
+
+    private final List<CacheBackend> backends;
+
+    private final Log log;
+
+    /**
+     * @param backends the stores to use, the first ones are tried first, e.g. a local directory before a remote
+     *                 server.
+     * @param log      the log to report to.
+     */
+    public InstrumentationCache( List<CacheBackend> backends, Log log )
+    {
+        this.backends = new ArrayList<CacheBackend>( backends );
+        this.log = log;
+    }
+
+    /**
+     * Compute the cache key of an instrumentation.
+     *
+     * @param outputDirectory the compiled classes.
+     * @param settings        the settings which affect the instrumentation, without absolute paths.
+     * @param dataFile        the data file the instrumentation adds to, which may not exist yet.
+     * @return the cache key.
+     * @throws IOException if the classes or the data file could not be read.
+     */
+    public static String computeKey( File outputDirectory, String settings, File dataFile )
+        throws IOException
+    {
+        StringBuilder description = new StringBuilder( settings ).append( '\n' );
+        description.append( "datafile=" )
+            .append( dataFile.isFile() ? InstrumentationManifest.hash( dataFile ) : "none" ).append( '\n' );
+
+        //noinspection unchecked
+        List<String> filenames = FileUtils.getFileNames( outputDirectory, "**/*.class", null, false );
+        for ( String filename : new TreeSet<String>( filenames ) )
+        {
+            description.append( filename.replace( File.separatorChar, '/' ) ).append( '=' )
+                .append( InstrumentationManifest.hash( new File( outputDirectory, filename ) ) ).append( '\n' );
+        }
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            return InstrumentationManifest.hex( digest.digest( description.toString().getBytes( "UTF-8" ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported", e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 is not supported", e );
+        }
+    }
+
+    /**
+     * Restore the instrumented classes and the data file of an entry. Stores which fail, or whose entry can't be
+     * restored, are skipped with a warning, and the stores tried before the one which had the entry get a copy of it.
+     * A failed restore may have written some classes, but never the data file.
+     *
+     * @param key                   the cache key.
+     * @param instrumentedDirectory the instrumentation directory.
+     * @param dataFile              the data file.
+     * @param restoredPaths         receives the paths of the restored classes, relative to the directory.
+     * @return the size of the restored archive, or <code>-1</code> on a cache miss.
+     * @throws IOException if no temporary file could be created.
+     */
+    public long restore( String key, File instrumentedDirectory, File dataFile, Collection<String> restoredPaths )
+        throws IOException
+    {
+        File archive = File.createTempFile( "cobertura-cache", ".zip" );
+        try
+        {
+            List<CacheBackend> missed = new ArrayList<CacheBackend>();
+            for ( CacheBackend backend : backends )
+            {
+                boolean found;
+                try
+                {
+                    found = backend.fetch( key, archive );
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Unable to read the build cache " + backend + ": " + e.getMessage() );
+                    continue;
+                }
+
+                if ( found )
+                {
+                    try
+                    {
+                        restoredPaths.addAll( unpack( archive, instrumentedDirectory, dataFile ) );
+                        log.info( "Restored the instrumented classes from the build cache " + backend );
+                        store( missed, key, archive );
+                        return archive.length();
+                    }
+                    catch ( IOException e )
+                    {
+                        // e.g. a truncated archive, which the next save replaces
+                        log.warn( "Unable to restore the entry of the build cache " + backend + ": " + e.getMessage() );
+                    }
+                }
+                missed.add( backend );
+            }
+            return -1;
+        }
+        finally
+        {
+            archive.delete();
+        }
+    }
+
+    /**
+     * Save the instrumented classes and the data file into all the stores. Stores which fail are skipped with a
+     * warning.
+     *
+     * @param key                   the cache key.
+     * @param instrumentedDirectory the instrumentation directory.
+     * @param paths                 the paths of the instrumented classes, relative to the directory.
+     * @param dataFile              the data file.
+     * @return the size of the saved archive.
+     * @throws IOException if the archive could not be written.
+     */
+    public long save( String key, File instrumentedDirectory, Collection<String> paths, File dataFile )
+        throws IOException
+    {
+        File archive = File.createTempFile( "cobertura-cache", ".zip" );
+        try
+        {
+            pack( archive, instrumentedDirectory, paths, dataFile );
+            store( backends, key, archive );
+            return archive.length();
+        }
+        finally
+        {
+            archive.delete();
+        }
+    }
+
+    private void store( List<CacheBackend> targets, String key, File archive )
+    {
+        for ( CacheBackend backend : targets )
+        {
+            try
+            {
+                backend.store( key, archive );
+                log.debug( "Stored the instrumented classes into the build cache " + backend );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Unable to write the build cache " + backend + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    private static void pack( File archive, File instrumentedDirectory, Collection<String> paths, File dataFile )
+        throws IOException
+    {
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( archive ) );
+        try
+        {
+            for ( String path : new TreeSet<String>( paths ) )
+            {
+                File file = new File( instrumentedDirectory, path );
+                if ( file.isFile() )
+                {
+                    addEntry( out, CLASSES_PREFIX + path, file );
+                }
+            }
+            if ( dataFile.isFile() )
+            {
+                addEntry( out, DATA_FILE_ENTRY, dataFile );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private static void addEntry( ZipOutputStream out, String name, File file )
+        throws IOException
+    {
+        out.putNextEntry( new ZipEntry( name ) );
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            IOUtil.copy( in, out );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        out.closeEntry();
+    }
+
+    private static List<String> unpack( File archive, File instrumentedDirectory, File dataFile )
+        throws IOException
+    {
+        List<String> paths = new ArrayList<String>();
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            // read everything once before writing anything, so that a corrupt archive leaves the staged classes alone
+            List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            String root = instrumentedDirectory.getCanonicalPath() + File.separator;
+            for ( Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); )
+            {
+                ZipEntry entry = e.nextElement();
+                if ( entry.getName().startsWith( CLASSES_PREFIX ) && !new File( instrumentedDirectory, entry.getName()
+                    .substring( CLASSES_PREFIX.length() ) ).getCanonicalPath().startsWith( root ) )
+                {
+                    throw new IOException( "Invalid entry " + entry.getName() + " in the cached archive" );
+                }
+                InputStream in = zip.getInputStream( entry );
+                try
+                {
+                    IOUtil.copy( in, new NullOutputStream() );
+                }
+                finally
+                {
+                    IOUtil.close( in );
+                }
+                entries.add( entry );
+            }
+
+            ZipEntry dataFileEntry = null;
+            for ( ZipEntry entry : entries )
+            {
+                if ( entry.getName().startsWith( CLASSES_PREFIX ) )
+                {
+                    String path = entry.getName().substring( CLASSES_PREFIX.length() );
+                    extract( zip, entry, new File( instrumentedDirectory, path ) );
+                    paths.add( path );
+                }
+                else if ( DATA_FILE_ENTRY.equals( entry.getName() ) )
+                {
+                    dataFileEntry = entry;
+                }
+            }
+
+            // the data file is replaced at once and last, so that a failed restore leaves it alone
+            if ( dataFileEntry != null )
+            {
+                dataFile.getParentFile().mkdirs();
+                File restored = new File( dataFile.getPath() + ".restored" );
+                extract( zip, dataFileEntry, restored );
+                dataFile.delete();
+                if ( !restored.renameTo( dataFile ) )
+                {
+                    restored.delete();
+                    throw new IOException( "Unable to replace " + dataFile );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return paths;
+    }
+
+    private static void extract( ZipFile zip, ZipEntry entry, File target )
+        throws IOException
+    {
+        target.getParentFile().mkdirs();
+        // never write through a staged hard link
+        target.delete();
+        InputStream in = zip.getInputStream( entry );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( target );
+            IOUtil.copy( in, out );
+        }
+        finally
+        {
+            IOUtil.close( out );
+            IOUtil.close( in );
+        }
+    }
+
+    private static class NullOutputStream
+        extends OutputStream
+    {
+        @Override
+        public void write( int b )
+        {
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+        }
+    }
+}
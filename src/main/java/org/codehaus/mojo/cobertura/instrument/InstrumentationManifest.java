@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Remembers the content hash of every file of the instrumentation input directory, and of the file produced from it
+ * in the instrumentation output directory, so that the next build only has to instrument what changed.
+ * <p/>
+ * The manifest also records the instrumentation settings it was built with. When these change, the manifest is
+ * worthless and must be {@link #clear() cleared}.
+ *
+ * @since 2.8
+ */
+public class InstrumentationManifest
+{
+    /**
+     * The name of the manifest file, which lives next to the data file.
+     */
+    public static final String FILENAME = "cobertura-manifest.properties";
+
+    private static final String SETTINGS_KEY = "settings";
+
+    private static final String INPUT_PREFIX = "input.";
+
+    private static final String OUTPUT_PREFIX = "output.";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+
+    private final Properties properties = new Properties();
+
+    /**
+     * Create an empty manifest.
+     *
+     * @param file the file the manifest is stored in.
+     */
+    public InstrumentationManifest( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * Load a manifest.
+     *
+     * @param file the file the manifest is stored in.
+     * @return the manifest, empty if the file doesn't exist.
+     * @throws IOException if the file could not be read.
+     */
+    public static InstrumentationManifest load( File file )
+        throws IOException
+    {
+        InstrumentationManifest manifest = new InstrumentationManifest( file );
+        if ( file.isFile() )
+        {
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                manifest.properties.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Store the manifest.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void save()
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            properties.store( out, "Generated by cobertura-maven-plugin, do not edit" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * Forget all files and settings.
+     */
+    public void clear()
+    {
+        properties.clear();
+    }
+
+    /**
+     * @return the settings the manifest was built with, or <code>null</code> if unknown.
+     */
+    public String getSettings()
+    {
+        return properties.getProperty( SETTINGS_KEY );
+    }
+
+    /**
+     * @param settings the settings the manifest is built with.
+     */
+    public void setSettings( String settings )
+    {
+        properties.setProperty( SETTINGS_KEY, settings );
+    }
+
+    /**
+     * @return the paths of all known files, relative to the input directory and separated by '/'.
+     */
+    public Set<String> getPaths()
+    {
+        Set<String> paths = new TreeSet<String>();
+        for ( Object key : properties.keySet() )
+        {
+            String name = (String) key;
+            if ( name.startsWith( INPUT_PREFIX ) )
+            {
+                paths.add( name.substring( INPUT_PREFIX.length() ) );
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @param path the path of the file.
+     * @return the hash of the input file, or <code>null</code> if the file is unknown.
+     */
+    public String getInputHash( String path )
+    {
+        return properties.getProperty( INPUT_PREFIX + path );
+    }
+
+    /**
+     * @param path the path of the file.
+     * @return the hash of the output file, or <code>null</code> if the file is unknown or has not been produced yet.
+     */
+    public String getOutputHash( String path )
+    {
+        return properties.getProperty( OUTPUT_PREFIX + path );
+    }
+
+    /**
+     * @param path      the path of the file.
+     * @param inputHash the hash of the input file.
+     */
+    public void setInputHash( String path, String inputHash )
+    {
+        properties.setProperty( INPUT_PREFIX + path, inputHash );
+        properties.remove( OUTPUT_PREFIX + path );
+    }
+
+    /**
+     * @param path       the path of the file.
+     * @param outputHash the hash of the output file.
+     */
+    public void setOutputHash( String path, String outputHash )
+    {
+        properties.setProperty( OUTPUT_PREFIX + path, outputHash );
+    }
+
+    /**
+     * @param path the path of the file to forget.
+     */
+    public void remove( String path )
+    {
+        properties.remove( INPUT_PREFIX + path );
+        properties.remove( OUTPUT_PREFIX + path );
+    }
+
+    /**
+     * Compute the content hash of a file.
+     *
+     * @param file the file.
+     * @return the hex encoded SHA-1 of the content.
+     * @throws IOException if the file could not be read.
+     */
+    public static String hash( File file )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported", e );
+        }
+
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        return hex( digest.digest() );
+    }
+
+    /**
+     * @param bytes the bytes.
+     * @return the bytes, hex encoded.
+     */
+    static String hex( byte[] bytes )
+    {
+        char[] chars = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars[2 * i] = HEX[( bytes[i] >> 4 ) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String( chars );
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stages the compiled classes and resources into the instrumentation directory.
+ * <p/>
+ * Only the files which Cobertura is going to rewrite are physically copied. All other files are hard linked, which
+ * costs no I/O at all. Hard links are created with <code>java.nio.file.Files.createLink</code> when the running JVM
+ * provides it. When it doesn't, or the file system doesn't support links, the remaining files are copied by a pool of
+ * threads.
+ * <p/>
+ * Since a hard link shares its content with the original file, a staged file must never be written to in place: it is
+ * always deleted first, both here and by anything else writing into the instrumentation directory.
+ * When the instrumentation directory becomes the output directory of the project, the plugins running later may
+ * rewrite its classes in place, e.g. to weave or enhance them, so the classes are then copied as well, see
+ * {@link #setLinkClasses(boolean)}.
+ *
+ * @since 2.8
+ */
+public class InstrumentationStaging
+{
+    private static final Method TO_PATH;
+
+    private static final Method CREATE_LINK;
+
+    static
+    {
+        Method toPath = null;
+        Method createLink = null;
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            Class<?> filesClass = Class.forName( "java.nio.file.Files" );
+            toPath = File.class.getMethod( "toPath" );
+            createLink = filesClass.getMethod( "createLink", pathClass, pathClass );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            // Java 6, always copy
+        }
+        catch ( NoSuchMethodException e )
+        {
+            // Java 6, always copy
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    private final File sourceDirectory;
+
+    private final File targetDirectory;
+
+    private final Set<String> rewrittenFiles;
+
+    private final int threads;
+
+    private volatile boolean linksSupported = CREATE_LINK != null;
+
+    private boolean linkClasses = true;
+
+    private int linked;
+
+    private int copied;
+
+    private final AtomicLong copiedBytes = new AtomicLong();
+
+    /**
+     * @param sourceDirectory the directory with the compiled classes.
+     * @param targetDirectory the instrumentation directory.
+     * @param rewrittenFiles  the paths of the files which are going to be instrumented, relative to the directories and
+     *                        separated by '/'.
+     */
+    public InstrumentationStaging( File sourceDirectory, File targetDirectory, Set<String> rewrittenFiles )
+    {
+        this( sourceDirectory, targetDirectory, rewrittenFiles, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param sourceDirectory the directory with the compiled classes.
+     * @param targetDirectory the instrumentation directory.
+     * @param rewrittenFiles  the paths of the files which are going to be instrumented, relative to the directories and
+     *                        separated by '/'.
+     * @param threads         the number of threads used for copying.
+     */
+    public InstrumentationStaging( File sourceDirectory, File targetDirectory, Set<String> rewrittenFiles,
+                                   int threads )
+    {
+        this.sourceDirectory = sourceDirectory;
+        this.targetDirectory = targetDirectory;
+        this.rewrittenFiles = rewrittenFiles;
+        this.threads = Math.max( 1, threads );
+    }
+
+    /**
+     * Stage files into the instrumentation directory.
+     *
+     * @param paths          the paths of the files, relative to the directories and separated by '/'.
+     * @param onlyIfModified <code>true</code> to leave staged files alone when they are still links to, or untouched
+     *                       copies of, the originals, <code>false</code> to always stage them again. Files which are
+     *                       going to be rewritten are always staged again, since the previous build rewrote them.
+     * @throws IOException if a file could not be staged.
+     */
+    public void stage( Collection<String> paths, boolean onlyIfModified )
+        throws IOException
+    {
+        List<String> copies = new ArrayList<String>();
+        for ( String path : paths )
+        {
+            File source = new File( sourceDirectory, path );
+            File target = new File( targetDirectory, path );
+            if ( onlyIfModified && !rewrittenFiles.contains( path ) && isStaged( source, target ) )
+            {
+                continue;
+            }
+
+            if ( target.exists() && !target.delete() )
+            {
+                throw new IOException( "Unable to delete " + target );
+            }
+            target.getParentFile().mkdirs();
+
+            if ( rewrittenFiles.contains( path ) || ( !linkClasses && path.endsWith( ".class" ) )
+                || !link( source, target ) )
+            {
+                copies.add( path );
+            }
+            else
+            {
+                linked++;
+            }
+        }
+
+        copyAll( copies );
+        copied += copies.size();
+    }
+
+    /**
+     * @param linkClasses <code>true</code> to hard link the classes which aren't rewritten, like any other file,
+     *                    <code>false</code> to copy them, so that rewriting them in place later doesn't also rewrite
+     *                    the compiled classes.
+     */
+    public void setLinkClasses( boolean linkClasses )
+    {
+        this.linkClasses = linkClasses;
+    }
+
+    /**
+     * @return the number of files staged as hard links so far.
+     */
+    public int getLinked()
+    {
+        return linked;
+    }
+
+    /**
+     * @return the number of files staged as copies so far.
+     */
+    public int getCopied()
+    {
+        return copied;
+    }
+
+    /**
+     * @return the number of bytes copied so far.
+     * @since 2.8
+     */
+    public long getCopiedBytes()
+    {
+        return copiedBytes.get();
+    }
+
+    /**
+     * A hard link shares its modification time with the original, and a copy is given the one of the original, so a
+     * staged file which was rewritten since, e.g. instrumented by a previous build, has another modification time.
+     */
+    private static boolean isStaged( File source, File target )
+    {
+        return target.isFile() && target.lastModified() == source.lastModified()
+            && target.length() == source.length();
+    }
+
+    private boolean link( File source, File target )
+    {
+        if ( !linksSupported )
+        {
+            return false;
+        }
+
+        try
+        {
+            CREATE_LINK.invoke( null, TO_PATH.invoke( target ), TO_PATH.invoke( source ) );
+            return true;
+        }
+        catch ( IllegalAccessException e )
+        {
+            linksSupported = false;
+        }
+        catch ( InvocationTargetException e )
+        {
+            // no link support on this file system, or across file systems
+            linksSupported = false;
+        }
+        return false;
+    }
+
+    private void copyAll( List<String> paths )
+        throws IOException
+    {
+        if ( paths.size() < 2 || threads == 1 )
+        {
+            for ( String path : paths )
+            {
+                copy( new File( sourceDirectory, path ), new File( targetDirectory, path ) );
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, paths.size() ) );
+        try
+        {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for ( final String path : paths )
+            {
+                results.add( executor.submit( new Callable<Object>()
+                {
+                    public Object call()
+                        throws IOException
+                    {
+                        copy( new File( sourceDirectory, path ), new File( targetDirectory, path ) );
+                        return null;
+                    }
+                } ) );
+            }
+
+            for ( Future<Object> result : results )
+            {
+                result.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( "Interrupted while staging files" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( "Unable to stage files: " + e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void copy( File source, File target )
+        throws IOException
+    {
+        FileInputStream in = new FileInputStream( source );
+        FileOutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( target );
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while ( position < size )
+            {
+                position += inChannel.transferTo( position, size - position, outChannel );
+            }
+            copiedBytes.addAndGet( size );
+        }
+        finally
+        {
+            IOUtil.close( out );
+            IOUtil.close( in );
+        }
+        target.setLastModified( source.lastModified() );
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the files of a directory matching Ant-style include and exclude patterns, like Plexus'
+ * <code>DirectoryScanner</code>, with several threads.
+ * <p/>
+ * The patterns are compiled once. Every directory carries the state of each pattern, i.e. which of its segments may
+ * come next, so that a path is never matched again from its root; and directories no include can match below, or
+ * which an exclude matches entirely, such as <code>**&#47;.svn/**</code>, are not walked at all.
+ *
+ * @since 2.8
+ */
+public class PathScanner
+{
+    private static final String ANY_DIRECTORIES = "**";
+
+    private final List<Glob> includes;
+
+    private final List<Glob> excludes;
+
+    private final int threads;
+
+    /**
+     * @param includes the include patterns, all files are included if empty.
+     * @param excludes the exclude patterns.
+     * @param threads  the number of threads walking the directory.
+     */
+    public PathScanner( List<String> includes, List<String> excludes, int threads )
+    {
+        this.includes = compile( includes.isEmpty() ? Collections.singletonList( ANY_DIRECTORIES ) : includes );
+        this.excludes = compile( excludes );
+        this.threads = Math.max( 1, threads );
+    }
+
+    /**
+     * @param patterns the patterns.
+     * @return <code>true</code> if the patterns are all supported by this scanner, <code>false</code> for the
+     *         <code>%regex[]</code> and <code>%ant[]</code> syntaxes.
+     */
+    public static boolean isSupported( List<String> patterns )
+    {
+        for ( String pattern : patterns )
+        {
+            if ( pattern.startsWith( "%regex[" ) || pattern.startsWith( "%ant[" ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the matching files.
+     *
+     * @param basedir the directory to scan.
+     * @return the paths of the files relative to the directory, with the platform separator, sorted.
+     * @throws InterruptedException if the scan was interrupted.
+     */
+    public List<String> scan( File basedir )
+        throws InterruptedException
+    {
+        final Queue<String> found = new ConcurrentLinkedQueue<String>();
+        if ( !basedir.isDirectory() )
+        {
+            return new ArrayList<String>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            Walk walk = new Walk( executor, found );
+            walk.submit( basedir, "", initialStates( includes ), initialStates( excludes ) );
+            walk.await();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        List<String> paths = new ArrayList<String>( found );
+        Collections.sort( paths );
+        return paths;
+    }
+
+    private static List<Glob> compile( List<String> patterns )
+    {
+        List<Glob> globs = new ArrayList<Glob>( patterns.size() );
+        for ( String pattern : patterns )
+        {
+            globs.add( new Glob( pattern ) );
+        }
+        return globs;
+    }
+
+    private static BitSet[] initialStates( List<Glob> globs )
+    {
+        BitSet[] states = new BitSet[globs.size()];
+        for ( int i = 0; i < states.length; i++ )
+        {
+            BitSet start = new BitSet();
+            start.set( 0 );
+            states[i] = globs.get( i ).closure( start );
+        }
+        return states;
+    }
+
+    private static BitSet[] next( List<Glob> globs, BitSet[] states, String name )
+    {
+        BitSet[] next = new BitSet[states.length];
+        for ( int i = 0; i < states.length; i++ )
+        {
+            next[i] = globs.get( i ).next( states[i], name );
+        }
+        return next;
+    }
+
+    /**
+     * The walk of one directory tree, a task per directory.
+     */
+    private class Walk
+    {
+        private final ExecutorService executor;
+
+        private final Queue<String> found;
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        Walk( ExecutorService executor, Queue<String> found )
+        {
+            this.executor = executor;
+            this.found = found;
+        }
+
+        void submit( final File directory, final String path, final BitSet[] includeStates,
+                     final BitSet[] excludeStates )
+        {
+            pending.incrementAndGet();
+            executor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        visit( directory, path, includeStates, excludeStates );
+                    }
+                    finally
+                    {
+                        if ( pending.decrementAndGet() == 0 )
+                        {
+                            done.countDown();
+                        }
+                    }
+                }
+            } );
+        }
+
+        void await()
+            throws InterruptedException
+        {
+            done.await();
+        }
+
+        private void visit( File directory, String path, BitSet[] includeStates, BitSet[] excludeStates )
+        {
+            File[] files = directory.listFiles();
+            if ( files == null )
+            {
+                return;
+            }
+
+            for ( File file : files )
+            {
+                String name = file.getName();
+                String filePath = path + name;
+                BitSet[] fileIncludeStates = next( includes, includeStates, name );
+                BitSet[] fileExcludeStates = next( excludes, excludeStates, name );
+                if ( file.isDirectory() )
+                {
+                    if ( canIncludeBelow( fileIncludeStates ) && !excludesAllBelow( fileExcludeStates ) )
+                    {
+                        submit( file, filePath + File.separatorChar, fileIncludeStates, fileExcludeStates );
+                    }
+                }
+                else if ( matchesAny( includes, fileIncludeStates ) && !matchesAny( excludes, fileExcludeStates ) )
+                {
+                    found.add( filePath );
+                }
+            }
+        }
+
+        private boolean canIncludeBelow( BitSet[] states )
+        {
+            for ( int i = 0; i < states.length; i++ )
+            {
+                if ( includes.get( i ).canMatchBelow( states[i] ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean excludesAllBelow( BitSet[] states )
+        {
+            for ( int i = 0; i < states.length; i++ )
+            {
+                if ( excludes.get( i ).matchesAllBelow( states[i] ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean matchesAny( List<Glob> globs, BitSet[] states )
+    {
+        for ( int i = 0; i < states.length; i++ )
+        {
+            if ( globs.get( i ).matches( states[i] ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A compiled pattern. Its state is the set of indexes of the segments which may match the next path segment,
+     * where the index of the end of the pattern means the path matched.
+     */
+    private static final class Glob
+    {
+        private final String[] segments;
+
+        private final Pattern[] regexes;
+
+        Glob( String pattern )
+        {
+            String normalized = pattern.trim().replace( '\\', '/' );
+            if ( normalized.endsWith( "/" ) )
+            {
+                normalized += ANY_DIRECTORIES;
+            }
+            while ( normalized.startsWith( "/" ) )
+            {
+                normalized = normalized.substring( 1 );
+            }
+
+            List<String> parts = new ArrayList<String>();
+            for ( String part : normalized.split( "/" ) )
+            {
+                // consecutive ** match the same as one
+                if ( part.length() > 0 && !( ANY_DIRECTORIES.equals( part ) && !parts.isEmpty()
+                    && ANY_DIRECTORIES.equals( parts.get( parts.size() - 1 ) ) ) )
+                {
+                    parts.add( part );
+                }
+            }
+            segments = parts.toArray( new String[parts.size()] );
+
+            regexes = new Pattern[segments.length];
+            for ( int i = 0; i < segments.length; i++ )
+            {
+                String segment = segments[i];
+                if ( !ANY_DIRECTORIES.equals( segment ) && ( segment.indexOf( '*' ) >= 0
+                    || segment.indexOf( '?' ) >= 0 ) )
+                {
+                    regexes[i] = Pattern.compile( toRegex( segment ) );
+                }
+            }
+        }
+
+        BitSet closure( BitSet state )
+        {
+            BitSet closure = (BitSet) state.clone();
+            for ( int i = closure.nextSetBit( 0 ); i >= 0 && i < segments.length; i = closure.nextSetBit( i + 1 ) )
+            {
+                if ( ANY_DIRECTORIES.equals( segments[i] ) )
+                {
+                    closure.set( i + 1 );
+                }
+            }
+            return closure;
+        }
+
+        BitSet next( BitSet state, String name )
+        {
+            BitSet next = new BitSet();
+            for ( int i = state.nextSetBit( 0 ); i >= 0 && i < segments.length; i = state.nextSetBit( i + 1 ) )
+            {
+                if ( ANY_DIRECTORIES.equals( segments[i] ) )
+                {
+                    next.set( i );
+                }
+                else if ( regexes[i] != null ? regexes[i].matcher( name ).matches() : segments[i].equals( name ) )
+                {
+                    next.set( i + 1 );
+                }
+            }
+            return closure( next );
+        }
+
+        boolean matches( BitSet state )
+        {
+            return state.get( segments.length );
+        }
+
+        boolean canMatchBelow( BitSet state )
+        {
+            int first = state.nextSetBit( 0 );
+            return first >= 0 && first < segments.length;
+        }
+
+        boolean matchesAllBelow( BitSet state )
+        {
+            // a trailing ** matches every path below
+            return segments.length > 0 && ANY_DIRECTORIES.equals( segments[segments.length - 1] )
+                && state.get( segments.length - 1 );
+        }
+
+        private static String toRegex( String segment )
+        {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for ( char c : segment.toCharArray() )
+            {
+                if ( c == '*' || c == '?' )
+                {
+                    if ( literal.length() > 0 )
+                    {
+                        regex.append( Pattern.quote( literal.toString() ) );
+                        literal.setLength( 0 );
+                    }
+                    regex.append( c == '*' ? ".*" : "." );
+                }
+                else
+                {
+                    literal.append( c );
+                }
+            }
+            if ( literal.length() > 0 )
+            {
+                regex.append( Pattern.quote( literal.toString() ) );
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.report;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A hash of everything a report is generated from: the data file, the sources, the source encoding, the report
+ * formats and the plugin version. It is stored in a state directory of the report, outside of the report output
+ * directory, so that the report is only generated again when one of these changed.
+ *
+ * @since 2.8
+ */
+public class ReportFingerprint
+{
+    /**
+     * The name of the fingerprint file, which lives in the state directory of the report.
+     */
+    public static final String FILENAME = "fingerprint";
+
+    private final MessageDigest digest;
+
+    /**
+     * Create an empty fingerprint.
+     */
+    public ReportFingerprint()
+    {
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported", e );
+        }
+    }
+
+    /**
+     * Add a setting to the fingerprint.
+     *
+     * @param name  the name of the setting.
+     * @param value the value of the setting, may be <code>null</code>.
+     * @return this fingerprint.
+     */
+    public ReportFingerprint addSetting( String name, Object value )
+    {
+        update( name + '=' + value + '\n' );
+        return this;
+    }
+
+    /**
+     * Add the content of a file to the fingerprint.
+     *
+     * @param name the name of the file in the fingerprint.
+     * @param file the file, which may not exist.
+     * @return this fingerprint.
+     * @throws IOException if the file could not be read.
+     */
+    public ReportFingerprint addFile( String name, File file )
+        throws IOException
+    {
+        if ( !file.isFile() )
+        {
+            update( name + " missing\n" );
+            return this;
+        }
+
+        update( name + ' ' + file.length() + '\n' );
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return this;
+    }
+
+    /**
+     * Add the files of source roots to the fingerprint. The absolute paths of the roots are left out, only their
+     * order and the relative paths of their files count.
+     *
+     * @param sourceRoots the source roots, which may not exist.
+     * @return this fingerprint.
+     * @throws IOException if a file could not be read.
+     */
+    public ReportFingerprint addSourceRoots( List<String> sourceRoots )
+        throws IOException
+    {
+        return addSourceRoots( sourceRoots, null );
+    }
+
+    /**
+     * Add the files of source roots to the fingerprint, as listed by a source index rather than by walking the source
+     * roots again.
+     *
+     * @param sourceRoots the source roots, which may not exist.
+     * @param sourceIndex an up to date index of the source roots, or <code>null</code> to walk them.
+     * @return this fingerprint.
+     * @throws IOException if a file could not be read.
+     */
+    public ReportFingerprint addSourceRoots( List<String> sourceRoots, SourceIndex sourceIndex )
+        throws IOException
+    {
+        for ( int i = 0; i < sourceRoots.size(); i++ )
+        {
+            File sourceRoot = new File( sourceRoots.get( i ) );
+            if ( !sourceRoot.isDirectory() )
+            {
+                addSetting( "root" + i, "missing" );
+                continue;
+            }
+
+            if ( sourceIndex != null && sourceIndex.isIndexed( sourceRoot.getPath() ) )
+            {
+                for ( String filename : sourceIndex.getFiles( sourceRoot.getPath() ) )
+                {
+                    addFile( "root" + i + '/' + filename, new File( sourceRoot, filename ) );
+                }
+                continue;
+            }
+
+            //noinspection unchecked
+            List<String> filenames = FileUtils.getFileNames( sourceRoot, "**", null, false );
+            for ( String filename : new TreeSet<String>( filenames ) )
+            {
+                addFile( "root" + i + '/' + filename.replace( File.separatorChar, '/' ),
+                         new File( sourceRoot, filename ) );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the hex encoded fingerprint.
+     */
+    public String getValue()
+    {
+        try
+        {
+            return new BigInteger( 1, ( (MessageDigest) digest.clone() ).digest() ).toString( 16 );
+        }
+        catch ( CloneNotSupportedException e )
+        {
+            throw new IllegalStateException( "SHA-1 digests can't be cloned", e );
+        }
+    }
+
+    /**
+     * Get the directory where the state of a report is kept between builds, such as its fingerprint. Every report
+     * output directory gets its own directory, named after the hash of its path.
+     *
+     * @param baseDirectory   the directory the state of all reports is kept in.
+     * @param outputDirectory the report output directory.
+     * @return the state directory of the report, which may not exist yet.
+     */
+    public static File getStateDirectory( File baseDirectory, File outputDirectory )
+    {
+        String path;
+        try
+        {
+            path = outputDirectory.getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            path = outputDirectory.getAbsolutePath();
+        }
+        ReportFingerprint fingerprint = new ReportFingerprint();
+        fingerprint.update( path );
+        return new File( baseDirectory, fingerprint.getValue() );
+    }
+
+    /**
+     * @param stateDirectory the state directory of the report.
+     * @return <code>true</code> if the report was generated from the same inputs.
+     */
+    public boolean matches( File stateDirectory )
+    {
+        File file = new File( stateDirectory, FILENAME );
+        try
+        {
+            return file.isFile() && getValue().equals( FileUtils.fileRead( file, "UTF-8" ).trim() );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Store the fingerprint in the state directory of a report, once the report has been generated.
+     *
+     * @param stateDirectory the state directory of the report.
+     * @throws IOException if the fingerprint could not be written.
+     */
+    public void save( File stateDirectory )
+        throws IOException
+    {
+        stateDirectory.mkdirs();
+        FileUtils.fileWrite( new File( stateDirectory, FILENAME ), "UTF-8", getValue() );
+    }
+
+    /**
+     * Remove the fingerprint from the state directory of a report, before the report is generated again.
+     *
+     * @param stateDirectory the state directory of the report.
+     */
+    public static void delete( File stateDirectory )
+    {
+        new File( stateDirectory, FILENAME ).delete();
+    }
+
+    private void update( String text )
+    {
+        try
+        {
+            digest.update( text.getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 is not supported", e );
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.report;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the files of source roots, so that the report looks the source file of each class up instead of
+ * probing every source root in turn, which is slow for aggregate reports over hundreds of roots.
+ * <p/>
+ * The index is cached in a file, with the modification time of each directory: a directory whose modification time
+ * didn't change still has the same files and subdirectories, so it isn't listed again. Since file systems may keep
+ * modification times in seconds only, directories modified just before they were listed are listed again next time.
+ * Hidden directories are left out.
+ * <p/>
+ * This class must only depend on the JDK, since the report reads the index on the Cobertura classpath.
+ *
+ * @since 2.8
+ */
+public class SourceIndex
+{
+    private static final String HEADER = "# cobertura source index 1";
+
+    private static final long UNSTABLE = -1L;
+
+    private final File file;
+
+    private final Map<String, Directory> directories = new HashMap<String, Directory>();
+
+    private boolean modified;
+
+    private int listed;
+
+    private int reused;
+
+    private SourceIndex( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * Load the index cached in a file. A missing or damaged file, or one in another format, gives an empty index.
+     *
+     * @param file the cache file.
+     * @return the index.
+     * @throws IOException if the file could not be read.
+     */
+    public static SourceIndex load( File file )
+        throws IOException
+    {
+        SourceIndex index = new SourceIndex( file );
+        if ( !file.isFile() )
+        {
+            return index;
+        }
+
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            if ( !HEADER.equals( reader.readLine() ) )
+            {
+                return index;
+            }
+
+            Directory directory = null;
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                int tab = line.indexOf( '\t', 2 );
+                if ( line.startsWith( "D\t" ) && tab != -1 )
+                {
+                    directory = new Directory( Long.parseLong( line.substring( 2, tab ) ) );
+                    index.directories.put( line.substring( tab + 1 ), directory );
+                }
+                else if ( directory != null && line.startsWith( "F\t" ) )
+                {
+                    directory.files.add( line.substring( 2 ) );
+                }
+                else if ( directory != null && line.startsWith( "S\t" ) )
+                {
+                    directory.subdirectories.add( line.substring( 2 ) );
+                }
+                else
+                {
+                    return new SourceIndex( file );
+                }
+            }
+            return index;
+        }
+        catch ( NumberFormatException e )
+        {
+            return new SourceIndex( file );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Bring the index of source roots up to date, only listing the directories which were modified since they were
+     * indexed. The index of other source roots is kept.
+     *
+     * @param sourceRoots the source roots, which may not exist.
+     */
+    public void refresh( List<String> sourceRoots )
+    {
+        long now = System.currentTimeMillis();
+        for ( String sourceRoot : sourceRoots )
+        {
+            File root = new File( sourceRoot ).getAbsoluteFile();
+            if ( root.isDirectory() )
+            {
+                refresh( root, root.getPath(), now );
+            }
+            else if ( directories.containsKey( root.getPath() ) )
+            {
+                removeTree( root.getPath() );
+            }
+        }
+    }
+
+    private void refresh( File dir, String path, long now )
+    {
+        Directory cached = directories.get( path );
+        long lastModified = dir.lastModified();
+        Directory directory;
+        if ( cached != null && cached.lastModified == lastModified )
+        {
+            directory = cached;
+            reused++;
+        }
+        else
+        {
+            // a directory modified in the same second may still change without its modification time changing
+            directory = new Directory( now - lastModified < 2000 ? UNSTABLE : lastModified );
+            File[] children = dir.listFiles();
+            if ( children != null )
+            {
+                for ( File child : children )
+                {
+                    if ( child.isDirectory() )
+                    {
+                        if ( !child.getName().startsWith( "." ) )
+                        {
+                            directory.subdirectories.add( child.getName() );
+                        }
+                    }
+                    else if ( child.isFile() )
+                    {
+                        directory.files.add( child.getName() );
+                    }
+                }
+            }
+            Collections.sort( directory.files );
+            Collections.sort( directory.subdirectories );
+
+            if ( cached != null )
+            {
+                for ( String subdirectory : cached.subdirectories )
+                {
+                    if ( !directory.subdirectories.contains( subdirectory ) )
+                    {
+                        removeTree( path + File.separator + subdirectory );
+                    }
+                }
+            }
+            directories.put( path, directory );
+            modified = true;
+            listed++;
+        }
+
+        for ( String subdirectory : directory.subdirectories )
+        {
+            refresh( new File( dir, subdirectory ), path + File.separator + subdirectory, now );
+        }
+    }
+
+    private void removeTree( String path )
+    {
+        Directory directory = directories.remove( path );
+        if ( directory != null )
+        {
+            modified = true;
+            for ( String subdirectory : directory.subdirectories )
+            {
+                removeTree( path + File.separator + subdirectory );
+            }
+        }
+    }
+
+    /**
+     * @param sourceRoot a source root.
+     * @return <code>true</code> if the source root is in the index.
+     */
+    public boolean isIndexed( String sourceRoot )
+    {
+        return directories.containsKey( new File( sourceRoot ).getAbsolutePath() );
+    }
+
+    /**
+     * @param sourceRoot a source root.
+     * @return the paths of the files of the source root, relative to it and separated by <code>/</code>, in order;
+     *         empty if the source root isn't in the index.
+     */
+    public List<String> getFiles( String sourceRoot )
+    {
+        List<String> files = new ArrayList<String>();
+        addFiles( files, new File( sourceRoot ).getAbsolutePath(), "" );
+        return files;
+    }
+
+    private void addFiles( List<String> files, String path, String prefix )
+    {
+        Directory directory = directories.get( path );
+        if ( directory == null )
+        {
+            return;
+        }
+
+        // files and subdirectories are each sorted, merge them so that the paths are sorted as a whole
+        int f = 0;
+        int s = 0;
+        while ( f < directory.files.size() || s < directory.subdirectories.size() )
+        {
+            if ( s == directory.subdirectories.size() || ( f < directory.files.size()
+                && directory.files.get( f ).compareTo( directory.subdirectories.get( s ) + '/' ) < 0 ) )
+            {
+                files.add( prefix + directory.files.get( f++ ) );
+            }
+            else
+            {
+                String subdirectory = directory.subdirectories.get( s++ );
+                addFiles( files, path + File.separator + subdirectory, prefix + subdirectory + '/' );
+            }
+        }
+    }
+
+    /**
+     * Write the index to its cache file, if it changed.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void save()
+        throws IOException
+    {
+        if ( !modified && file.isFile() )
+        {
+            return;
+        }
+
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        File tmpFile = new File( file.getAbsolutePath() + ".tmp" );
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmpFile ), "UTF-8" ) );
+        try
+        {
+            writer.write( HEADER );
+            writer.write( '\n' );
+            for ( Map.Entry<String, Directory> entry : directories.entrySet() )
+            {
+                Directory directory = entry.getValue();
+                writer.write( "D\t" + directory.lastModified + '\t' + entry.getKey() + '\n' );
+                for ( String name : directory.files )
+                {
+                    writer.write( "F\t" + name + '\n' );
+                }
+                for ( String name : directory.subdirectories )
+                {
+                    writer.write( "S\t" + name + '\n' );
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        file.delete();
+        if ( !tmpFile.renameTo( file ) )
+        {
+            tmpFile.delete();
+            throw new IOException( "Unable to write source index " + file );
+        }
+        modified = false;
+    }
+
+    /**
+     * @return the cache file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the number of directories listed by the refreshes.
+     */
+    public int getListed()
+    {
+        return listed;
+    }
+
+    /**
+     * @return the number of directories the refreshes found unchanged, and so didn't list.
+     */
+    public int getReused()
+    {
+        return reused;
+    }
+
+    private static final class Directory
+    {
+        private final long lastModified;
+
+        private final List<String> files = new ArrayList<String>();
+
+        private final List<String> subdirectories = new ArrayList<String>();
+
+        private Directory( long lastModified )
+        {
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -21,19 +21,26 @@ package org.codehaus.mojo.cobertura.tasks;
 
 import org.apache.commons.lang.SystemUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.mojo.cobertura.configuration.HeapSizeEstimator;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +52,13 @@ import java.util.List;
  */
 public abstract class AbstractTask
 {
+    /**
+     * The default maximum number of characters of output of a forked JVM sent to the log.
+     *
+     * @since 2.8
+     */
+    public static final long DEFAULT_OUTPUT_LIMIT = 1024L * 1024L;
+
     /**
      * The shared command line args.
      */
@@ -58,20 +72,63 @@ public abstract class AbstractTask
 
     private String taskClass;
 
+    private String taskMethod;
+
     private boolean quiet;
 
+    private boolean fork = true;
+
+    private boolean daemon;
+
+    private MavenSession session;
+
+    private HeapSizeEstimator heapSizeEstimator;
+
+    private Telemetry telemetry = new Telemetry( null );
+
+    private long outputLimit = DEFAULT_OUTPUT_LIMIT;
+
     /**
      * Initialize AbstractTask.
      *
      * @param taskClassname the classname for the task.
      */
     protected AbstractTask( String taskClassname )
+    {
+        this( taskClassname, null );
+    }
+
+    /**
+     * Initialize AbstractTask.
+     *
+     * @param taskClassname  the classname for the task.
+     * @param taskMethodname the name of the static <code>int method( String[] )</code> of the task class which can
+     *                       be called instead of <code>main</code> when running in-process, may be <code>null</code>.
+     * @since 2.8
+     */
+    protected AbstractTask( String taskClassname, String taskMethodname )
     {
         taskClass = taskClassname;
+        taskMethod = taskMethodname;
         cmdLineArgs = new CommandLineArguments();
         maxmem = "64m";
     }
 
+    /**
+     * Run another entry point than the one given to the constructor. Entry points of the plugin itself are supported,
+     * the plugin is then added to the Cobertura classpath.
+     *
+     * @param taskClassname  the classname for the task.
+     * @param taskMethodname the name of the static <code>int method( String[] )</code> of the task class, may be
+     *                       <code>null</code>.
+     * @since 2.8
+     */
+    protected void setTaskClass( String taskClassname, String taskMethodname )
+    {
+        taskClass = taskClassname;
+        taskMethod = taskMethodname;
+    }
+
     /**
      * Setter for <code>quiet</code>.
      *
@@ -92,6 +149,117 @@ public abstract class AbstractTask
         return quiet;
     }
 
+    /**
+     * Setter for <code>fork</code>.
+     *
+     * @param fork <code>true</code> to run Cobertura in a separate JVM, <code>false</code> to run it in-process.
+     * @since 2.8
+     */
+    public void setFork( boolean fork )
+    {
+        this.fork = fork;
+    }
+
+    /**
+     * Getter for <code>fork</code>.
+     *
+     * @return Returns the fork.
+     * @since 2.8
+     */
+    public boolean isFork()
+    {
+        return fork;
+    }
+
+    /**
+     * Setter for <code>daemon</code>.
+     *
+     * @param daemon <code>true</code> to run forked tasks in a long-lived worker JVM which is shared by all tasks of
+     *               the Maven session.
+     * @since 2.8
+     */
+    public void setDaemon( boolean daemon )
+    {
+        this.daemon = daemon;
+    }
+
+    /**
+     * Set the Maven session the task runs in, whose end stops the worker JVMs.
+     *
+     * @param session the Maven session, may be <code>null</code>.
+     * @since 2.8
+     */
+    public void setSession( MavenSession session )
+    {
+        this.session = session;
+    }
+
+    /**
+     * Getter for <code>daemon</code>.
+     *
+     * @return Returns the daemon.
+     * @since 2.8
+     */
+    public boolean isDaemon()
+    {
+        return daemon;
+    }
+
+    /**
+     * Setter for <code>heapSizeEstimator</code>.
+     *
+     * @param heapSizeEstimator the estimator to size the heap of forked tasks from their work, instead of using
+     *                          <code>maxmem</code>, or <code>null</code> to use <code>maxmem</code>.
+     * @since 2.8
+     */
+    public void setHeapSizeEstimator( HeapSizeEstimator heapSizeEstimator )
+    {
+        this.heapSizeEstimator = heapSizeEstimator;
+    }
+
+    /**
+     * Getter for <code>heapSizeEstimator</code>.
+     *
+     * @return Returns the heapSizeEstimator.
+     * @since 2.8
+     */
+    public HeapSizeEstimator getHeapSizeEstimator()
+    {
+        return heapSizeEstimator;
+    }
+
+    /**
+     * Setter for <code>telemetry</code>.
+     *
+     * @param telemetry the telemetry to record the phases of the task in.
+     * @since 2.8
+     */
+    public void setTelemetry( Telemetry telemetry )
+    {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Getter for <code>telemetry</code>.
+     *
+     * @return Returns the telemetry.
+     * @since 2.8
+     */
+    public Telemetry getTelemetry()
+    {
+        return telemetry;
+    }
+
+    /**
+     * @return <code>true</code> if the heap of the Cobertura JVM should be estimated from the work of the task. An
+     *         in-process task shares the heap of Maven, so there is nothing to estimate.
+     * @since 2.8
+     */
+    protected boolean isHeapSizeEstimated()
+    {
+        return heapSizeEstimator != null && fork;
+    }
+
     /**
      * Using the <code>${project.compileClasspathElements}</code> and the <code>${plugin.artifacts}</code>, create
      * a classpath string that is suitable to be used from a forked cobertura process.
@@ -111,7 +279,11 @@ public abstract class AbstractTask
 
             try
             {
-                cpBuffer.append( File.pathSeparator ).append( artifact.getFile().getCanonicalPath() );
+                if ( cpBuffer.length() > 0 )
+                {
+                    cpBuffer.append( File.pathSeparator );
+                }
+                cpBuffer.append( artifact.getFile().getCanonicalPath() );
             }
             catch ( IOException e )
             {
@@ -120,9 +292,57 @@ public abstract class AbstractTask
             }
         }
 
+        if ( isPluginTask() )
+        {
+            try
+            {
+                if ( cpBuffer.length() > 0 )
+                {
+                    cpBuffer.append( File.pathSeparator );
+                }
+                cpBuffer.append( getPluginLocation().getCanonicalPath() );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to locate the plugin.", e );
+            }
+        }
+
         return cpBuffer.toString();
     }
 
+    /**
+     * @return <code>true</code> if the task class is provided by the plugin rather than by Cobertura.
+     */
+    private boolean isPluginTask()
+    {
+        return taskClass.startsWith( AbstractTask.class.getPackage().getName() + "." );
+    }
+
+    /**
+     * Locate the jar (or directory) containing the plugin classes.
+     *
+     * @return the location of the plugin.
+     * @throws IOException if the location of the plugin can't be determined.
+     */
+    static File getPluginLocation()
+        throws IOException
+    {
+        URL location = AbstractTask.class.getProtectionDomain().getCodeSource().getLocation();
+        try
+        {
+            return new File( location.toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            throw new IOException( "Unable to locate the plugin at " + location );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new IOException( "Unable to locate the plugin at " + location );
+        }
+    }
+
     private String getLog4jConfigFile()
     {
         String resourceName = "cobertura-plugin/log4j-info.properties";
@@ -165,44 +385,217 @@ public abstract class AbstractTask
         throws MojoExecutionException, MojoFailureException;
 
     /**
-     * Run a jvm to execute something.
+     * Run Cobertura, either in-process, in the shared worker jvm or in a forked jvm.
+     * <p/>
+     * When not forking, the task is executed in an isolated class loader built from the
+     * <code>pluginClasspathList</code>. When forking with <code>daemon</code> enabled, the same happens inside the
+     * worker jvm. If Cobertura can't be called that way, a dedicated forked jvm is used as a fallback.
      *
      * @return the exit code.
-     * @throws MojoExecutionException for an error launching the jvm.
+     * @throws MojoExecutionException for an error launching Cobertura.
+     * @since 2.8
      */
-    protected int executeJava()
+    protected int executeCobertura()
         throws MojoExecutionException
     {
-        Commandline cl = new Commandline();
+        return executeCobertura( cmdLineArgs );
+    }
+
+    /**
+     * Run Cobertura with the given arguments, either in-process, in the shared worker jvm or in a forked jvm.
+     *
+     * @param args the arguments for the Cobertura task.
+     * @return the exit code.
+     * @throws MojoExecutionException for an error launching Cobertura.
+     * @see #executeCobertura()
+     * @since 2.8
+     */
+    protected int executeCobertura( CommandLineArguments args )
+        throws MojoExecutionException
+    {
+        if ( canExecuteInProcess() )
+        {
+            try
+            {
+                if ( !fork )
+                {
+                    return executeInProcess( args );
+                }
+                if ( daemon )
+                {
+                    return executeInWorker( args );
+                }
+            }
+            catch ( InProcessExecutor.EntryPointUnavailableException e )
+            {
+                getLog().warn( "Unable to run Cobertura in-process, falling back to a forked JVM: " + e.getMessage() );
+                getLog().debug( e );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to use the Cobertura worker, falling back to a forked JVM: " + e.getMessage() );
+                getLog().debug( e );
+            }
+        }
+        return executeJava( args );
+    }
+
+    /**
+     * Run the task inside the shared worker jvm.
+     *
+     * @param cmdArgs the arguments for the Cobertura task.
+     * @return the exit code.
+     * @throws MojoExecutionException for an error preparing the arguments.
+     * @throws InProcessExecutor.EntryPointUnavailableException if the worker could not call Cobertura.
+     * @throws IOException if the worker could not be started or died.
+     */
+    private int executeInWorker( CommandLineArguments cmdArgs )
+        throws MojoExecutionException, InProcessExecutor.EntryPointUnavailableException, IOException
+    {
+        List<String> args = createArguments( cmdArgs );
+
+        // a worker serves tasks of any size, so an estimated heap would start a worker per estimate
+        String workerMaxmem = heapSizeEstimator != null ? heapSizeEstimator.getMaxHeapSize() : maxmem;
         File java = new File( SystemUtils.getJavaHome(), "bin/java" );
-        cl.setExecutable( java.getAbsolutePath() );
-        cl.addEnvironment( "CLASSPATH", createClasspath() );
+        CoberturaWorker worker = CoberturaWorker.getInstance( java, workerMaxmem, session, getLog() );
 
-        String log4jConfig = getLog4jConfigFile();
-        if ( log4jConfig != null )
+        getLog().debug( "Executing in worker: " + taskClass + "." + taskMethod + " " + args );
+
+        int exitCode = worker.execute( createClasspathURLs(), taskClass, taskMethod,
+                                       args.toArray( new String[args.size()] ), getLog(),
+                                       new ForkOutputLogger( getLog(), outputLimit, quiet ) );
+
+        getLog().debug( "exit code: " + exitCode );
+
+        return exitCode;
+    }
+
+    /**
+     * Whether this task can be executed in-process.
+     * Tasks should override this method when some of their arguments would make Cobertura exit the JVM.
+     *
+     * @return <code>true</code> if the task can run in-process, otherwise <code>false</code>
+     * @since 2.8
+     */
+    protected boolean canExecuteInProcess()
+    {
+        return taskMethod != null;
+    }
+
+    /**
+     * Run the task inside the current jvm.
+     *
+     * @param cmdArgs the arguments for the Cobertura task.
+     * @return the exit code.
+     * @throws MojoExecutionException for an error preparing the arguments.
+     * @throws InProcessExecutor.EntryPointUnavailableException if Cobertura could not be called in-process.
+     */
+    private int executeInProcess( CommandLineArguments cmdArgs )
+        throws MojoExecutionException, InProcessExecutor.EntryPointUnavailableException
+    {
+        List<String> args = createArguments( cmdArgs );
+
+        getLog().debug( "Executing in-process: " + taskClass + "." + taskMethod + " " + args );
+
+        int exitCode;
+        try
         {
-            cl.createArg().setValue( "-Dlog4j.configuration=" + log4jConfig );
+            exitCode = InProcessExecutor.execute( createClasspathURLs(), taskClass, taskMethod,
+                                                  args.toArray( new String[args.size()] ) );
+        }
+        catch ( InProcessExecutor.EntryPointUnavailableException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            // a forked jvm would have died with a stacktrace and a non-zero exit code
+            getLog().error( "Cobertura task " + taskClass + " failed: " + e.getMessage(), e );
+            exitCode = 1;
         }
 
-        cl.createArg().setValue( "-Xmx" + maxmem );
+        getLog().debug( "exit code: " + exitCode );
 
-        cl.createArg().setValue( taskClass );
+        return exitCode;
+    }
+
+    /**
+     * Using the <code>${plugin.artifacts}</code>, create the classpath for the isolated class loader used when
+     * running in-process or in the worker jvm.
+     *
+     * @return the classpath urls
+     * @throws MojoExecutionException if the pluginArtifacts cannot be properly resolved to a full system path.
+     */
+    private URL[] createClasspathURLs()
+        throws MojoExecutionException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        for ( Artifact artifact : pluginClasspathList )
+        {
+            File file = artifact.getFile();
+            if ( file == null || file.getName().endsWith( ".pom" ) )
+            {
+                continue;
+            }
+
+            try
+            {
+                urls.add( file.getCanonicalFile().toURI().toURL() );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Error while creating the canonical path for '" + file + "'.", e );
+            }
+        }
+
+        if ( isPluginTask() )
+        {
+            try
+            {
+                urls.add( getPluginLocation().getCanonicalFile().toURI().toURL() );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to locate the plugin.", e );
+            }
+        }
+        return urls.toArray( new URL[urls.size()] );
+    }
+
+    /**
+     * Create the arguments for the Cobertura task, which are either the command line arguments themselves or a
+     * reference to the commands file containing them.
+     *
+     * @param cmdArgs the arguments for the Cobertura task.
+     * @return the arguments
+     * @throws MojoExecutionException if the commands file could not be written.
+     */
+    private List<String> createArguments( CommandLineArguments cmdArgs )
+        throws MojoExecutionException
+    {
+        List<String> args = new ArrayList<String>();
 
-        if ( cmdLineArgs.useCommandsFile() )
+        if ( cmdArgs.useCommandsFile() )
         {
+            Phase phase = telemetry.start( Telemetry.COMMANDS_FILE );
             String commandsFile;
             try
             {
-                commandsFile = cmdLineArgs.getCommandsFile();
+                commandsFile = cmdArgs.getCommandsFile();
+                phase.addBytesWritten( new File( commandsFile ).length() );
             }
             catch ( IOException e )
             {
                 throw new MojoExecutionException( "Unable to obtain CommandsFile location.", e );
             }
+            finally
+            {
+                phase.end();
+            }
             if ( FileUtils.fileExists( commandsFile ) )
             {
-                cl.createArg().setValue( "--commandsfile" );
-                cl.createArg().setValue( commandsFile );
+                args.add( "--commandsfile" );
+                args.add( commandsFile );
             }
             else
             {
@@ -211,30 +604,75 @@ public abstract class AbstractTask
         }
         else
         {
-            Iterator<String> it = cmdLineArgs.iterator();
+            Iterator<String> it = cmdArgs.iterator();
             while ( it.hasNext() )
             {
-                cl.createArg().setValue( it.next() );
+                args.add( it.next() );
             }
         }
 
-        CommandLineUtils.StringStreamConsumer stdout = new CommandLineUtils.StringStreamConsumer();
+        return args;
+    }
 
-        CommandLineUtils.StringStreamConsumer stderr = new CommandLineUtils.StringStreamConsumer();
+    /**
+     * Run a jvm to execute something.
+     *
+     * @return the exit code.
+     * @throws MojoExecutionException for an error launching the jvm.
+     */
+    protected int executeJava()
+        throws MojoExecutionException
+    {
+        return executeJava( cmdLineArgs );
+    }
 
-        if ( quiet )
+    /**
+     * Run a jvm to execute something with the given arguments.
+     *
+     * @param cmdArgs the arguments for the Cobertura task.
+     * @return the exit code.
+     * @throws MojoExecutionException for an error launching the jvm.
+     * @since 2.8
+     */
+    protected int executeJava( CommandLineArguments cmdArgs )
+        throws MojoExecutionException
+    {
+        Commandline cl = new Commandline();
+        File java = new File( SystemUtils.getJavaHome(), "bin/java" );
+        cl.setExecutable( java.getAbsolutePath() );
+        String classpath = createClasspath();
+        if ( !isPluginTask() )
         {
-            CommandLineUtils.StringStreamConsumer nullConsumer = new CommandLineUtils.StringStreamConsumer()
+            // for ForkedMain
+            try
             {
-                public void consumeLine( String line )
-                {
-                    // swallow
-                }
-            };
-            stdout = nullConsumer;
-            stderr = nullConsumer;
+                classpath += File.pathSeparator + getPluginLocation().getCanonicalPath();
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to locate the plugin.", e );
+            }
+        }
+        cl.addEnvironment( "CLASSPATH", classpath );
+
+        String log4jConfig = getLog4jConfigFile();
+        if ( log4jConfig != null )
+        {
+            cl.createArg().setValue( "-Dlog4j.configuration=" + log4jConfig );
         }
 
+        cl.createArg().setValue( "-Xmx" + maxmem );
+
+        cl.createArg().setValue( ForkedMain.class.getName() );
+        cl.createArg().setValue( taskClass );
+
+        for ( String arg : createArguments( cmdArgs ) )
+        {
+            cl.createArg().setValue( arg );
+        }
+
+        ForkOutputLogger output = new ForkOutputLogger( getLog(), outputLimit, quiet );
+
         getLog().debug( "Working Directory: " + cl.getWorkingDirectory() );
         try
         {
@@ -250,40 +688,33 @@ public abstract class AbstractTask
         getLog().debug( "Executing command line:" );
         getLog().debug( cl.toString() );
 
+        ForkTelemetryConsumer forkTelemetry = new ForkTelemetryConsumer( output.getStdout() );
+        Phase fork = telemetry.start( Telemetry.FORK );
+        long launched = System.currentTimeMillis();
         int exitCode;
         try
         {
-            exitCode = CommandLineUtils.executeCommandLine( cl, stdout, stderr );
+            exitCode = CommandLineUtils.executeCommandLine( cl, forkTelemetry, output.getStderr() );
         }
         catch ( CommandLineException e )
         {
             throw new MojoExecutionException( "Unable to execute Cobertura.", e );
         }
-
-        getLog().debug( "exit code: " + exitCode );
-
-        String output = stdout.getOutput();
-
-        if ( output.trim().length() > 0 )
+        finally
         {
-            getLog().debug( "--------------------" );
-            getLog().debug( " Standard output from the Cobertura task:" );
-            getLog().debug( "--------------------" );
-            getLog().info( output );
-            getLog().debug( "--------------------" );
+            fork.addCpuNanos( forkTelemetry.cpuNanos );
+            fork.addPeakRssKb( forkTelemetry.peakRssKb );
+            fork.end();
+            output.finish();
         }
 
-        String stream = stderr.getOutput();
-
-        if ( stream.trim().length() > 0 )
+        if ( forkTelemetry.started > 0 )
         {
-            getLog().debug( "--------------------" );
-            getLog().debug( " Standard error from the Cobertura task:" );
-            getLog().debug( "--------------------" );
-            getLog().error( stderr.getOutput() );
-            getLog().debug( "--------------------" );
+            telemetry.start( Telemetry.FORK_STARTUP ).end( ( forkTelemetry.started - launched ) * 1000000L );
         }
 
+        getLog().debug( "exit code: " + exitCode );
+
         return exitCode;
     }
 
@@ -356,6 +787,27 @@ public abstract class AbstractTask
         this.maxmem = maxmem;
     }
 
+    /**
+     * @return the maximum number of characters of output of a forked JVM sent to the log.
+     * @since 2.8
+     */
+    public long getOutputLimit()
+    {
+        return outputLimit;
+    }
+
+    /**
+     * Set the maximum number of characters of output of a forked JVM sent to the log. The output is forwarded line by
+     * line as it arrives, and the lines above the limit are only counted.
+     *
+     * @param outputLimit the number of characters, <code>0</code> or less for no limit.
+     * @since 2.8
+     */
+    public void setOutputLimit( long outputLimit )
+    {
+        this.outputLimit = outputLimit;
+    }
+
     /**
      * @param pluginClasspathList The pluginClasspathList to set.
      */
@@ -363,4 +815,59 @@ public abstract class AbstractTask
     {
         this.pluginClasspathList = Collections.unmodifiableList( pluginClasspathList );
     }
+
+    /**
+     * Takes the line reported by {@link ForkedMain} out of the standard output of the forked JVM.
+     */
+    private static class ForkTelemetryConsumer
+        implements StreamConsumer
+    {
+        private final StreamConsumer output;
+
+        private volatile long started = -1;
+
+        private volatile long cpuNanos = -1;
+
+        private volatile long peakRssKb = -1;
+
+        ForkTelemetryConsumer( StreamConsumer output )
+        {
+            this.output = output;
+        }
+
+        public void consumeLine( String line )
+        {
+            if ( !line.startsWith( ForkedMain.MARKER + " " ) )
+            {
+                output.consumeLine( line );
+                return;
+            }
+
+            for ( String field : line.substring( ForkedMain.MARKER.length() ).trim().split( " " ) )
+            {
+                int separator = field.indexOf( '=' );
+                try
+                {
+                    long value = Long.parseLong( field.substring( separator + 1 ) );
+                    String name = field.substring( 0, Math.max( 0, separator ) );
+                    if ( "started".equals( name ) )
+                    {
+                        started = value;
+                    }
+                    else if ( "cpuNanos".equals( name ) )
+                    {
+                        cpuNanos = value;
+                    }
+                    else if ( "peakRssKb".equals( name ) )
+                    {
+                        peakRssKb = value;
+                    }
+                }
+                catch ( NumberFormatException e )
+                {
+                    // not reported by this JVM
+                }
+            }
+        }
+    }
 }
@@ -23,7 +23,29 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
 import org.codehaus.mojo.cobertura.configuration.Regex;
+import org.codehaus.mojo.cobertura.datafile.CoverageBaseline;
+import org.codehaus.mojo.cobertura.datafile.CoverageChecker;
+import org.codehaus.mojo.cobertura.datafile.CoverageDataCodecs;
+import org.codehaus.mojo.cobertura.datafile.CoverageRatchet;
+import org.codehaus.mojo.cobertura.datafile.CoverageSummary;
+import org.codehaus.mojo.cobertura.datafile.CoverageTotals;
+import org.codehaus.mojo.cobertura.datafile.DiffCoverageChecker;
+import org.codehaus.mojo.cobertura.datafile.SourceLineIndex;
+import org.codehaus.mojo.cobertura.datafile.UnifiedDiff;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
 
 /**
  * The Check Task.
@@ -33,16 +55,44 @@ import org.codehaus.plexus.util.StringUtils;
 public class CheckTask
     extends AbstractTask
 {
+    /**
+     * The check engine running Cobertura's own <code>CheckCoverageMain</code>.
+     *
+     * @since 2.8
+     */
+    public static final String ENGINE_COBERTURA = "cobertura";
+
+    /**
+     * The check engine running the {@link CoverageChecker} of the plugin.
+     *
+     * @since 2.8
+     */
+    public static final String ENGINE_PLUGIN = "plugin";
+
     private ConfigCheck config;
 
     private String dataFile;
 
+    private String checkEngine = ENGINE_COBERTURA;
+
+    private File diffFile;
+
+    private String diffBase;
+
+    private File basedir;
+
+    private File baseline;
+
+    private boolean updateBaseline = true;
+
+    private CoverageSummary summary;
+
     /**
      * Setup the check task.
      */
     public CheckTask()
     {
-        super( net.sourceforge.cobertura.check.CheckCoverageMain.class.getName() );
+        super( net.sourceforge.cobertura.check.CheckCoverageMain.class.getName(), "checkCoverage" );
     }
 
     /**
@@ -50,6 +100,292 @@ public class CheckTask
      */
     public void execute()
         throws MojoExecutionException, MojoFailureException
+    {
+        int returnCode;
+        if ( diffFile != null || diffBase != null )
+        {
+            returnCode = executeDiff();
+        }
+        else
+        {
+            returnCode = ENGINE_PLUGIN.equals( checkEngine ) ? executeCoverageChecker() : executeCheckCoverageMain();
+        }
+        if ( baseline != null )
+        {
+            returnCode = executeRatchet( returnCode );
+        }
+
+        // Check the return code and print a message
+        if ( returnCode == 0 )
+        {
+            getLog().info( "All checks passed." );
+        }
+        else
+        {
+            if ( config.isHaltOnFailure() )
+            {
+                throw new MojoFailureException( "Coverage check failed. See messages above." );
+            }
+            else
+            {
+                getLog().error( "Coverage check failed. See messages above." );
+            }
+        }
+    }
+
+    /**
+     * Check the data file with the {@link CoverageChecker} of the plugin.
+     *
+     * @return 0 if all checks passed, 1 otherwise.
+     * @throws MojoExecutionException if the data file could not be read, or the configuration is invalid.
+     */
+    private int executeCoverageChecker()
+        throws MojoExecutionException
+    {
+        CoverageChecker checker;
+        try
+        {
+            checker = new CoverageChecker( config );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( "Invalid check configuration: " + e.getMessage(), e );
+        }
+
+        List<String> failures = checker.check( readSummary() );
+        for ( String failure : failures )
+        {
+            getLog().error( failure );
+        }
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Check that the coverage didn't drop below the baseline with the {@link CoverageRatchet}, then, if all checks
+     * passed, create the baseline if there is none, or update it if the coverage improved.
+     *
+     * @param returnCode the result of the other checks.
+     * @return 0 if all checks passed, 1 otherwise.
+     * @throws MojoExecutionException if the data file or the baseline could not be read or written.
+     */
+    private int executeRatchet( int returnCode )
+        throws MojoExecutionException
+    {
+        CoverageSummary current = readSummary();
+        if ( !baseline.exists() )
+        {
+            if ( returnCode == 0 )
+            {
+                writeBaseline( current );
+                getLog().info( "Created coverage baseline " + baseline );
+            }
+            else
+            {
+                getLog().info( "Coverage check failed, coverage baseline " + baseline + " not created." );
+            }
+            return returnCode;
+        }
+
+        CoverageRatchet ratchet;
+        try
+        {
+            ratchet = new CoverageRatchet( CoverageBaseline.read( baseline ) );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to read coverage baseline " + baseline, e );
+        }
+
+        List<String> failures = ratchet.check( current );
+        for ( String failure : failures )
+        {
+            getLog().error( failure );
+        }
+        if ( !failures.isEmpty() )
+        {
+            return 1;
+        }
+
+        if ( returnCode == 0 && ratchet.isImproved() )
+        {
+            if ( updateBaseline )
+            {
+                writeBaseline( current );
+                getLog().info( "Coverage improved, updated coverage baseline " + baseline );
+            }
+            else
+            {
+                getLog().info( "Coverage improved, coverage baseline " + baseline + " not updated." );
+            }
+        }
+        return returnCode;
+    }
+
+    private void writeBaseline( CoverageSummary current )
+        throws MojoExecutionException
+    {
+        try
+        {
+            CoverageBaseline.write( current, baseline );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to write coverage baseline " + baseline, e );
+        }
+    }
+
+    /**
+     * @return the summary of the data file, read once for all checks.
+     * @throws MojoExecutionException if the data file could not be read.
+     */
+    private CoverageSummary readSummary()
+        throws MojoExecutionException
+    {
+        if ( summary == null )
+        {
+            Phase phase = getTelemetry().start( Telemetry.CHECK );
+            try
+            {
+                File file = new File( dataFile );
+                summary = CoverageSummary.read( file );
+                phase.addBytesRead( file.length() );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to read dataFile [" + dataFile + "]", e );
+            }
+            finally
+            {
+                phase.end();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Check the coverage of the lines changed by the diff file, or since the git base revision, with the
+     * {@link DiffCoverageChecker}.
+     *
+     * @return 0 if all checks passed, 1 otherwise.
+     * @throws MojoExecutionException if the diff or the data file could not be read, or the configuration is invalid.
+     */
+    private int executeDiff()
+        throws MojoExecutionException
+    {
+        DiffCoverageChecker checker;
+        try
+        {
+            checker = new DiffCoverageChecker( config );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( "Invalid check configuration: " + e.getMessage(), e );
+        }
+
+        Phase phase = getTelemetry().start( Telemetry.CHECK );
+        List<String> failures;
+        try
+        {
+            UnifiedDiff diff = readDiff();
+            File file = new File( dataFile );
+            SourceLineIndex index = new SourceLineIndex( CoverageDataCodecs.read( file ) );
+            phase.addBytesRead( file.length() );
+            failures = checker.check( diff, index );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to read dataFile [" + dataFile + "]", e );
+        }
+        finally
+        {
+            phase.end();
+        }
+
+        CoverageTotals totals = checker.getTotals();
+        getLog().info( "Diff coverage: " + totals.getCoveredLines() + " of " + totals.getValidLines()
+                           + " changed lines and " + totals.getCoveredBranches() + " of " + totals.getValidBranches()
+                           + " branches covered, in " + checker.getSourceFiles() + " source files." );
+        for ( String failure : failures )
+        {
+            getLog().error( failure );
+        }
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * @return the changed lines of the diff file, or else of <code>git diff</code> since the base revision.
+     * @throws MojoExecutionException if the diff could not be read, or git failed.
+     */
+    private UnifiedDiff readDiff()
+        throws MojoExecutionException
+    {
+        if ( diffFile != null )
+        {
+            Reader reader = null;
+            try
+            {
+                reader = ReaderFactory.newReader( diffFile, ReaderFactory.UTF_8 );
+                return UnifiedDiff.parse( reader );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to read diff file " + diffFile, e );
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+        }
+
+        Commandline cl = new Commandline();
+        cl.setExecutable( "git" );
+        if ( basedir != null )
+        {
+            cl.setWorkingDirectory( basedir );
+        }
+        cl.createArg().setValue( "diff" );
+        cl.createArg().setValue( "--no-color" );
+        cl.createArg().setValue( "--no-ext-diff" );
+        cl.createArg().setValue( "--unified=0" );
+        cl.createArg().setValue( diffBase );
+        cl.createArg().setValue( "--" );
+
+        getLog().debug( "Executing command line:" );
+        getLog().debug( cl.toString() );
+        CommandLineUtils.StringStreamConsumer stdout = new CommandLineUtils.StringStreamConsumer();
+        CommandLineUtils.StringStreamConsumer stderr = new CommandLineUtils.StringStreamConsumer();
+        int exitCode;
+        try
+        {
+            exitCode = CommandLineUtils.executeCommandLine( cl, stdout, stderr );
+        }
+        catch ( CommandLineException e )
+        {
+            throw new MojoExecutionException( "Unable to execute git.", e );
+        }
+        if ( exitCode != 0 )
+        {
+            throw new MojoExecutionException( "git diff " + diffBase + " failed: " + stderr.getOutput().trim() );
+        }
+
+        try
+        {
+            return UnifiedDiff.parse( new StringReader( stdout.getOutput() ) );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to read the output of git diff " + diffBase, e );
+        }
+    }
+
+    /**
+     * Check the data file with Cobertura's <code>CheckCoverageMain</code>, run as any other Cobertura task.
+     *
+     * @return the exit code of Cobertura.
+     * @throws MojoExecutionException if Cobertura could not be run.
+     */
+    private int executeCheckCoverageMain()
+        throws MojoExecutionException
     {
         if ( dataFile != null )
         {
@@ -91,29 +427,31 @@ public class CheckTask
             this.setMaxmem( config.getMaxmem() );
         }
 
-        for ( Regex regex : config.getRegexes() )
+        if ( isHeapSizeEstimated() && dataFile != null )
         {
-            cmdLineArgs.addArg( "--regex", regex.toString() );
+            setMaxmem( getHeapSizeEstimator().forDataFile( new File( dataFile ), getLog() ) );
         }
 
-        int returnCode = executeJava();
-
-        // Check the return code and print a message
-        if ( returnCode == 0 )
+        for ( Regex regex : config.getRegexes() )
         {
-            getLog().info( "All checks passed." );
+            cmdLineArgs.addArg( "--regex", regex.toString() );
         }
-        else
+
+        Phase phase = getTelemetry().start( Telemetry.CHECK );
+        int returnCode;
+        try
         {
-            if ( config.isHaltOnFailure() )
+            returnCode = executeCobertura();
+            if ( dataFile != null )
             {
-                throw new MojoFailureException( "Coverage check failed. See messages above." );
-            }
-            else
-            {
-                getLog().error( "Coverage check failed. See messages above." );
+                phase.addBytesRead( new File( dataFile ).length() );
             }
         }
+        finally
+        {
+            phase.end();
+        }
+        return returnCode;
     }
 
     /**
@@ -150,4 +488,75 @@ public class CheckTask
         this.dataFile = dataFile;
     }
 
+    /**
+     * @param diffFile a unified diff, to only check the coverage of the lines it changes.
+     * @since 2.8
+     */
+    public void setDiffFile( File diffFile )
+    {
+        this.diffFile = diffFile;
+    }
+
+    /**
+     * @param diffBase a git revision, to only check the coverage of the lines changed since it.
+     * @since 2.8
+     */
+    public void setDiffBase( String diffBase )
+    {
+        this.diffBase = diffBase;
+    }
+
+    /**
+     * @param baseline the coverage baseline, which the coverage must not drop below.
+     * @since 2.8
+     */
+    public void setBaseline( File baseline )
+    {
+        this.baseline = baseline;
+    }
+
+    /**
+     * @param updateBaseline whether to update the baseline when the coverage improved.
+     * @since 2.8
+     */
+    public void setUpdateBaseline( boolean updateBaseline )
+    {
+        this.updateBaseline = updateBaseline;
+    }
+
+    /**
+     * @param basedir the directory to run git in.
+     * @since 2.8
+     */
+    public void setBasedir( File basedir )
+    {
+        this.basedir = basedir;
+    }
+
+    /**
+     * @return the engine running the check, {@link #ENGINE_COBERTURA} or {@link #ENGINE_PLUGIN}.
+     * @since 2.8
+     */
+    public String getCheckEngine()
+    {
+        return checkEngine;
+    }
+
+    /**
+     * @param checkEngine {@link #ENGINE_COBERTURA} to run the check with Cobertura, which only reads serialized data
+     *                    files and is run in-process or forked as set by {@link #setFork(boolean)},
+     *                    {@link #ENGINE_PLUGIN} to run it in the plugin.
+     * @throws IllegalArgumentException if the engine is neither of them.
+     * @since 2.8
+     */
+    public void setCheckEngine( String checkEngine )
+    {
+        if ( !ENGINE_COBERTURA.equals( checkEngine ) && !ENGINE_PLUGIN.equals( checkEngine ) )
+        {
+            throw new IllegalArgumentException(
+                "Unknown check engine " + checkEngine + ", expected " + ENGINE_COBERTURA + " or " + ENGINE_PLUGIN );
+        }
+        this.checkEngine = checkEngine;
+    }
+
 }
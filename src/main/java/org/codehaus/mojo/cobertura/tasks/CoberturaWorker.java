@@ -0,0 +1,403 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of a long-lived JVM running {@link WorkerMain}.
+ * <p/>
+ * A worker is started the first time it is needed and then reused by every Cobertura task of the Maven session
+ * which asks for the same java executable and maximum heap size, so the JVM startup and the JIT warm-up of the
+ * instrumenter and the report generator are only paid once. Workers are stopped by the last goal execution of the
+ * session. A Maven JVM may outlive its sessions, e.g. a build daemon or an IDE, and a session may end early, e.g. on a
+ * build failure, so the workers of an earlier session are also stopped when a new session asks for a worker. Workers
+ * stop by themselves when the Maven JVM disappears.
+ * <p/>
+ * Commands are sent over the standard input of the worker with a {@link DataOutputStream}:
+ * <pre>
+ * UTF  "run"
+ * int  number of classpath entries, followed by an UTF url for each entry
+ * UTF  task class name
+ * UTF  task method name
+ * int  number of arguments, followed by an UTF string for each argument
+ * </pre>
+ * and answered on its standard output with an UTF status, an int exit code and an UTF message. The standard error
+ * of the worker carries the output of Cobertura, one line at a time, each prefixed with the stream it was written to,
+ * and then a line marking the end of the output of the task, which is written before the answer. A command is only
+ * answered once that line has been read, so the output of a task always goes to the log of that task.
+ *
+ * @since 2.8
+ */
+public final class CoberturaWorker
+{
+    static final String COMMAND_RUN = "run";
+
+    static final String COMMAND_EXIT = "exit";
+
+    static final String STATUS_OK = "ok";
+
+    static final String STATUS_UNAVAILABLE = "unavailable";
+
+    static final String STDOUT_PREFIX = "out:";
+
+    static final String STDERR_PREFIX = "err:";
+
+    static final String END_OF_OUTPUT = "end-of-output";
+
+    private static final Map<String, CoberturaWorker> WORKERS = new HashMap<String, CoberturaWorker>();
+
+    /**
+     * The session the workers were started for, not kept alive by the workers.
+     */
+    private static Reference<MavenSession> workersSession = new WeakReference<MavenSession>( null );
+
+    private final String key;
+
+    private final Process process;
+
+    private final DataOutputStream out;
+
+    private final DataInputStream in;
+
+    private final Object outputLock = new Object();
+
+    private ForkOutputLogger output;
+
+    private long outputsEnded;
+
+    private boolean outputClosed;
+
+    private int executions;
+
+    private CoberturaWorker( String key, Process process )
+    {
+        this.key = key;
+        this.process = process;
+        this.out = new DataOutputStream( new BufferedOutputStream( process.getOutputStream() ) );
+        this.in = new DataInputStream( new BufferedInputStream( process.getInputStream() ) );
+
+        Thread pump = new Thread( "cobertura-worker-output" )
+        {
+            public void run()
+            {
+                pumpOutput();
+            }
+        };
+        pump.setDaemon( true );
+        pump.start();
+    }
+
+    /**
+     * Get the worker for the given java executable and heap size, starting it when necessary. Every heap size gets its
+     * own worker, which lives until the end of the session, so the heap size shouldn't vary from task to task.
+     *
+     * @param javaExecutable the java executable.
+     * @param maxmem         the -Xmx value for the worker.
+     * @param session        the Maven session of the task, may be <code>null</code> if unknown.
+     * @param log            the log to report to.
+     * @return the worker.
+     * @throws IOException if the worker could not be started.
+     */
+    public static CoberturaWorker getInstance( File javaExecutable, String maxmem, MavenSession session, Log log )
+        throws IOException
+    {
+        String workerClasspath = getWorkerClasspath();
+        String key = javaExecutable.getAbsolutePath() + File.pathSeparator + maxmem + File.pathSeparator
+            + workerClasspath;
+
+        synchronized ( WORKERS )
+        {
+            if ( session != null && session != workersSession.get() )
+            {
+                if ( !WORKERS.isEmpty() )
+                {
+                    log.debug( "Stopping the Cobertura worker JVMs of an earlier session" );
+                    shutdownAll();
+                }
+                workersSession = new WeakReference<MavenSession>( session );
+            }
+
+            CoberturaWorker worker = WORKERS.get( key );
+            if ( worker == null )
+            {
+                List<String> command = new ArrayList<String>();
+                command.add( javaExecutable.getAbsolutePath() );
+                command.add( "-Xmx" + maxmem );
+                command.add( "-cp" );
+                command.add( workerClasspath );
+                command.add( WorkerMain.class.getName() );
+
+                log.info( "Starting Cobertura worker JVM" );
+                log.debug( "Worker command line: " + command );
+
+                worker = new CoberturaWorker( key, new ProcessBuilder( command ).start() );
+                WORKERS.put( key, worker );
+            }
+            return worker;
+        }
+    }
+
+    /**
+     * Run a task in the worker.
+     *
+     * @param classpath  the classpath to load the task from.
+     * @param className  the task class.
+     * @param methodName the static <code>int method( String[] )</code> to call.
+     * @param args       the arguments.
+     * @param taskLog    the log to report the execution to.
+     * @param taskOutput the logger of the output of the task, created for this task only.
+     * @return the exit code of the task.
+     * @throws IOException if the worker died, it won't be reused afterwards.
+     * @throws InProcessExecutor.EntryPointUnavailableException if the worker could not call the task.
+     */
+    synchronized int execute( URL[] classpath, String className, String methodName, String[] args,
+                              Log taskLog, ForkOutputLogger taskOutput )
+        throws IOException, InProcessExecutor.EntryPointUnavailableException
+    {
+        long outputEnd;
+        synchronized ( outputLock )
+        {
+            output = taskOutput;
+            outputEnd = outputsEnded + 1;
+        }
+
+        long start = System.currentTimeMillis();
+        String status;
+        int exitCode;
+        String message;
+        try
+        {
+            out.writeUTF( COMMAND_RUN );
+            out.writeInt( classpath.length );
+            for ( URL url : classpath )
+            {
+                out.writeUTF( url.toExternalForm() );
+            }
+            out.writeUTF( className );
+            out.writeUTF( methodName );
+            out.writeInt( args.length );
+            for ( String arg : args )
+            {
+                out.writeUTF( arg );
+            }
+            out.flush();
+
+            status = in.readUTF();
+            exitCode = in.readInt();
+            message = in.readUTF();
+
+            awaitEndOfOutput( outputEnd );
+        }
+        catch ( IOException e )
+        {
+            discard();
+            throw e;
+        }
+        finally
+        {
+            taskOutput.finish();
+        }
+
+        if ( STATUS_UNAVAILABLE.equals( status ) )
+        {
+            throw new InProcessExecutor.EntryPointUnavailableException( message, null );
+        }
+
+        taskLog.debug( "Cobertura worker executed " + className + " in " + ( System.currentTimeMillis() - start )
+                           + " ms (" + ( executions == 0 ? "cold" : "warm" ) + ")" );
+        executions++;
+
+        return exitCode;
+    }
+
+    /**
+     * Stop all workers, at the end of the session.
+     */
+    public static void shutdownAll()
+    {
+        List<CoberturaWorker> workers;
+        synchronized ( WORKERS )
+        {
+            workers = new ArrayList<CoberturaWorker>( WORKERS.values() );
+            WORKERS.clear();
+        }
+
+        for ( CoberturaWorker worker : workers )
+        {
+            worker.shutdown();
+        }
+    }
+
+    private void shutdown()
+    {
+        try
+        {
+            out.writeUTF( COMMAND_EXIT );
+            out.flush();
+            process.waitFor();
+        }
+        catch ( IOException e )
+        {
+            process.destroy();
+        }
+        catch ( InterruptedException e )
+        {
+            process.destroy();
+        }
+        finally
+        {
+            IOUtil.close( out );
+            IOUtil.close( in );
+        }
+    }
+
+    private void discard()
+    {
+        synchronized ( WORKERS )
+        {
+            if ( WORKERS.get( key ) == this )
+            {
+                WORKERS.remove( key );
+            }
+        }
+        process.destroy();
+    }
+
+    /**
+     * Wait until the output of the current task has been forwarded, which the worker ends before answering.
+     *
+     * @param outputEnd the number of task outputs ended once the current one is.
+     * @throws IOException if the worker went away, or the wait was interrupted.
+     */
+    private void awaitEndOfOutput( long outputEnd )
+        throws IOException
+    {
+        synchronized ( outputLock )
+        {
+            try
+            {
+                while ( outputsEnded < outputEnd )
+                {
+                    if ( outputClosed )
+                    {
+                        throw new IOException( "The output of the Cobertura worker was closed" );
+                    }
+                    outputLock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while reading the output of the Cobertura worker" );
+            }
+        }
+    }
+
+    private void pumpOutput()
+    {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( process.getErrorStream() ) );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                synchronized ( outputLock )
+                {
+                    if ( END_OF_OUTPUT.equals( line ) )
+                    {
+                        outputsEnded++;
+                        output = null;
+                        outputLock.notifyAll();
+                    }
+                    else if ( output != null )
+                    {
+                        forward( output, line );
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // the worker is gone
+        }
+        finally
+        {
+            IOUtil.close( reader );
+            synchronized ( outputLock )
+            {
+                outputClosed = true;
+                outputLock.notifyAll();
+            }
+        }
+    }
+
+    private static void forward( ForkOutputLogger output, String line )
+    {
+        StreamConsumer consumer;
+        if ( line.startsWith( STDOUT_PREFIX ) )
+        {
+            consumer = output.getStdout();
+            line = line.substring( STDOUT_PREFIX.length() );
+        }
+        else if ( line.startsWith( STDERR_PREFIX ) )
+        {
+            consumer = output.getStderr();
+            line = line.substring( STDERR_PREFIX.length() );
+        }
+        else
+        {
+            // written by the JVM itself
+            consumer = output.getStderr();
+        }
+        consumer.consumeLine( line );
+    }
+
+    /**
+     * The worker only needs the plugin itself, the classpath of the tasks is sent with every command.
+     *
+     * @return the classpath of the worker JVM.
+     * @throws IOException if the location of the plugin can't be determined.
+     */
+    private static String getWorkerClasspath()
+        throws IOException
+    {
+        return AbstractTask.getPluginLocation().getAbsolutePath();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Forwards the standard output and standard error of a forked JVM, or of a task run in the worker JVM, to the log,
+ * line by line, as they arrive.
+ * <p/>
+ * Both streams share a limit on the number of characters forwarded, so that a runaway task can't flood the build log.
+ * The lines above the limit are counted and reported by {@link #finish()}.
+ *
+ * @since 2.8
+ */
+class ForkOutputLogger
+{
+    private final Log log;
+
+    private final long limit;
+
+    private final boolean quiet;
+
+    private long forwarded;
+
+    private long omittedLines;
+
+    private long omittedChars;
+
+    /**
+     * @param log   the log to forward to.
+     * @param limit the maximum number of characters to forward, <code>0</code> or less for no limit.
+     * @param quiet <code>true</code> to swallow the output.
+     */
+    ForkOutputLogger( Log log, long limit, boolean quiet )
+    {
+        this.log = log;
+        this.limit = limit;
+        this.quiet = quiet;
+    }
+
+    /**
+     * @return the consumer of the standard output, logged at info level.
+     */
+    StreamConsumer getStdout()
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                forward( line, false );
+            }
+        };
+    }
+
+    /**
+     * @return the consumer of the standard error, logged at error level.
+     */
+    StreamConsumer getStderr()
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                forward( line, true );
+            }
+        };
+    }
+
+    private synchronized void forward( String line, boolean error )
+    {
+        if ( quiet )
+        {
+            return;
+        }
+
+        int length = line.length() + 1;
+        // once over the limit, nothing else is forwarded, so that the log doesn't miss lines in between
+        if ( omittedLines > 0 || ( limit > 0 && forwarded + length > limit ) )
+        {
+            omittedLines++;
+            omittedChars += length;
+            return;
+        }
+
+        forwarded += length;
+        if ( error )
+        {
+            log.error( line );
+        }
+        else
+        {
+            log.info( line );
+        }
+    }
+
+    /**
+     * Report the output which was over the limit, once the forked JVM has exited.
+     */
+    synchronized void finish()
+    {
+        if ( omittedLines > 0 )
+        {
+            log.warn( "Omitted " + omittedLines + " lines (" + omittedChars + " characters) of output from "
+                          + "Cobertura, above the limit of " + limit + " characters." );
+        }
+    }
+
+    synchronized long getOmittedLines()
+    {
+        return omittedLines;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Runs the main class of a Cobertura task in a forked JVM, and reports how the JVM did once it exits.
+ * <p/>
+ * The first argument is the main class, the others are its arguments. When the JVM exits, whether Cobertura called
+ * <code>System.exit</code> or not, a single line starting with {@link #MARKER} is printed to the standard output:
+ * <pre>
+ * #cobertura-telemetry started=&lt;epoch millis when main was called&gt; cpuNanos=&lt;process CPU time&gt;
+ *     peakRssKb=&lt;peak resident set size&gt;
+ * </pre>
+ * The values are <code>-1</code> when the JVM doesn't provide them. The peak resident set size is read from
+ * <code>/proc</code>; where it doesn't exist, the sum of the peak usages of the memory pools is used instead.
+ * <p/>
+ * This class must only depend on the JDK, since it runs on the Cobertura classpath.
+ *
+ * @since 2.8
+ */
+public final class ForkedMain
+{
+    /**
+     * The start of the line reporting on the JVM.
+     */
+    public static final String MARKER = "#cobertura-telemetry";
+
+    private ForkedMain()
+    {
+    }
+
+    /**
+     * Run the main class.
+     *
+     * @param args the main class, followed by its arguments.
+     * @throws Throwable whatever the main class threw.
+     */
+    public static void main( String[] args )
+        throws Throwable
+    {
+        final long started = System.currentTimeMillis();
+        Runtime.getRuntime().addShutdownHook( new Thread()
+        {
+            public void run()
+            {
+                System.out.println( MARKER + " started=" + started + " cpuNanos=" + getProcessCpuNanos()
+                                        + " peakRssKb=" + getPeakRssKb() );
+                System.out.flush();
+            }
+        } );
+
+        String[] mainArgs = new String[args.length - 1];
+        System.arraycopy( args, 1, mainArgs, 0, mainArgs.length );
+        Method main = Class.forName( args[0] ).getMethod( "main", String[].class );
+        try
+        {
+            main.invoke( null, (Object) mainArgs );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause();
+        }
+    }
+
+    static long getProcessCpuNanos()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        try
+        {
+            Class<?> sunOs = Class.forName( "com.sun.management.OperatingSystemMXBean" );
+            if ( sunOs.isInstance( os ) )
+            {
+                return ( (Number) sunOs.getMethod( "getProcessCpuTime" ).invoke( os ) ).longValue();
+            }
+        }
+        catch ( Exception e )
+        {
+            // not a HotSpot-like JVM
+        }
+        return -1;
+    }
+
+    static long getPeakRssKb()
+    {
+        try
+        {
+            BufferedReader reader = new BufferedReader( new FileReader( "/proc/self/status" ) );
+            try
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    if ( line.startsWith( "VmHWM:" ) )
+                    {
+                        return Long.parseLong( line.substring( 6 ).replace( "kB", "" ).trim() );
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // no procfs
+        }
+        catch ( NumberFormatException e )
+        {
+            // unexpected format
+        }
+
+        long peak = 0;
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getPeakUsage() != null )
+            {
+                peak += pool.getPeakUsage().getCommitted();
+            }
+        }
+        return peak > 0 ? peak / 1024 : -1;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the Cobertura command line entry points inside the current JVM.
+ * <p/>
+ * Every distinct classpath gets its own {@link URLClassLoader}, whose parent is the extension class loader so that
+ * neither Maven nor the plugin realm leak into Cobertura. The loaders are cached, which means that Cobertura's classes
+ * only have to be loaded and verified once per build instead of once per goal. Invocations on the same loader are
+ * serialized, because Cobertura keeps part of its state in static fields.
+ * <p/>
+ * This class only depends on the JDK, so it can also be used from inside a forked JVM.
+ *
+ * @since 2.8
+ */
+public final class InProcessExecutor
+{
+    /**
+     * The maximum number of class loaders kept in the cache.
+     */
+    private static final int MAX_CACHED_LOADERS = 4;
+
+    private static final Map<String, ClassLoader> LOADERS = new LinkedHashMap<String, ClassLoader>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry( Map.Entry<String, ClassLoader> eldest )
+        {
+            return size() > MAX_CACHED_LOADERS;
+        }
+    };
+
+    private InProcessExecutor()
+    {
+    }
+
+    /**
+     * Invoke <code>public static int methodName( String[] )</code> on <code>className</code>, loaded from the
+     * given classpath.
+     *
+     * @param classpath  the classpath to load Cobertura from.
+     * @param className  the fully qualified name of the Cobertura entry point.
+     * @param methodName the name of the static method returning the exit code.
+     * @param args       the arguments, exactly as they would be passed to the forked JVM.
+     * @return the exit code returned by Cobertura.
+     * @throws EntryPointUnavailableException if the entry point could not be located or invoked.
+     * @throws Exception                      any exception thrown by Cobertura itself.
+     */
+    public static int execute( URL[] classpath, String className, String methodName, String[] args )
+        throws Exception
+    {
+        ClassLoader loader = getClassLoader( classpath );
+
+        Method method;
+        try
+        {
+            Class<?> taskClass = Class.forName( className, true, loader );
+            method = taskClass.getMethod( methodName, new Class[]{ String[].class } );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new EntryPointUnavailableException( "Unable to load " + className, e );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            throw new EntryPointUnavailableException( "Unable to find " + className + "." + methodName, e );
+        }
+        catch ( LinkageError e )
+        {
+            throw new EntryPointUnavailableException( "Unable to link " + className, e );
+        }
+
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+        synchronized ( loader )
+        {
+            currentThread.setContextClassLoader( loader );
+            try
+            {
+                Object result = method.invoke( null, new Object[]{ args } );
+                return ( (Integer) result ).intValue();
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new EntryPointUnavailableException( "Unable to access " + className + "." + methodName, e );
+            }
+            catch ( InvocationTargetException e )
+            {
+                Throwable cause = e.getCause();
+                if ( cause instanceof Exception )
+                {
+                    throw (Exception) cause;
+                }
+                if ( cause instanceof Error )
+                {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+            finally
+            {
+                currentThread.setContextClassLoader( contextClassLoader );
+            }
+        }
+    }
+
+    /**
+     * Get the cached class loader for the classpath, creating it when necessary.
+     *
+     * @param classpath the classpath.
+     * @return the isolated class loader.
+     */
+    static ClassLoader getClassLoader( URL[] classpath )
+    {
+        StringBuffer key = new StringBuffer();
+        for ( URL url : classpath )
+        {
+            key.append( url.toExternalForm() ).append( '\n' );
+        }
+
+        synchronized ( LOADERS )
+        {
+            ClassLoader loader = LOADERS.get( key.toString() );
+            if ( loader == null )
+            {
+                loader = new URLClassLoader( classpath, ClassLoader.getSystemClassLoader().getParent() );
+                LOADERS.put( key.toString(), loader );
+            }
+            return loader;
+        }
+    }
+
+    /**
+     * Signals that Cobertura could not be called in-process at all, as opposed to Cobertura failing while running.
+     * Callers are expected to fall back to a forked JVM.
+     */
+    public static class EntryPointUnavailableException
+        extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param message the message.
+         * @param cause   the cause.
+         */
+        public EntryPointUnavailableException( String message, Throwable cause )
+        {
+            super( message, cause );
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SourceFileData;
+import net.sourceforge.cobertura.reporting.ComplexityCalculator;
+import net.sourceforge.cobertura.reporting.html.HTMLReport;
+import net.sourceforge.cobertura.util.FileFinder;
+import net.sourceforge.cobertura.util.Source;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Renders the HTML report again for the source files whose coverage or content changed since the previous report in
+ * the same directory, and leaves the pages of the other source files in place.
+ * <p/>
+ * Cobertura's <code>HTMLReport</code> always renders every page, so the report is rendered into a scratch directory
+ * with a source finder which only knows the changed source files; the pages of the unchanged ones are then quick to
+ * render and are not copied. The summary pages depend on all classes and are always replaced. The coverage data and
+ * the source hashes the report was rendered from are kept for the next comparison in a state directory, which must
+ * not be inside the report directory since that gets published.
+ * <p/>
+ * This class must only depend on the JDK and Cobertura, since it runs on the Cobertura classpath.
+ *
+ * @since 2.8
+ */
+final class IncrementalHtmlReport
+{
+    static final String PREVIOUS_DATA_FILE = "html.ser";
+
+    static final String PREVIOUS_SOURCES_FILE = "html.properties";
+
+    private static final String SCRATCH_DIR = "html";
+
+    private static final String ENCODING_KEY = "encoding";
+
+    private static final String SOURCE_PREFIX = "source.";
+
+    private final ProjectData projectData;
+
+    private final File destinationDir;
+
+    private final File stateDir;
+
+    private final FileFinder finder;
+
+    private final ComplexityCalculator complexity;
+
+    private final String encoding;
+
+    private int rendered;
+
+    IncrementalHtmlReport( ProjectData projectData, File destinationDir, File stateDir, FileFinder finder,
+                           ComplexityCalculator complexity, String encoding )
+    {
+        this.projectData = projectData;
+        this.destinationDir = destinationDir;
+        this.stateDir = stateDir;
+        this.finder = finder;
+        this.complexity = complexity;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Render the changed pages of the report.
+     *
+     * @throws Exception if Cobertura failed.
+     */
+    void render()
+        throws Exception
+    {
+        File previousDataFile = new File( stateDir, PREVIOUS_DATA_FILE );
+        File previousSourcesFile = new File( stateDir, PREVIOUS_SOURCES_FILE );
+        ProjectData previous =
+            previousDataFile.isFile() ? CoverageDataFileHandler.loadCoverageData( previousDataFile ) : null;
+        Properties previousSources = load( previousSourcesFile );
+
+        Properties sources = new Properties();
+        sources.setProperty( ENCODING_KEY, String.valueOf( encoding ) );
+        Map<String, SourceFileData> sourceFiles = new HashMap<String, SourceFileData>();
+        for ( Object o : projectData.getSourceFiles() )
+        {
+            SourceFileData sourceFile = (SourceFileData) o;
+            sourceFiles.put( sourceFile.getName(), sourceFile );
+            sources.setProperty( SOURCE_PREFIX + sourceFile.getName(), hash( sourceFile.getName() ) );
+        }
+
+        // delete the state first, so that a failed rendering doesn't look complete to the next one
+        previousDataFile.delete();
+        previousSourcesFile.delete();
+
+        if ( previous == null || !sources.getProperty( ENCODING_KEY ).equals(
+            previousSources.getProperty( ENCODING_KEY ) ) )
+        {
+            new HTMLReport( projectData, destinationDir, finder, complexity, encoding );
+            rendered = sourceFiles.size();
+        }
+        else
+        {
+            renderChanged( previous, previousSources, sourceFiles, sources );
+        }
+
+        stateDir.mkdirs();
+        CoverageDataFileHandler.saveCoverageData( projectData, previousDataFile );
+        store( sources, previousSourcesFile );
+    }
+
+    /**
+     * @return the number of source files whose page was rendered.
+     */
+    int getRendered()
+    {
+        return rendered;
+    }
+
+    private void renderChanged( ProjectData previous, Properties previousSources,
+                                Map<String, SourceFileData> sourceFiles, Properties sources )
+        throws Exception
+    {
+        Map<String, SourceFileData> previousFiles = new HashMap<String, SourceFileData>();
+        for ( Object o : previous.getSourceFiles() )
+        {
+            previousFiles.put( ( (SourceFileData) o ).getName(), (SourceFileData) o );
+        }
+
+        final Set<String> changed = new HashSet<String>();
+        Set<String> unchangedPages = new HashSet<String>();
+        for ( SourceFileData sourceFile : sourceFiles.values() )
+        {
+            String key = SOURCE_PREFIX + sourceFile.getName();
+            String page = sourceFile.getNormalizedName() + ".html";
+            if ( sources.getProperty( key ).equals( previousSources.getProperty( key ) )
+                && sourceFile.equals( previousFiles.get( sourceFile.getName() ) )
+                && new File( destinationDir, page ).isFile() )
+            {
+                unchangedPages.add( page );
+            }
+            else
+            {
+                changed.add( sourceFile.getName() );
+            }
+        }
+
+        File scratchDir = new File( stateDir, SCRATCH_DIR );
+        deleteDirectory( scratchDir );
+        scratchDir.mkdirs();
+        try
+        {
+            FileFinder changedFinder = new FileFinder()
+            {
+                @Override
+                public Source getSource( String fileName )
+                {
+                    return changed.contains( fileName ) ? finder.getSource( fileName ) : null;
+                }
+            };
+            new HTMLReport( projectData, scratchDir, changedFinder, complexity, encoding );
+            copy( scratchDir, destinationDir, unchangedPages );
+        }
+        finally
+        {
+            deleteDirectory( scratchDir );
+        }
+
+        // drop the pages of the source files which are gone
+        for ( SourceFileData sourceFile : previousFiles.values() )
+        {
+            if ( !sourceFiles.containsKey( sourceFile.getName() ) )
+            {
+                new File( destinationDir, sourceFile.getNormalizedName() + ".html" ).delete();
+            }
+        }
+        rendered = changed.size();
+    }
+
+    private String hash( String sourceFileName )
+        throws IOException
+    {
+        Source source = finder.getSource( sourceFileName );
+        if ( source == null )
+        {
+            return "missing";
+        }
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            InputStream in = source.getInputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+            return new BigInteger( 1, digest.digest() ).toString( 16 );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported", e );
+        }
+        finally
+        {
+            source.close();
+        }
+    }
+
+    private static void copy( File sourceDir, File targetDir, Set<String> excludes )
+        throws IOException
+    {
+        File[] files = sourceDir.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        targetDir.mkdirs();
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                copy( file, new File( targetDir, file.getName() ), new HashSet<String>() );
+            }
+            else if ( !excludes.contains( file.getName() ) )
+            {
+                copyFile( file, new File( targetDir, file.getName() ) );
+            }
+        }
+    }
+
+    private static void copyFile( File source, File target )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( source );
+        try
+        {
+            OutputStream out = new FileOutputStream( target );
+            try
+            {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ( ( read = in.read( buffer ) ) != -1 )
+                {
+                    out.write( buffer, 0, read );
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void deleteDirectory( File directory )
+    {
+        File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                if ( file.isDirectory() )
+                {
+                    deleteDirectory( file );
+                }
+                else
+                {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+
+    private static Properties load( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        if ( file.isFile() )
+        {
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                properties.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return properties;
+    }
+
+    private static void store( Properties properties, File file )
+        throws IOException
+    {
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            properties.store( out, "Sources of the Cobertura HTML report" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -19,15 +19,28 @@
  */
 package org.codehaus.mojo.cobertura.tasks;
 
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.mojo.cobertura.configuration.ConfigInstrumentation;
+import org.codehaus.mojo.cobertura.instrument.PathScanner;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The Instrument Task.
@@ -43,12 +56,16 @@ public class InstrumentTask
 
     private File destinationDir = null;
 
+    private Set<String> modifiedFiles = null;
+
+    private List<String> auxClasspath = null;
+
     /**
      * Create a new InstrumentTask.
      */
     public InstrumentTask()
     {
-        super( net.sourceforge.cobertura.instrument.InstrumentMain.class.getName() );
+        super( net.sourceforge.cobertura.instrument.InstrumentMain.class.getName(), "instrument" );
     }
 
     /**
@@ -65,11 +82,6 @@ public class InstrumentTask
             this.setMaxmem( config.getMaxmem() );
         }
 
-        if ( dataFile != null )
-        {
-            cmdLineArgs.addArg( "--datafile", dataFile.getAbsolutePath() );
-        }
-
         if ( destinationDir != null )
         {
             cmdLineArgs.addArg( "--destination", destinationDir.getAbsolutePath() );
@@ -90,6 +102,127 @@ public class InstrumentTask
             cmdLineArgs.addArg( "--ignore", ignore );
         }
 
+        List<String> filenames = scanFiles( config.getBasedir() );
+
+        if ( modifiedFiles != null )
+        {
+            int total = filenames.size();
+            for ( Iterator<String> it = filenames.iterator(); it.hasNext(); )
+            {
+                if ( !modifiedFiles.contains( it.next().replace( File.separatorChar, '/' ) ) )
+                {
+                    it.remove();
+                }
+            }
+
+            if ( filenames.isEmpty() && total > 0 )
+            {
+                getLog().info( "All instrumented classes are up to date." );
+                return;
+            }
+        }
+
+        if ( filenames.isEmpty() )
+        {
+            getLog().warn( "No files to instrument." );
+            return;
+        }
+
+        if ( ( !isFork() || isDaemon() ) && auxClasspath != null && !auxClasspath.isEmpty() )
+        {
+            // Cobertura computes the stack map frames of the instrumented classes from the types they use, which
+            // in-process or in the worker are only found on the compile classpath of the project
+            cmdLineArgs.addArg( "--auxClasspath", StringUtils.join( auxClasspath.iterator(), File.pathSeparator ) );
+        }
+
+        int shards = Math.min( config.getThreads(), filenames.size() );
+
+        // in-process and worker executions are serialized, so sharding would only add merging
+        boolean sharded = shards > 1 && dataFile != null && isFork() && !isDaemon();
+
+        if ( isHeapSizeEstimated() )
+        {
+            // each shard is instrumented by a JVM of its own
+            int classesPerJvm = sharded ? ( filenames.size() + shards - 1 ) / shards : filenames.size();
+            setMaxmem( getHeapSizeEstimator().forClassFiles( classesPerJvm, getLog() ) );
+        }
+
+        InstrumentationProgress progress = null;
+        if ( !isQuiet() )
+        {
+            File targetDir = destinationDir != null ? destinationDir : config.getBasedir();
+            progress = new InstrumentationProgress( targetDir, filenames, getLog() );
+            progress.start();
+        }
+        try
+        {
+            if ( sharded )
+            {
+                executeSharded( filenames, shards );
+            }
+            else
+            {
+                executeSingle( filenames );
+            }
+        }
+        finally
+        {
+            if ( progress != null )
+            {
+                progress.stop();
+            }
+        }
+
+        if ( !isQuiet() )
+        {
+            getLog().info( "Instrumentation was successful." );
+        }
+    }
+
+    /**
+     * Instrument all the files with a single execution of Cobertura.
+     *
+     * @param filenames the files to instrument.
+     * @throws MojoExecutionException if the instrumentation failed.
+     */
+    private void executeSingle( List<String> filenames )
+        throws MojoExecutionException
+    {
+        if ( dataFile != null )
+        {
+            cmdLineArgs.addArg( "--datafile", dataFile.getAbsolutePath() );
+        }
+        addFilenames( cmdLineArgs, filenames );
+
+        Phase phase = startInstrumentation( filenames );
+        int returnCode;
+        try
+        {
+            returnCode = executeCobertura();
+        }
+        finally
+        {
+            recordInstrumentation( phase, filenames );
+        }
+
+        // Check the return code and print a message
+        if ( returnCode != 0 )
+        {
+            throw new MojoExecutionException( "Unable to instrument project." );
+        }
+    }
+
+    /**
+     * Find the files to instrument, according to the includes and excludes of the configuration.
+     *
+     * @param basedir the directory to scan.
+     * @return the paths of the files, relative to the directory.
+     * @throws MojoExecutionException if the directory could not be scanned.
+     * @since 2.8
+     */
+    public List<String> scanFiles( File basedir )
+        throws MojoExecutionException
+    {
         String includes = joinCludes( config.getIncludes() );
         String excludes = joinCludes( config.getExcludes() );
         @SuppressWarnings( "unchecked" ) String defaultExcludes = joinCludes( FileUtils.getDefaultExcludesAsList() );
@@ -103,56 +236,225 @@ public class InstrumentTask
             excludes = defaultExcludes;
         }
 
+        Phase phase = getTelemetry().start( Telemetry.SCAN );
         try
         {
             if ( getLog().isDebugEnabled() )
             {
                 getLog().debug( "Config : " + config );
-                getLog().debug( "Basedir: " + config.getBasedir() );
+                getLog().debug( "Basedir: " + basedir );
                 getLog().debug( "Include: " + includes );
                 getLog().debug( "Exclude: " + excludes );
                 getLog().debug( "Max Mem: " + config.getMaxmem() );
             }
 
-            @SuppressWarnings( "unchecked" ) List<String> filenames =
-                FileUtils.getFileNames( config.getBasedir(), includes, excludes, false );
+            List<String> includeList = splitCludes( includes );
+            List<String> excludeList = splitCludes( excludes );
+            if ( !PathScanner.isSupported( includeList ) || !PathScanner.isSupported( excludeList ) )
+            {
+                //noinspection unchecked
+                return FileUtils.getFileNames( basedir, includes, excludes, false );
+            }
+
+            List<String> filenames =
+                new PathScanner( includeList, excludeList, Runtime.getRuntime().availableProcessors() ).scan(
+                    basedir );
+            getLog().debug( "Scanned " + filenames.size() + " files in " + basedir );
+            return filenames;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to obtain file list from includes/excludes.", e );
+        }
+        catch ( InterruptedException e )
+        {
+            throw new MojoExecutionException( "Interrupted while scanning " + basedir, e );
+        }
+        finally
+        {
+            phase.end();
+        }
+    }
+
+    /**
+     * Split the files into shards, instrument the shards concurrently, each into its own data file, and merge those
+     * data files into the final one.
+     *
+     * @param filenames the files to instrument.
+     * @param shards    the number of shards.
+     * @throws MojoExecutionException if any shard failed.
+     */
+    private void executeSharded( List<String> filenames, int shards )
+        throws MojoExecutionException
+    {
+        getLog().info( "Instrumenting " + filenames.size() + " files in " + shards + " shards." );
 
-            if ( filenames.isEmpty() )
+        List<File> shardDataFiles = new ArrayList<File>();
+        ExecutorService executor = Executors.newFixedThreadPool( shards );
+        try
+        {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for ( int i = 0; i < shards; i++ )
             {
-                getLog().warn( "No files to instrument." );
-                return;
+                File shardDataFile = new File( dataFile.getParentFile(), dataFile.getName() + ".shard" + i );
+                shardDataFile.delete();
+                shardDataFiles.add( shardDataFile );
+
+                final List<String> shardFilenames =
+                    filenames.subList( i * filenames.size() / shards, ( i + 1 ) * filenames.size() / shards );
+                final CommandLineArguments shardArgs = new CommandLineArguments();
+                shardArgs.setUseCommandsFile( true );
+                for ( String arg : cmdLineArgs.getArgs() )
+                {
+                    shardArgs.addArg( arg );
+                }
+                shardArgs.addArg( "--datafile", shardDataFile.getAbsolutePath() );
+                addFilenames( shardArgs, shardFilenames );
+
+                results.add( executor.submit( new Callable<Integer>()
+                {
+                    public Integer call()
+                        throws MojoExecutionException
+                    {
+                        Phase phase = startInstrumentation( shardFilenames );
+                        try
+                        {
+                            return executeCobertura( shardArgs );
+                        }
+                        finally
+                        {
+                            recordInstrumentation( phase, shardFilenames );
+                        }
+                    }
+                } ) );
             }
 
-            cmdLineArgs.addArg( "--basedir", config.getBasedir().getAbsolutePath() );
-            for ( String filename : filenames )
+            for ( Future<Integer> result : results )
             {
-                if ( getLog().isDebugEnabled() )
+                if ( result.get().intValue() != 0 )
                 {
-                    getLog().debug( "To Instrument: " + filename );
+                    throw new MojoExecutionException( "Unable to instrument project." );
                 }
-                cmdLineArgs.addArg( filename );
+            }
+
+            Phase phase = getTelemetry().start( Telemetry.MERGE );
+            try
+            {
+                mergeShards( shardDataFiles );
+                for ( File shardDataFile : shardDataFiles )
+                {
+                    phase.addBytesRead( shardDataFile.length() );
+                }
+                phase.addBytesWritten( dataFile.length() );
+            }
+            finally
+            {
+                phase.end();
             }
         }
-        catch ( IOException e )
+        catch ( InterruptedException e )
         {
-            throw new MojoExecutionException( "Unable to obtain file list from includes/excludes.", e );
+            throw new MojoExecutionException( "Interrupted while instrumenting project.", e );
         }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoExecutionException )
+            {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException( "Unable to instrument project.", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for ( File shardDataFile : shardDataFiles )
+            {
+                shardDataFile.delete();
+            }
+        }
+    }
 
-        int returnCode = executeJava();
+    /**
+     * Start an instrumentation phase, with the size of the classes it reads.
+     *
+     * @param filenames the files instrumented by the phase.
+     * @return the phase.
+     */
+    private Phase startInstrumentation( List<String> filenames )
+    {
+        Phase phase = getTelemetry().start( Telemetry.INSTRUMENT );
+        for ( String filename : filenames )
+        {
+            phase.addBytesRead( new File( config.getBasedir(), filename ).length() );
+        }
+        return phase;
+    }
 
-        // Check the return code and print a message
-        if ( returnCode == 0 )
+    /**
+     * End an instrumentation phase, with the size of the classes it wrote.
+     *
+     * @param phase     the phase.
+     * @param filenames the files instrumented by the phase.
+     */
+    private void recordInstrumentation( Phase phase, List<String> filenames )
+    {
+        File targetDir = destinationDir != null ? destinationDir : config.getBasedir();
+        for ( String filename : filenames )
         {
-            if ( !isQuiet() )
+            phase.addBytesWritten( new File( targetDir, filename ).length() );
+        }
+        phase.end();
+    }
+
+    /**
+     * Merge the data files of the shards into the data file, the same way Cobertura adds to an existing data file.
+     *
+     * @param shardDataFiles the data files of the shards.
+     * @throws MojoExecutionException if a data file of a shard could not be read.
+     */
+    private void mergeShards( List<File> shardDataFiles )
+        throws MojoExecutionException
+    {
+        ProjectData projectData = null;
+        if ( dataFile.isFile() )
+        {
+            projectData = CoverageDataFileHandler.loadCoverageData( dataFile );
+        }
+        if ( projectData == null )
+        {
+            projectData = new ProjectData();
+        }
+
+        for ( File shardDataFile : shardDataFiles )
+        {
+            ProjectData shardData = CoverageDataFileHandler.loadCoverageData( shardDataFile );
+            if ( shardData == null )
             {
-                getLog().info( "Instrumentation was successful." );
+                throw new MojoExecutionException( "Unable to read instrumentation data from " + shardDataFile );
             }
+            projectData.merge( shardData );
         }
-        else
+
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+    }
+
+    /**
+     * Add the base directory and the files to instrument to the arguments.
+     *
+     * @param args      the arguments.
+     * @param filenames the files, relative to the base directory.
+     */
+    private void addFilenames( CommandLineArguments args, List<String> filenames )
+    {
+        args.addArg( "--basedir", config.getBasedir().getAbsolutePath() );
+        for ( String filename : filenames )
         {
-            throw new MojoExecutionException( "Unable to instrument project." );
+            if ( getLog().isDebugEnabled() )
+            {
+                getLog().debug( "To Instrument: " + filename );
+            }
+            args.addArg( filename );
         }
-
     }
 
     /**
@@ -201,6 +503,11 @@ public class InstrumentTask
         return sb.toString();
     }
 
+    private static List<String> splitCludes( String cludes )
+    {
+        return Arrays.asList( StringUtils.split( cludes, "," ) );
+    }
+
     /**
      * Set the configuration
      *
@@ -231,11 +538,46 @@ public class InstrumentTask
         this.destinationDir = destinationDir;
     }
 
+    /**
+     * @return the files which need instrumentation, or <code>null</code> to instrument every matching file.
+     * @since 2.8
+     */
+    public Set<String> getModifiedFiles()
+    {
+        return modifiedFiles;
+    }
+
+    /**
+     * Restrict the instrumentation to the given files, as found by an incremental build.
+     *
+     * @param modifiedFiles the paths relative to the basedir, separated by '/', or <code>null</code> to instrument
+     *                      every matching file.
+     * @since 2.8
+     */
+    public void setModifiedFiles( Set<String> modifiedFiles )
+    {
+        this.modifiedFiles = modifiedFiles;
+    }
+
+    /**
+     * Set the compile classpath of the project, for Cobertura to find the types used by the instrumented classes when
+     * it isn't run in a forked JVM, whose classpath already holds the dependencies of the project.
+     *
+     * @param auxClasspath the compile classpath elements of the project, may be <code>null</code>.
+     * @since 2.8
+     */
+    public void setAuxClasspath( List<String> auxClasspath )
+    {
+        this.auxClasspath = auxClasspath;
+    }
+
     @Override
     public String createClasspath()
         throws MojoExecutionException
     {
-        return this.config.getBasedir().getAbsolutePath() + super.createClasspath();
+        String classpath = super.createClasspath();
+        String basedir = this.config.getBasedir().getAbsolutePath();
+        return classpath.length() > 0 ? basedir + File.pathSeparator + classpath : basedir;
     }
 
 
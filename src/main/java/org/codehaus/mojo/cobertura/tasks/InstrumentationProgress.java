@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how many classes have been instrumented so far, while Cobertura is running.
+ * <p/>
+ * Cobertura only logs the classes it instruments at debug level, and in no particular order, so the progress is
+ * derived from the files themselves: a class counts as instrumented once its file in the destination directory has
+ * been written since the start. Only the files not seen yet are checked again.
+ *
+ * @since 2.8
+ */
+class InstrumentationProgress
+{
+    /**
+     * The interval between two reports, in seconds.
+     */
+    static final int INTERVAL = 5;
+
+    private final Log log;
+
+    private final int total;
+
+    private final List<File> pending;
+
+    private final long start;
+
+    private int instrumented;
+
+    private int reported;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param targetDir the directory the classes are instrumented into.
+     * @param filenames the files being instrumented, relative to the directory.
+     * @param log       the log to report to.
+     */
+    InstrumentationProgress( File targetDir, List<String> filenames, Log log )
+    {
+        this.log = log;
+        this.total = filenames.size();
+        this.pending = new ArrayList<File>( filenames.size() );
+        for ( String filename : filenames )
+        {
+            pending.add( new File( targetDir, filename ) );
+        }
+        // file systems may only keep the modification time to the second
+        this.start = System.currentTimeMillis() / 1000L * 1000L;
+    }
+
+    /**
+     * Report the progress periodically, until {@link #stop()} is called.
+     */
+    void start()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "cobertura-instrumentation-progress" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        scheduler.scheduleWithFixedDelay( new Runnable()
+        {
+            public void run()
+            {
+                report();
+            }
+        }, INTERVAL, INTERVAL, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Stop reporting.
+     */
+    void stop()
+    {
+        if ( scheduler != null )
+        {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Log the progress, if any was made since the last report.
+     */
+    synchronized void report()
+    {
+        int count = update();
+        if ( count > reported && count < total )
+        {
+            reported = count;
+            log.info( "Instrumented " + count + "/" + total + " classes" );
+        }
+    }
+
+    /**
+     * Check the files not instrumented yet.
+     *
+     * @return the number of classes instrumented so far.
+     */
+    synchronized int update()
+    {
+        for ( Iterator<File> it = pending.iterator(); it.hasNext(); )
+        {
+            if ( it.next().lastModified() >= start )
+            {
+                it.remove();
+                instrumented++;
+            }
+        }
+        return instrumented;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import net.sourceforge.cobertura.dsl.Arguments;
+import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
+import net.sourceforge.cobertura.dsl.Cobertura;
+import net.sourceforge.cobertura.dsl.ReportFormat;
+import net.sourceforge.cobertura.reporting.NativeReport;
+import net.sourceforge.cobertura.reporting.Report;
+import net.sourceforge.cobertura.reporting.ReportName;
+import net.sourceforge.cobertura.util.CommandLineBuilder;
+import net.sourceforge.cobertura.util.FileFinder;
+import org.codehaus.mojo.cobertura.report.SourceIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates several report formats from a single load of the data file.
+ * <p/>
+ * Accepts the same arguments as Cobertura's <code>ReportMain</code>, except that <code>--format</code> may be
+ * repeated, and <code>--incremental</code> only renders the HTML pages of the source files which changed since the
+ * previous report in the destination directory. The coverage data is read once, and the sources are parsed once for
+ * their complexity, which is then shared by all formats. With <code>--sourceindex</code>, the files of the
+ * <code>--source</code> roots in the given {@link SourceIndex} are registered one by one, so that Cobertura looks each
+ * source file up instead of probing every source root for it. Unlike <code>ReportMain</code>, invalid arguments are
+ * reported through the exit code instead of exiting the JVM, so it is safe to call in-process.
+ * <p/>
+ * This class must only depend on the JDK, Cobertura and classes of the plugin which do too, since it runs on the
+ * Cobertura classpath.
+ *
+ * @since 2.8
+ */
+public final class MultiFormatReportMain
+{
+    private MultiFormatReportMain()
+    {
+    }
+
+    /**
+     * Generate the reports.
+     *
+     * @param args the arguments.
+     * @return the exit code.
+     * @throws Exception if Cobertura failed.
+     */
+    public static int generateReport( String[] args )
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+
+        try
+        {
+            args = CommandLineBuilder.preprocessCommandLineArguments( args );
+        }
+        catch ( Exception e )
+        {
+            System.err.println( "Error: Cannot process arguments: " + e.getMessage() );
+            return 1;
+        }
+
+        ArgumentsBuilder builder = new ArgumentsBuilder();
+        List<ReportFormat> formats = new ArrayList<ReportFormat>();
+        String baseDir = null;
+        boolean hasDestination = false;
+        boolean incremental = false;
+        File stateDir = null;
+        List<String> sourceRoots = new ArrayList<String>();
+        SourceIndex sourceIndex = null;
+        for ( int i = 0; i < args.length; i++ )
+        {
+            String arg = args[i];
+            if ( "--basedir".equals( arg ) )
+            {
+                baseDir = args[++i];
+                builder.setBaseDirectory( baseDir );
+            }
+            else if ( "--datafile".equals( arg ) )
+            {
+                File dataFile = new File( args[++i] );
+                if ( !dataFile.isFile() )
+                {
+                    System.err.println( "Error: data file " + dataFile.getAbsolutePath() + " does not exist" );
+                    return 1;
+                }
+                builder.setDataFile( dataFile.getPath() );
+            }
+            else if ( "--destination".equals( arg ) )
+            {
+                File destination = new File( args[++i] );
+                destination.mkdirs();
+                builder.setDestinationDirectory( destination.getPath() );
+                hasDestination = true;
+            }
+            else if ( "--format".equals( arg ) )
+            {
+                ReportFormat format = ReportFormat.getFromString( args[++i] );
+                if ( format == ReportFormat.UNKNOWN )
+                {
+                    System.err.println( "Error: format \"" + args[i] + "\" is invalid. Must be either html, xml or "
+                                            + "summaryXml" );
+                    return 1;
+                }
+                formats.add( format );
+            }
+            else if ( "--incremental".equals( arg ) )
+            {
+                incremental = true;
+            }
+            else if ( "--statedir".equals( arg ) )
+            {
+                stateDir = new File( args[++i] );
+            }
+            else if ( "--sourceindex".equals( arg ) )
+            {
+                File file = new File( args[++i] );
+                try
+                {
+                    sourceIndex = SourceIndex.load( file );
+                }
+                catch ( IOException e )
+                {
+                    System.err.println( "Warning: unable to read source index " + file + ": " + e.getMessage() );
+                }
+            }
+            else if ( "--encoding".equals( arg ) )
+            {
+                builder.setEncoding( args[++i] );
+            }
+            else if ( "--source".equals( arg ) )
+            {
+                sourceRoots.add( args[++i] );
+            }
+            else
+            {
+                builder.addSources( arg, baseDir == null );
+            }
+        }
+
+        if ( !hasDestination )
+        {
+            System.err.println( "Error: destination directory must be set" );
+            return 1;
+        }
+
+        if ( incremental && stateDir == null )
+        {
+            System.err.println( "Error: state directory must be set for an incremental report" );
+            return 1;
+        }
+
+        if ( formats.isEmpty() )
+        {
+            formats.add( ReportFormat.HTML );
+        }
+
+        List<String> indexedRoots = new ArrayList<String>();
+        for ( String sourceRoot : sourceRoots )
+        {
+            if ( sourceIndex != null && sourceIndex.isIndexed( sourceRoot ) )
+            {
+                indexedRoots.add( sourceRoot );
+            }
+            else
+            {
+                builder.addSources( sourceRoot, true );
+            }
+        }
+
+        Arguments arguments = builder.build();
+        FileFinder finder = arguments.getSources();
+        for ( String sourceRoot : indexedRoots )
+        {
+            String root = new File( sourceRoot ).getAbsolutePath();
+            for ( String file : sourceIndex.getFiles( sourceRoot ) )
+            {
+                finder.addSourceFile( root, file );
+                if ( file.indexOf( '/' ) == -1 && ( file.endsWith( ".jar" ) || file.endsWith( ".zip" ) ) )
+                {
+                    // Cobertura only searches the archives of source directories
+                    finder.addSourceDirectory( root );
+                }
+            }
+        }
+        Report report = new Cobertura( arguments ).report();
+        Report coverageReport = report.getByName( ReportName.COVERAGE_REPORT );
+        for ( ReportFormat format : formats )
+        {
+            if ( incremental && format == ReportFormat.HTML && coverageReport instanceof NativeReport )
+            {
+                NativeReport nativeReport = (NativeReport) coverageReport;
+                IncrementalHtmlReport htmlReport =
+                    new IncrementalHtmlReport( nativeReport.getProjectData(), nativeReport.getDestinationDir(),
+                                               stateDir, nativeReport.getFinder(), nativeReport.getComplexity(),
+                                               nativeReport.getEncoding() );
+                htmlReport.render();
+                System.out.println( "Rendered the HTML pages of " + htmlReport.getRendered() + " of "
+                                        + nativeReport.getProjectData().getNumberOfSourceFiles() + " source files" );
+            }
+            else
+            {
+                report.export( format );
+            }
+        }
+
+        System.out.println( "Report time: " + ( System.currentTimeMillis() - start ) + "ms for " + formats.size()
+                                + " formats" );
+        return 0;
+    }
+
+    /**
+     * Generate the reports and exit with a non-zero code on failure.
+     *
+     * @param args the arguments.
+     */
+    public static void main( String[] args )
+    {
+        int exitCode;
+        try
+        {
+            exitCode = generateReport( args );
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        if ( exitCode != 0 )
+        {
+            System.exit( exitCode );
+        }
+    }
+}
@@ -35,6 +35,9 @@
 package org.codehaus.mojo.cobertura.tasks;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.mojo.cobertura.report.SourceIndex;
+import org.codehaus.mojo.cobertura.telemetry.Phase;
+import org.codehaus.mojo.cobertura.telemetry.Telemetry;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
@@ -55,16 +58,24 @@ public class ReportTask
 
     private String outputFormat;
 
+    private List<String> outputFormats;
+
     private String sourceEncoding;
 
     private List<String> compileSourceRoots;
 
+    private boolean incremental;
+
+    private File stateDirectory;
+
+    private SourceIndex sourceIndex;
+
     /**
      * Create ReportTask.
      */
     public ReportTask()
     {
-        super( net.sourceforge.cobertura.reporting.ReportMain.class.getName() );
+        super( net.sourceforge.cobertura.reporting.ReportMain.class.getName(), "generateReport" );
     }
 
     /**
@@ -88,11 +99,34 @@ public class ReportTask
         if ( dataFile != null )
         {
             cmdLineArgs.addArg( "--datafile", dataFile.getAbsolutePath() );
+
+            if ( isHeapSizeEstimated() )
+            {
+                setMaxmem( getHeapSizeEstimator().forDataFile( dataFile, getLog() ) );
+            }
         }
 
-        if ( StringUtils.isNotEmpty( outputFormat ) )
+        if ( isMultiFormatReport() )
         {
-            cmdLineArgs.addArg( "--format", outputFormat );
+            // all formats from a single load of the data file and the sources
+            setTaskClass( MultiFormatReportMain.class.getName(), "generateReport" );
+            for ( String format : getOutputFormatList() )
+            {
+                cmdLineArgs.addArg( "--format", format );
+            }
+            if ( incremental )
+            {
+                cmdLineArgs.addArg( "--incremental" );
+                cmdLineArgs.addArg( "--statedir", stateDirectory.getAbsolutePath() );
+            }
+            if ( sourceIndex != null )
+            {
+                cmdLineArgs.addArg( "--sourceindex", sourceIndex.getFile().getAbsolutePath() );
+            }
+        }
+        else if ( StringUtils.isNotEmpty( getSingleOutputFormat() ) )
+        {
+            cmdLineArgs.addArg( "--format", getSingleOutputFormat() );
         }
 
         if ( StringUtils.isNotEmpty( sourceEncoding ) )
@@ -100,7 +134,23 @@ public class ReportTask
             cmdLineArgs.addArg( "--encoding", sourceEncoding );
         }
 
-        int returnCode = executeJava();
+        Phase phase = getTelemetry().start( Telemetry.REPORT );
+        // file systems may keep modification times in seconds only
+        long started = System.currentTimeMillis() / 1000 * 1000;
+        int returnCode;
+        try
+        {
+            returnCode = executeCobertura();
+            if ( dataFile != null )
+            {
+                phase.addBytesRead( dataFile.length() );
+            }
+            phase.addBytesWritten( sizeOfFilesModifiedSince( outputDirectory, started ) );
+        }
+        finally
+        {
+            phase.end();
+        }
 
         // Check the return code and print a message
         if ( returnCode == 0 )
@@ -113,6 +163,72 @@ public class ReportTask
         }
     }
 
+    private static long sizeOfFilesModifiedSince( File directory, long time )
+    {
+        File[] files = directory != null ? directory.listFiles() : null;
+        long size = 0;
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                if ( file.isDirectory() )
+                {
+                    size += sizeOfFilesModifiedSince( file, time );
+                }
+                else if ( file.lastModified() >= time )
+                {
+                    size += file.length();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * ReportMain exits the JVM when the data file or the format is invalid, so only run in-process when both are
+     * known to be fine.
+     *
+     * @return <code>true</code> if the report can be generated in-process
+     */
+    @Override
+    protected boolean canExecuteInProcess()
+    {
+        if ( isMultiFormatReport() )
+        {
+            // MultiFormatReportMain doesn't exit
+            return super.canExecuteInProcess();
+        }
+
+        String format = getSingleOutputFormat();
+        return super.canExecuteInProcess() && dataFile != null && dataFile.isFile() && outputDirectory != null
+            && ( StringUtils.isEmpty( format ) || "html".equalsIgnoreCase( format ) || "xml".equalsIgnoreCase( format )
+            || "summaryXml".equalsIgnoreCase( format ) );
+    }
+
+    private boolean isMultiFormatReport()
+    {
+        return incremental || sourceIndex != null || ( outputFormats != null && outputFormats.size() > 1 );
+    }
+
+    private List<String> getOutputFormatList()
+    {
+        if ( outputFormats != null && !outputFormats.isEmpty() )
+        {
+            return outputFormats;
+        }
+        return StringUtils.isNotEmpty( outputFormat ) ? Collections.singletonList( outputFormat )
+            : Collections.<String>emptyList();
+    }
+
+    private String getSingleOutputFormat()
+    {
+        if ( outputFormats != null && outputFormats.size() == 1 )
+        {
+            return outputFormats.get( 0 );
+        }
+        return outputFormat;
+    }
+
     /**
      * @return Returns the dataFile.
      */
@@ -137,6 +253,15 @@ public class ReportTask
         return outputFormat;
     }
 
+    /**
+     * @return Returns the outputFormats.
+     * @since 2.8
+     */
+    public List<String> getOutputFormats()
+    {
+        return outputFormats;
+    }
+
     /**
      * @return Returns the sourceEncoding.
      */
@@ -169,6 +294,18 @@ public class ReportTask
         this.outputFormat = outputFormat;
     }
 
+    /**
+     * Set several formats to generate at once, which is cheaper than generating them one by one since the data file
+     * is only loaded and the sources are only parsed once. Takes precedence over the outputFormat.
+     *
+     * @param outputFormats The outputFormats to set.
+     * @since 2.8
+     */
+    public void setOutputFormats( List<String> outputFormats )
+    {
+        this.outputFormats = outputFormats;
+    }
+
     /**
      * @param sourceEncoding The sourceEncoding to set.
      */
@@ -177,6 +314,69 @@ public class ReportTask
         this.sourceEncoding = sourceEncoding;
     }
 
+    /**
+     * @return <code>true</code> if only the HTML pages of the changed source files are rendered.
+     * @since 2.8
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * Only render the HTML pages of the source files whose coverage or content changed since the previous report in
+     * the output directory. The state directory must be set as well.
+     *
+     * @param incremental <code>true</code> to render the HTML report incrementally.
+     * @since 2.8
+     */
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @return the directory where the state of the report is kept between builds.
+     * @since 2.8
+     */
+    public File getStateDirectory()
+    {
+        return stateDirectory;
+    }
+
+    /**
+     * Set the directory where the state of the report is kept between builds, such as the coverage data the previous
+     * incremental HTML report was rendered from. It must not be inside the output directory, which gets published.
+     *
+     * @param stateDirectory the state directory of the report.
+     * @since 2.8
+     */
+    public void setStateDirectory( File stateDirectory )
+    {
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * @return the index of the source roots, or <code>null</code>.
+     * @since 2.8
+     */
+    public SourceIndex getSourceIndex()
+    {
+        return sourceIndex;
+    }
+
+    /**
+     * Look the source files up in an index of the source roots, instead of probing every source root for each of
+     * them. The index must be up to date and saved.
+     *
+     * @param sourceIndex the index of the source roots, or <code>null</code>.
+     * @since 2.8
+     */
+    public void setSourceIndex( SourceIndex sourceIndex )
+    {
+        this.sourceIndex = sourceIndex;
+    }
+
     /**
      * Set the list of compile source roots.
      *
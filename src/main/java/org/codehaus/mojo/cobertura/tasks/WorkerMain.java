@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+
+/**
+ * Entry point of the long-lived Cobertura worker JVM.
+ * <p/>
+ * The worker reads commands from its standard input and writes the results to its standard output, see
+ * {@link CoberturaWorker} for the protocol. Each command is executed with the {@link InProcessExecutor}, so the
+ * Cobertura classes stay loaded and JIT-compiled between commands. Everything Cobertura prints is sent to standard
+ * error, each line prefixed with the stream it was printed to, and followed by the end of output line once the command
+ * is done. The worker stops when it receives the exit command or when its standard input is closed.
+ * <p/>
+ * This class must only depend on the JDK, since the worker classpath contains nothing but the plugin itself.
+ *
+ * @since 2.8
+ */
+public final class WorkerMain
+{
+    private WorkerMain()
+    {
+    }
+
+    /**
+     * Run the worker loop.
+     *
+     * @param args ignored.
+     * @throws IOException if the connection to the Maven JVM is broken.
+     */
+    public static void main( String[] args )
+        throws IOException
+    {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( System.out ) );
+        DataInputStream in = new DataInputStream( new BufferedInputStream( System.in ) );
+
+        // keep the protocol channel clean
+        PrintStream err = System.err;
+        System.setOut( new PrintStream( new LineStream( CoberturaWorker.STDOUT_PREFIX, err ) ) );
+        System.setErr( new PrintStream( new LineStream( CoberturaWorker.STDERR_PREFIX, err ) ) );
+
+        while ( true )
+        {
+            String command;
+            try
+            {
+                command = in.readUTF();
+            }
+            catch ( EOFException e )
+            {
+                // the Maven JVM went away
+                return;
+            }
+
+            if ( CoberturaWorker.COMMAND_EXIT.equals( command ) )
+            {
+                return;
+            }
+
+            URL[] classpath = new URL[in.readInt()];
+            for ( int i = 0; i < classpath.length; i++ )
+            {
+                classpath[i] = new URL( in.readUTF() );
+            }
+            String className = in.readUTF();
+            String methodName = in.readUTF();
+            String[] taskArgs = new String[in.readInt()];
+            for ( int i = 0; i < taskArgs.length; i++ )
+            {
+                taskArgs[i] = in.readUTF();
+            }
+
+            String status;
+            int exitCode;
+            String message = "";
+            try
+            {
+                exitCode = InProcessExecutor.execute( classpath, className, methodName, taskArgs );
+                status = CoberturaWorker.STATUS_OK;
+            }
+            catch ( InProcessExecutor.EntryPointUnavailableException e )
+            {
+                status = CoberturaWorker.STATUS_UNAVAILABLE;
+                exitCode = 1;
+                message = String.valueOf( e.getMessage() );
+            }
+            catch ( Throwable t )
+            {
+                // same as a forked jvm dying with a stacktrace
+                t.printStackTrace();
+                status = CoberturaWorker.STATUS_OK;
+                exitCode = 1;
+            }
+
+            System.out.flush();
+            System.err.flush();
+            synchronized ( err )
+            {
+                err.println( CoberturaWorker.END_OF_OUTPUT );
+                err.flush();
+            }
+
+            out.writeUTF( status );
+            out.writeInt( exitCode );
+            out.writeUTF( message );
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes each line written to it to the shared standard error, prefixed with the stream it belongs to.
+     */
+    private static final class LineStream
+        extends OutputStream
+    {
+        private final byte[] prefix;
+
+        private final PrintStream target;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineStream( String prefix, PrintStream target )
+        {
+            this.prefix = prefix.getBytes();
+            this.target = target;
+        }
+
+        public synchronized void write( int b )
+        {
+            if ( b == '\n' )
+            {
+                writeLine();
+            }
+            else
+            {
+                line.write( b );
+            }
+        }
+
+        /**
+         * Write the incomplete line, if any, so that it belongs to the current command.
+         */
+        public synchronized void flush()
+        {
+            if ( line.size() > 0 )
+            {
+                writeLine();
+            }
+        }
+
+        private void writeLine()
+        {
+            synchronized ( target )
+            {
+                target.write( prefix, 0, prefix.length );
+                byte[] bytes = line.toByteArray();
+                target.write( bytes, 0, bytes.length );
+                target.write( '\n' );
+                target.flush();
+            }
+            line.reset();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.telemetry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The measurements of one phase of a goal execution.
+ * <p/>
+ * The wall and CPU times are measured between the start and the end of the phase, the CPU time being the one of the
+ * thread running the phase. The work of a forked JVM is added to it by the caller, as are the bytes read and written.
+ *
+ * @since 2.8
+ */
+public class Phase
+{
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Telemetry telemetry;
+
+    private final String name;
+
+    private final long startNanos;
+
+    private final long startCpuNanos;
+
+    private long wallNanos = -1;
+
+    private long cpuNanos;
+
+    private long peakRssKb = -1;
+
+    private long bytesRead;
+
+    private long bytesWritten;
+
+    Phase( Telemetry telemetry, String name )
+    {
+        this.telemetry = telemetry;
+        this.name = name;
+        this.startCpuNanos = getThreadCpuNanos();
+        this.startNanos = System.nanoTime();
+    }
+
+    private static long getThreadCpuNanos()
+    {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * End the phase and record it. Ending a phase again has no effect.
+     */
+    public void end()
+    {
+        synchronized ( this )
+        {
+            if ( wallNanos >= 0 )
+            {
+                return;
+            }
+            wallNanos = System.nanoTime() - startNanos;
+            cpuNanos += getThreadCpuNanos() - startCpuNanos;
+        }
+        telemetry.add( this );
+    }
+
+    /**
+     * End the phase with a wall time measured elsewhere, e.g. inside a forked JVM.
+     *
+     * @param wallNanos the wall time, in nanoseconds.
+     */
+    public synchronized void end( long wallNanos )
+    {
+        end();
+        this.wallNanos = Math.max( 0, wallNanos );
+    }
+
+    /**
+     * @param nanos CPU time spent for the phase outside the current thread, e.g. by a forked JVM.
+     */
+    public synchronized void addCpuNanos( long nanos )
+    {
+        cpuNanos += Math.max( 0, nanos );
+    }
+
+    /**
+     * @param kb the peak resident set size of a forked JVM of the phase; the largest one is kept.
+     */
+    public synchronized void addPeakRssKb( long kb )
+    {
+        peakRssKb = Math.max( peakRssKb, kb );
+    }
+
+    /**
+     * @param bytes the number of bytes read by the phase.
+     */
+    public synchronized void addBytesRead( long bytes )
+    {
+        bytesRead += bytes;
+    }
+
+    /**
+     * @param bytes the number of bytes written by the phase.
+     */
+    public synchronized void addBytesWritten( long bytes )
+    {
+        bytesWritten += bytes;
+    }
+
+    /**
+     * @return the name of the phase.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the wall time in nanoseconds, or <code>-1</code> if the phase didn't end yet.
+     */
+    public synchronized long getWallNanos()
+    {
+        return wallNanos;
+    }
+
+    /**
+     * @return the CPU time in nanoseconds.
+     */
+    public synchronized long getCpuNanos()
+    {
+        return cpuNanos;
+    }
+
+    /**
+     * @return the peak resident set size of the forked JVMs of the phase in kilobytes, or <code>-1</code> if the
+     *         phase didn't fork.
+     */
+    public synchronized long getPeakRssKb()
+    {
+        return peakRssKb;
+    }
+
+    /**
+     * @return the number of bytes read.
+     */
+    public synchronized long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public synchronized long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+}
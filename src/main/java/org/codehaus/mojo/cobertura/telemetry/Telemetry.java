@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The phases recorded during one goal execution.
+ * <p/>
+ * Phases may be recorded concurrently, e.g. by the shards of the instrumentation.
+ *
+ * @see TelemetryReport
+ * @since 2.8
+ */
+public class Telemetry
+{
+    /**
+     * Staging the classes into the instrumentation directory.
+     */
+    public static final String STAGING = "staging";
+
+    /**
+     * Scanning for the files to instrument.
+     */
+    public static final String SCAN = "scan";
+
+    /**
+     * Writing the commands file passed to Cobertura.
+     */
+    public static final String COMMANDS_FILE = "commands-file";
+
+    /**
+     * Starting a forked JVM, until Cobertura is called.
+     */
+    public static final String FORK_STARTUP = "fork-startup";
+
+    /**
+     * Running a forked JVM, from its launch to its exit.
+     */
+    public static final String FORK = "fork";
+
+    /**
+     * Instrumenting the classes.
+     */
+    public static final String INSTRUMENT = "instrument";
+
+    /**
+     * Restoring instrumented classes from the build cache, or storing them into it.
+     */
+    public static final String CACHE = "cache";
+
+    /**
+     * Merging data files.
+     */
+    public static final String MERGE = "merge";
+
+    /**
+     * Rendering the reports.
+     */
+    public static final String REPORT = "report";
+
+    /**
+     * Evaluating the coverage checks.
+     */
+    public static final String CHECK = "check";
+
+    private final String goal;
+
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    /**
+     * @param goal the goal being executed.
+     */
+    public Telemetry( String goal )
+    {
+        this.goal = goal;
+    }
+
+    /**
+     * Start a phase. It is recorded once it is ended.
+     *
+     * @param name the name of the phase.
+     * @return the phase.
+     */
+    public Phase start( String name )
+    {
+        return new Phase( this, name );
+    }
+
+    synchronized void add( Phase phase )
+    {
+        phases.add( phase );
+    }
+
+    /**
+     * @return the goal being executed.
+     */
+    public String getGoal()
+    {
+        return goal;
+    }
+
+    /**
+     * @return the ended phases, in the order they ended.
+     */
+    public synchronized List<Phase> getPhases()
+    {
+        return new ArrayList<Phase>( phases );
+    }
+}
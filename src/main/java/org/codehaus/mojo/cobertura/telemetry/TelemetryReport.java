@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.telemetry;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the telemetry of the goal executions of a build, writes it to a JSON file per module and summarizes it
+ * for the whole reactor.
+ * <p/>
+ * The file of a module holds every goal execution of the module in the current build, e.g.
+ * <pre>
+ * {
+ *   "module": "org.example:example",
+ *   "executions": [
+ *     {
+ *       "goal": "instrument",
+ *       "phases": [
+ *         { "name": "scan", "wallMillis": 12, "cpuMillis": 10, "peakRssKb": -1, "bytesRead": 0, "bytesWritten": 0 }
+ *       ]
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * @since 2.8
+ */
+public final class TelemetryReport
+{
+    /**
+     * The name of the telemetry file of a module, in the directory of its data file.
+     */
+    public static final String FILENAME = "telemetry.json";
+
+    private static final Map<File, Module> MODULES = new LinkedHashMap<File, Module>();
+
+    private TelemetryReport()
+    {
+    }
+
+    /**
+     * Record the telemetry of a goal execution and rewrite the telemetry file of its module.
+     *
+     * @param module        the id of the module.
+     * @param telemetryFile the telemetry file of the module.
+     * @param telemetry     the telemetry of the goal execution.
+     * @throws IOException if the telemetry file could not be written.
+     */
+    public static synchronized void record( String module, File telemetryFile, Telemetry telemetry )
+        throws IOException
+    {
+        Module entry = MODULES.get( telemetryFile );
+        if ( entry == null )
+        {
+            entry = new Module( module );
+            MODULES.put( telemetryFile, entry );
+        }
+        entry.executions.add( telemetry );
+
+        telemetryFile.getParentFile().mkdirs();
+        PrintWriter writer = new PrintWriter( new OutputStreamWriter( new FileOutputStream( telemetryFile ), "UTF-8" ) );
+        try
+        {
+            write( entry, writer );
+            if ( writer.checkError() )
+            {
+                throw new IOException( "Unable to write " + telemetryFile );
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    static void write( Module module, PrintWriter writer )
+    {
+        writer.println( "{" );
+        writer.println( "  \"module\": " + quote( module.id ) + "," );
+        writer.println( "  \"executions\": [" );
+        for ( int e = 0; e < module.executions.size(); e++ )
+        {
+            Telemetry telemetry = module.executions.get( e );
+            writer.println( "    {" );
+            writer.println( "      \"goal\": " + quote( telemetry.getGoal() ) + "," );
+            writer.println( "      \"phases\": [" );
+            List<Phase> phases = telemetry.getPhases();
+            for ( int p = 0; p < phases.size(); p++ )
+            {
+                Phase phase = phases.get( p );
+                writer.println( "        { \"name\": " + quote( phase.getName() ) + ", \"wallMillis\": "
+                                    + phase.getWallNanos() / 1000000 + ", \"cpuMillis\": "
+                                    + phase.getCpuNanos() / 1000000 + ", \"peakRssKb\": " + phase.getPeakRssKb()
+                                    + ", \"bytesRead\": " + phase.getBytesRead() + ", \"bytesWritten\": "
+                                    + phase.getBytesWritten() + " }" + ( p + 1 < phases.size() ? "," : "" ) );
+            }
+            writer.println( "      ]" );
+            writer.println( "    }" + ( e + 1 < module.executions.size() ? "," : "" ) );
+        }
+        writer.println( "  ]" );
+        writer.println( "}" );
+    }
+
+    static String quote( String value )
+    {
+        if ( value == null )
+        {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder( value.length() + 2 ).append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                quoted.append( '\\' ).append( c );
+            }
+            else if ( c < 0x20 )
+            {
+                quoted.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                quoted.append( c );
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+
+    /**
+     * Log the totals per phase of all modules recorded so far.
+     *
+     * @param log the log.
+     */
+    public static synchronized void summarize( Log log )
+    {
+        Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+        for ( Module module : MODULES.values() )
+        {
+            for ( Telemetry telemetry : module.executions )
+            {
+                for ( Phase phase : telemetry.getPhases() )
+                {
+                    long[] total = totals.get( phase.getName() );
+                    if ( total == null )
+                    {
+                        total = new long[]{ 0, 0, 0, -1, 0, 0 };
+                        totals.put( phase.getName(), total );
+                    }
+                    total[0]++;
+                    total[1] += phase.getWallNanos();
+                    total[2] += phase.getCpuNanos();
+                    total[3] = Math.max( total[3], phase.getPeakRssKb() );
+                    total[4] += phase.getBytesRead();
+                    total[5] += phase.getBytesWritten();
+                }
+            }
+        }
+
+        if ( totals.isEmpty() )
+        {
+            return;
+        }
+
+        log.info( "Cobertura telemetry of " + MODULES.size() + ( MODULES.size() == 1 ? " module:" : " modules:" ) );
+        log.info( String.format( "  %-14s %6s %10s %10s %10s %12s %12s", "phase", "count", "wall ms", "cpu ms",
+                                 "peak rss", "read", "written" ) );
+        for ( Map.Entry<String, long[]> entry : totals.entrySet() )
+        {
+            long[] total = entry.getValue();
+            log.info( String.format( "  %-14s %6d %10d %10d %10s %12d %12d", entry.getKey(), total[0],
+                                     total[1] / 1000000, total[2] / 1000000,
+                                     total[3] < 0 ? "-" : total[3] / 1024 + "m", total[4], total[5] ) );
+        }
+    }
+
+    /**
+     * Forget the recorded telemetry.
+     */
+    static synchronized void reset()
+    {
+        MODULES.clear();
+    }
+
+    /**
+     * The telemetry of a module.
+     */
+    static class Module
+    {
+        private final String id;
+
+        private final List<Telemetry> executions = new ArrayList<Telemetry>();
+
+        Module( String id )
+        {
+            this.id = id;
+        }
+    }
+}
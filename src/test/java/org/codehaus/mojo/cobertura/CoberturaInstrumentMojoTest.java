@@ -19,15 +19,22 @@
  */
 package org.codehaus.mojo.cobertura;
 
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.cobertura.configuration.ConfigInstrumentation;
+import org.codehaus.mojo.cobertura.instrument.InstrumentationManifest;
 import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
+import java.util.Arrays;
 
 
 /**
@@ -111,4 +118,219 @@ public class CoberturaInstrumentMojoTest
         assertTrue( "Test instrumented class exists", new File( instrumentedDir, "Circle.class" ).exists() );
     }
 
+    public void testInProcessInstrumentationMatchesForked()
+        throws Exception
+    {
+        byte[] forkedBytes = readBytes( instrument( true, false ) );
+
+        byte[] inProcessBytes = readBytes( instrument( false, false ) );
+
+        assertTrue( "Instrumented classes should be identical", Arrays.equals( forkedBytes, inProcessBytes ) );
+    }
+
+    public void testWorkerInstrumentationMatchesForked()
+        throws Exception
+    {
+        byte[] forkedBytes = readBytes( instrument( true, false ) );
+
+        byte[] coldWorkerBytes = readBytes( instrument( true, true ) );
+
+        byte[] warmWorkerBytes = readBytes( instrument( true, true ) );
+
+        assertTrue( "Instrumented classes should be identical", Arrays.equals( forkedBytes, coldWorkerBytes ) );
+        assertTrue( "Instrumented classes should be identical", Arrays.equals( forkedBytes, warmWorkerBytes ) );
+    }
+
+    public void testShardedInstrumentationMatchesSerial()
+        throws Exception
+    {
+        instrument( 1 );
+        File instrumentedDir =
+            new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument/generated-classes/cobertura" );
+        File serialDataFile =
+            new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument/cobertura/cobertura.ser" );
+        byte[] serialCircle = readBytes( new File( instrumentedDir, "Circle.class" ) );
+        byte[] serialCircleTest = readBytes( new File( instrumentedDir, "CircleTest.class" ) );
+        ProjectData serialData = CoverageDataFileHandler.loadCoverageData( serialDataFile );
+
+        instrument( 2 );
+        byte[] shardedCircle = readBytes( new File( instrumentedDir, "Circle.class" ) );
+        byte[] shardedCircleTest = readBytes( new File( instrumentedDir, "CircleTest.class" ) );
+        ProjectData shardedData = CoverageDataFileHandler.loadCoverageData( serialDataFile );
+
+        assertTrue( "Instrumented classes should be identical", Arrays.equals( serialCircle, shardedCircle ) );
+        assertTrue( "Instrumented classes should be identical", Arrays.equals( serialCircleTest, shardedCircleTest ) );
+        assertEquals( 2, shardedData.getNumberOfClasses() );
+        assertEquals( serialData, shardedData );
+        assertFalse( "Shard data files should be removed",
+                     new File( serialDataFile.getParentFile(), "cobertura.ser.shard0" ).exists() );
+
+        new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument/classes/CircleTest.class" ).delete();
+    }
+
+    public void testIncrementalInstrumentation()
+        throws Exception
+    {
+        File buildDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument" );
+        File instrumentedClass = new File( buildDir, "generated-classes/cobertura/Circle.class" );
+        File serFile = new File( buildDir, "cobertura/cobertura.ser" );
+        File manifestFile = new File( buildDir, "cobertura/" + InstrumentationManifest.FILENAME );
+        manifestFile.delete();
+
+        Mojo mojo = lookupIncrementalMojo();
+        mojo.execute();
+
+        assertTrue( "Manifest should be written", manifestFile.exists() );
+        byte[] instrumentedBytes = readBytes( instrumentedClass );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+
+        // unchanged classes are left alone
+        instrumentedClass.setLastModified( 1000000000000L );
+        mojo = lookupIncrementalMojo();
+        mojo.execute();
+
+        assertEquals( 1000000000000L, instrumentedClass.lastModified() );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+
+        // the number of threads doesn't change the instrumented classes
+        mojo = lookupIncrementalMojo();
+        ( (ConfigInstrumentation) getVariableValueFromObject( mojo, "instrumentation" ) ).setThreads( 3 );
+        mojo.execute();
+
+        assertEquals( 1000000000000L, instrumentedClass.lastModified() );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+
+        // a damaged output is instrumented again
+        FileUtils.fileWrite( instrumentedClass.getPath(), "damaged" );
+        mojo = lookupIncrementalMojo();
+        mojo.execute();
+
+        assertTrue( "Instrumented classes should be identical",
+                    Arrays.equals( instrumentedBytes, readBytes( instrumentedClass ) ) );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+
+        // deleted classes are pruned
+        mojo = lookupIncrementalMojo();
+        new File( buildDir, "classes/Circle.class" ).delete();
+        mojo.execute();
+
+        assertFalse( "Instrumented class should be removed", instrumentedClass.exists() );
+        assertEquals( 0, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+    }
+
+    public void testInstrumentAgainAfterCleanDataFile()
+        throws Exception
+    {
+        File buildDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument" );
+        File instrumentedClass = new File( buildDir, "generated-classes/cobertura/Circle.class" );
+        File serFile = new File( buildDir, "cobertura/cobertura.ser" );
+        FileUtils.deleteDirectory( instrumentedClass.getParentFile() );
+        serFile.delete();
+
+        Mojo mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+        mojo.execute();
+        byte[] instrumentedBytes = readBytes( instrumentedClass );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+
+        // the instrumented class of the previous build is newer than the compiled one, but is staged again
+        serFile.delete();
+        mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+        mojo.execute();
+
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( serFile ).getNumberOfClasses() );
+        assertTrue( "Instrumented classes should be identical",
+                    Arrays.equals( instrumentedBytes, readBytes( instrumentedClass ) ) );
+    }
+
+    public void testInvalidHeapSizeRange()
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+        setVariableValueToObject( mojo, "autoMaxmem", Boolean.TRUE );
+        setVariableValueToObject( mojo, "minMaxmem", "1g" );
+        setVariableValueToObject( mojo, "maxMaxmem", "64m" );
+
+        try
+        {
+            mojo.execute();
+            fail( "Should fail on a minimum heap size above the maximum" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            // expected
+        }
+    }
+
+    private Mojo lookupIncrementalMojo()
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+        setVariableValueToObject( mojo, "incremental", Boolean.TRUE );
+        return mojo;
+    }
+
+    private byte[] readBytes( File file )
+        throws Exception
+    {
+        return FileUtils.fileRead( file, "ISO-8859-1" ).getBytes( "ISO-8859-1" );
+    }
+
+    private File instrument( boolean fork, boolean daemon )
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+        setVariableValueToObject( mojo, "fork", Boolean.valueOf( fork ) );
+        setVariableValueToObject( mojo, "daemon", Boolean.valueOf( daemon ) );
+
+        MavenProject project = (MavenProject) getVariableValueFromObject( mojo, "project" );
+        File instrumentedDir = new File( project.getBuild().getDirectory(), "generated-classes/cobertura" );
+        FileUtils.deleteDirectory( instrumentedDir );
+        new File( project.getBuild().getDirectory(), "cobertura/cobertura.ser" ).delete();
+
+        mojo.execute();
+
+        File instrumentedClass = new File( instrumentedDir, "Circle.class" );
+        assertTrue( "Test instrumented class exists", instrumentedClass.exists() );
+
+        File originalClass =
+            new File( PlexusTestCase.getBasedir(), "target/test-harness/instrument/classes/Circle.class" );
+        assertFalse( "Original class should be left alone",
+                     Arrays.equals( readBytes( originalClass ), readBytes( instrumentedClass ) ) );
+        return instrumentedClass;
+    }
+
+    private void instrument( int threads )
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "instrument", PlexusTestCase.getBasedir() + "/src/test/plugin-configs/" +
+            "instrument-instrumentation-plugin-config.xml" );
+
+        setVariableValueToObject( mojo, "pluginClasspathList", getPluginClasspath() );
+
+        ConfigInstrumentation instrumentation =
+            (ConfigInstrumentation) getVariableValueFromObject( mojo, "instrumentation" );
+        instrumentation.addInclude( "**/CircleTest.class" );
+        instrumentation.setThreads( threads );
+
+        MavenProject project = (MavenProject) getVariableValueFromObject( mojo, "project" );
+        FileUtils.copyFileToDirectory( new File( PlexusTestCase.getBasedir(), "src/test/classes/CircleTest.class" ),
+                                       new File( project.getBuild().getOutputDirectory() ) );
+        FileUtils.deleteDirectory( new File( project.getBuild().getDirectory(), "generated-classes/cobertura" ) );
+        new File( project.getBuild().getDirectory(), "cobertura/cobertura.ser" ).delete();
+
+        mojo.execute();
+    }
+
 }
@@ -19,9 +19,16 @@
  */
 package org.codehaus.mojo.cobertura;
 
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SourceFileData;
 import org.apache.maven.plugin.Mojo;
 import org.apache.maven.reporting.MavenReport;
+import org.codehaus.mojo.cobertura.report.ReportFingerprint;
 import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
 
@@ -53,6 +60,105 @@ public class CoberturaReportMojoTest
         assertTrue( "Test for generated html file " + outputHtml, outputHtml.exists() );
     }
 
+    public void testMultiFormatReport()
+        throws Exception
+    {
+        assertMultiFormatReport( true );
+    }
+
+    public void testMultiFormatReportInProcess()
+        throws Exception
+    {
+        assertMultiFormatReport( false );
+    }
+
+    private void assertMultiFormatReport( boolean fork )
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "cobertura",
+                                PlexusTestCase.getBasedir() + "/src/test/plugin-configs/report-plugin-config.xml" );
+
+        setMojoPluginClasspath( mojo );
+        setVariableValueToObject( mojo, "format", null );
+        setVariableValueToObject( mojo, "formats", new String[]{ "html", "xml" } );
+        setVariableValueToObject( mojo, "fork", Boolean.valueOf( fork ) );
+
+        MavenReport reportMojo = (MavenReport) mojo;
+        File outputDir = reportMojo.getReportOutputDirectory();
+        FileUtils.deleteDirectory( outputDir );
+
+        mojo.execute();
+
+        assertTrue( "Test for generated html file", new File( outputDir, "index.html" ).exists() );
+        assertTrue( "Test for generated xml file", new File( outputDir, "coverage.xml" ).exists() );
+    }
+
+    public void testUnchangedReportIsSkipped()
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "cobertura",
+                                PlexusTestCase.getBasedir() + "/src/test/plugin-configs/report-plugin-config.xml" );
+
+        setMojoPluginClasspath( mojo );
+        setVariableValueToObject( mojo, "format", null );
+        setVariableValueToObject( mojo, "formats", new String[]{ "xml" } );
+
+        File outputDir = ( (MavenReport) mojo ).getReportOutputDirectory();
+        FileUtils.deleteDirectory( outputDir );
+        mojo.execute();
+
+        File outputXml = new File( outputDir, "coverage.xml" );
+        assertTrue( "Test for generated xml file", outputXml.delete() );
+        mojo.execute();
+        assertFalse( "The unchanged report should be skipped", outputXml.exists() );
+
+        setVariableValueToObject( mojo, "formats", new String[]{ "xml", "summaryXml" } );
+        mojo.execute();
+        assertTrue( "The report should be generated for other formats", outputXml.exists() );
+    }
+
+    public void testIncrementalHtmlReport()
+        throws Exception
+    {
+        Mojo mojo = lookupMojo( "cobertura",
+                                PlexusTestCase.getBasedir() + "/src/test/plugin-configs/report-plugin-config.xml" );
+
+        setMojoPluginClasspath( mojo );
+        setVariableValueToObject( mojo, "incremental", Boolean.TRUE );
+        setVariableValueToObject( mojo, "fork", Boolean.FALSE );
+
+        File outputDir = ( (MavenReport) mojo ).getReportOutputDirectory();
+        File stateDir = ReportFingerprint.getStateDirectory(
+            new File( PlexusTestCase.getBasedir(), "target/test-harness/report/cobertura/reports" ), outputDir );
+        FileUtils.deleteDirectory( outputDir );
+        FileUtils.deleteDirectory( stateDir );
+        mojo.execute();
+
+        assertFalse( "The state should be kept out of the report", new File( outputDir, "html.ser" ).exists() );
+        File previousDataFile = new File( stateDir, "html.ser" );
+        ProjectData previous = CoverageDataFileHandler.loadCoverageData( previousDataFile );
+        assertNotNull( "The data of the report should be kept", previous );
+        SourceFileData sourceFile = (SourceFileData) previous.getSourceFiles().iterator().next();
+        File page = new File( outputDir, sourceFile.getNormalizedName() + ".html" );
+        FileUtils.fileWrite( page.getPath(), "stale" );
+
+        ReportFingerprint.delete( stateDir );
+        mojo.execute();
+        assertEquals( "The page of an unchanged source file should be kept", "stale", FileUtils.fileRead( page ) );
+
+        // pretend the coverage of the source file was different in the previous report
+        ClassData classData = (ClassData) sourceFile.getClasses().first();
+        int line = ( (LineData) classData.getLines().iterator().next() ).getLineNumber();
+        classData.touch( line, 1 );
+        CoverageDataFileHandler.saveCoverageData( previous, previousDataFile );
+
+        ReportFingerprint.delete( stateDir );
+        mojo.execute();
+        assertFalse( "The page of a changed source file should be rendered",
+                     "stale".equals( FileUtils.fileRead( page ) ) );
+        assertTrue( "Test for generated html file", new File( outputDir, "index.html" ).exists() );
+    }
+
     public void testReportEmptySourceDir()
         throws Exception
     {
@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura;
+
+import junit.framework.TestCase;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.model.ReportSet;
+import org.apache.maven.model.Reporting;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test class for {@link ReactorExecutions}.
+ */
+public class ReactorExecutionsTest
+    extends TestCase
+{
+    private MavenProject parent;
+
+    private MavenProject moduleA;
+
+    private MavenProject moduleB;
+
+    private List<MavenProject> reactorProjects;
+
+    private PluginDescriptor plugin;
+
+    protected void setUp()
+        throws Exception
+    {
+        parent = project( "parent", false );
+        moduleA = project( "module-a", true );
+        moduleB = project( "module-b", true );
+        reactorProjects = Arrays.asList( parent, moduleA, moduleB );
+
+        plugin = new PluginDescriptor();
+        plugin.setGroupId( "org.codehaus.mojo" );
+        plugin.setArtifactId( "cobertura-maven-plugin" );
+        plugin.setGoalPrefix( "cobertura" );
+        plugin.addMojo( mojo( "check", "verify", "check-only", CoberturaCheckMojo.class ) );
+        plugin.addMojo( mojo( "check-only", "verify", null, CoberturaCheckOnlyMojo.class ) );
+        plugin.addMojo( mojo( "cobertura", null, null, CoberturaReportMojo.class ) );
+        plugin.addMojo( mojo( "clean", "clean", null, CoberturaCleanMojo.class ) );
+    }
+
+    public void testLastReactorProjectCompletesFirst()
+    {
+        Set<MavenProject> expected = ReactorExecutions.getExpectedProjects( null, null, null, reactorProjects );
+
+        // in a parallel build, the other modules haven't even started yet
+        ReactorExecutions.started( "check", moduleB, reactorProjects );
+        assertFalse( ReactorExecutions.completed( "check", moduleB, reactorProjects, expected ) );
+
+        ReactorExecutions.started( "check", parent, reactorProjects );
+        assertFalse( ReactorExecutions.completed( "check", parent, reactorProjects, expected ) );
+
+        ReactorExecutions.started( "check", moduleA, reactorProjects );
+        assertTrue( ReactorExecutions.completed( "check", moduleA, reactorProjects, expected ) );
+
+        // only once
+        assertFalse( ReactorExecutions.completed( "check", moduleB, reactorProjects, expected ) );
+    }
+
+    public void testRunningProjectIsWaitedFor()
+    {
+        Set<MavenProject> expected = ReactorExecutions.getExpectedProjects( null, null, null, reactorProjects );
+
+        ReactorExecutions.started( "report", parent, reactorProjects );
+        ReactorExecutions.started( "report", moduleA, reactorProjects );
+        ReactorExecutions.started( "report", moduleB, reactorProjects );
+        assertFalse( ReactorExecutions.completed( "report", parent, reactorProjects, expected ) );
+        assertFalse( ReactorExecutions.completed( "report", moduleB, reactorProjects, expected ) );
+        assertTrue( ReactorExecutions.completed( "report", moduleA, reactorProjects, expected ) );
+    }
+
+    public void testGoalsAreTrackedApart()
+    {
+        Set<MavenProject> expected = Collections.singleton( moduleA );
+        List<MavenProject> reactor = Collections.singletonList( moduleA );
+
+        assertTrue( ReactorExecutions.completed( "instrument", moduleA, reactor, expected ) );
+        assertTrue( ReactorExecutions.completed( "cobertura", moduleA, reactor, expected ) );
+    }
+
+    public void testCommandLineGoalRunsOnEveryProject()
+    {
+        assertEquals( reactorProjects, Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "cobertura", Arrays.asList( "clean", "cobertura:cobertura" ), reactorProjects ).toArray() ) );
+        assertEquals( reactorProjects, Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "check", Arrays.asList( "org.codehaus.mojo:cobertura-maven-plugin:2.8:check" ), reactorProjects )
+            .toArray() ) );
+        assertTrue( ReactorExecutions.getExpectedProjects( plugin, "check", Arrays.asList( "cobertura:clean" ),
+                                                           reactorProjects ).isEmpty() );
+    }
+
+    public void testForkedGoalRunsOnEveryProject()
+    {
+        assertEquals( reactorProjects, Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "check-only", Arrays.asList( "cobertura:check" ), reactorProjects ).toArray() ) );
+    }
+
+    public void testBoundGoalRunsOnProjectsRunningItsPhase()
+    {
+        assertEquals( Arrays.asList( moduleA, moduleB ), Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "check", Arrays.asList( "install" ), reactorProjects ).toArray() ) );
+        assertTrue( ReactorExecutions.getExpectedProjects( plugin, "check", Arrays.asList( "compile" ),
+                                                           reactorProjects ).isEmpty() );
+    }
+
+    public void testDeclaredPluginWithoutTheGoalIsNotExpected()
+    {
+        Plugin buildPlugin = (Plugin) moduleB.getBuildPlugins().get( 0 );
+        ( (PluginExecution) buildPlugin.getExecutions().get( 0 ) ).setGoals( Collections.singletonList( "clean" ) );
+
+        assertEquals( Collections.singletonList( moduleA ), Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "check", Arrays.asList( "install" ), reactorProjects ).toArray() ) );
+    }
+
+    public void testReportRunsOnProjectsReportingIt()
+    {
+        ReportSet reportSet = new ReportSet();
+        reportSet.addReport( "cobertura" );
+        ReportPlugin reportPlugin = new ReportPlugin();
+        reportPlugin.setGroupId( "org.codehaus.mojo" );
+        reportPlugin.setArtifactId( "cobertura-maven-plugin" );
+        reportPlugin.addReportSet( reportSet );
+        moduleA.getModel().setReporting( new Reporting() );
+        moduleA.getModel().getReporting().addPlugin( reportPlugin );
+
+        assertEquals( Collections.singletonList( moduleA ), Arrays.asList( ReactorExecutions.getExpectedProjects(
+            plugin, "cobertura", Arrays.asList( "site" ), reactorProjects ).toArray() ) );
+        assertTrue( ReactorExecutions.getExpectedProjects( plugin, "cobertura", Arrays.asList( "install" ),
+                                                           reactorProjects ).isEmpty() );
+    }
+
+    public void testSessionEndsOnceEveryGoalCompleted()
+    {
+        MavenProject a = project( "session-a", true );
+        MavenProject b = project( "session-b", true );
+        List<MavenProject> reactor = Arrays.asList( a, b );
+        List<String> goals = Arrays.asList( "install" );
+        Set<MavenProject> expected = ReactorExecutions.getExpectedProjects( plugin, "check-only", goals, reactor );
+
+        ReactorExecutions.started( "check-only", a, reactor );
+        ReactorExecutions.completed( "check-only", a, reactor, expected );
+        ReactorExecutions.started( "check-only", b, reactor );
+        assertFalse( "b is running", ReactorExecutions.isSessionEnded( plugin, goals, reactor ) );
+        ReactorExecutions.completed( "check-only", b, reactor, expected );
+        assertFalse( "check isn't done", ReactorExecutions.isSessionEnded( plugin, goals, reactor ) );
+
+        expected = ReactorExecutions.getExpectedProjects( plugin, "check", goals, reactor );
+        ReactorExecutions.started( "check", a, reactor );
+        ReactorExecutions.completed( "check", a, reactor, expected );
+        ReactorExecutions.started( "check", b, reactor );
+        ReactorExecutions.completed( "check", b, reactor, expected );
+        assertTrue( ReactorExecutions.isSessionEnded( plugin, goals, reactor ) );
+
+        // only once
+        assertFalse( ReactorExecutions.isSessionEnded( plugin, goals, reactor ) );
+    }
+
+    private static MavenProject project( String artifactId, boolean declaresPlugin )
+    {
+        Model model = new Model();
+        model.setGroupId( "org.codehaus.mojo.cobertura.its" );
+        model.setArtifactId( artifactId );
+        model.setVersion( "1.0-SNAPSHOT" );
+        if ( declaresPlugin )
+        {
+            PluginExecution execution = new PluginExecution();
+            execution.setId( "default" );
+            execution.addGoal( "check" );
+            Plugin plugin = new Plugin();
+            plugin.setGroupId( "org.codehaus.mojo" );
+            plugin.setArtifactId( "cobertura-maven-plugin" );
+            plugin.addExecution( execution );
+            model.setBuild( new Build() );
+            model.getBuild().addPlugin( plugin );
+        }
+        return new MavenProject( model );
+    }
+
+    /**
+     * A goal which runs in a phase by default, and may fork another goal of the plugin.
+     */
+    private MojoDescriptor mojo( String goal, String phase, String executeGoal, Class<?> implementation )
+    {
+        MojoDescriptor mojo = new MojoDescriptor();
+        mojo.setGoal( goal );
+        mojo.setPhase( phase );
+        mojo.setExecuteGoal( executeGoal );
+        mojo.setImplementation( implementation.getName() );
+        mojo.setPluginDescriptor( plugin );
+        return mojo;
+    }
+}
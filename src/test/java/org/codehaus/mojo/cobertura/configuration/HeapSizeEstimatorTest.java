@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.configuration;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * Test class for {@link HeapSizeEstimator}.
+ */
+public class HeapSizeEstimatorTest
+    extends TestCase
+{
+    public void testParseMb()
+    {
+        assertEquals( 64, HeapSizeEstimator.parseMb( "64m" ) );
+        assertEquals( 64, HeapSizeEstimator.parseMb( "64M" ) );
+        assertEquals( 2048, HeapSizeEstimator.parseMb( "2g" ) );
+        assertEquals( 2, HeapSizeEstimator.parseMb( "1025k" ) );
+        assertEquals( 1, HeapSizeEstimator.parseMb( "1" ) );
+        assertEquals( 16, HeapSizeEstimator.parseMb( "16777216" ) );
+    }
+
+    public void testInvalidBounds()
+    {
+        try
+        {
+            new HeapSizeEstimator( "64x", "1g" );
+            fail( "Invalid heap size accepted" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        try
+        {
+            new HeapSizeEstimator( "2g", "1g" );
+            fail( "Minimum greater than maximum accepted" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testForClassFiles()
+    {
+        HeapSizeEstimator estimator = new HeapSizeEstimator( "16m", "1g" );
+        SystemStreamLog log = new SystemStreamLog();
+
+        // 32m base, rounded to a power of two
+        assertEquals( "32m", estimator.forClassFiles( 0, log ) );
+        // 32m + 1m
+        assertEquals( "64m", estimator.forClassFiles( 16, log ) );
+        // 32m + 500m
+        assertEquals( "1024m", estimator.forClassFiles( 8000, log ) );
+        // limited to the maximum
+        assertEquals( "1024m", estimator.forClassFiles( 100000, log ) );
+        // raised to the minimum
+        assertEquals( "128m", new HeapSizeEstimator( "128m", "1g" ).forClassFiles( 0, log ) );
+    }
+
+    public void testForDataFile()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/heap" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        File dataFile = new File( dir, "cobertura.ser" );
+        RandomAccessFile file = new RandomAccessFile( dataFile, "rw" );
+        try
+        {
+            file.setLength( 20 << 20 );
+        }
+        finally
+        {
+            file.close();
+        }
+
+        // 32m base + 8 * 20m
+        assertEquals( "256m", new HeapSizeEstimator( "64m", "1g" ).forDataFile( dataFile, new SystemStreamLog() ) );
+    }
+}
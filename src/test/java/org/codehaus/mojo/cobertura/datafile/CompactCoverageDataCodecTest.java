@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Test class for {@link CompactCoverageDataCodec}.
+ */
+public class CompactCoverageDataCodecTest
+    extends TestCase
+{
+    private File dir;
+
+    private ProjectData projectData;
+
+    protected void setUp()
+        throws Exception
+    {
+        dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/codec" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        projectData = new ProjectData();
+        for ( int c = 0; c < 20; c++ )
+        {
+            ClassData classData = projectData.getOrCreateClassData( "org.example.pkg" + c % 3 + ".Class" + c );
+            classData.setSourceFileName( "Class" + c + ".java" );
+            if ( c % 2 == 0 )
+            {
+                classData.setContainsInstrumentationInfo();
+            }
+            for ( int line = 1; line <= 10; line++ )
+            {
+                classData.addLine( line, "method" + line % 4, "(I)V" );
+                classData.touch( line, c * line );
+            }
+
+            classData.addLineJump( 3, 0 );
+            classData.addLineJump( 3, 1 );
+            classData.touchJump( 3, 0, true, c );
+            classData.touchJump( 3, 1, false, 2 );
+
+            classData.addLineSwitch( 5, 0, 10, 13, 5 );
+            classData.touchSwitch( 5, 0, 1, c );
+            classData.touchSwitch( 5, 0, -1, 7 );
+            // a branch past the keys, as Cobertura records when it can't match one
+            classData.touchSwitch( 5, 0, 6, 1 );
+        }
+        projectData.getOrCreateClassData( "Empty" ).setSourceFileName( "Empty.java" );
+
+        // hits which don't fit in an int
+        ClassData big = projectData.getClassData( "org.example.pkg0.Class0" );
+        big.touch( 1, Integer.MAX_VALUE );
+        big.touch( 1, Integer.MAX_VALUE );
+        big.touch( 1, 5 );
+    }
+
+    public void testRoundTrip()
+        throws Exception
+    {
+        File dataFile = new File( dir, "cobertura.ser" );
+        CoverageDataCodecs.COMPACT.write( projectData, dataFile );
+
+        assertSame( CoverageDataCodecs.COMPACT, CoverageDataCodecs.forFile( dataFile ) );
+        ProjectData read = CoverageDataCodecs.read( dataFile );
+
+        assertEquals( projectData, read );
+        assertEquals( projectData.getNumberOfClasses(), read.getNumberOfClasses() );
+        assertEquals( projectData.getNumberOfValidBranches(), read.getNumberOfValidBranches() );
+        assertEquals( projectData.getNumberOfCoveredBranches(), read.getNumberOfCoveredBranches() );
+
+        ClassData classData = read.getClassData( "org.example.pkg1.Class7" );
+        assertEquals( projectData.getClassData( "org.example.pkg1.Class7" ).getMethodNamesAndDescriptors(),
+                      classData.getMethodNamesAndDescriptors() );
+        assertFalse( classData.containsInstrumentationInfo() );
+        assertTrue( read.getClassData( "org.example.pkg0.Class6" ).containsInstrumentationInfo() );
+        assertEquals( 2L * Integer.MAX_VALUE + 5, read.getClassData( "org.example.pkg0.Class0" ).getLineCoverage(
+            1 ).getHits() );
+
+        SwitchData switchData = (SwitchData) classData.getLineData( 5 ).getConditionData( 0 );
+        assertEquals( 7, switchData.getDefaultHits() );
+        assertEquals( 7, switchData.getHits( 1 ) );
+        assertEquals( 1, switchData.getHits( 6 ) );
+        assertEquals( -1, switchData.getHits( 7 ) );
+        assertEquals( 5, switchData.getMaxBranches() );
+    }
+
+    public void testConvertToSerialized()
+        throws Exception
+    {
+        File serialized = new File( dir, "serialized.ser" );
+        File compact = new File( dir, "compact.ser" );
+        CoverageDataCodecs.SERIALIZED.write( projectData, serialized );
+        CoverageDataCodecs.COMPACT.write( CoverageDataCodecs.read( serialized ), compact );
+
+        assertTrue( compact.length() < serialized.length() );
+        assertSame( serialized, CoverageDataCodecs.toSerialized( serialized ) );
+
+        File converted = CoverageDataCodecs.toSerialized( compact );
+        try
+        {
+            assertSame( CoverageDataCodecs.SERIALIZED, CoverageDataCodecs.forFile( converted ) );
+            assertEquals( projectData, CoverageDataCodecs.read( converted ) );
+        }
+        finally
+        {
+            converted.delete();
+        }
+    }
+
+    public void testLaterVersionIsRejected()
+        throws Exception
+    {
+        File dataFile = new File( dir, "future.ser" );
+        DataOutputStream out = new DataOutputStream( new FileOutputStream( dataFile ) );
+        out.writeInt( CompactCoverageDataCodec.MAGIC );
+        out.writeInt( CompactCoverageDataCodec.VERSION + 1 );
+        out.close();
+
+        try
+        {
+            CoverageDataCodecs.read( dataFile );
+            fail( "Expected an IOException" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "version" ) );
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.check.CheckCoverageMain;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+import org.codehaus.mojo.cobertura.configuration.Regex;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for {@link CoverageChecker}.
+ */
+public class CoverageCheckerTest
+    extends TestCase
+{
+    private File dataFile;
+
+    private CoverageSummary summary;
+
+    protected void setUp()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/checker" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        // Circle: 3/4 lines, 1/2 branches; pkg.Square: 1/4 lines; pkg.Util: no lines
+        ProjectData projectData = new ProjectData();
+        ClassData circle = projectData.getOrCreateClassData( "Circle" );
+        for ( int line = 1; line <= 4; line++ )
+        {
+            circle.addLine( line, "area", "()D" );
+            if ( line < 4 )
+            {
+                circle.touch( line, 1 );
+            }
+        }
+        circle.addLineJump( 1, 0 );
+        circle.touchJump( 1, 0, true, 1 );
+        ClassData square = projectData.getOrCreateClassData( "pkg.Square" );
+        for ( int line = 1; line <= 4; line++ )
+        {
+            square.addLine( line, "area", "()D" );
+        }
+        square.touch( 1, 1 );
+        projectData.getOrCreateClassData( "pkg.Util" );
+
+        dataFile = new File( dir, "cobertura.ser" );
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+        summary = CoverageSummary.of( projectData );
+    }
+
+    public void testMessages()
+    {
+        ConfigCheck config = new ConfigCheck();
+        config.setLineRate( "50" );
+        config.setTotalBranchRate( "60" );
+
+        assertEquals( Arrays.asList( "pkg.Square failed coverage check. Line coverage rate of 25.0% is below 50.0%",
+                                     "project failed coverage check. Branch coverage rate of 50.0% is below 60.0%" ),
+                      new CoverageChecker( config ).check( summary ) );
+    }
+
+    public void testRegexOverridesClassRates()
+    {
+        ConfigCheck config = new ConfigCheck();
+        config.setLineRate( "50" );
+        Regex regex = config.createRegex();
+        regex.setPattern( "pkg\\..*" );
+        regex.setBranchRate( "0" );
+        regex.setLineRate( "20" );
+
+        assertTrue( new CoverageChecker( config ).check( summary ).isEmpty() );
+
+        regex.setLineRate( "30" );
+        assertEquals( 1, new CoverageChecker( config ).check( summary ).size() );
+    }
+
+    public void testEveryPackageIsChecked()
+    {
+        // Cobertura 2.1.1 only checks the first package it finds
+        ConfigCheck config = new ConfigCheck();
+        config.setPackageLineRate( "75" );
+
+        assertEquals( Arrays.asList( "pkg failed coverage check. Line coverage rate of 25.0% is below 75.0%" ),
+                      new CoverageChecker( config ).check( summary ) );
+    }
+
+    public void testInvalidRate()
+    {
+        ConfigCheck config = new ConfigCheck();
+        config.setPackageLineRate( "101" );
+
+        try
+        {
+            new CoverageChecker( config );
+            fail( "Expected an invalid rate" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "101%" ) );
+        }
+    }
+
+    public void testAgreesWithCobertura()
+        throws Exception
+    {
+        String[][] checks = { { "--branch", "50" }, { "--branch", "51" }, { "--line", "25" }, { "--line", "26" },
+            { "--packagebranch", "50", "--packageline", "25" }, { "--totalline", "50" },
+            { "--totalline", "51" }, { "--totalbranch", "100" }, { "--line", "90", "--regex", "pkg.*:20:0" },
+            { "--line", "90", "--regex", ".*:75:50" } };
+
+        for ( String[] check : checks )
+        {
+            ConfigCheck config = new ConfigCheck();
+            List<String> args = new ArrayList<String>( Arrays.asList( "--datafile", dataFile.getPath() ) );
+            for ( int i = 0; i < check.length; i += 2 )
+            {
+                String value = check[i + 1];
+                args.add( check[i] );
+                args.add( value );
+                if ( "--branch".equals( check[i] ) )
+                {
+                    config.setBranchRate( value );
+                }
+                else if ( "--line".equals( check[i] ) )
+                {
+                    config.setLineRate( value );
+                }
+                else if ( "--packagebranch".equals( check[i] ) )
+                {
+                    config.setPackageBranchRate( value );
+                }
+                else if ( "--packageline".equals( check[i] ) )
+                {
+                    config.setPackageLineRate( value );
+                }
+                else if ( "--totalbranch".equals( check[i] ) )
+                {
+                    config.setTotalBranchRate( value );
+                }
+                else if ( "--totalline".equals( check[i] ) )
+                {
+                    config.setTotalLineRate( value );
+                }
+                else
+                {
+                    // pattern:lineRate:branchRate, as Regex.toString()
+                    String[] parts = value.split( ":" );
+                    Regex regex = config.createRegex();
+                    regex.setPattern( parts[0] );
+                    regex.setLineRate( parts[1] );
+                    regex.setBranchRate( parts[2] );
+                    assertEquals( value, regex.toString() );
+                }
+            }
+
+            boolean coberturaPassed = CheckCoverageMain.checkCoverage( args.toArray( new String[args.size()] ) ) == 0;
+            List<String> failures = new CoverageChecker( config ).check( summary );
+            assertEquals( Arrays.asList( check ) + ": " + failures, coberturaPassed, failures.isEmpty() );
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for {@link CoverageDataMerger}.
+ */
+public class CoverageDataMergerTest
+    extends TestCase
+{
+    private List<File> dataFiles;
+
+    protected void setUp()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/merger" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        dataFiles = new ArrayList<File>();
+        for ( int module = 0; module < 11; module++ )
+        {
+            ProjectData projectData = new ProjectData();
+            for ( int c = 0; c < 3; c++ )
+            {
+                // modules overlap on a shared class, as they would for a common test utility
+                String className = c == 0 ? "shared.Util" : "module" + module + ".Class" + c;
+                ClassData classData = projectData.getOrCreateClassData( className );
+                classData.setSourceFileName( className.replace( '.', '/' ) + ".java" );
+                for ( int line = 1; line <= 5; line++ )
+                {
+                    classData.addLine( line, "method" + line, "()V" );
+                    classData.touch( line, module * line );
+                }
+            }
+
+            File dataFile = new File( dir, "module" + module + ".ser" );
+            CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+            dataFiles.add( dataFile );
+        }
+    }
+
+    public void testParallelMergeMatchesSerial()
+        throws Exception
+    {
+        ProjectData serial = new ProjectData();
+        for ( File dataFile : dataFiles )
+        {
+            serial.merge( CoverageDataFileHandler.loadCoverageData( dataFile ) );
+        }
+
+        ProjectData parallel = new CoverageDataMerger( 4, new SystemStreamLog() ).merge( dataFiles );
+
+        assertEquals( 1 + 11 * 2, parallel.getNumberOfClasses() );
+        assertEquals( serial, parallel );
+        assertEquals( serial.getLineCoverageRate(), parallel.getLineCoverageRate(), 0.0 );
+        assertEquals( 55 * 5, parallel.getClassData( "shared.Util" ).getLineCoverage( 5 ).getHits() );
+    }
+
+    public void testUnreadableDataFileIsSkipped()
+        throws Exception
+    {
+        File broken = new File( dataFiles.get( 0 ).getParentFile(), "broken.ser" );
+        FileUtils.fileWrite( broken.getPath(), "not a data file" );
+        dataFiles.add( broken );
+
+        ProjectData merged = new CoverageDataMerger( 3, new SystemStreamLog() ).merge( dataFiles );
+
+        assertEquals( 1 + 11 * 2, merged.getNumberOfClasses() );
+    }
+
+    public void testUnreadableDataFileFails()
+        throws Exception
+    {
+        File broken = new File( dataFiles.get( 0 ).getParentFile(), "broken.ser" );
+        FileUtils.fileWrite( broken.getPath(), "not a data file" );
+        dataFiles.add( broken );
+
+        try
+        {
+            new CoverageDataMerger( 3, new SystemStreamLog(), false ).merge( dataFiles );
+            fail( "Expected an IOException" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( broken.getPath() ) >= 0 );
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.StringWriter;
+
+/**
+ * Test class for {@link CoverageDumper}.
+ */
+public class CoverageDumperTest
+    extends TestCase
+{
+    private File dataFile;
+
+    private File compactDataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/dumper" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        ProjectData projectData = new ProjectData();
+        for ( String className : new String[]{ "Main", "pkg.A", "pkg.sub.B" } )
+        {
+            ClassData classData = projectData.getOrCreateClassData( className );
+            classData.setSourceFileName( className.replace( '.', '/' ) + ".java" );
+            for ( int line = 1; line <= 2; line++ )
+            {
+                classData.addLine( line, "method", "()V" );
+            }
+            classData.touch( 1, 3 );
+        }
+
+        dataFile = new File( dir, "cobertura.ser" );
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+        compactDataFile = new File( dir, "cobertura.compact" );
+        CoverageDataCodecs.COMPACT.write( projectData, compactDataFile );
+    }
+
+    public void testPackageXml()
+        throws Exception
+    {
+        String xml = dump( dataFile, CoverageDumpWriter.XML, CoverageDumper.Detail.PACKAGE );
+
+        assertTrue( xml, xml.startsWith( "<?xml version=\"1.0\"?>\n<coverage line-rate=\"50%\"" ) );
+        assertTrue( xml, xml.contains( "<package name=\"pkg.sub\" line-rate=\"50%\" branch-rate=\"100%\" "
+                                           + "lines-covered=\"1\" lines-valid=\"2\" branches-covered=\"0\" "
+                                           + "branches-valid=\"0\" />\n" ) );
+        assertTrue( xml, xml.endsWith( "</coverage>\n" ) );
+    }
+
+    public void testLineXml()
+        throws Exception
+    {
+        String xml = dump( dataFile, CoverageDumpWriter.XML, CoverageDumper.Detail.LINE );
+
+        assertTrue( xml, xml.contains( "  <class name=\"pkg.A\"" ) );
+        assertTrue( xml, xml.contains( "    <line number=\"1\" hits=\"3\" branch=\"false\" />\n"
+                                           + "    <line number=\"2\" hits=\"0\" branch=\"false\" />\n"
+                                           + "  </class>\n</package>\n" ) );
+    }
+
+    public void testJsonLines()
+        throws Exception
+    {
+        String json = dump( dataFile, CoverageDumpWriter.JSON, CoverageDumper.Detail.CLASS );
+        String[] lines = json.split( "\n" );
+
+        // project, 3 packages and 3 classes
+        assertEquals( 7, lines.length );
+        assertTrue( lines[0], lines[0].startsWith( "{\"type\":\"project\",\"lineRate\":0.5," ) );
+        assertEquals( "{\"type\":\"package\",\"name\":\"\",\"lineRate\":0.5,\"branchRate\":1.0,\"linesCovered\":1,"
+                          + "\"linesValid\":2,\"branchesCovered\":0,\"branchesValid\":0}", lines[1] );
+        assertEquals( "{\"type\":\"class\",\"name\":\"Main\",\"package\":\"\",\"lineRate\":0.5,\"branchRate\":1.0,"
+                          + "\"linesCovered\":1,\"linesValid\":2,\"branchesCovered\":0,\"branchesValid\":0}",
+                      lines[2] );
+    }
+
+    public void testCsvOfCompactDataFileMatchesSerialized()
+        throws Exception
+    {
+        String csv = dump( dataFile, CoverageDumpWriter.CSV, CoverageDumper.Detail.LINE );
+
+        assertEquals( csv, dump( compactDataFile, CoverageDumpWriter.CSV, CoverageDumper.Detail.LINE ) );
+        assertTrue( csv, csv.startsWith( "type,name,line,hits,line-rate,branch-rate,lines-covered,lines-valid,"
+                                             + "branches-covered,branches-valid\nproject,,,,0.5,1.0,3,6,0,0\n" ) );
+        assertTrue( csv, csv.contains( "class,pkg.A,,,0.5,1.0,1,2,0,0\nline,pkg.A,1,3,,,1,1,0,0\n"
+                                           + "line,pkg.A,2,0,,,0,1,0,0\n" ) );
+    }
+
+    private static String dump( File dataFile, String format, CoverageDumper.Detail detail )
+        throws Exception
+    {
+        StringWriter out = new StringWriter();
+        new CoverageDumper( dataFile, detail ).dump( CoverageDumpWriter.forFormat( format, out ) );
+        return out.toString();
+    }
+}
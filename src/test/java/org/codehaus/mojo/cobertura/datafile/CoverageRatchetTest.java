@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Test class for {@link CoverageRatchet} and {@link CoverageBaseline}.
+ */
+public class CoverageRatchetTest
+    extends TestCase
+{
+    private SortedMap<String, CoverageTotals> classTotals;
+
+    protected void setUp()
+    {
+        classTotals = new TreeMap<String, CoverageTotals>();
+        classTotals.put( "Circle", new CoverageTotals( 4, 3, 2, 1 ) );
+        classTotals.put( "pkg.Square", new CoverageTotals( 4, 1, 0, 0 ) );
+        classTotals.put( "pkg.Util", new CoverageTotals( 3, 3, 0, 0 ) );
+    }
+
+    public void testBaselineRoundTrip()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/ratchet" );
+        FileUtils.deleteDirectory( dir );
+        File baseline = new File( dir, "coverage-baseline.bin" );
+
+        CoverageSummary summary = CoverageSummary.of( classTotals );
+        CoverageBaseline.write( summary, baseline );
+        CoverageSummary read = CoverageBaseline.read( baseline );
+
+        assertEquals( summary.getClassTotals(), read.getClassTotals() );
+        assertEquals( summary.getPackageTotals(), read.getPackageTotals() );
+        assertEquals( summary.getProjectTotals(), read.getProjectTotals() );
+        assertFalse( new File( dir, "coverage-baseline.bin.tmp" ).exists() );
+    }
+
+    public void testBaselineOverwrite()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/ratchet" );
+        FileUtils.deleteDirectory( dir );
+        File baseline = new File( dir, "coverage-baseline.bin" );
+
+        CoverageBaseline.write( CoverageSummary.of( classTotals ), baseline );
+        classTotals.put( "pkg.Square", new CoverageTotals( 4, 4, 0, 0 ) );
+        CoverageSummary improved = CoverageSummary.of( classTotals );
+        CoverageBaseline.write( improved, baseline );
+
+        assertEquals( improved.getClassTotals(), CoverageBaseline.read( baseline ).getClassTotals() );
+        assertEquals( 1, dir.list().length );
+    }
+
+    public void testSameCoveragePasses()
+    {
+        CoverageRatchet ratchet = new CoverageRatchet( CoverageSummary.of( classTotals ) );
+
+        assertEquals( Collections.emptyList(), ratchet.check( CoverageSummary.of( classTotals ) ) );
+        assertFalse( ratchet.isImproved() );
+    }
+
+    public void testDropFails()
+    {
+        CoverageRatchet ratchet = new CoverageRatchet( CoverageSummary.of( classTotals ) );
+        classTotals.put( "pkg.Square", new CoverageTotals( 5, 1, 0, 0 ) );
+
+        assertEquals( Arrays.asList(
+            "pkg failed ratchet check. Line coverage rate of 50.0% is below the baseline of 57.1%, dropped in "
+                + "[pkg.Square]",
+            "project failed ratchet check. Line coverage rate of 58.3% is below the baseline of 63.6%" ),
+                      ratchet.check( CoverageSummary.of( classTotals ) ) );
+    }
+
+    public void testImprovement()
+    {
+        CoverageRatchet ratchet = new CoverageRatchet( CoverageSummary.of( classTotals ) );
+
+        // a class which dropped doesn't fail the check when its package didn't drop
+        classTotals.put( "pkg.Square", new CoverageTotals( 4, 4, 0, 0 ) );
+        classTotals.put( "pkg.Util", new CoverageTotals( 3, 2, 0, 0 ) );
+        assertEquals( Collections.emptyList(), ratchet.check( CoverageSummary.of( classTotals ) ) );
+        assertTrue( ratchet.isImproved() );
+
+        classTotals.put( "pkg.Square", new CoverageTotals( 4, 1, 0, 0 ) );
+        classTotals.put( "pkg.Util", new CoverageTotals( 3, 3, 0, 0 ) );
+        classTotals.put( "other.Triangle", new CoverageTotals( 0, 0, 0, 0 ) );
+        assertEquals( Collections.emptyList(), ratchet.check( CoverageSummary.of( classTotals ) ) );
+        assertTrue( "a new package improves the baseline", ratchet.isImproved() );
+    }
+
+    public void testCompareRates()
+    {
+        assertEquals( 0, CoverageRatchet.compare( 1, 3, 2, 6 ) );
+        assertEquals( -1, CoverageRatchet.compare( 3333, 10000, 1, 3 ) );
+        assertEquals( 0, CoverageRatchet.compare( 0, 0, 5, 5 ) );
+        assertEquals( 1, CoverageRatchet.compare( 0, 0, 4, 5 ) );
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Test class for {@link DiffCoverageChecker}, {@link UnifiedDiff} and {@link SourceLineIndex}.
+ */
+public class DiffCoverageCheckerTest
+    extends TestCase
+{
+    private static final String DIFF =
+        "diff --git a/core/src/main/java/pkg/Circle.java b/core/src/main/java/pkg/Circle.java\n"
+        + "index 1111111..2222222 100644\n"
+        + "--- a/core/src/main/java/pkg/Circle.java\n"
+        + "+++ b/core/src/main/java/pkg/Circle.java\n"
+        + "@@ -2 +2,2 @@ class Circle\n"
+        + "-    old();\n"
+        + "+    area();\n"
+        + "+++ not a header\n"
+        + "@@ -10,0 +12 @@\n"
+        + "+    // a comment\n"
+        + "@@ -20,3 +23,4 @@\n"
+        + " context\n"
+        + "+    perimeter();\n"
+        + "-    removed();\n"
+        + " context\n"
+        + "+    diameter();\n"
+        + "\\ No newline at end of file\n"
+        + "diff --git a/core/src/test/java/pkg/CircleTest.java b/core/src/test/java/pkg/CircleTest.java\n"
+        + "--- a/core/src/test/java/pkg/CircleTest.java\n"
+        + "+++ b/core/src/test/java/pkg/CircleTest.java\n"
+        + "@@ -1 +1 @@\n"
+        + "-a\n"
+        + "+b\n"
+        + "diff --git a/core/src/main/java/pkg/Gone.java b/core/src/main/java/pkg/Gone.java\n"
+        + "--- a/core/src/main/java/pkg/Gone.java\n"
+        + "+++ /dev/null\n"
+        + "@@ -1,2 +0,0 @@\n"
+        + "-a\n"
+        + "-b\n";
+
+    private SourceLineIndex index;
+
+    protected void setUp()
+        throws Exception
+    {
+        // pkg/Circle.java: lines 2, 3, 24 and 26 have code, 2 and 24 are covered, 3 has a half covered branch
+        ProjectData projectData = new ProjectData();
+        ClassData circle = projectData.getOrCreateClassData( "pkg.Circle" );
+        circle.setSourceFileName( "Circle.java" );
+        circle.addLine( 2, "area", "()D" );
+        circle.addLine( 3, "area", "()D" );
+        circle.addLineJump( 3, 0 );
+        circle.addLine( 24, "perimeter", "()D" );
+        circle.touch( 2, 1 );
+        circle.touch( 3, 1 );
+        circle.touchJump( 3, 0, true, 1 );
+        ClassData inner = projectData.getOrCreateClassData( "pkg.Circle$Diameter" );
+        inner.setSourceFileName( "Circle.java" );
+        inner.addLine( 26, "diameter", "()D" );
+        ClassData test = projectData.getOrCreateClassData( "pkg.Other" );
+        test.setSourceFileName( "Other.java" );
+        test.addLine( 1, "other", "()V" );
+
+        index = new SourceLineIndex( projectData );
+    }
+
+    public void testParse()
+        throws Exception
+    {
+        UnifiedDiff diff = UnifiedDiff.parse( new StringReader( DIFF ) );
+
+        assertEquals( new TreeSet<String>(
+            Arrays.asList( "core/src/main/java/pkg/Circle.java", "core/src/test/java/pkg/CircleTest.java" ) ),
+                      diff.getChangedLines().keySet() );
+        assertEquals( new TreeSet<Integer>( Arrays.asList( 2, 3, 12, 24, 26 ) ),
+                      diff.getChangedLines().get( "core/src/main/java/pkg/Circle.java" ) );
+    }
+
+    public void testFindSourceFile()
+    {
+        assertEquals( "pkg/Circle.java", index.findSourceFile( "core/src/main/java/pkg/Circle.java" ) );
+        assertEquals( "pkg/Circle.java", index.findSourceFile( "pkg/Circle.java" ) );
+        assertNull( index.findSourceFile( "core/src/test/java/pkg/CircleTest.java" ) );
+    }
+
+    public void testCheck()
+        throws Exception
+    {
+        ConfigCheck config = new ConfigCheck();
+        config.setDiffLineRate( "60" );
+        config.setDiffBranchRate( "50" );
+        DiffCoverageChecker checker = new DiffCoverageChecker( config );
+
+        assertEquals( Arrays.asList( "core/src/main/java/pkg/Circle.java failed diff coverage check. Line coverage "
+                                         + "rate of 50.0% is below 60.0%, uncovered lines: 24, 26" ),
+                      checker.check( UnifiedDiff.parse( new StringReader( DIFF ) ), index ) );
+        assertEquals( new CoverageTotals( 4, 2, 2, 1 ), checker.getTotals() );
+        assertEquals( 1, checker.getSourceFiles() );
+
+        config.setDiffLineRate( "50" );
+        config.setDiffBranchRate( "51" );
+        assertEquals( Arrays.asList( "core/src/main/java/pkg/Circle.java failed diff coverage check. Branch coverage "
+                                         + "rate of 50.0% is below 51.0%, lines with uncovered branches: 3" ),
+                      new DiffCoverageChecker( config ).check( UnifiedDiff.parse( new StringReader( DIFF ) ),
+                                                               index ) );
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+/**
+ * Test class for {@link ForkDataFiles}.
+ */
+public class ForkDataFilesTest
+    extends TestCase
+{
+    private File dataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/forks" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        dataFile = new File( dir, "cobertura.ser" );
+    }
+
+    public void testMerge()
+        throws Exception
+    {
+        // the instrumentation knows every class, each test JVM only the classes it ran
+        CoverageDataFileHandler.saveCoverageData( createProjectData( 0, "pkg.A", "pkg.B" ), dataFile );
+        for ( int fork = 1; fork <= 3; fork++ )
+        {
+            String previous = System.getProperty( ForkDataFileAgent.DATA_FILE_PROPERTY );
+            try
+            {
+                ForkDataFileAgent.premain( ForkDataFiles.getDirectory( dataFile ).getPath() );
+                File forkDataFile = new File( System.getProperty( ForkDataFileAgent.DATA_FILE_PROPERTY ) );
+                assertEquals( ForkDataFiles.getDirectory( dataFile ), forkDataFile.getParentFile() );
+                assertEquals( 0, forkDataFile.length() );
+                CoverageDataFileHandler.saveCoverageData( createProjectData( fork, "pkg.A" ), forkDataFile );
+            }
+            finally
+            {
+                if ( previous == null )
+                {
+                    System.clearProperty( ForkDataFileAgent.DATA_FILE_PROPERTY );
+                }
+                else
+                {
+                    System.setProperty( ForkDataFileAgent.DATA_FILE_PROPERTY, previous );
+                }
+            }
+        }
+
+        assertEquals( 3, ForkDataFiles.merge( dataFile, 2, new SystemStreamLog() ) );
+
+        ProjectData merged = CoverageDataFileHandler.loadCoverageData( dataFile );
+        assertEquals( 2, merged.getNumberOfClasses() );
+        assertEquals( 1 + 2 + 3, merged.getClassData( "pkg.A" ).getLineCoverage( 1 ).getHits() );
+        assertEquals( 0, merged.getClassData( "pkg.B" ).getLineCoverage( 1 ).getHits() );
+        assertEquals( 0, ForkDataFiles.getDirectory( dataFile ).list().length );
+        assertEquals( 0, ForkDataFiles.merge( dataFile, 2, new SystemStreamLog() ) );
+    }
+
+    public void testEmptyDataFileIsRemoved()
+        throws Exception
+    {
+        CoverageDataFileHandler.saveCoverageData( createProjectData( 0, "pkg.A" ), dataFile );
+        File directory = ForkDataFiles.getDirectory( dataFile );
+        directory.mkdirs();
+        File.createTempFile( "cobertura-", ".ser", directory );
+
+        assertEquals( 0, ForkDataFiles.merge( dataFile, 2, new SystemStreamLog() ) );
+
+        assertEquals( 0, directory.list().length );
+        assertEquals( 1, CoverageDataFileHandler.loadCoverageData( dataFile ).getNumberOfClasses() );
+    }
+
+    public void testUnreadableDataFileFailsAndIsKept()
+        throws Exception
+    {
+        CoverageDataFileHandler.saveCoverageData( createProjectData( 0, "pkg.A" ), dataFile );
+        File directory = ForkDataFiles.getDirectory( dataFile );
+        directory.mkdirs();
+        File forkDataFile = new File( directory, "cobertura-1.ser" );
+        CoverageDataFileHandler.saveCoverageData( createProjectData( 1, "pkg.A" ), forkDataFile );
+        File broken = new File( directory, "cobertura-2.ser" );
+        FileUtils.fileWrite( broken.getPath(), "not a data file" );
+
+        try
+        {
+            ForkDataFiles.merge( dataFile, 2, new SystemStreamLog() );
+            fail( "Expected an IOException" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( broken.getPath() ) >= 0 );
+        }
+
+        assertTrue( forkDataFile.isFile() );
+        assertTrue( broken.isFile() );
+        assertEquals( 0, CoverageDataFileHandler.loadCoverageData( dataFile ).getClassData( "pkg.A" )
+            .getLineCoverage( 1 ).getHits() );
+    }
+
+    public void testWriteAgent()
+        throws Exception
+    {
+        File agentJar = new File( dataFile.getParentFile(), "agent.jar" );
+        ForkDataFiles.writeAgent( agentJar );
+
+        JarFile jar = new JarFile( agentJar );
+        try
+        {
+            assertEquals( ForkDataFileAgent.class.getName(),
+                          jar.getManifest().getMainAttributes().getValue( "Premain-Class" ) );
+            assertNotNull( jar.getEntry( ForkDataFileAgent.class.getName().replace( '.', '/' ) + ".class" ) );
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    private static ProjectData createProjectData( int hits, String... classNames )
+    {
+        ProjectData projectData = new ProjectData();
+        for ( String className : classNames )
+        {
+            ClassData classData = projectData.getOrCreateClassData( className );
+            classData.setSourceFileName( className.replace( '.', '/' ) + ".java" );
+            classData.addLine( 1, "method", "()V" );
+            classData.touch( 1, hits );
+        }
+        return projectData;
+    }
+}
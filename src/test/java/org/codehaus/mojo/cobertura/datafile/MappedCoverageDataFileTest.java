@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.datafile;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.PackageData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Test class for {@link MappedCoverageDataFile} and {@link CoverageSummary}.
+ */
+public class MappedCoverageDataFileTest
+    extends TestCase
+{
+    private ProjectData projectData;
+
+    private File dataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/mapped" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+
+        projectData = new ProjectData();
+        for ( int c = 0; c < 12; c++ )
+        {
+            String className = ( c < 4 ? "Default" : "org.example.pkg" + c % 2 + ".Class" ) + c;
+            ClassData classData = projectData.getOrCreateClassData( className );
+            classData.setSourceFileName( "Class" + c + ".java" );
+            for ( int line = 1; line <= c + 2; line++ )
+            {
+                classData.addLine( line, "method", "()V" );
+                classData.touch( line, line % 3 );
+            }
+            classData.addLineJump( 2, 0 );
+            classData.touchJump( 2, 0, c % 2 == 0, 1 );
+        }
+
+        dataFile = new File( dir, "cobertura.ser" );
+        CoverageDataCodecs.COMPACT.write( projectData, dataFile );
+    }
+
+    public void testClassTotals()
+        throws Exception
+    {
+        MappedCoverageDataFile mapped = new MappedCoverageDataFile( dataFile );
+
+        assertEquals( 12, mapped.getNumberOfClasses() );
+        assertEquals( "Default0", mapped.getClassNames().get( 0 ) );
+        for ( Object o : projectData.getClasses() )
+        {
+            ClassData classData = (ClassData) o;
+            assertEquals( CoverageTotals.of( classData ), mapped.getClassTotals( classData.getName() ) );
+        }
+        assertNull( mapped.getClassTotals( "org.example.Missing" ) );
+    }
+
+    public void testReadClass()
+        throws Exception
+    {
+        MappedCoverageDataFile mapped = new MappedCoverageDataFile( dataFile );
+
+        // in any order, each class is decoded on its own
+        for ( String className : Arrays.asList( "org.example.pkg1.Class9", "Default2", "org.example.pkg0.Class4" ) )
+        {
+            assertEquals( projectData.getClassData( className ), mapped.readClass( className ) );
+        }
+        assertNull( mapped.readClass( "org.example.Missing" ) );
+    }
+
+    public void testSummaryMatchesProjectData()
+        throws Exception
+    {
+        CoverageSummary summary = CoverageSummary.read( dataFile );
+
+        assertEquals( CoverageSummary.of( projectData ).getClassTotals(), summary.getClassTotals() );
+        assertEquals( CoverageTotals.of( projectData ), summary.getProjectTotals() );
+        assertEquals( projectData.getLineCoverageRate(), summary.getProjectTotals().getLineCoverageRate(), 0d );
+        assertEquals( projectData.getBranchCoverageRate(), summary.getProjectTotals().getBranchCoverageRate(), 0d );
+
+        assertEquals( Arrays.asList( "", "org.example.pkg0", "org.example.pkg1" ),
+                      Arrays.asList( summary.getPackageTotals().keySet().toArray() ) );
+        for ( Object o : projectData.getPackages() )
+        {
+            PackageData packageData = (PackageData) o;
+            assertEquals( CoverageTotals.of( packageData ), summary.getPackageTotals().get( packageData.getName() ) );
+        }
+    }
+}
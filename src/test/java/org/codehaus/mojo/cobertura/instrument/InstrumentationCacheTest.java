@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class for {@link InstrumentationCache}.
+ */
+public class InstrumentationCacheTest
+    extends TestCase
+{
+    private File baseDir;
+
+    private File classesDir;
+
+    private File instrumentedDir;
+
+    private File dataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/cache" );
+        FileUtils.deleteDirectory( baseDir );
+        classesDir = new File( baseDir, "classes" );
+        instrumentedDir = new File( baseDir, "generated-classes" );
+        dataFile = new File( baseDir, "cobertura.ser" );
+        new File( classesDir, "pkg" ).mkdirs();
+        new File( instrumentedDir, "pkg" ).mkdirs();
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            FileUtils.fileWrite( new File( classesDir, "pkg/Class" + i + ".class" ).getPath(), "class " + i );
+        }
+    }
+
+    public void testKeyChangesWithClassesAndSettings()
+        throws Exception
+    {
+        String key = InstrumentationCache.computeKey( classesDir, "settings", dataFile );
+
+        assertEquals( key, InstrumentationCache.computeKey( classesDir, "settings", dataFile ) );
+        assertFalse( key.equals( InstrumentationCache.computeKey( classesDir, "other settings", dataFile ) ) );
+
+        FileUtils.fileWrite( new File( classesDir, "pkg/Class1.class" ).getPath(), "changed" );
+        assertFalse( key.equals( InstrumentationCache.computeKey( classesDir, "settings", dataFile ) ) );
+    }
+
+    public void testDirectoryRoundTrip()
+        throws Exception
+    {
+        DirectoryCacheBackend backend = new DirectoryCacheBackend( new File( baseDir, "cache" ) );
+        assertRoundTrip( Collections.<CacheBackend>singletonList( backend ) );
+    }
+
+    public void testHttpRoundTrip()
+        throws Exception
+    {
+        final Map<String, byte[]> entries = Collections.synchronizedMap( new HashMap<String, byte[]>() );
+        HttpServer server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/cache", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                String path = exchange.getRequestURI().getPath();
+                // the request body must be read for the connection to be kept alive
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                IOUtil.copy( exchange.getRequestBody(), body );
+                if ( "PUT".equals( exchange.getRequestMethod() ) )
+                {
+                    entries.put( path, body.toByteArray() );
+                    exchange.sendResponseHeaders( 201, -1 );
+                }
+                else if ( entries.containsKey( path ) )
+                {
+                    byte[] entry = entries.get( path );
+                    exchange.sendResponseHeaders( 200, entry.length );
+                    OutputStream out = exchange.getResponseBody();
+                    out.write( entry );
+                    out.close();
+                }
+                else
+                {
+                    exchange.sendResponseHeaders( 404, -1 );
+                }
+                exchange.close();
+            }
+        } );
+        server.start();
+        try
+        {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/cache";
+            assertRoundTrip( Collections.<CacheBackend>singletonList( new HttpCacheBackend( url ) ) );
+            assertEquals( 1, entries.size() );
+        }
+        finally
+        {
+            server.stop( 0 );
+        }
+    }
+
+    public void testHitPopulatesEarlierBackends()
+        throws Exception
+    {
+        DirectoryCacheBackend local = new DirectoryCacheBackend( new File( baseDir, "local" ) );
+        DirectoryCacheBackend shared = new DirectoryCacheBackend( new File( baseDir, "shared" ) );
+        String key = instrumentAndSave( Collections.<CacheBackend>singletonList( shared ) );
+
+        InstrumentationCache cache = new InstrumentationCache( Arrays.<CacheBackend>asList( local, shared ),
+                                                               new SystemStreamLog() );
+        assertTrue( cache.restore( key, instrumentedDir, dataFile, new ArrayList<String>() ) > 0 );
+        assertTrue( local.fetch( key, new File( baseDir, "fetched.zip" ) ) );
+    }
+
+    public void testTruncatedEntryIsMiss()
+        throws Exception
+    {
+        File directory = new File( baseDir, "cache" );
+        String key = instrumentAndSave(
+            Collections.<CacheBackend>singletonList( new DirectoryCacheBackend( directory ) ) );
+        File archive = new File( directory, key + ".zip" );
+        byte[] content = FileUtils.fileRead( archive, "ISO-8859-1" ).getBytes( "ISO-8859-1" );
+        OutputStream out = new FileOutputStream( archive );
+        try
+        {
+            out.write( content, 0, content.length / 2 );
+        }
+        finally
+        {
+            out.close();
+        }
+        FileUtils.fileWrite( dataFile.getPath(), "previous data" );
+
+        InstrumentationCache cache = new InstrumentationCache(
+            Collections.<CacheBackend>singletonList( new DirectoryCacheBackend( directory ) ), new SystemStreamLog() );
+        List<String> restoredPaths = new ArrayList<String>();
+        assertEquals( -1, cache.restore( key, instrumentedDir, dataFile, restoredPaths ) );
+        assertTrue( restoredPaths.isEmpty() );
+        assertEquals( "previous data", FileUtils.fileRead( dataFile ) );
+    }
+
+    private void assertRoundTrip( List<CacheBackend> backends )
+        throws Exception
+    {
+        InstrumentationCache cache = new InstrumentationCache( backends, new SystemStreamLog() );
+        String key = InstrumentationCache.computeKey( classesDir, "settings", dataFile );
+        assertEquals( -1, cache.restore( key, instrumentedDir, dataFile, new ArrayList<String>() ) );
+
+        assertEquals( key, instrumentAndSave( backends ) );
+
+        // a clean build restores the instrumentation instead of running it
+        FileUtils.fileWrite( new File( instrumentedDir, "pkg/Class0.class" ).getPath(), "class 0" );
+        dataFile.delete();
+        List<String> restoredPaths = new ArrayList<String>();
+        assertTrue( cache.restore( key, instrumentedDir, dataFile, restoredPaths ) > 0 );
+        assertEquals( Collections.singletonList( "pkg/Class0.class" ), restoredPaths );
+        assertEquals( "instrumented 0", FileUtils.fileRead( new File( instrumentedDir, "pkg/Class0.class" ) ) );
+        assertEquals( "data", FileUtils.fileRead( dataFile ) );
+    }
+
+    private String instrumentAndSave( List<CacheBackend> backends )
+        throws Exception
+    {
+        String key = InstrumentationCache.computeKey( classesDir, "settings", dataFile );
+        FileUtils.fileWrite( new File( instrumentedDir, "pkg/Class0.class" ).getPath(), "instrumented 0" );
+        FileUtils.fileWrite( dataFile.getPath(), "data" );
+
+        InstrumentationCache cache = new InstrumentationCache( backends, new SystemStreamLog() );
+        assertTrue( cache.save( key, instrumentedDir, Collections.singleton( "pkg/Class0.class" ), dataFile ) > 0 );
+        return key;
+    }
+}
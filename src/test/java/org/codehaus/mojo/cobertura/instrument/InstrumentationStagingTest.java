@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Test class for {@link InstrumentationStaging}.
+ */
+public class InstrumentationStagingTest
+    extends TestCase
+{
+    private File sourceDir;
+
+    private File targetDir;
+
+    protected void setUp()
+        throws Exception
+    {
+        File baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/staging" );
+        FileUtils.deleteDirectory( baseDir );
+        sourceDir = new File( baseDir, "classes" );
+        targetDir = new File( baseDir, "generated-classes" );
+        new File( sourceDir, "pkg" ).mkdirs();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            FileUtils.fileWrite( new File( sourceDir, "pkg/Class" + i + ".class" ).getPath(), "class " + i );
+        }
+        FileUtils.fileWrite( new File( sourceDir, "pkg/resource.txt" ).getPath(), "resource" );
+    }
+
+    public void testStage()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir,
+                                        new HashSet<String>( Arrays.asList( "pkg/Class0.class", "pkg/Class1.class" ) ),
+                                        2 );
+        staging.stage( Arrays.asList( "pkg/Class0.class", "pkg/Class1.class", "pkg/Class2.class", "pkg/Class3.class",
+                                      "pkg/resource.txt" ), true );
+
+        assertEquals( 5, staging.getLinked() + staging.getCopied() );
+        assertTrue( staging.getCopied() >= 2 );
+        for ( int i = 0; i < 4; i++ )
+        {
+            assertEquals( "class " + i, FileUtils.fileRead( new File( targetDir, "pkg/Class" + i + ".class" ) ) );
+        }
+        assertEquals( "resource", FileUtils.fileRead( new File( targetDir, "pkg/resource.txt" ) ) );
+    }
+
+    public void testRewrittenFilesAreIndependentCopies()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.singleton( "pkg/Class0.class" ) );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        FileUtils.fileWrite( new File( targetDir, "pkg/Class0.class" ).getPath(), "instrumented" );
+
+        assertEquals( "class 0", FileUtils.fileRead( new File( sourceDir, "pkg/Class0.class" ) ) );
+    }
+
+    public void testRestageReplacesLinks()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.<String>emptySet() );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        // the file becomes a rewritten one, staging it again must not write through a link
+        staging = new InstrumentationStaging( sourceDir, targetDir, Collections.singleton( "pkg/Class0.class" ) );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), false );
+        FileUtils.fileWrite( new File( targetDir, "pkg/Class0.class" ).getPath(), "instrumented" );
+
+        assertEquals( "class 0", FileUtils.fileRead( new File( sourceDir, "pkg/Class0.class" ) ) );
+    }
+
+    public void testRestageInstrumentedFiles()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.singleton( "pkg/Class0.class" ) );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+        File target = new File( targetDir, "pkg/Class0.class" );
+        FileUtils.fileWrite( target.getPath(), "instrumented" );
+        target.setLastModified( new File( sourceDir, "pkg/Class0.class" ).lastModified() + 10000 );
+
+        // the instrumented copy is newer than the compiled class, but must not be instrumented twice
+        staging = new InstrumentationStaging( sourceDir, targetDir, Collections.singleton( "pkg/Class0.class" ) );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        assertEquals( "class 0", FileUtils.fileRead( target ) );
+    }
+
+    public void testRestageFilesNoLongerInstrumented()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.singleton( "pkg/Class0.class" ) );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+        File target = new File( targetDir, "pkg/Class0.class" );
+        FileUtils.fileWrite( target.getPath(), "instrumented" );
+        target.setLastModified( new File( sourceDir, "pkg/Class0.class" ).lastModified() + 10000 );
+
+        // the class has been excluded since the previous build
+        staging = new InstrumentationStaging( sourceDir, targetDir, Collections.<String>emptySet() );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        assertEquals( "class 0", FileUtils.fileRead( target ) );
+    }
+
+    public void testKeepStagedFiles()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.<String>emptySet() );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        staging = new InstrumentationStaging( sourceDir, targetDir, Collections.<String>emptySet() );
+        staging.stage( Collections.singleton( "pkg/Class0.class" ), true );
+
+        assertEquals( 0, staging.getLinked() + staging.getCopied() );
+    }
+
+    public void testCopiedClassesAreIndependent()
+        throws Exception
+    {
+        InstrumentationStaging staging =
+            new InstrumentationStaging( sourceDir, targetDir, Collections.<String>emptySet() );
+        staging.setLinkClasses( false );
+        staging.stage( Arrays.asList( "pkg/Class0.class", "pkg/resource.txt" ), true );
+
+        assertTrue( staging.getCopied() >= 1 );
+        FileUtils.fileWrite( new File( targetDir, "pkg/Class0.class" ).getPath(), "woven" );
+
+        assertEquals( "class 0", FileUtils.fileRead( new File( sourceDir, "pkg/Class0.class" ) ) );
+    }
+}
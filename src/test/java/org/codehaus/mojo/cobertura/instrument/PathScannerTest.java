@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.instrument;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for {@link PathScanner}.
+ */
+public class PathScannerTest
+    extends TestCase
+{
+    private File baseDir;
+
+    protected void setUp()
+        throws Exception
+    {
+        baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/scanner" );
+        FileUtils.deleteDirectory( baseDir );
+
+        String[] files = { "Main.class", "Main.java", "a/A.class", "a/A$Inner.class", "a/b/B.class", "a/b/BTest.class",
+            "a/b/c/C.class", "a/.svn/entries", "a/.svn/text-base/A.class", "x/X.class", "x/y/Y.class", "x/y/notes~",
+            "test/T.class" };
+        for ( String file : files )
+        {
+            File f = new File( baseDir, file );
+            f.getParentFile().mkdirs();
+            FileUtils.fileWrite( f.getPath(), file );
+        }
+    }
+
+    public void testMatchesDirectoryScanner()
+        throws Exception
+    {
+        @SuppressWarnings( "unchecked" ) List<String> defaultExcludes = FileUtils.getDefaultExcludesAsList();
+
+        assertSameFiles( "**/*.class", "" );
+        assertSameFiles( "**/*.class", StringUtils.join( defaultExcludes.iterator(), "," ) );
+        assertSameFiles( "**/*.class", "**/*Test.class,**/*$*" );
+        assertSameFiles( "a/**/*.class", "a/b/" );
+        assertSameFiles( "a/*/*.class,x/**", "**/y/**,**/.svn/**" );
+        assertSameFiles( "**/?.class", "" );
+        assertSameFiles( "*.class", "" );
+        assertSameFiles( "**/b/**/*.class", "" );
+        assertSameFiles( "a/**/**/C.class", "" );
+        assertSameFiles( "**", "**/*.class" );
+    }
+
+    public void testExcludedDirectoriesArePruned()
+        throws Exception
+    {
+        File pruned = new File( baseDir, "x/pruned" );
+        pruned.mkdirs();
+        FileUtils.fileWrite( new File( pruned, "U.class" ).getPath(), "U" );
+
+        List<String> found =
+            new PathScanner( Collections.singletonList( "**/*.class" ), Collections.singletonList( "x/" ), 2 ).scan(
+                baseDir );
+
+        assertEquals( Arrays.asList( "Main.class", path( "a/.svn/text-base/A.class" ), path( "a/A$Inner.class" ),
+                                     path( "a/A.class" ), path( "a/b/B.class" ), path( "a/b/BTest.class" ),
+                                     path( "a/b/c/C.class" ), path( "test/T.class" ) ), found );
+    }
+
+    private void assertSameFiles( String includes, String excludes )
+        throws Exception
+    {
+        @SuppressWarnings( "unchecked" ) List<String> expected =
+            new ArrayList<String>( FileUtils.getFileNames( baseDir, includes, excludes, false ) );
+        Collections.sort( expected );
+
+        List<String> found = new PathScanner( Arrays.asList( StringUtils.split( includes, "," ) ),
+                                              Arrays.asList( StringUtils.split( excludes, "," ) ), 3 ).scan( baseDir );
+
+        assertEquals( includes + " excluding " + excludes, expected, found );
+    }
+
+    private static String path( String path )
+    {
+        return path.replace( '/', File.separatorChar );
+    }
+}
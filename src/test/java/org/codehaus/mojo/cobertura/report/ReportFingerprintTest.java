@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.report;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for {@link ReportFingerprint}.
+ */
+public class ReportFingerprintTest
+    extends TestCase
+{
+    private File baseDir;
+
+    private File sourceDir;
+
+    private File dataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/fingerprint" );
+        FileUtils.deleteDirectory( baseDir );
+        sourceDir = new File( baseDir, "src" );
+        new File( sourceDir, "pkg" ).mkdirs();
+        FileUtils.fileWrite( new File( sourceDir, "pkg/Source.java" ).getPath(), "class Source {}" );
+        dataFile = new File( baseDir, "cobertura.ser" );
+        FileUtils.fileWrite( dataFile.getPath(), "data" );
+    }
+
+    public void testFingerprintChangesWithInputs()
+        throws Exception
+    {
+        String value = fingerprint( "UTF-8" ).getValue();
+        assertEquals( value, fingerprint( "UTF-8" ).getValue() );
+        assertFalse( value.equals( fingerprint( "ISO-8859-1" ).getValue() ) );
+
+        FileUtils.fileWrite( new File( sourceDir, "pkg/Source.java" ).getPath(), "class Source { int i; }" );
+        String changedSource = fingerprint( "UTF-8" ).getValue();
+        assertFalse( value.equals( changedSource ) );
+
+        FileUtils.fileWrite( dataFile.getPath(), "other data" );
+        assertFalse( changedSource.equals( fingerprint( "UTF-8" ).getValue() ) );
+    }
+
+    public void testSaveAndMatch()
+        throws Exception
+    {
+        File outputDir = new File( baseDir, "report" );
+        File stateDir = ReportFingerprint.getStateDirectory( new File( baseDir, "state" ), outputDir );
+        ReportFingerprint fingerprint = fingerprint( "UTF-8" );
+        assertFalse( fingerprint.matches( stateDir ) );
+
+        fingerprint.save( stateDir );
+        assertTrue( fingerprint( "UTF-8" ).matches( stateDir ) );
+        assertFalse( fingerprint( "ISO-8859-1" ).matches( stateDir ) );
+        assertFalse( "The report output directory should be left alone", outputDir.exists() );
+
+        ReportFingerprint.delete( stateDir );
+        assertFalse( fingerprint.matches( stateDir ) );
+    }
+
+    public void testStateDirectoryPerOutputDirectory()
+    {
+        File stateBaseDir = new File( baseDir, "state" );
+        File stateDir = ReportFingerprint.getStateDirectory( stateBaseDir, new File( baseDir, "report" ) );
+        assertEquals( stateBaseDir, stateDir.getParentFile() );
+        assertEquals( stateDir, ReportFingerprint.getStateDirectory( stateBaseDir, new File( baseDir, "./report" ) ) );
+        assertFalse( stateDir.equals(
+            ReportFingerprint.getStateDirectory( stateBaseDir, new File( baseDir, "aggregate" ) ) ) );
+    }
+
+    private ReportFingerprint fingerprint( String encoding )
+        throws Exception
+    {
+        List<String> sourceRoots = Collections.singletonList( sourceDir.getPath() );
+        return new ReportFingerprint().addSetting( "encoding", encoding ).addFile( "datafile", dataFile )
+            .addSourceRoots( sourceRoots );
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.report;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for {@link SourceIndex}.
+ */
+public class SourceIndexTest
+    extends TestCase
+{
+    private File sourceDir;
+
+    private File indexFile;
+
+    private List<String> roots;
+
+    protected void setUp()
+        throws Exception
+    {
+        File baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/source-index" );
+        FileUtils.deleteDirectory( baseDir );
+        sourceDir = new File( baseDir, "src" );
+        indexFile = new File( baseDir, "source-index" );
+        roots = Collections.singletonList( sourceDir.getPath() );
+
+        write( "pkg/Circle.java" );
+        write( "pkg/sub/Square.java" );
+        write( "pkg.txt" );
+        write( "Main.java" );
+        write( ".svn/entries" );
+        settle( sourceDir );
+    }
+
+    public void testIndex()
+        throws Exception
+    {
+        SourceIndex index = SourceIndex.load( indexFile );
+        index.refresh( roots );
+
+        assertTrue( index.isIndexed( sourceDir.getPath() ) );
+        assertFalse( index.isIndexed( new File( sourceDir, "missing" ).getPath() ) );
+        assertEquals( Arrays.asList( "Main.java", "pkg.txt", "pkg/Circle.java", "pkg/sub/Square.java" ),
+                      index.getFiles( sourceDir.getPath() ) );
+        assertEquals( 3, index.getListed() );
+    }
+
+    public void testCachedDirectoriesAreNotListedAgain()
+        throws Exception
+    {
+        SourceIndex index = SourceIndex.load( indexFile );
+        index.refresh( roots );
+        index.save();
+
+        index = SourceIndex.load( indexFile );
+        index.refresh( roots );
+        assertEquals( 0, index.getListed() );
+        assertEquals( 3, index.getReused() );
+        assertEquals( 4, index.getFiles( sourceDir.getPath() ).size() );
+
+        // only the modified directory is listed again, and the removed one leaves the index
+        write( "pkg/Triangle.java" );
+        FileUtils.deleteDirectory( new File( sourceDir, "pkg/sub" ) );
+        index = SourceIndex.load( indexFile );
+        index.refresh( roots );
+        assertEquals( 1, index.getListed() );
+        assertEquals( Arrays.asList( "Main.java", "pkg.txt", "pkg/Circle.java", "pkg/Triangle.java" ),
+                      index.getFiles( sourceDir.getPath() ) );
+    }
+
+    public void testDamagedIndexIsIgnored()
+        throws Exception
+    {
+        FileUtils.fileWrite( indexFile.getPath(), "UTF-8", "# cobertura source index 1\nD\tnot a time\t/src\n" );
+
+        SourceIndex index = SourceIndex.load( indexFile );
+
+        assertFalse( index.isIndexed( "/src" ) );
+    }
+
+    private void write( String path )
+        throws Exception
+    {
+        File file = new File( sourceDir, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), path );
+    }
+
+    /**
+     * Move the modification times of the directories back, as if they were modified a while ago.
+     */
+    private static void settle( File dir )
+    {
+        dir.setLastModified( System.currentTimeMillis() / 1000 * 1000 - 60000 );
+        File[] children = dir.listFiles();
+        for ( File child : children )
+        {
+            if ( child.isDirectory() )
+            {
+                settle( child );
+            }
+        }
+    }
+}
@@ -36,7 +36,14 @@ package org.codehaus.mojo.cobertura.tasks;
  */
 
 import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import org.codehaus.mojo.cobertura.configuration.ConfigCheck;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
 
 /**
  * @author Edwin Punzalan
@@ -69,4 +76,66 @@ public class CheckTaskTest
 
         assertEquals( config, task.getConfig() );
     }
+
+    public void testCoberturaChecksByDefault()
+    {
+        assertEquals( CheckTask.ENGINE_COBERTURA, task.getCheckEngine() );
+    }
+
+    public void testPluginEngineKeepsFork()
+    {
+        task.setCheckEngine( CheckTask.ENGINE_PLUGIN );
+
+        assertEquals( CheckTask.ENGINE_PLUGIN, task.getCheckEngine() );
+        assertTrue( task.isFork() );
+    }
+
+    public void testUnknownEngine()
+    {
+        try
+        {
+            task.setCheckEngine( "fork" );
+            fail( "Expected an IllegalArgumentException" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( CheckTask.ENGINE_COBERTURA, task.getCheckEngine() );
+        }
+    }
+
+    public void testFailedCheckCreatesNoBaseline()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/check-baseline" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        File dataFile = new File( dir, "cobertura.ser" );
+        ProjectData projectData = new ProjectData();
+        ClassData classData = projectData.getOrCreateClassData( "pkg.A" );
+        classData.setSourceFileName( "pkg/A.java" );
+        classData.addLine( 1, "method", "()V" );
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+        File baseline = new File( dir, "coverage-baseline.bin" );
+
+        ConfigCheck config = new ConfigCheck();
+        config.setLineRate( "100" );
+        config.setHaltOnFailure( false );
+        task.setConfig( config );
+        task.setCheckEngine( CheckTask.ENGINE_PLUGIN );
+        task.setDataFile( dataFile.getPath() );
+        task.setBaseline( baseline );
+        task.execute();
+
+        assertFalse( baseline.exists() );
+
+        config.setLineRate( "0" );
+        task = new CheckTask();
+        task.setConfig( config );
+        task.setCheckEngine( CheckTask.ENGINE_PLUGIN );
+        task.setDataFile( dataFile.getPath() );
+        task.setBaseline( baseline );
+        task.execute();
+
+        assertTrue( baseline.exists() );
+    }
 }
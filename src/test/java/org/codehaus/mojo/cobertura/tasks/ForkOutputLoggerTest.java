@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for {@link ForkOutputLogger} and {@link InstrumentationProgress}.
+ */
+public class ForkOutputLoggerTest
+    extends TestCase
+{
+    private final List<String> lines = new ArrayList<String>();
+
+    private final SystemStreamLog log = new SystemStreamLog()
+    {
+        public void info( CharSequence content )
+        {
+            lines.add( "info " + content );
+        }
+
+        public void warn( CharSequence content )
+        {
+            lines.add( "warn " + content );
+        }
+
+        public void error( CharSequence content )
+        {
+            lines.add( "error " + content );
+        }
+    };
+
+    public void testLinesAreForwardedAsTheyArrive()
+    {
+        ForkOutputLogger output = new ForkOutputLogger( log, 0, false );
+
+        output.getStdout().consumeLine( "Instrumenting 2 files" );
+        assertEquals( Arrays.asList( "info Instrumenting 2 files" ), lines );
+
+        output.getStderr().consumeLine( "Something went wrong" );
+        output.finish();
+        assertEquals( Arrays.asList( "info Instrumenting 2 files", "error Something went wrong" ), lines );
+    }
+
+    public void testOutputAboveTheLimitIsOmitted()
+    {
+        ForkOutputLogger output = new ForkOutputLogger( log, 10, false );
+
+        output.getStdout().consumeLine( "12345" );
+        output.getStdout().consumeLine( "1234" );
+        output.getStderr().consumeLine( "1" );
+        output.getStdout().consumeLine( "12" );
+        output.finish();
+
+        assertEquals( 3, output.getOmittedLines() );
+        assertEquals( Arrays.asList( "info 12345",
+                                     "warn Omitted 3 lines (10 characters) of output from Cobertura, above the limit "
+                                         + "of 10 characters." ), lines );
+    }
+
+    public void testQuietSwallowsOutput()
+    {
+        ForkOutputLogger output = new ForkOutputLogger( log, 1, true );
+
+        output.getStdout().consumeLine( "Instrumenting 2 files" );
+        output.getStderr().consumeLine( "Something went wrong" );
+        output.finish();
+
+        assertTrue( lines.isEmpty() );
+    }
+
+    public void testInstrumentationProgress()
+        throws Exception
+    {
+        File dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/progress" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        File old = new File( dir, "Old.class" );
+        FileUtils.fileWrite( old.getPath(), "old" );
+        old.setLastModified( System.currentTimeMillis() - 60000L );
+
+        InstrumentationProgress progress =
+            new InstrumentationProgress( dir, Arrays.asList( "Old.class", "A.class", "B.class" ), log );
+        assertEquals( 0, progress.update() );
+
+        FileUtils.fileWrite( new File( dir, "A.class" ).getPath(), "instrumented" );
+        progress.report();
+        progress.report();
+        assertEquals( Arrays.asList( "info Instrumented 1/3 classes" ), lines );
+
+        FileUtils.fileWrite( new File( dir, "B.class" ).getPath(), "instrumented" );
+        FileUtils.fileWrite( old.getPath(), "instrumented" );
+        assertEquals( 3, progress.update() );
+    }
+}
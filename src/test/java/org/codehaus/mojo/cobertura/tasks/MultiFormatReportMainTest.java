@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.tasks;
+
+import junit.framework.TestCase;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.codehaus.mojo.cobertura.report.SourceIndex;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Test class for {@link MultiFormatReportMain}.
+ */
+public class MultiFormatReportMainTest
+    extends TestCase
+{
+    private File baseDir;
+
+    private File sourceDir;
+
+    private File archiveDir;
+
+    private File dataFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        baseDir = new File( PlexusTestCase.getBasedir(), "target/test-harness/multi-format-report" );
+        FileUtils.deleteDirectory( baseDir );
+        sourceDir = new File( baseDir, "src" );
+        archiveDir = new File( baseDir, "lib-src" );
+        dataFile = new File( baseDir, "cobertura.ser" );
+
+        new File( sourceDir, "pkg" ).mkdirs();
+        FileUtils.fileWrite( new File( sourceDir, "pkg/Circle.java" ).getPath(),
+                             "package pkg;\npublic class Circle\n{\n    int radius;\n}\n" );
+
+        archiveDir.mkdirs();
+        ZipOutputStream archive = new ZipOutputStream( new FileOutputStream( new File( archiveDir, "sources.jar" ) ) );
+        try
+        {
+            archive.putNextEntry( new ZipEntry( "lib/Square.java" ) );
+            archive.write( "package lib;\npublic class Square\n{\n    int side;\n}\n".getBytes( "UTF-8" ) );
+            archive.closeEntry();
+        }
+        finally
+        {
+            IOUtil.close( archive );
+        }
+
+        ProjectData projectData = new ProjectData();
+        addClass( projectData, "pkg.Circle", "Circle.java" );
+        addClass( projectData, "lib.Square", "Square.java" );
+        CoverageDataFileHandler.saveCoverageData( projectData, dataFile );
+    }
+
+    public void testSourceIndex()
+        throws Exception
+    {
+        File indexFile = new File( baseDir, "source-index" );
+        SourceIndex index = SourceIndex.load( indexFile );
+        index.refresh( Arrays.asList( sourceDir.getPath(), archiveDir.getPath() ) );
+        index.save();
+        assertTrue( index.isIndexed( sourceDir.getPath() ) );
+        assertTrue( index.isIndexed( archiveDir.getPath() ) );
+
+        File destination = new File( baseDir, "report" );
+        int exitCode = MultiFormatReportMain.generateReport(
+            new String[]{ "--datafile", dataFile.getPath(), "--destination", destination.getPath(), "--sourceindex",
+                indexFile.getPath(), "--source", sourceDir.getPath(), "--source", archiveDir.getPath() } );
+
+        assertEquals( 0, exitCode );
+        // the source files registered one by one
+        assertTrue( FileUtils.fileRead( new File( destination, "pkg.Circle.html" ) ).contains( "radius" ) );
+        // the archives at the top of a source root, which Cobertura only searches in source directories
+        assertTrue( FileUtils.fileRead( new File( destination, "lib.Square.html" ) ).contains( "side" ) );
+    }
+
+    public void testMissingSourceIndex()
+        throws Exception
+    {
+        File destination = new File( baseDir, "report" );
+        int exitCode = MultiFormatReportMain.generateReport(
+            new String[]{ "--datafile", dataFile.getPath(), "--destination", destination.getPath(), "--sourceindex",
+                new File( baseDir, "missing" ).getPath(), "--source", sourceDir.getPath() } );
+
+        assertEquals( 0, exitCode );
+        assertTrue( FileUtils.fileRead( new File( destination, "pkg.Circle.html" ) ).contains( "radius" ) );
+    }
+
+    private static void addClass( ProjectData projectData, String name, String sourceFileName )
+    {
+        ClassData classData = projectData.getOrCreateClassData( name );
+        classData.setSourceFileName( sourceFileName );
+        classData.addLine( 4, "<init>", "()V" );
+    }
+}
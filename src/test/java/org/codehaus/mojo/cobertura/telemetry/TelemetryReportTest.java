@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * Mojo's Maven plugin for Cobertura
+ * %%
+ * Copyright (C) 2005 - 2013 Codehaus
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.codehaus.mojo.cobertura.telemetry;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for {@link TelemetryReport}.
+ */
+public class TelemetryReportTest
+    extends TestCase
+{
+    private File dir;
+
+    protected void setUp()
+        throws Exception
+    {
+        TelemetryReport.reset();
+        dir = new File( PlexusTestCase.getBasedir(), "target/test-harness/telemetry" );
+        FileUtils.deleteDirectory( dir );
+    }
+
+    protected void tearDown()
+    {
+        TelemetryReport.reset();
+    }
+
+    public void testRecord()
+        throws Exception
+    {
+        File telemetryFile = new File( dir, "module/" + TelemetryReport.FILENAME );
+
+        Telemetry instrument = new Telemetry( "instrument" );
+        Phase scan = instrument.start( Telemetry.SCAN );
+        scan.addBytesRead( 42 );
+        scan.end();
+        Phase fork = instrument.start( Telemetry.FORK );
+        fork.addPeakRssKb( 2048 );
+        fork.addCpuNanos( 5000000 );
+        fork.end();
+        TelemetryReport.record( "org.example:module", telemetryFile, instrument );
+
+        Telemetry check = new Telemetry( "check" );
+        check.start( Telemetry.CHECK ).end();
+        TelemetryReport.record( "org.example:module", telemetryFile, check );
+
+        String json = FileUtils.fileRead( telemetryFile, "UTF-8" );
+        assertTrue( json, json.contains( "\"module\": \"org.example:module\"" ) );
+        assertTrue( json, json.contains( "\"goal\": \"instrument\"" ) );
+        assertTrue( json, json.contains( "\"goal\": \"check\"" ) );
+        assertTrue( json, json.contains( "\"name\": \"scan\"" ) );
+        assertTrue( json, json.contains( "\"bytesRead\": 42" ) );
+        assertTrue( json, json.contains( "\"peakRssKb\": 2048" ) );
+        assertTrue( json, json.indexOf( "\"goal\": \"instrument\"" ) < json.indexOf( "\"goal\": \"check\"" ) );
+    }
+
+    public void testPhaseIsRecordedOnce()
+    {
+        Telemetry telemetry = new Telemetry( "report" );
+        Phase phase = telemetry.start( Telemetry.REPORT );
+        assertTrue( telemetry.getPhases().isEmpty() );
+
+        phase.end();
+        phase.end();
+
+        assertEquals( 1, telemetry.getPhases().size() );
+        assertTrue( phase.getWallNanos() >= 0 );
+        assertEquals( -1, phase.getPeakRssKb() );
+    }
+
+    public void testQuote()
+    {
+        assertEquals( "null", TelemetryReport.quote( null ) );
+        assertEquals( "\"a\\\"b\\\\c\\u000a\"", TelemetryReport.quote( "a\"b\\c\n" ) );
+    }
+
+    public void testSummarize()
+        throws Exception
+    {
+        for ( int module = 0; module < 2; module++ )
+        {
+            Telemetry telemetry = new Telemetry( "report" );
+            Phase phase = telemetry.start( Telemetry.REPORT );
+            phase.addBytesWritten( 100 );
+            phase.end();
+            TelemetryReport.record( "org.example:module" + module,
+                                    new File( dir, "module" + module + "/" + TelemetryReport.FILENAME ), telemetry );
+        }
+
+        final List<String> lines = new ArrayList<String>();
+        TelemetryReport.summarize( new SystemStreamLog()
+        {
+            public void info( CharSequence content )
+            {
+                lines.add( content.toString() );
+            }
+        } );
+
+        assertEquals( 3, lines.size() );
+        assertEquals( "Cobertura telemetry of 2 modules:", lines.get( 0 ) );
+        assertTrue( lines.get( 2 ), lines.get( 2 ).matches( "  report\\s+2 .* 200" ) );
+    }
+}